@@ -5,8 +5,12 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+import oakbot.bot.SheddingPolicy;
+import oakbot.util.PooledHttpClient;
 import oakbot.util.PropertiesWrapper;
+import oakbot.util.ThreadMode;
 
 /**
  * Holds environment settings, such as the bot's login credentials.
@@ -16,7 +20,17 @@ public class BotProperties extends PropertiesWrapper {
 	private final String loginEmail, password, botname, trigger, dictionaryKey;
 	private final List<Integer> rooms, admins;
 	private final int heartbeat;
-	private final Path javadocPath;
+	private final Integer heartbeatMin, heartbeatMax;
+	private final double heartbeatDecay;
+	private final SheddingPolicy sheddingPolicy;
+	private final int rateLimitUser, rateLimitCommand, rateLimitWindow;
+	private final int replyBatchWindow;
+	private final ThreadMode threadMode;
+	private final boolean webSocket;
+	private final PooledHttpClient.Builder httpClient;
+	private final Integer botUserId;
+	private final long javadocCacheSize;
+	private final Path javadocPath, javadocIndexPath, sessionFile, recordFile;
 
 	/**
 	 * @param properties the properties file to pull the settings from
@@ -27,11 +41,76 @@ public class BotProperties extends PropertiesWrapper {
 		loginEmail = get("login.email");
 		password = get("login.password");
 		botname = get("botname");
+		botUserId = getInteger("botid");
 		trigger = get("trigger", "=");
 		rooms = getIntegerList("rooms", Arrays.asList(1)); //default to "Sandbox"
 		admins = getIntegerList("admins");
 		heartbeat = getInteger("heartbeat", 3000);
+		heartbeatMin = getInteger("heartbeat.min");
+		heartbeatMax = getInteger("heartbeat.max");
+		heartbeatDecay = getDouble("heartbeat.decay", 2.0);
+
+		//@formatter:off
+		sheddingPolicy = new SheddingPolicy.Builder()
+			.capacity(getInteger("inbound.capacity", 100))
+			.maxCommandAge(getInteger("inbound.maxCommandAge", 0), TimeUnit.SECONDS)
+			.newestCommandPerUser(getBoolean("inbound.newestCommandPerUser", false))
+			.coalesceDuplicates(getBoolean("inbound.coalesceDuplicates", false))
+		.build();
+		//@formatter:on
+
+		rateLimitUser = getInteger("ratelimit.user", 0);
+		rateLimitCommand = getInteger("ratelimit.command", 0);
+		rateLimitWindow = getInteger("ratelimit.window", 60);
+		replyBatchWindow = getInteger("replies.batchWindow", 0);
+		threadMode = ThreadMode.parse(get("threads", "platform"));
+
+		String connection = get("connection", "polling");
+		switch (connection) {
+		case "polling":
+			webSocket = false;
+			break;
+		case "websocket":
+			webSocket = true;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown connection type \"" + connection + "\". Expected \"polling\" or \"websocket\".");
+		}
+
+		/*
+		 * Each room can be polled on its own connection to the chat host,
+		 * and messages are posted and room pages are loaded on others.
+		 */
+		int maxConnectionsPerRoute = getInteger("http.maxConnectionsPerRoute", Math.max(5, rooms.size() + 3));
+
+		//@formatter:off
+		httpClient = new PooledHttpClient.Builder()
+			.maxConnections(getInteger("http.maxConnections", Math.max(20, maxConnectionsPerRoute)))
+			.maxConnectionsPerRoute(maxConnectionsPerRoute)
+			.connectTimeout(getInteger("http.connectTimeout", 5), TimeUnit.SECONDS)
+			.readTimeout(getInteger("http.readTimeout", 10), TimeUnit.SECONDS)
+			.keepAlive(getInteger("http.keepAlive", 60), TimeUnit.SECONDS);
+		//@formatter:on
+
 		javadocPath = Paths.get(get("javadoc.folder", "javadocs"));
+
+		String javadocIndex = get("javadoc.index.folder");
+		if (javadocIndex == null) {
+			javadocIndexPath = javadocPath.resolve(".index");
+		} else {
+			javadocIndex = javadocIndex.trim();
+			javadocIndexPath = javadocIndex.isEmpty() ? null : Paths.get(javadocIndex);
+		}
+		javadocCacheSize = getInteger("javadoc.cache.maxSize", 32) * 1024L * 1024L;
+		if (javadocCacheSize <= 0) {
+			throw new IllegalArgumentException("javadoc.cache.maxSize must be positive.");
+		}
+
+		String session = get("session.file", "session.properties").trim();
+		sessionFile = session.isEmpty() ? null : Paths.get(session);
+
+		String record = get("record.file");
+		recordFile = (record == null || record.trim().isEmpty()) ? null : Paths.get(record.trim());
 		dictionaryKey = get("dictionary.key");
 	}
 
@@ -59,6 +138,14 @@ public class BotProperties extends PropertiesWrapper {
 		return botname;
 	}
 
+	/**
+	 * Gets the user ID of the bot's SO account.
+	 * @return the user ID or null if not set
+	 */
+	public Integer getBotUserId() {
+		return botUserId;
+	}
+
 	/**
 	 * Gets the string sequence that triggers the bot.
 	 * @return the trigger (defaults to "=")
@@ -91,6 +178,106 @@ public class BotProperties extends PropertiesWrapper {
 		return heartbeat;
 	}
 
+	/**
+	 * Gets the shortest amount of time to wait in between checks for new
+	 * messages when the polling interval adapts to room activity.
+	 * @return the min pause time in milliseconds or null if the polling
+	 * interval is fixed
+	 */
+	public Integer getHeartbeatMin() {
+		return heartbeatMin;
+	}
+
+	/**
+	 * Gets the longest amount of time to wait in between checks for new
+	 * messages when the polling interval adapts to room activity.
+	 * @return the max pause time in milliseconds or null if the polling
+	 * interval is fixed
+	 */
+	public Integer getHeartbeatMax() {
+		return heartbeatMax;
+	}
+
+	/**
+	 * Gets the factor by which the polling interval grows when a room is idle
+	 * and shrinks when it is active.
+	 * @return the decay factor (defaults to 2)
+	 */
+	public double getHeartbeatDecay() {
+		return heartbeatDecay;
+	}
+
+	/**
+	 * Gets how each room's inbound message queue drops messages when the bot
+	 * falls behind.
+	 * @return the shedding policy
+	 */
+	public SheddingPolicy getSheddingPolicy() {
+		return sheddingPolicy;
+	}
+
+	/**
+	 * Gets the number of commands a user can invoke per rate limit window.
+	 * @return the limit or zero for no limit
+	 */
+	public int getRateLimitUser() {
+		return rateLimitUser;
+	}
+
+	/**
+	 * Gets the number of times a user can invoke the same command per rate
+	 * limit window.
+	 * @return the limit or zero for no limit
+	 */
+	public int getRateLimitCommand() {
+		return rateLimitCommand;
+	}
+
+	/**
+	 * Gets the length of the rate limit window.
+	 * @return the window length in seconds (defaults to 60)
+	 */
+	public int getRateLimitWindow() {
+		return rateLimitWindow;
+	}
+
+	/**
+	 * Gets how long to hold back replies to a room so they can be merged into
+	 * a single post.
+	 * @return the window in milliseconds or zero to post every reply
+	 * immediately
+	 */
+	public int getReplyBatchWindow() {
+		return replyBatchWindow;
+	}
+
+	/**
+	 * Gets what kind of threads the bot should poll, run commands, and send
+	 * messages on.
+	 * @return the thread mode (defaults to platform threads)
+	 */
+	public ThreadMode getThreadMode() {
+		return threadMode;
+	}
+
+	/**
+	 * Gets whether new messages should be received through the chat's
+	 * WebSocket feed instead of by polling each room over HTTP.
+	 * @return true to use the WebSocket feed, false to poll (default)
+	 */
+	public boolean isWebSocket() {
+		return webSocket;
+	}
+
+	/**
+	 * Gets the settings of the HTTP client that the chat connection and the
+	 * commands share.
+	 * @return the HTTP client builder
+	 */
+	public PooledHttpClient.Builder getHttpClient() {
+		return httpClient;
+	}
+
 	/**
 	 * Gets the path to the folder where the javadoc ZIP files are held.
 	 * @return the path to the javadoc folder (defaults to "javadocs" if not
@@ -100,6 +287,45 @@ public class BotProperties extends PropertiesWrapper {
 		return javadocPath;
 	}
 
+	/**
+	 * Gets the path to the folder where the binary indexes of the javadoc ZIP
+	 * files are stored.
+	 * @return the path to the index folder (defaults to ".index" inside of the
+	 * javadoc folder) or null if the ZIP files should be read directly
+	 */
+	public Path getJavadocIndexPath() {
+		return javadocIndexPath;
+	}
+
+	/**
+	 * Gets the max amount of memory that the cache of parsed javadoc classes
+	 * can use.
+	 * @return the max size in bytes (defaults to 32MB)
+	 */
+	public long getJavadocCacheSize() {
+		return javadocCacheSize;
+	}
+
+	/**
+	 * Gets the file that the chat session is saved to, so that the bot does
+	 * not have to log in again when it is restarted.
+	 * @return the path to the session file (defaults to "session.properties")
+	 * or null if the session should not be saved
+	 */
+	public Path getSessionFile() {
+		return sessionFile;
+	}
+
+	/**
+	 * Gets the file that all chat traffic is recorded to, so that it can be
+	 * replayed offline for load testing.
+	 * @return the path to the recording file or null if traffic should not be
+	 * recorded
+	 */
+	public Path getRecordFile() {
+		return recordFile;
+	}
+
 	/**
 	 * Gets the API key for the define command.
 	 * @return the API key or null if not found
@@ -16,17 +16,24 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
 
 import oakbot.bot.Bot;
+import oakbot.bot.PollingPolicy;
+import oakbot.bot.RateLimiter;
 import oakbot.chat.ChatConnection;
+import oakbot.chat.ChatSession;
+import oakbot.chat.RecordingChat;
 import oakbot.chat.StackoverflowChat;
+import oakbot.chat.WebSocketChat;
 import oakbot.command.AboutCommand;
 import oakbot.command.Command;
+import oakbot.command.CommandRegistry;
 import oakbot.command.EightBallCommand;
 import oakbot.command.HelpCommand;
 import oakbot.command.RollCommand;
@@ -42,6 +49,8 @@ import oakbot.command.urban.UrbanCommand;
 import oakbot.listener.JavadocListener;
 import oakbot.listener.Listener;
 import oakbot.listener.MentionListener;
+import oakbot.util.PooledHttpClient;
+import oakbot.util.ThreadMode;
 
 /**
  * @author Michael Angstadt
@@ -79,7 +88,7 @@ public class Main {
 		setupLogging();
 		BotProperties props = loadProperties();
 
-		JavadocCommand javadocCommand = createJavadocCommand(props.getJavadocPath());
+		JavadocCommand javadocCommand = createJavadocCommand(props.getJavadocPath(), props.getJavadocIndexPath(), props.getJavadocCacheSize());
 
 		//@formatter:off
 		List<Listener> listeners = Arrays.asList(
@@ -90,34 +99,70 @@ public class Main {
 
 		Statistics stats = new Statistics(Paths.get("statistics.properties"));
 
+		ChatSession session = (props.getSessionFile() == null) ? null : new ChatSession(props.getSessionFile());
+
+		//shared by everything that sends HTTP requests, so connections are reused
+		PooledHttpClient.Builder httpClientBuilder = props.getHttpClient();
+		if (session != null) {
+			httpClientBuilder.cookieStore(session.getCookieStore());
+		}
+		CloseableHttpClient httpClient = httpClientBuilder.build();
+
+		CommandRegistry commandRegistry = new CommandRegistry();
 		List<Command> commands = new ArrayList<>();
 		commands.add(new AboutCommand(stats));
-		commands.add(new HelpCommand(commands, listeners, props.getTrigger()));
+		commands.add(new HelpCommand(commandRegistry, listeners, props.getTrigger()));
 		commands.add(javadocCommand);
 		commands.add(new HttpCommand());
 		commands.add(new WikiCommand());
-		commands.add(new TagCommand());
-		commands.add(new UrbanCommand());
+		commands.add(new TagCommand(httpClient));
+		commands.add(new UrbanCommand(httpClient));
 		String dictionaryKey = props.getDictionaryKey();
 		if (dictionaryKey != null) {
-			commands.add(new DefineCommand(dictionaryKey));
+			commands.add(new DefineCommand(dictionaryKey, httpClient));
 		}
 		commands.add(new RollCommand());
 		commands.add(new EightBallCommand());
 		commands.add(new SummonCommand());
 		commands.add(new ShutdownCommand());
 
-		ChatConnection connection = new StackoverflowChat(HttpClientBuilder.create().build());
+		ThreadMode threadMode = props.getThreadMode();
+		StackoverflowChat chat = new StackoverflowChat(httpClient, TimeUnit.SECONDS.toMillis(5), threadMode, session);
+		ChatConnection connection = props.isWebSocket() ? new WebSocketChat(chat) : chat;
+		RecordingChat recording = null;
+		if (props.getRecordFile() != null) {
+			recording = new RecordingChat(connection, props.getRecordFile());
+			connection = recording;
+		}
+
+		PollingPolicy pollingPolicy = null;
+		if (props.getHeartbeatMin() != null || props.getHeartbeatMax() != null) {
+			int min = (props.getHeartbeatMin() == null) ? props.getHeartbeat() : props.getHeartbeatMin();
+			int max = (props.getHeartbeatMax() == null) ? props.getHeartbeat() : props.getHeartbeatMax();
+			pollingPolicy = new PollingPolicy(min, max, props.getHeartbeatDecay());
+		}
+
+		RateLimiter rateLimiter = null;
+		if (props.getRateLimitUser() > 0 || props.getRateLimitCommand() > 0) {
+			rateLimiter = new RateLimiter(props.getRateLimitUser(), props.getRateLimitCommand(), TimeUnit.SECONDS.toMillis(props.getRateLimitWindow()));
+		}
 
 		//@formatter:off
 		Bot bot = new Bot.Builder()
 		.login(props.getLoginEmail(), props.getLoginPassword())
+		.commandRegistry(commandRegistry)
 		.commands(commands)
 		.listeners(listeners)
 		.connection(connection)
 		.heartbeat(props.getHeartbeat())
+		.pollingPolicy(pollingPolicy)
+		.sheddingPolicy(props.getSheddingPolicy())
+		.rateLimiter(rateLimiter)
+		.replyBatchWindow(props.getReplyBatchWindow())
+		.threadMode(threadMode)
 		.admins(props.getAdmins())
 		.name(props.getBotname())
+		.userId(props.getBotUserId())
 		.trigger(props.getTrigger())
 		.rooms(props.getRooms())
 		.stats(stats)
@@ -125,6 +170,14 @@ public class Main {
 		//@formatter:on
 
 		bot.connect(quiet);
+		if (session != null) {
+			//keep the latest cookie expiry dates
+			session.save();
+		}
+		httpClient.close();
+		if (recording != null) {
+			recording.close();
+		}
 
 		logger.info("Terminating.");
 	}
@@ -157,8 +210,8 @@ public class Main {
 		return new BotProperties(properties);
 	}
 
-	private static JavadocCommand createJavadocCommand(Path dir) throws IOException {
-		JavadocDao dao = new JavadocDao(dir);
+	private static JavadocCommand createJavadocCommand(Path dir, Path indexDir, long cacheSize) throws IOException {
+		JavadocDao dao = new JavadocDao(dir, indexDir, cacheSize);
 		return new JavadocCommand(dao);
 	}
 
@@ -8,6 +8,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -18,8 +30,12 @@ import com.google.common.collect.ImmutableList;
 import oakbot.Statistics;
 import oakbot.chat.ChatConnection;
 import oakbot.chat.ChatMessage;
+import oakbot.chat.CircuitOpenException;
 import oakbot.command.Command;
+import oakbot.command.CommandRegistry;
 import oakbot.listener.Listener;
+import oakbot.util.ChatBuilder;
+import oakbot.util.ThreadMode;
 
 /**
  * A Stackoverflow chat bot.
@@ -31,13 +47,72 @@ public class Bot {
 	private final String email, password, name, trigger;
 	private final ChatConnection connection;
 	private final int heartbeat;
+	private final long listenerTimeout;
+	private final PollingPolicy pollingPolicy;
+	private final SheddingPolicy sheddingPolicy;
+	private final RateLimiter rateLimiter;
 	private final List<Integer> rooms, admins;
-	private final List<Command> commands;
-	private final List<Listener> listeners;
+	private final CommandRegistry commands;
+	private final ListenerMatcher listeners;
 	private final Statistics stats;
-	private final Map<Integer, Long> prevMessageIds = new HashMap<>();
 	private final Pattern commandRegex;
 
+	/**
+	 * Runs the tasks that poll each room for new messages.
+	 */
+	private final ScheduledThreadPoolExecutor pollers;
+
+	/**
+	 * Runs each poll on its own virtual thread (null if not in virtual thread
+	 * mode, in which case the polls run on the {@link #pollers} threads).
+	 */
+	private final ExecutorService pollThreads;
+
+	/**
+	 * The task that is polling each room.
+	 * <ul>
+	 * <li><b>Key:</b> The room ID.</li>
+	 * <li><b>Value:</b> The task polling the room.</li>
+	 * </ul>
+	 */
+	private final Map<Integer, RoomPoller> roomPollers = new ConcurrentHashMap<>();
+
+	/**
+	 * Polls all the rooms at once (null if the connection cannot do this, in
+	 * which case each room is polled by its own {@link RoomPoller}).
+	 */
+	private final BulkPoller bulkPoller;
+
+	/**
+	 * Runs the commands and listeners.
+	 */
+	private final WorkerPool workers;
+
+	/**
+	 * The max number of each room's messages that can be handled at once. The
+	 * room's other messages wait in its {@link InboundQueue}.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * When the bot last told a user that it was too busy to run their command
+	 * (timestamp).
+	 */
+	private final AtomicLong lastBusyReply = new AtomicLong();
+
+	/**
+	 * Merges replies that are posted to the same room in quick succession.
+	 */
+	private final ReplyBatcher replyBatcher;
+
+	/**
+	 * Lets identical command invocations share a single computation.
+	 */
+	private final SingleFlight singleFlight = new SingleFlight();
+
+	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
+	private final CountDownLatch terminated = new CountDownLatch(1);
+
 	private Bot(Builder builder) {
 		connection = builder.connection;
 		email = builder.email;
@@ -45,12 +120,46 @@ public class Bot {
 		name = builder.name;
 		trigger = builder.trigger;
 		heartbeat = builder.heartbeat;
-		rooms = builder.rooms;
+		pollingPolicy = (builder.pollingPolicy == null) ? PollingPolicy.fixed(heartbeat) : builder.pollingPolicy;
+		listenerTimeout = builder.listenerTimeout;
+		sheddingPolicy = builder.sheddingPolicy;
+		rateLimiter = builder.rateLimiter;
+		rooms = new CopyOnWriteArrayList<>(builder.rooms);
 		admins = builder.admins;
 		stats = builder.stats;
-		commands = builder.commands.build();
-		listeners = builder.listeners.build();
+		commands = (builder.commandRegistry == null) ? new CommandRegistry() : builder.commandRegistry;
+		for (Command command : builder.commands.build()) {
+			commands.register(command);
+		}
+		listeners = new ListenerMatcher(builder.listeners.build(), builder.userId);
 		commandRegex = Pattern.compile("^" + Pattern.quote(trigger) + "\\s*(.*?)(\\s+(.*)|$)");
+
+		/*
+		 * In virtual thread mode, the scheduler thread only starts each poll.
+		 * The poll itself runs on its own virtual thread.
+		 */
+		ThreadMode threadMode = builder.threadMode;
+		pollers = new ScheduledThreadPoolExecutor(1, ThreadMode.PLATFORM.threadFactory("RoomPoller"));
+		pollThreads = (threadMode == ThreadMode.VIRTUAL) ? threadMode.newThreadPerTaskExecutor("RoomPoller") : null;
+
+		workers = new WorkerPool(threadMode, builder.workerThreads, builder.workerQueueSize);
+		maxInFlight = builder.workerThreads;
+		bulkPoller = connection.supportsBulkPolling() ? new BulkPoller() : null;
+		replyBatcher = new ReplyBatcher(connection, builder.replyBatchWindow);
+		connection.setGapHandler(this::onGap);
+		connection.setNewMessageHandler(this::onNewMessages);
+	}
+
+	/**
+	 * Called when the connection pushes new messages to a room. The room is
+	 * polled right away, instead of waiting for its next scheduled poll.
+	 * @param room the room ID
+	 */
+	private void onNewMessages(int room) {
+		RoomPoller poller = roomPollers.get(room);
+		if (poller != null && !shuttingDown.get()) {
+			poller.wake();
+		}
 	}
 
 	/**
@@ -76,75 +185,18 @@ public class Bot {
 			}
 		}
 
-		//listen for and reply to messages
-		while (true) {
-			long start = System.currentTimeMillis();
-
-			/*
-			 * Commands can join rooms, so make a copy of the room list to prevent a
-			 * concurrent modification exception.
-			 */
-			rooms = new ArrayList<>(this.rooms);
-			for (Integer room : rooms) {
-				logger.fine("Pinging room " + room);
-
-				//get new messages since last ping
-				List<ChatMessage> newMessages = connection.getNewMessages(room);
-				logger.fine(newMessages.size() + " new messages found.");
-				if (newMessages.isEmpty()) {
-					//no new messages
-					continue;
-				}
-
-				for (ChatMessage message : newMessages) {
-					if (message.getContent() == null) {
-						//user deleted his/her message, ignore
-						continue;
-					}
-
-					List<ChatResponse> replies = new ArrayList<>();
-					boolean isUserAdmin = admins.contains(message.getUserId());
-					try {
-						replies.addAll(handleListeners(message, isUserAdmin));
-						replies.addAll(handleCommands(message, isUserAdmin));
-					} catch (ShutdownException e) {
-						broadcast("Shutting down.  See you later.");
-						connection.flush();
-						return;
-					}
-
-					if (replies.isEmpty()) {
-						continue;
-					}
-
-					if (logger.isLoggable(Level.INFO)) {
-						logger.info("Responding to: [#" + message.getMessageId() + "] [" + message.getTimestamp() + "] " + message.getContent());
-					}
-					stats.incMessagesRespondedTo(replies.size());
-
-					for (ChatResponse reply : replies) {
-						try {
-							connection.sendMessage(room, reply.getMessage(), reply.getSplitStrategy());
-						} catch (IOException e) {
-							logger.log(Level.SEVERE, "Problem sending chat message.", e);
-						}
-					}
-				}
-
-				ChatMessage latestMessage = newMessages.get(newMessages.size() - 1);
-				prevMessageIds.put(room, latestMessage.getMessageId());
-			}
-
-			//sleep before pinging again
-			long elapsed = System.currentTimeMillis() - start;
-			long sleep = heartbeat - elapsed;
-			if (sleep > 0) {
-				try {
-					Thread.sleep(sleep);
-				} catch (InterruptedException e) {
-					return;
-				}
+		//each room is polled by its own task, so just wait for the bot to be shut down
+		try {
+			terminated.await();
+		} catch (InterruptedException e) {
+			//return
+		} finally {
+			pollers.shutdownNow();
+			if (pollThreads != null) {
+				pollThreads.shutdownNow();
 			}
+			workers.shutdown();
+			replyBatcher.shutdown();
 		}
 	}
 
@@ -159,7 +211,7 @@ public class Bot {
 	}
 
 	/**
-	 * Joins a room.
+	 * Joins a room and starts polling it for new messages.
 	 * @param roomId the room ID
 	 * @param quiet true to not post an announcement message, false to post one
 	 * @throws IOException if there's a problem connected to the room
@@ -169,6 +221,72 @@ public class Bot {
 		if (!quiet) {
 			connection.sendMessage(roomId, "OakBot Online.");
 		}
+
+		RoomPoller poller = new RoomPoller(roomId);
+		if (roomPollers.putIfAbsent(roomId, poller) != null) {
+			//already polling this room
+			return;
+		}
+
+		if (bulkPoller != null) {
+			//the bulk poller picks up the new room on its next poll
+			bulkPoller.startOnce();
+			return;
+		}
+
+		/*
+		 * Give each room its own thread so that a room whose requests are slow
+		 * does not hold up the others.
+		 */
+		if (pollThreads == null) {
+			pollers.setCorePoolSize(roomPollers.size());
+		}
+		poller.start();
+	}
+
+	/**
+	 * Gets the polling statistics of a room.
+	 * @param roomId the room ID
+	 * @return the statistics or null if the bot is not polling the room
+	 */
+	public PollStatistics getPollStatistics(int roomId) {
+		RoomPoller poller = roomPollers.get(roomId);
+		return (poller == null) ? null : poller.pollStats;
+	}
+
+	/**
+	 * Gets the statistics of the requests that poll all the rooms at once.
+	 * @return the statistics or null if the rooms are not polled in bulk
+	 */
+	public PollStatistics getBulkPollStatistics() {
+		return (bulkPoller == null) ? null : bulkPoller.pollStats;
+	}
+
+	/**
+	 * Gets the queue that holds a room's messages before they are dispatched.
+	 * @param roomId the room ID
+	 * @return the queue (for reading its load shedding counters) or null if
+	 * the bot is not polling the room
+	 */
+	public InboundQueue getInboundQueue(int roomId) {
+		RoomPoller poller = roomPollers.get(roomId);
+		return (poller == null) ? null : poller.inbound;
+	}
+
+	/**
+	 * Called when the connection skipped some of a room's messages because
+	 * too many were posted since the room was last polled.
+	 * @param room the room ID
+	 * @param lastMessageId the last message that was retrieved before the gap
+	 * @param firstMessageId the first message that was retrieved after the gap
+	 */
+	private void onGap(int room, long lastMessageId, long firstMessageId) {
+		logger.warning("Missed messages in room " + room + " between message " + lastMessageId + " and " + firstMessageId + ".");
+
+		RoomPoller poller = roomPollers.get(room);
+		if (poller != null) {
+			poller.pollStats.recordGap();
+		}
 	}
 
 	/**
@@ -179,24 +297,32 @@ public class Bot {
 		return Collections.unmodifiableList(new ArrayList<>(rooms));
 	}
 
-	private List<ChatResponse> handleListeners(ChatMessage message, boolean isAdmin) {
-		List<ChatResponse> replies = new ArrayList<>();
-		for (Listener listener : listeners) {
-			try {
-				ChatResponse reply = listener.onMessage(message, isAdmin);
-				if (reply != null) {
-					replies.add(reply);
-				}
-			} catch (ShutdownException e) {
-				throw e;
-			} catch (Exception e) {
-				logger.log(Level.SEVERE, "An error occurred responding to a message.", e);
-			}
+	/**
+	 * Submits each listener that is interested in the message to the worker
+	 * pool.
+	 * @param message the message
+	 * @param isAdmin true if the message sender is an admin, false if not
+	 * @return the listener responses
+	 */
+	private List<CompletableFuture<ChatResponse>> handleListeners(ChatMessage message, boolean isAdmin) {
+		List<Listener> matches = listeners.match(message);
+		List<CompletableFuture<ChatResponse>> replies = new ArrayList<>(matches.size());
+		for (Listener listener : matches) {
+			//listeners can modify the message, so give each one its own copy
+			ChatMessage copy = new ChatMessage(message);
+			replies.add(workers.submit(() -> listener.onMessage(copy, isAdmin), listenerTimeout, () -> null, () -> null));
 		}
 		return replies;
 	}
 
-	private List<ChatResponse> handleCommands(ChatMessage message, boolean isAdmin) {
+	/**
+	 * Submits the command that the message is invoking (if any) to the worker
+	 * pool.
+	 * @param message the message
+	 * @param isAdmin true if the message sender is an admin, false if not
+	 * @return the command response
+	 */
+	private List<CompletableFuture<ChatResponse>> handleCommands(ChatMessage message, boolean isAdmin) {
 		String content = message.getContent();
 		Matcher matcher = commandRegex.matcher(content);
 		if (!matcher.find()) {
@@ -209,11 +335,10 @@ public class Bot {
 		if (text == null) {
 			text = "";
 		}
-		message.setContent(text);
 
 		String commandName = matcher.group(1);
-		List<Command> commands = getCommands(commandName);
-		if (commands.isEmpty()) {
+		Command command = commands.get(commandName);
+		if (command == null) {
 			return Collections.emptyList();
 			//@formatter:off
 //			ChatResponse reply = new ChatResponse(new ChatBuilder()
@@ -226,35 +351,102 @@ public class Bot {
 			//@formatter:on
 		}
 
-		List<ChatResponse> replies = new ArrayList<>(1);
-		for (Command command : commands) {
-			try {
-				ChatResponse reply = command.onMessage(message, isAdmin, this);
-				if (reply != null) {
-					replies.add(reply);
-				}
-			} catch (ShutdownException e) {
-				throw e;
-			} catch (Exception e) {
-				logger.log(Level.SEVERE, "An error occurred responding to a command.", e);
+		if (rateLimiter != null && !isAdmin) {
+			switch (rateLimiter.tryAcquire(message.getUserId(), command.name())) {
+			case ALLOWED:
+				break;
+			case THROTTLED_NOTIFY:
+				logger.info("User " + message.getUserId() + " is being rate limited.");
+				return Collections.singletonList(CompletableFuture.completedFuture(reply(message, "You're sending me commands too quickly. Please slow down.")));
+			case THROTTLED:
+				return Collections.emptyList();
 			}
 		}
-		return replies;
+
+		ChatMessage copy = new ChatMessage(message);
+		copy.setContent(text);
+
+		//@formatter:off
+		Supplier<CompletableFuture<ChatResponse>> invoke = () -> workers.submit(() -> command.onMessage(copy, isAdmin, this), command.timeout(),
+			() -> reply(message, "Sorry, that took too long. Try again later."),
+			() -> tooBusy(message)
+		);
+		//@formatter:on
+
+		String key = command.singleFlightKey(copy);
+		return Collections.singletonList((key == null) ? invoke.get() : singleFlight.submit(command, key, message, invoke));
 	}
 
 	/**
-	 * Gets all commands that have a given name.
-	 * @param name the command name
-	 * @return the matching commands
+	 * Generates the reply for when a command cannot be run because all the
+	 * workers are busy. During a flood, only one such reply is posted each
+	 * minute, so the bot does not add to the flood.
+	 * @param message the command
+	 * @return the reply or null not to reply
 	 */
-	private List<Command> getCommands(String name) {
-		List<Command> result = new ArrayList<>();
-		for (Command command : commands) {
-			if (command.name().equals(name) || command.aliases().contains(name)) {
-				result.add(command);
-			}
+	private ChatResponse tooBusy(ChatMessage message) {
+		long now = System.currentTimeMillis();
+		long last = lastBusyReply.get();
+		if (now - last < TimeUnit.MINUTES.toMillis(1) || !lastBusyReply.compareAndSet(last, now)) {
+			return null;
+		}
+		return reply(message, "Sorry, I'm too busy right now. Try again in a minute.");
+	}
+
+	/**
+	 * Determines if a message invokes a command.
+	 * @param message the message
+	 * @return true if it starts with the trigger, false if not
+	 */
+	private boolean isCommand(ChatMessage message) {
+		return message.getContent().startsWith(trigger);
+	}
+
+	private static ChatResponse reply(ChatMessage message, String text) {
+		//@formatter:off
+		return new ChatResponse(new ChatBuilder()
+			.reply(message)
+			.append(text)
+		);
+		//@formatter:on
+	}
+
+	/**
+	 * Gets the statistics on how many command invocations shared the response
+	 * of an identical invocation.
+	 * @return the single-flight statistics
+	 */
+	public SingleFlight getSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * Gets the bot's commands. Commands can be added to or removed from the
+	 * registry while the bot is running.
+	 * @return the command registry
+	 */
+	public CommandRegistry getCommandRegistry() {
+		return commands;
+	}
+
+	/**
+	 * Broadcasts a farewell message and unblocks the {@link #connect} method.
+	 * Only the first call has any effect.
+	 */
+	private void shutdown() {
+		if (!shuttingDown.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			replyBatcher.flush();
+			broadcast("Shutting down.  See you later.");
+			connection.flush();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Problem broadcasting shutdown message.", e);
+		} finally {
+			terminated.countDown();
 		}
-		return result;
 	}
 
 	/**
@@ -263,16 +455,412 @@ public class Bot {
 	 * @throws IOException if there's a problem sending the message
 	 */
 	private void broadcast(String message) throws IOException {
-		/*
-		 * Commands can join rooms, so make a copy of the room list to prevent a
-		 * concurrent modification exception.
-		 */
-		List<Integer> rooms = new ArrayList<>(this.rooms);
 		for (Integer room : rooms) {
 			connection.sendMessage(room, message);
 		}
 	}
 
+	/**
+	 * Polls a single room for new messages and responds to them. Each poll
+	 * reschedules the next one so that it runs one interval (as determined by
+	 * the {@link PollingPolicy}) after the current poll started.
+	 * <p>
+	 * If the rooms are polled by the {@link BulkPoller}, this class is only
+	 * used to dispatch the room's messages, and is never scheduled.
+	 * </p>
+	 */
+	private class RoomPoller implements Runnable {
+		private final int roomId;
+		private final PollStatistics pollStats = new PollStatistics(heartbeat, bulkPoller == null);
+		private final InboundQueue inbound = new InboundQueue(sheddingPolicy, Bot.this::isCommand);
+
+		/**
+		 * The amount of time to wait in between the previous poll and the next
+		 * poll (in milliseconds).
+		 */
+		private long interval = pollingPolicy.initial();
+
+		/**
+		 * Completes when the replies to the most recently dispatched message
+		 * have been posted.
+		 */
+		private CompletableFuture<Void> replyChain = CompletableFuture.completedFuture(null);
+
+		/**
+		 * The number of dispatched messages whose replies have not been posted
+		 * yet.
+		 */
+		private int inFlight;
+
+		/**
+		 * Whether a poll has been requested by {@link #wake} but has not
+		 * started yet.
+		 */
+		private final AtomicBoolean wakePending = new AtomicBoolean(false);
+
+		/**
+		 * Prevents a scheduled poll and a poll requested by {@link #wake} from
+		 * retrieving the room's new messages at the same time.
+		 */
+		private final Object pollLock = new Object();
+
+		/**
+		 * When the next poll is supposed to run (timestamp).
+		 */
+		private long nextPoll;
+
+		public RoomPoller(int roomId) {
+			this.roomId = roomId;
+		}
+
+		/**
+		 * Schedules the first poll.
+		 */
+		public void start() {
+			schedule(System.currentTimeMillis() + interval);
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			pollStats.recordPoll(start - nextPoll, interval);
+
+			Activity activity = Activity.IDLE;
+			try {
+				activity = poll();
+			} catch (CircuitOpenException e) {
+				//the chat system is down, keep serving the other rooms in the meantime
+				logger.info("Not polling room " + roomId + ": " + e.getMessage());
+			} catch (Exception e) {
+				//catch RuntimeExceptions too so the room does not stop being polled
+				logger.log(Level.SEVERE, "Problem polling room " + roomId + ".", e);
+			}
+
+			if (shuttingDown.get()) {
+				return;
+			}
+
+			interval = pollingPolicy.next(interval, activity != Activity.IDLE, activity == Activity.COMMAND);
+			schedule(start + interval);
+		}
+
+		private void schedule(long when) {
+			nextPoll = when;
+			schedulePoll(this, when);
+		}
+
+		/**
+		 * Polls the room right away, in addition to its scheduled polls. Does
+		 * nothing if such a poll is already waiting to run.
+		 */
+		public void wake() {
+			if (wakePending.compareAndSet(false, true)) {
+				schedulePoll(this::pollNow, System.currentTimeMillis());
+			}
+		}
+
+		private void pollNow() {
+			wakePending.set(false);
+			try {
+				poll();
+			} catch (CircuitOpenException e) {
+				logger.info("Not polling room " + roomId + ": " + e.getMessage());
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Problem polling room " + roomId + ".", e);
+			}
+		}
+
+		/**
+		 * Retrieves the room's new messages and dispatches them.
+		 * @return how active the room was
+		 * @throws IOException if there's a problem retrieving the messages
+		 */
+		private Activity poll() throws IOException {
+			synchronized (pollLock) {
+				logger.fine("Pinging room " + roomId);
+
+				//get new messages since last ping
+				List<ChatMessage> newMessages = connection.getNewMessages(roomId);
+				return dispatch(newMessages);
+			}
+		}
+
+		/**
+		 * Queues the room's new messages and dispatches as many of the queued
+		 * messages as the room's in-flight limit allows.
+		 * @param newMessages the new messages
+		 * @return how active the room was
+		 */
+		public Activity dispatch(List<ChatMessage> newMessages) {
+			logger.fine(newMessages.size() + " new messages found in room " + roomId + ".");
+
+			List<ChatMessage> toQueue = new ArrayList<>(newMessages.size());
+			for (ChatMessage message : newMessages) {
+				if (message.getContent() != null) {
+					//ignore messages that users deleted
+					toQueue.add(message);
+				}
+			}
+			inbound.offer(toQueue);
+
+			Activity activity = dispatchQueued();
+			if (activity == Activity.IDLE && !newMessages.isEmpty()) {
+				activity = Activity.ACTIVE;
+			}
+
+			if (!newMessages.isEmpty() && logger.isLoggable(Level.FINE)) {
+				logger.fine("Room " + roomId + " poll statistics: " + pollStats);
+			}
+
+			return activity;
+		}
+
+		/**
+		 * Dispatches queued messages to the listeners and commands until the
+		 * queue is empty or the room's in-flight limit is reached. The shedding
+		 * policy is applied to everything that is still waiting each time this
+		 * is called.
+		 * @return how active the room was (only considers the messages that
+		 * were dispatched)
+		 */
+		private synchronized Activity dispatchQueued() {
+			Activity activity = Activity.IDLE;
+			long shedBefore = inbound.getShed();
+
+			while (inFlight < maxInFlight) {
+				List<ChatMessage> toDispatch = inbound.drain(maxInFlight - inFlight);
+				if (toDispatch.isEmpty()) {
+					break;
+				}
+
+				for (ChatMessage message : toDispatch) {
+					if (activity == Activity.IDLE) {
+						activity = Activity.ACTIVE;
+					}
+
+					boolean isUserAdmin = admins.contains(message.getUserId());
+					List<CompletableFuture<ChatResponse>> replies = new ArrayList<>();
+					replies.addAll(handleListeners(message, isUserAdmin));
+
+					List<CompletableFuture<ChatResponse>> commandReplies = handleCommands(message, isUserAdmin);
+					if (!commandReplies.isEmpty()) {
+						activity = Activity.COMMAND;
+						replies.addAll(commandReplies);
+					}
+
+					if (replies.isEmpty()) {
+						continue;
+					}
+
+					/*
+					 * The listeners and commands run on the worker pool, but
+					 * their replies must be posted in the same order as the
+					 * messages that triggered them.
+					 */
+					inFlight++;
+					CompletableFuture<?> allDone = CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0]));
+					allDone.whenComplete((value, thrown) -> onHandled());
+					replyChain = replyChain.runAfterBoth(allDone.handle((value, thrown) -> null), () -> postReplies(message, replies));
+				}
+			}
+
+			long shed = inbound.getShed() - shedBefore;
+			if (shed > 0 && logger.isLoggable(Level.INFO)) {
+				logger.info("Room " + roomId + " is overloaded, dropped " + shed + " messages: " + inbound);
+			}
+
+			return activity;
+		}
+
+		/**
+		 * Called when a dispatched message has been handled. If messages are
+		 * waiting in the queue, the next ones are dispatched on the poller
+		 * thread (not on this thread, which may still be inside of
+		 * {@link #dispatchQueued}).
+		 */
+		private void onHandled() {
+			synchronized (this) {
+				inFlight--;
+			}
+
+			if (inbound.size() > 0 && !shuttingDown.get()) {
+				schedulePoll(() -> {
+					try {
+						dispatchQueued();
+					} catch (Exception e) {
+						logger.log(Level.SEVERE, "Problem dispatching queued messages in room " + roomId + ".", e);
+					}
+				}, 0);
+			}
+		}
+
+		/**
+		 * Posts the responses to a message.
+		 * @param message the message
+		 * @param replies the responses (all of which must be completed)
+		 */
+		private void postReplies(ChatMessage message, List<CompletableFuture<ChatResponse>> replies) {
+			try {
+				postRepliesUnchecked(message, replies);
+			} catch (RuntimeException e) {
+				//an exception must not break the reply chain
+				logger.log(Level.SEVERE, "Problem posting replies to message " + message.getMessageId() + ".", e);
+			}
+		}
+
+		private void postRepliesUnchecked(ChatMessage message, List<CompletableFuture<ChatResponse>> replies) {
+			List<ChatResponse> toSend = new ArrayList<>(replies.size());
+			for (CompletableFuture<ChatResponse> future : replies) {
+				ChatResponse reply;
+				try {
+					reply = future.join();
+				} catch (CompletionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof ShutdownException) {
+						shutdown();
+						return;
+					}
+					logger.log(Level.SEVERE, "An error occurred responding to a message.", cause);
+					continue;
+				}
+
+				if (reply != null) {
+					toSend.add(reply);
+				}
+			}
+
+			if (toSend.isEmpty()) {
+				return;
+			}
+
+			if (logger.isLoggable(Level.INFO)) {
+				logger.info("Responding to: [#" + message.getMessageId() + "] [" + message.getTimestamp() + "] " + message.getContent());
+			}
+			if (stats != null) {
+				stats.incMessagesRespondedTo(toSend.size());
+			}
+
+			for (ChatResponse reply : toSend) {
+				replyBatcher.add(roomId, message, reply);
+			}
+		}
+	}
+
+	/**
+	 * Schedules a poll.
+	 * @param poll the poll
+	 * @param when when the poll should run (timestamp)
+	 */
+	private void schedulePoll(Runnable poll, long when) {
+		long delay = Math.max(0, when - System.currentTimeMillis());
+
+		//in virtual thread mode, the scheduler thread only starts the poll
+		Runnable task = (pollThreads == null) ? poll : () -> {
+			try {
+				pollThreads.execute(poll);
+			} catch (RejectedExecutionException e) {
+				//the bot is shutting down
+			}
+		};
+
+		try {
+			pollers.schedule(task, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			//the bot is shutting down
+		}
+	}
+
+	/**
+	 * Polls all the rooms with a single request, for connections that support
+	 * it. Since the cost of a poll does not depend on the number of rooms, all
+	 * rooms are polled as often as the most active room requires. Each room's
+	 * messages are dispatched by that room's {@link RoomPoller}.
+	 */
+	private class BulkPoller implements Runnable {
+		private final AtomicBoolean started = new AtomicBoolean(false);
+		private final PollStatistics pollStats = new PollStatistics(heartbeat);
+		private long interval = pollingPolicy.initial();
+		private long nextPoll;
+
+		/**
+		 * Schedules the first poll, if it has not been scheduled already.
+		 */
+		public void startOnce() {
+			if (started.compareAndSet(false, true)) {
+				schedule(System.currentTimeMillis() + interval);
+			}
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			Map<Integer, RoomPoller> rooms = new HashMap<>(roomPollers);
+			pollStats.recordPoll(start - nextPoll, interval);
+			for (RoomPoller poller : rooms.values()) {
+				poller.pollStats.recordPoll(start - nextPoll, interval);
+			}
+
+			Activity activity = Activity.IDLE;
+			try {
+				logger.fine("Pinging rooms " + rooms.keySet());
+				Map<Integer, List<ChatMessage>> newMessages = connection.getNewMessages(rooms.keySet());
+				for (Map.Entry<Integer, List<ChatMessage>> entry : newMessages.entrySet()) {
+					RoomPoller poller = rooms.get(entry.getKey());
+					if (poller == null) {
+						continue;
+					}
+
+					Activity roomActivity = poller.dispatch(entry.getValue());
+					if (roomActivity.compareTo(activity) > 0) {
+						activity = roomActivity;
+					}
+				}
+			} catch (CircuitOpenException e) {
+				logger.info("Not polling rooms " + rooms.keySet() + ": " + e.getMessage());
+			} catch (Exception e) {
+				//catch RuntimeExceptions too so the rooms do not stop being polled
+				logger.log(Level.SEVERE, "Problem polling rooms " + rooms.keySet() + ".", e);
+			}
+
+			if (activity != Activity.IDLE && logger.isLoggable(Level.FINE)) {
+				logger.fine("Bulk poll statistics: " + pollStats);
+			}
+
+			if (shuttingDown.get()) {
+				return;
+			}
+
+			interval = pollingPolicy.next(interval, activity != Activity.IDLE, activity == Activity.COMMAND);
+			schedule(start + interval);
+		}
+
+		private void schedule(long when) {
+			nextPoll = when;
+			schedulePoll(this, when);
+		}
+	}
+
+	/**
+	 * Describes how active a room was during a poll. The constants are ordered
+	 * from least to most active.
+	 */
+	private enum Activity {
+		/**
+		 * No new messages were posted.
+		 */
+		IDLE,
+
+		/**
+		 * New messages were posted, but none of them were commands.
+		 */
+		ACTIVE,
+
+		/**
+		 * A command was invoked.
+		 */
+		COMMAND
+	}
+
 	/**
 	 * Builds {@link Bot} instances.
 	 * @author Michael Angstadt
@@ -280,10 +868,19 @@ public class Bot {
 	public static class Builder {
 		private ChatConnection connection;
 		private String email, password, name, trigger = "=";
+		private Integer userId;
 		private int heartbeat = 3000;
+		private int workerThreads = 4, workerQueueSize = 100;
+		private long listenerTimeout = TimeUnit.SECONDS.toMillis(5);
+		private long replyBatchWindow;
+		private ThreadMode threadMode = ThreadMode.PLATFORM;
+		private PollingPolicy pollingPolicy;
+		private SheddingPolicy sheddingPolicy = SheddingPolicy.DEFAULT;
+		private RateLimiter rateLimiter;
 		private List<Integer> rooms = new ArrayList<>();
 		private List<Integer> admins = new ArrayList<>();
 		private ImmutableList.Builder<Command> commands = ImmutableList.builder();
+		private CommandRegistry commandRegistry;
 		private ImmutableList.Builder<Listener> listeners = ImmutableList.builder();
 		private Statistics stats;
 
@@ -303,16 +900,121 @@ public class Bot {
 			return this;
 		}
 
+		/**
+		 * Sets the user ID of the bot's chat account. This allows listeners to
+		 * ignore messages the bot posted itself.
+		 * @param userId the user ID or null if not known
+		 * @return this
+		 */
+		public Builder userId(Integer userId) {
+			this.userId = userId;
+			return this;
+		}
+
 		public Builder trigger(String trigger) {
 			this.trigger = trigger;
 			return this;
 		}
 
+		/**
+		 * Sets the amount of time to wait in between polls of each room. This
+		 * is ignored if a {@link #pollingPolicy} is set, but is still used as
+		 * the baseline for the polling statistics.
+		 * @param heartbeat the heartbeat (in milliseconds, defaults to 3000)
+		 * @return this
+		 */
 		public Builder heartbeat(int heartbeat) {
 			this.heartbeat = heartbeat;
 			return this;
 		}
 
+		/**
+		 * Sets how the interval in between polls of each room is determined.
+		 * @param pollingPolicy the polling policy or null to poll every
+		 * {@link #heartbeat}
+		 * @return this
+		 */
+		public Builder pollingPolicy(PollingPolicy pollingPolicy) {
+			this.pollingPolicy = pollingPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the size of the thread pool that runs the commands and
+		 * listeners. The number of threads is also the max number of each
+		 * room's messages that are handled at once. The room's other messages
+		 * wait in its {@link InboundQueue}, where they are subject to the
+		 * {@link SheddingPolicy}.
+		 * @param threads the number of worker threads (defaults to 4)
+		 * @param queueSize the max number of invocations that can wait for a
+		 * free worker before new ones are turned away (defaults to 100)
+		 * @return this
+		 */
+		public Builder workers(int threads, int queueSize) {
+			this.workerThreads = threads;
+			this.workerQueueSize = queueSize;
+			return this;
+		}
+
+		/**
+		 * Sets how long a listener has to respond to a message before its
+		 * response is discarded.
+		 * @param listenerTimeout the timeout (in milliseconds, defaults to 5
+		 * seconds)
+		 * @return this
+		 */
+		public Builder listenerTimeout(long listenerTimeout) {
+			this.listenerTimeout = listenerTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets what kind of threads the rooms are polled on and the commands
+		 * and listeners are run on. In virtual thread mode, each poll and each
+		 * invocation gets its own virtual thread and the {@link #workers}
+		 * settings are ignored.
+		 * @param threadMode the thread mode (defaults to platform threads)
+		 * @return this
+		 */
+		public Builder threadMode(ThreadMode threadMode) {
+			this.threadMode = threadMode;
+			return this;
+		}
+
+		/**
+		 * Sets how long to hold back replies after a reply is posted to a room
+		 * so that they can be merged into a single post.
+		 * @param replyBatchWindow the window (in milliseconds, defaults to 0,
+		 * which posts every reply immediately)
+		 * @return this
+		 */
+		public Builder replyBatchWindow(long replyBatchWindow) {
+			this.replyBatchWindow = replyBatchWindow;
+			return this;
+		}
+
+		/**
+		 * Sets how each room's inbound message queue drops messages when the
+		 * bot falls behind.
+		 * @param sheddingPolicy the policy (defaults to
+		 * {@link SheddingPolicy#DEFAULT})
+		 * @return this
+		 */
+		public Builder sheddingPolicy(SheddingPolicy sheddingPolicy) {
+			this.sheddingPolicy = sheddingPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets how often non-admin users can invoke commands.
+		 * @param rateLimiter the rate limiter or null for no limit
+		 * @return this
+		 */
+		public Builder rateLimiter(RateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+
 		public Builder rooms(Integer... rooms) {
 			return rooms(Arrays.asList(rooms));
 		}
@@ -340,6 +1042,18 @@ public class Bot {
 			return this;
 		}
 
+		/**
+		 * Sets the registry that the bot looks commands up in. This allows
+		 * other objects (like the help command) to share the bot's registry.
+		 * Any commands passed to {@link #commands} are added to it.
+		 * @param commandRegistry the registry (defaults to an empty registry)
+		 * @return this
+		 */
+		public Builder commandRegistry(CommandRegistry commandRegistry) {
+			this.commandRegistry = commandRegistry;
+			return this;
+		}
+
 		public Builder listeners(Listener... listeners) {
 			return listeners(Arrays.asList(listeners));
 		}
@@ -354,6 +1068,13 @@ public class Bot {
 			return this;
 		}
 
+		/**
+		 * Builds the bot.
+		 * @return the bot
+		 * @throws IllegalArgumentException if no connection was given or if two
+		 * commands share the same name or alias
+		 * @throws IOException if there's an I/O problem
+		 */
 		public Bot build() throws IOException {
 			if (connection == null) {
 				throw new IllegalArgumentException("No ChatConnection given.");
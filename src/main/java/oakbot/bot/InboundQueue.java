@@ -0,0 +1,185 @@
+package oakbot.bot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import oakbot.chat.ChatMessage;
+
+/**
+ * Holds the messages of a room that have been fetched, but not yet dispatched
+ * to the commands and listeners. The queue is bounded and drops messages
+ * according to its {@link SheddingPolicy}, so that the bot responds to fresh
+ * commands promptly even when a room is flooded.
+ * <p>
+ * Messages are only taken out of the queue as the room's earlier messages
+ * finish being handled, so a backlog builds up here (where the policy can see
+ * it) instead of in the worker pool.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class InboundQueue {
+	private final SheddingPolicy policy;
+	private final Predicate<ChatMessage> isCommand;
+	private final Deque<ChatMessage> queue = new ArrayDeque<>();
+
+	private final AtomicLong overflowed = new AtomicLong();
+	private final AtomicLong stale = new AtomicLong();
+	private final AtomicLong superseded = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * @param policy the shedding policy
+	 * @param isCommand determines whether a message invokes a command
+	 */
+	public InboundQueue(SheddingPolicy policy, Predicate<ChatMessage> isCommand) {
+		this.policy = policy;
+		this.isCommand = isCommand;
+	}
+
+	/**
+	 * Adds messages to the end of the queue. If the queue's capacity is
+	 * exceeded, the oldest messages are dropped.
+	 * @param messages the messages to add
+	 */
+	public synchronized void offer(Collection<ChatMessage> messages) {
+		for (ChatMessage message : messages) {
+			queue.addLast(message);
+			if (queue.size() > policy.getCapacity()) {
+				queue.removeFirst();
+				overflowed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes all messages from the queue that should be dispatched, dropping
+	 * the rest.
+	 * @return the messages to dispatch, oldest first
+	 */
+	public List<ChatMessage> drain() {
+		return drain(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Drops the queued messages that should not be dispatched, and then
+	 * removes the oldest of the remaining messages from the queue. The others
+	 * stay in the queue.
+	 * @param max the max number of messages to remove
+	 * @return the messages to dispatch, oldest first
+	 */
+	public synchronized List<ChatMessage> drain(int max) {
+		List<ChatMessage> messages = new ArrayList<>(queue);
+		queue.clear();
+
+		if (policy.getMaxCommandAge() > 0) {
+			LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(policy.getMaxCommandAge()));
+			Iterator<ChatMessage> it = messages.iterator();
+			while (it.hasNext()) {
+				ChatMessage message = it.next();
+				LocalDateTime timestamp = message.getTimestamp();
+				if (timestamp != null && timestamp.isBefore(cutoff) && isCommand.test(message)) {
+					it.remove();
+					stale.incrementAndGet();
+				}
+			}
+		}
+
+		if (policy.isNewestCommandPerUser()) {
+			//iterate newest to oldest, so the first command seen from each user is the one to keep
+			Set<Integer> seen = new HashSet<>();
+			for (int i = messages.size() - 1; i >= 0; i--) {
+				ChatMessage message = messages.get(i);
+				if (isCommand.test(message) && !seen.add(message.getUserId())) {
+					messages.remove(i);
+					superseded.incrementAndGet();
+				}
+			}
+		}
+
+		if (policy.isCoalesceDuplicates()) {
+			//only coalesce a user's own repeats, so every user who sent the command gets a reply
+			Set<String> seen = new HashSet<>();
+			Iterator<ChatMessage> it = messages.iterator();
+			while (it.hasNext()) {
+				ChatMessage message = it.next();
+				if (isCommand.test(message) && !seen.add(message.getUserId() + ":" + message.getContent())) {
+					it.remove();
+					coalesced.incrementAndGet();
+				}
+			}
+		}
+
+		if (messages.size() > max) {
+			queue.addAll(messages.subList(max, messages.size()));
+			messages = new ArrayList<>(messages.subList(0, max));
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Gets the number of messages currently in the queue.
+	 * @return the number of messages
+	 */
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the number of messages that were dropped because the queue was
+	 * full.
+	 * @return the number of messages
+	 */
+	public long getOverflowed() {
+		return overflowed.get();
+	}
+
+	/**
+	 * Gets the number of commands that were dropped for being too old.
+	 * @return the number of commands
+	 */
+	public long getStale() {
+		return stale.get();
+	}
+
+	/**
+	 * Gets the number of commands that were dropped because the same user
+	 * posted a newer command.
+	 * @return the number of commands
+	 */
+	public long getSuperseded() {
+		return superseded.get();
+	}
+
+	/**
+	 * Gets the number of commands that were dropped because they were
+	 * identical to an earlier command.
+	 * @return the number of commands
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Gets the total number of messages that were dropped.
+	 * @return the number of messages
+	 */
+	public long getShed() {
+		return getOverflowed() + getStale() + getSuperseded() + getCoalesced();
+	}
+
+	@Override
+	public String toString() {
+		return "queued=" + size() + ", overflowed=" + getOverflowed() + ", stale=" + getStale() + ", superseded=" + getSuperseded() + ", coalesced=" + getCoalesced();
+	}
+}
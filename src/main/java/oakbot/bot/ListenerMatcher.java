@@ -0,0 +1,106 @@
+package oakbot.bot;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import oakbot.chat.ChatMessage;
+import oakbot.listener.Listener;
+import oakbot.listener.ListenerFilter;
+import oakbot.util.AhoCorasick;
+
+/**
+ * Determines which listeners a message should be sent to, based on each
+ * listener's {@link ListenerFilter}. The substrings of every listener are
+ * searched for in a single pass over the message.
+ * @author Michael Angstadt
+ */
+class ListenerMatcher {
+	private final List<Listener> listeners;
+	private final List<ListenerFilter> filters;
+
+	/**
+	 * The substrings of all listeners. Each pattern's ID is the index of the
+	 * listener it belongs to.
+	 */
+	private final AhoCorasick substrings;
+
+	/**
+	 * The bot's user ID or null if not known.
+	 */
+	private final Integer botUserId;
+
+	/**
+	 * @param listeners the listeners
+	 * @param botUserId the bot's user ID or null if not known
+	 */
+	public ListenerMatcher(List<Listener> listeners, Integer botUserId) {
+		this.listeners = listeners;
+		this.botUserId = botUserId;
+
+		filters = new ArrayList<>(listeners.size());
+		AhoCorasick.Builder builder = new AhoCorasick.Builder();
+		for (int i = 0; i < listeners.size(); i++) {
+			ListenerFilter filter = listeners.get(i).filter();
+			filters.add(filter);
+			for (String substring : filter.getSubstrings()) {
+				builder.add(substring, i);
+			}
+		}
+		substrings = builder.build();
+	}
+
+	/**
+	 * Gets the listeners that should receive a message.
+	 * @param message the message
+	 * @return the listeners
+	 */
+	public List<Listener> match(ChatMessage message) {
+		String content = message.getContent();
+		boolean ownMessage = botUserId != null && botUserId == message.getUserId();
+		boolean numeric = isNumeric(content);
+		BitSet substringMatches = null;
+
+		List<Listener> matches = new ArrayList<>(listeners.size());
+		for (int i = 0; i < listeners.size(); i++) {
+			ListenerFilter filter = filters.get(i);
+			if (filter.isIgnoreOwnMessages() && ownMessage) {
+				continue;
+			}
+			if (filter.isNumeric() && !numeric) {
+				continue;
+			}
+			if (!filter.getSubstrings().isEmpty()) {
+				if (substringMatches == null) {
+					substringMatches = new BitSet(listeners.size());
+					substrings.scan(content, substringMatches);
+				}
+				if (!substringMatches.get(i)) {
+					continue;
+				}
+			}
+
+			matches.add(listeners.get(i));
+		}
+		return matches;
+	}
+
+	/**
+	 * Determines if a string consists solely of digits.
+	 * @param content the string
+	 * @return true if the string is a number, false if not
+	 */
+	private static boolean isNumeric(String content) {
+		if (content.isEmpty()) {
+			return false;
+		}
+
+		for (int i = 0; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+}
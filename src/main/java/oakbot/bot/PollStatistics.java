@@ -0,0 +1,145 @@
+package oakbot.bot;
+
+/**
+ * Records how punctual the polls of a single chat room are. Each poll is
+ * supposed to run exactly one interval after the previous one started. The
+ * difference between when a poll was supposed to run and when it actually ran
+ * is its "lateness". Also keeps track of how many requests were saved by
+ * polling less often than the fixed heartbeat.
+ * <p>
+ * When the rooms are polled in bulk, one request serves every room, so the
+ * rooms' statistics do not count requests. The requests are counted once, by
+ * the statistics of the bulk poller.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class PollStatistics {
+	private final long heartbeat;
+	private final boolean countRequests;
+	private final long started = System.currentTimeMillis();
+	private long polls, totalLateness, maxLateness, lastLateness, lastInterval, gaps;
+
+	/**
+	 * @param heartbeat the fixed polling interval to compare the actual number
+	 * of polls against (in milliseconds)
+	 */
+	public PollStatistics(long heartbeat) {
+		this(heartbeat, true);
+	}
+
+	/**
+	 * @param heartbeat the fixed polling interval to compare the actual number
+	 * of polls against (in milliseconds)
+	 * @param countRequests false if each poll does not make its own request
+	 * (for example, if the room is polled in bulk with other rooms), in which
+	 * case the number of requests saved is not calculated
+	 */
+	public PollStatistics(long heartbeat, boolean countRequests) {
+		this.heartbeat = heartbeat;
+		this.countRequests = countRequests;
+	}
+
+	/**
+	 * Records a poll.
+	 * @param lateness how late the poll ran compared to when it was supposed to
+	 * run (in milliseconds, negative values are treated as zero)
+	 * @param interval the amount of time that was waited since the previous
+	 * poll started (in milliseconds)
+	 */
+	public synchronized void recordPoll(long lateness, long interval) {
+		if (lateness < 0) {
+			lateness = 0;
+		}
+
+		polls++;
+		totalLateness += lateness;
+		lastLateness = lateness;
+		lastInterval = interval;
+		if (lateness > maxLateness) {
+			maxLateness = lateness;
+		}
+	}
+
+	/**
+	 * Records that a poll could not retrieve all of the messages that were
+	 * posted since the previous poll.
+	 */
+	public synchronized void recordGap() {
+		gaps++;
+	}
+
+	/**
+	 * Gets the number of times messages were skipped because too many were
+	 * posted in between two polls.
+	 * @return the number of gaps
+	 */
+	public synchronized long getGaps() {
+		return gaps;
+	}
+
+	/**
+	 * Gets the number of times the room was polled.
+	 * @return the number of polls
+	 */
+	public synchronized long getPolls() {
+		return polls;
+	}
+
+	/**
+	 * Gets the average amount of time each poll ran late.
+	 * @return the average lateness (in milliseconds)
+	 */
+	public synchronized long getAverageLateness() {
+		return (polls == 0) ? 0 : totalLateness / polls;
+	}
+
+	/**
+	 * Gets the longest amount of time a poll ran late.
+	 * @return the max lateness (in milliseconds)
+	 */
+	public synchronized long getMaxLateness() {
+		return maxLateness;
+	}
+
+	/**
+	 * Gets how late the most recent poll ran.
+	 * @return the lateness of the most recent poll (in milliseconds)
+	 */
+	public synchronized long getLastLateness() {
+		return lastLateness;
+	}
+
+	/**
+	 * Gets the interval that was used for the most recent poll.
+	 * @return the interval (in milliseconds)
+	 */
+	public synchronized long getLastInterval() {
+		return lastInterval;
+	}
+
+	/**
+	 * Gets the number of polls that would have been made if the room had been
+	 * polled every heartbeat since these statistics started being recorded.
+	 * @return the number of polls
+	 */
+	public long getFixedHeartbeatPolls() {
+		return (heartbeat <= 0) ? 0 : (System.currentTimeMillis() - started) / heartbeat;
+	}
+
+	/**
+	 * Gets the number of requests that were saved by not polling the room
+	 * every heartbeat. This is negative if the room was polled more often than
+	 * that.
+	 * @return the number of requests saved or zero if these statistics do not
+	 * count requests
+	 */
+	public synchronized long getRequestsSaved() {
+		return countRequests ? getFixedHeartbeatPolls() - polls : 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		String requestsSaved = countRequests ? ", requestsSaved=" + getRequestsSaved() : "";
+		return "polls=" + polls + ", avgLateness=" + getAverageLateness() + "ms, maxLateness=" + maxLateness + "ms, lastLateness=" + lastLateness + "ms, lastInterval=" + lastInterval + "ms" + requestsSaved + ", gaps=" + gaps;
+	}
+}
@@ -0,0 +1,103 @@
+package oakbot.bot;
+
+/**
+ * Determines how long to wait in between polls of a chat room. The interval
+ * shrinks while a room is active, grows exponentially while it is idle, and
+ * snaps back to the minimum as soon as someone invokes a command. A policy
+ * whose minimum and maximum are the same polls at a fixed rate.
+ * <p>
+ * This class is immutable. The current interval of each room is tracked by the
+ * caller.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class PollingPolicy {
+	private final long min, max;
+	private final double decay;
+
+	/**
+	 * Creates a policy that always waits the same amount of time.
+	 * @param heartbeat the time to wait in between polls (in milliseconds)
+	 * @return the policy
+	 */
+	public static PollingPolicy fixed(long heartbeat) {
+		return new PollingPolicy(heartbeat, heartbeat, 1);
+	}
+
+	/**
+	 * @param min the shortest amount of time to wait in between polls (in
+	 * milliseconds)
+	 * @param max the longest amount of time to wait in between polls (in
+	 * milliseconds)
+	 * @param decay the factor by which the interval grows after each poll that
+	 * returns no messages and shrinks after each poll that returns messages
+	 * (must be at least 1)
+	 * @throws IllegalArgumentException if any of the values are out of range
+	 */
+	public PollingPolicy(long min, long max, double decay) {
+		if (min <= 0 || max < min) {
+			throw new IllegalArgumentException("Polling interval must satisfy 0 < min <= max (min=" + min + ", max=" + max + ").");
+		}
+		if (decay < 1) {
+			throw new IllegalArgumentException("Polling decay must be at least 1 (decay=" + decay + ").");
+		}
+
+		this.min = min;
+		this.max = max;
+		this.decay = decay;
+	}
+
+	/**
+	 * Gets the interval to use for a room's first poll.
+	 * @return the interval (in milliseconds)
+	 */
+	public long initial() {
+		return min;
+	}
+
+	/**
+	 * Calculates how long to wait before polling a room again.
+	 * @param current the interval that was used for the poll that just
+	 * completed (in milliseconds)
+	 * @param active true if the poll returned any new messages, false if not
+	 * @param command true if any of the new messages invoked a command, false
+	 * if not
+	 * @return the next interval (in milliseconds)
+	 */
+	public long next(long current, boolean active, boolean command) {
+		if (command) {
+			return min;
+		}
+
+		double next = active ? current / decay : current * decay;
+		if (next < min) {
+			return min;
+		}
+		if (next > max) {
+			return max;
+		}
+		return (long) next;
+	}
+
+	/**
+	 * Determines if this policy waits the same amount of time in between every
+	 * poll.
+	 * @return true if the interval is fixed, false if it adapts to the room's
+	 * activity
+	 */
+	public boolean isFixed() {
+		return min == max;
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getDecay() {
+		return decay;
+	}
+}
@@ -0,0 +1,172 @@
+package oakbot.bot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import oakbot.util.IntObjectMap;
+
+/**
+ * Limits how often each user can invoke commands, using <a
+ * href="https://en.wikipedia.org/wiki/Token_bucket">token buckets</a>. Each
+ * user has one bucket for all commands, plus one bucket for each command they
+ * have used. A bucket holds up to N tokens and is refilled at a rate of N
+ * tokens per window. Users who have been idle for a full window are forgotten,
+ * since their buckets would be full anyway.
+ * @author Michael Angstadt
+ */
+public class RateLimiter {
+	private final int userLimit, commandLimit;
+	private final long window;
+
+	/**
+	 * <ul>
+	 * <li><b>Key:</b> The user ID.</li>
+	 * <li><b>Value:</b> The user's buckets.</li>
+	 * </ul>
+	 */
+	private final IntObjectMap<UserBuckets> users = new IntObjectMap<>();
+
+	/**
+	 * When idle users were last removed from {@link #users} (timestamp).
+	 */
+	private long lastSweep;
+
+	/**
+	 * @param userLimit the number of commands a user can invoke per window,
+	 * or zero for no limit
+	 * @param commandLimit the number of times a user can invoke the same
+	 * command per window, or zero for no limit
+	 * @param window the length of the window (in milliseconds)
+	 */
+	public RateLimiter(int userLimit, int commandLimit, long window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("Window must be positive.");
+		}
+
+		this.userLimit = userLimit;
+		this.commandLimit = commandLimit;
+		this.window = window;
+	}
+
+	/**
+	 * Records a command invocation if the user has not exceeded their limits.
+	 * @param userId the user ID
+	 * @param command the command name
+	 * @return the result
+	 */
+	public Result tryAcquire(int userId, String command) {
+		return tryAcquire(userId, command, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records a command invocation if the user has not exceeded their limits.
+	 * @param userId the user ID
+	 * @param command the command name
+	 * @param now the current time (timestamp)
+	 * @return the result
+	 */
+	synchronized Result tryAcquire(int userId, String command, long now) {
+		if (now - lastSweep >= window) {
+			users.removeIf(buckets -> now - buckets.lastSeen >= window);
+			lastSweep = now;
+		}
+
+		UserBuckets buckets = users.get(userId);
+		if (buckets == null) {
+			buckets = new UserBuckets(now);
+			users.put(userId, buckets);
+		}
+		buckets.lastSeen = now;
+
+		Bucket commandBucket = null;
+		if (commandLimit > 0) {
+			commandBucket = buckets.commands.get(command);
+			if (commandBucket == null) {
+				commandBucket = new Bucket(commandLimit, now);
+				buckets.commands.put(command, commandBucket);
+			}
+		}
+
+		boolean allowed = (buckets.all == null || buckets.all.hasToken(now)) && (commandBucket == null || commandBucket.hasToken(now));
+		if (allowed) {
+			if (buckets.all != null) {
+				buckets.all.take();
+			}
+			if (commandBucket != null) {
+				commandBucket.take();
+			}
+			return Result.ALLOWED;
+		}
+
+		if (now - buckets.lastNotice < window) {
+			return Result.THROTTLED;
+		}
+		buckets.lastNotice = now;
+		return Result.THROTTLED_NOTIFY;
+	}
+
+	/**
+	 * Gets the number of users that are currently being tracked.
+	 * @return the number of users
+	 */
+	public synchronized int getTrackedUsers() {
+		return users.size();
+	}
+
+	/**
+	 * The outcome of a rate limit check.
+	 */
+	public enum Result {
+		/**
+		 * The command can be invoked.
+		 */
+		ALLOWED,
+
+		/**
+		 * The user has exceeded their limit and should be told so.
+		 */
+		THROTTLED_NOTIFY,
+
+		/**
+		 * The user has exceeded their limit, but was already told so within
+		 * the current window.
+		 */
+		THROTTLED
+	}
+
+	private class UserBuckets {
+		private final Bucket all;
+		private final Map<String, Bucket> commands = new HashMap<>(4);
+		private long lastSeen;
+		private long lastNotice = Long.MIN_VALUE / 2;
+
+		public UserBuckets(long now) {
+			all = (userLimit > 0) ? new Bucket(userLimit, now) : null;
+		}
+	}
+
+	private class Bucket {
+		private final int capacity;
+		private double tokens;
+		private long lastRefill;
+
+		public Bucket(int capacity, long now) {
+			this.capacity = capacity;
+			tokens = capacity;
+			lastRefill = now;
+		}
+
+		public boolean hasToken(long now) {
+			long elapsed = now - lastRefill;
+			if (elapsed > 0) {
+				tokens = Math.min(capacity, tokens + elapsed * capacity / (double) window);
+				lastRefill = now;
+			}
+			return tokens >= 1;
+		}
+
+		public void take() {
+			tokens--;
+		}
+	}
+}
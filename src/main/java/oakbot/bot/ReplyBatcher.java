@@ -0,0 +1,328 @@
+package oakbot.bot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import oakbot.chat.ChatConnection;
+import oakbot.chat.ChatMessage;
+
+/**
+ * Merges replies that are posted to the same room in quick succession into a
+ * single multi-line post. This reduces the number of requests that count
+ * against the chat system's posting rate limit.
+ * <p>
+ * The first reply that is posted to a quiet room is sent right away. Any
+ * replies that follow it within the batch window are held back and then sent
+ * together when the window ends.
+ * </p>
+ * <p>
+ * Only replies whose formatting survives being put into a multi-line post are
+ * merged. Multi-line posts do not support markdown and are never split, so
+ * single-line replies that contain markdown or that are long enough to be
+ * split are always posted on their own, as are fixed-font replies.
+ * </p>
+ * @author Michael Angstadt
+ */
+class ReplyBatcher {
+	private static final Logger logger = Logger.getLogger(ReplyBatcher.class.getName());
+
+	/**
+	 * The max length of a single-line chat message.
+	 */
+	private static final int MAX_SINGLE_LINE_LENGTH = 500;
+
+	/**
+	 * The max length of a merged post, so that bursts do not turn into walls
+	 * of text.
+	 */
+	static final int MAX_MERGED_LENGTH = 2000;
+
+	private static final Pattern replyRegex = Pattern.compile("^:(\\d+) ");
+
+	private final ChatConnection connection;
+	private final long window;
+	private final ScheduledThreadPoolExecutor timer;
+	private final Map<Integer, RoomBatch> rooms = new ConcurrentHashMap<>();
+	private final AtomicLong postsSaved = new AtomicLong();
+
+	/**
+	 * @param connection the connection to post the replies to
+	 * @param window how long to hold back replies after a reply has been
+	 * posted to a room (in milliseconds). If this is zero, every reply is
+	 * posted immediately.
+	 */
+	public ReplyBatcher(ChatConnection connection, long window) {
+		this.connection = connection;
+		this.window = window;
+
+		//@formatter:off
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+			.setNameFormat("ReplyBatcher")
+			.setDaemon(true)
+		.build());
+		//@formatter:on
+	}
+
+	/**
+	 * Posts a reply or holds it back until the current batch window of the
+	 * room ends. Replies are posted in the order they are added.
+	 * @param room the room ID
+	 * @param message the message being replied to
+	 * @param reply the reply
+	 */
+	public void add(int room, ChatMessage message, ChatResponse reply) {
+		RoomBatch batch = rooms.computeIfAbsent(room, RoomBatch::new);
+		batch.add(new PendingReply(message, reply));
+	}
+
+	/**
+	 * Posts all the replies that are being held back.
+	 */
+	public void flush() {
+		for (RoomBatch batch : rooms.values()) {
+			batch.flush();
+		}
+	}
+
+	/**
+	 * Posts all the replies that are being held back and stops the batch
+	 * timer.
+	 */
+	public void shutdown() {
+		flush();
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Gets the number of posts that were saved by merging replies.
+	 * @return the number of posts saved
+	 */
+	public long getPostsSaved() {
+		return postsSaved.get();
+	}
+
+	/**
+	 * Merges consecutive compatible replies.
+	 * @param pending the replies to merge, in the order they were added
+	 * @return the posts to send
+	 */
+	static List<ChatResponse> merge(List<PendingReply> pending) {
+		List<ChatResponse> posts = new ArrayList<>();
+		StringBuilder merged = null;
+		ChatResponse first = null;
+		Long target = null;
+
+		for (PendingReply reply : pending) {
+			if (!isMergeable(reply.response)) {
+				if (first != null) {
+					posts.add(toResponse(first, merged));
+					first = null;
+				}
+				posts.add(reply.response);
+				continue;
+			}
+
+			if (first == null) {
+				first = reply.response;
+				merged = new StringBuilder(first.getMessage());
+				target = replyTarget(first.getMessage());
+				continue;
+			}
+
+			String line = rewriteReplyPrefix(reply, target);
+			if (line == null || merged.length() + 1 + line.length() > MAX_MERGED_LENGTH) {
+				//start a new post
+				posts.add(toResponse(first, merged));
+				first = reply.response;
+				merged = new StringBuilder(first.getMessage());
+				target = replyTarget(first.getMessage());
+				continue;
+			}
+
+			merged.append('\n').append(line);
+		}
+
+		if (first != null) {
+			posts.add(toResponse(first, merged));
+		}
+
+		return posts;
+	}
+
+	private static ChatResponse toResponse(ChatResponse first, StringBuilder merged) {
+		return (merged.length() == first.getMessage().length()) ? first : new ChatResponse(merged, first.getSplitStrategy());
+	}
+
+	/**
+	 * Determines if a reply keeps its formatting when it is merged into a
+	 * multi-line post.
+	 * @param response the reply
+	 * @return true if it can be merged, false if not
+	 */
+	private static boolean isMergeable(ChatResponse response) {
+		String message = response.getMessage();
+		if (message.isEmpty() || message.startsWith("    ")) {
+			//fixed font only applies if every line is indented
+			return false;
+		}
+
+		if (message.contains("\n")) {
+			//already a multi-line post, so there is no markdown to lose
+			return message.length() <= MAX_MERGED_LENGTH;
+		}
+
+		if (message.length() > MAX_SINGLE_LINE_LENGTH) {
+			//would have been split
+			return false;
+		}
+
+		return !hasMarkdown(message);
+	}
+
+	private static boolean hasMarkdown(String message) {
+		for (int i = 0; i < message.length(); i++) {
+			switch (message.charAt(i)) {
+			case '*':
+			case '`':
+			case '[':
+				return true;
+			}
+		}
+		return message.contains("---");
+	}
+
+	/**
+	 * Gets the ID of the message a reply is replying to.
+	 * @param message the reply
+	 * @return the message ID or null if it is not a reply
+	 */
+	private static Long replyTarget(String message) {
+		Matcher m = replyRegex.matcher(message);
+		return m.find() ? Long.valueOf(m.group(1)) : null;
+	}
+
+	/**
+	 * The reply syntax only works at the start of a post, so a reply that is
+	 * appended to a merged post has its reply prefix removed if the post is
+	 * already replying to the same message, or replaced with a mention of the
+	 * user otherwise.
+	 * @param reply the reply
+	 * @param target the message that the merged post is replying to (may be
+	 * null)
+	 * @return the line to add to the merged post or null if the reply prefix
+	 * cannot be rewritten (because the author of the message being replied to
+	 * is not known), in which case the reply must start its own post
+	 */
+	private static String rewriteReplyPrefix(PendingReply reply, Long target) {
+		String message = reply.response.getMessage();
+		Matcher m = replyRegex.matcher(message);
+		if (!m.find()) {
+			return message;
+		}
+
+		String text = message.substring(m.end());
+		long id = Long.parseLong(m.group(1));
+		if (target != null && target == id) {
+			return text;
+		}
+
+		String username = reply.message.getUsername();
+		if (username == null || reply.message.getMessageId() != id) {
+			return null;
+		}
+		return "@" + username.replace(" ", "") + " " + text;
+	}
+
+	/**
+	 * A reply that has not been posted yet.
+	 */
+	static class PendingReply {
+		private final ChatMessage message;
+		private final ChatResponse response;
+
+		/**
+		 * @param message the message being replied to
+		 * @param response the reply
+		 */
+		public PendingReply(ChatMessage message, ChatResponse response) {
+			this.message = message;
+			this.response = response;
+		}
+	}
+
+	/**
+	 * The replies that are being held back for a single room.
+	 */
+	private class RoomBatch {
+		private final int room;
+		private final List<PendingReply> pending = new ArrayList<>();
+		private boolean flushScheduled;
+
+		/**
+		 * When a post was last made to the room (timestamp).
+		 */
+		private long lastPost;
+
+		public RoomBatch(int room) {
+			this.room = room;
+		}
+
+		public synchronized void add(PendingReply reply) {
+			long now = System.currentTimeMillis();
+			if (!flushScheduled && now - lastPost >= window) {
+				send(reply.response);
+				lastPost = now;
+				return;
+			}
+
+			pending.add(reply);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				long delay = Math.max(0, lastPost + window - now);
+				try {
+					timer.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					//shutting down
+					flush();
+				}
+			}
+		}
+
+		public synchronized void flush() {
+			flushScheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+
+			List<ChatResponse> posts = merge(pending);
+			postsSaved.addAndGet(pending.size() - posts.size());
+			pending.clear();
+
+			for (ChatResponse post : posts) {
+				send(post);
+			}
+			lastPost = System.currentTimeMillis();
+		}
+
+		private void send(ChatResponse post) {
+			try {
+				connection.sendMessage(room, post.getMessage(), post.getSplitStrategy());
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Problem sending chat message.", e);
+			}
+		}
+	}
+}
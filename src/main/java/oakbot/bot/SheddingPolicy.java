@@ -0,0 +1,129 @@
+package oakbot.bot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Defines how a room's inbound message queue sheds load when messages arrive
+ * faster than the bot can respond to them (for example, during a raid or after
+ * an outage).
+ * </p>
+ * <p>
+ * This class is immutable. Use its {@link Builder} class to create new
+ * instances.
+ * </p>
+ * @author Michael Angstadt
+ * @see InboundQueue
+ */
+public class SheddingPolicy {
+	/**
+	 * Bounds the queue, but does not drop any messages until it is full.
+	 */
+	public static final SheddingPolicy DEFAULT = new Builder().build();
+
+	private final int capacity;
+	private final long maxCommandAge;
+	private final boolean newestCommandPerUser, coalesceDuplicates;
+
+	private SheddingPolicy(Builder builder) {
+		capacity = builder.capacity;
+		maxCommandAge = builder.maxCommandAge;
+		newestCommandPerUser = builder.newestCommandPerUser;
+		coalesceDuplicates = builder.coalesceDuplicates;
+	}
+
+	/**
+	 * Gets the max number of messages the queue can hold. When this is
+	 * exceeded, the oldest messages are dropped.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets how old a command can be before it is dropped instead of being
+	 * responded to.
+	 * @return the max age (in milliseconds) or zero for no limit
+	 */
+	public long getMaxCommandAge() {
+		return maxCommandAge;
+	}
+
+	/**
+	 * Gets whether only the most recent command of each user is kept.
+	 * @return true to keep only the newest command of each user, false to keep
+	 * them all
+	 */
+	public boolean isNewestCommandPerUser() {
+		return newestCommandPerUser;
+	}
+
+	/**
+	 * Gets whether commands that are identical to an earlier queued command
+	 * from the same user are dropped. Other messages are never coalesced, since the listeners may
+	 * care about each one (for example, to count them).
+	 * @return true to drop duplicates, false to keep them
+	 */
+	public boolean isCoalesceDuplicates() {
+		return coalesceDuplicates;
+	}
+
+	/**
+	 * Builds instances of {@link SheddingPolicy}.
+	 */
+	public static class Builder {
+		private int capacity = 100;
+		private long maxCommandAge = 0;
+		private boolean newestCommandPerUser = false, coalesceDuplicates = false;
+
+		/**
+		 * @param capacity the max number of messages the queue can hold
+		 * (defaults to 100)
+		 * @return this
+		 */
+		public Builder capacity(int capacity) {
+			if (capacity <= 0) {
+				throw new IllegalArgumentException("Capacity must be positive.");
+			}
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * @param maxCommandAge how old a command can be before it is dropped
+		 * or zero for no limit (defaults to no limit)
+		 * @param unit the time unit
+		 * @return this
+		 */
+		public Builder maxCommandAge(long maxCommandAge, TimeUnit unit) {
+			this.maxCommandAge = unit.toMillis(maxCommandAge);
+			return this;
+		}
+
+		/**
+		 * @param newestCommandPerUser true to keep only the most recent
+		 * command of each user, false to keep them all (defaults to false)
+		 * @return this
+		 */
+		public Builder newestCommandPerUser(boolean newestCommandPerUser) {
+			this.newestCommandPerUser = newestCommandPerUser;
+			return this;
+		}
+
+		/**
+		 * @param coalesceDuplicates true to drop commands that are identical
+		 * to an earlier queued command from the same user, false to keep them
+		 * (defaults to false)
+		 * @return this
+		 */
+		public Builder coalesceDuplicates(boolean coalesceDuplicates) {
+			this.coalesceDuplicates = coalesceDuplicates;
+			return this;
+		}
+
+		public SheddingPolicy build() {
+			return new SheddingPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package oakbot.bot;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import oakbot.chat.ChatMessage;
+import oakbot.command.Command;
+
+/**
+ * Makes concurrent invocations of a command that have the same
+ * {@link Command#singleFlightKey key} share a single computation. The first
+ * invocation runs the command, and any identical invocations that arrive
+ * while it is still running receive a copy of its response, addressed to
+ * their own message.
+ * @author Michael Angstadt
+ */
+public class SingleFlight {
+	private static final Logger logger = Logger.getLogger(SingleFlight.class.getName());
+
+	/**
+	 * <ul>
+	 * <li><b>Key:</b> The command name and single-flight key.</li>
+	 * <li><b>Value:</b> The invocation that is running.</li>
+	 * </ul>
+	 */
+	private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+	private final AtomicLong executions = new AtomicLong(), shared = new AtomicLong();
+
+	/**
+	 * Runs a command invocation or joins an identical one that is already
+	 * running.
+	 * @param command the command
+	 * @param key the command's single-flight key for the invocation
+	 * @param message the message that invoked the command
+	 * @param invoke runs the command (only called if no identical invocation
+	 * is running)
+	 * @return the response, addressed to the given message
+	 */
+	CompletableFuture<ChatResponse> submit(Command command, String key, ChatMessage message, Supplier<CompletableFuture<ChatResponse>> invoke) {
+		String flightKey = command.name() + ' ' + key;
+
+		Flight flight = new Flight(message);
+		Flight existing = inFlight.putIfAbsent(flightKey, flight);
+		if (existing != null) {
+			shared.incrementAndGet();
+			logger.info("Sharing the response of message " + existing.leader.getMessageId() + " with message " + message.getMessageId() + ".");
+			return existing.response.thenApply(response -> readdress(response, existing.leader, message));
+		}
+
+		executions.incrementAndGet();
+		invoke.get().whenComplete((response, thrown) -> {
+			//remove the flight before completing it, so that later invocations do not get a stale response
+			inFlight.remove(flightKey, flight);
+
+			if (thrown == null) {
+				flight.response.complete(response);
+			} else {
+				flight.response.completeExceptionally(thrown);
+			}
+		});
+		return flight.response;
+	}
+
+	/**
+	 * Gets the number of times a command was actually run.
+	 * @return the number of executions
+	 */
+	public long getExecutions() {
+		return executions.get();
+	}
+
+	/**
+	 * Gets the number of invocations that shared the response of an identical
+	 * invocation instead of running the command. This is the number of
+	 * external calls that were saved.
+	 * @return the number of shared invocations
+	 */
+	public long getShared() {
+		return shared.get();
+	}
+
+	/**
+	 * Gets the number of invocations that are currently running.
+	 * @return the number of invocations
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Changes the message that a response is replying to.
+	 * @param response the response (may be null)
+	 * @param from the message the response replies to
+	 * @param to the message the response should reply to instead
+	 * @return the readdressed response
+	 */
+	static ChatResponse readdress(ChatResponse response, ChatMessage from, ChatMessage to) {
+		if (response == null) {
+			return null;
+		}
+
+		String prefix = ":" + from.getMessageId() + " ";
+		String message = response.getMessage();
+		if (!message.startsWith(prefix)) {
+			return response;
+		}
+
+		return new ChatResponse(":" + to.getMessageId() + " " + message.substring(prefix.length()), response.getSplitStrategy());
+	}
+
+	@Override
+	public String toString() {
+		return "executions=" + executions + ", shared=" + shared;
+	}
+
+	private static class Flight {
+		private final ChatMessage leader;
+		private final CompletableFuture<ChatResponse> response = new CompletableFuture<>();
+
+		public Flight(ChatMessage leader) {
+			this.leader = leader;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package oakbot.bot;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import oakbot.util.ThreadMode;
+
+/**
+ * Runs command and listener invocations on a bounded pool of threads so that
+ * slow invocations (such as those that make HTTP requests) do not hold up the
+ * threads that poll the chat rooms.
+ * <p>
+ * In {@link ThreadMode#VIRTUAL virtual thread mode}, each invocation runs on
+ * its own virtual thread instead, so there is no pool to size and invocations
+ * are never turned away.
+ * </p>
+ * @author Michael Angstadt
+ */
+class WorkerPool {
+	private final ExecutorService workers;
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * @param threads the number of worker threads
+	 * @param queueSize the max number of invocations that can be waiting for a
+	 * free worker thread
+	 */
+	public WorkerPool(int threads, int queueSize) {
+		this(ThreadMode.PLATFORM, threads, queueSize);
+	}
+
+	/**
+	 * @param mode the kind of threads to run the invocations on
+	 * @param threads the number of worker threads (ignored in virtual thread
+	 * mode)
+	 * @param queueSize the max number of invocations that can be waiting for a
+	 * free worker thread (ignored in virtual thread mode)
+	 */
+	public WorkerPool(ThreadMode mode, int threads, int queueSize) {
+		if (mode == ThreadMode.VIRTUAL) {
+			workers = mode.newThreadPerTaskExecutor("Worker");
+		} else {
+			workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), mode.threadFactory("Worker"));
+		}
+
+		//@formatter:off
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+			.setNameFormat("WorkerTimeout")
+			.setDaemon(true)
+		.build());
+		//@formatter:on
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Runs a task on a worker thread.
+	 * @param task the task to run
+	 * @param timeout the amount of time the task has to complete once a worker
+	 * thread starts running it (in milliseconds). Time spent waiting in the
+	 * queue does not count. If it takes longer than this, the worker thread is
+	 * interrupted and the returned future is completed with the timeout value.
+	 * @param onTimeout supplies the value to use if the task times out
+	 * @param onRejected supplies the value to use if all the worker threads are
+	 * busy and the queue is full
+	 * @return the result of the task
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task, long timeout, Supplier<T> onTimeout, Supplier<T> onRejected) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+
+		AtomicReference<Future<?>> job = new AtomicReference<>();
+		FutureTask<Void> futureTask = new FutureTask<>(() -> {
+			try {
+				ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+					if (result.complete(onTimeout.get())) {
+						job.get().cancel(true);
+					}
+				}, timeout, TimeUnit.MILLISECONDS);
+				result.whenComplete((value, thrown) -> timeoutTask.cancel(false));
+
+				result.complete(task.call());
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		}, null);
+		job.set(futureTask);
+
+		try {
+			workers.execute(futureTask);
+		} catch (RejectedExecutionException e) {
+			result.complete(onRejected.get());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Stops all worker threads.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+		timer.shutdownNow();
+	}
+}
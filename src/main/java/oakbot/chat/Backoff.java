@@ -0,0 +1,38 @@
+package oakbot.chat;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Calculates how long to wait in between the attempts of a failing request,
+ * using "decorrelated jitter": each wait is a random amount of time between
+ * the base wait and three times the previous wait, capped at a max. The waits
+ * grow quickly, but because they are random, the clients that failed at the
+ * same time (for example, the poll and sender threads during an outage) do
+ * not all retry at the same time.
+ * @author Michael Angstadt
+ */
+class Backoff {
+	private final long base, cap;
+	private long prev;
+
+	/**
+	 * @param base the shortest wait (in milliseconds)
+	 * @param cap the longest wait (in milliseconds)
+	 */
+	public Backoff(long base, long cap) {
+		this.base = base;
+		this.cap = cap;
+		prev = base;
+	}
+
+	/**
+	 * Calculates the next wait.
+	 * @return the wait (in milliseconds)
+	 */
+	public long next() {
+		long high = Math.max(base, Math.min(cap, prev * 3));
+		long wait = (high > base) ? ThreadLocalRandom.current().nextLong(base, high + 1) : base;
+		prev = Math.min(cap, wait);
+		return prev;
+	}
+}
@@ -2,7 +2,10 @@ package oakbot.chat;
 
 import java.io.Flushable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a connection to a chat room.
@@ -64,4 +67,50 @@ public interface ChatConnection extends Flushable {
 	 * @throws IOException if there's a problem retrieving the messages
 	 */
 	List<ChatMessage> getNewMessages(int room) throws IOException;
+
+	/**
+	 * Gets the messages that were posted to several chat rooms since the last
+	 * time each room was polled for new messages.
+	 * @param rooms the room IDs
+	 * @return the new messages of each room (rooms with no new messages may
+	 * be omitted)
+	 * @throws IOException if there's a problem retrieving the messages
+	 * @see #supportsBulkPolling
+	 */
+	default Map<Integer, List<ChatMessage>> getNewMessages(Collection<Integer> rooms) throws IOException {
+		Map<Integer, List<ChatMessage>> messages = new LinkedHashMap<>();
+		for (Integer room : rooms) {
+			messages.put(room, getNewMessages(room));
+		}
+		return messages;
+	}
+
+	/**
+	 * Determines if {@link #getNewMessages(Collection)} retrieves the new
+	 * messages of all the given rooms at once (for example, with a single
+	 * request), as opposed to polling each room one after another.
+	 * @return true if rooms can be polled in bulk, false if not
+	 */
+	default boolean supportsBulkPolling() {
+		return false;
+	}
+
+	/**
+	 * Sets the object to notify when {@link #getNewMessages} could not
+	 * retrieve all of a room's new messages.
+	 * @param handler the handler or null to not be notified
+	 */
+	default void setGapHandler(GapHandler handler) {
+		//connections that never miss messages do not need to notify anyone
+	}
+
+	/**
+	 * Sets the object to notify when new messages are pushed to the
+	 * connection. Connections that only find out about new messages when they
+	 * are polled never call the handler.
+	 * @param handler the handler or null to not be notified
+	 */
+	default void setNewMessageHandler(NewMessageHandler handler) {
+		//connections that have to be polled have nothing to push
+	}
 }
@@ -12,6 +12,27 @@ public class ChatMessage {
 	private int userId, roomId, edits;
 	private long messageId;
 
+	/**
+	 * Creates an empty chat message.
+	 */
+	public ChatMessage() {
+		//empty
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param original the message to copy
+	 */
+	public ChatMessage(ChatMessage original) {
+		timestamp = original.timestamp;
+		username = original.username;
+		content = original.content;
+		userId = original.userId;
+		roomId = original.roomId;
+		edits = original.edits;
+		messageId = original.messageId;
+	}
+
 	public LocalDateTime getTimestamp() {
 		return timestamp;
 	}
@@ -0,0 +1,483 @@
+package oakbot.chat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * The chat traffic that was captured by a {@link RecordingChat}. A recording
+ * is replayed with a {@link ReplayChat}.
+ * <p>
+ * The file is binary and append-only. It starts with a header, followed by a
+ * list of records. Each time the bot is started, a "session" record is
+ * appended, followed by a record for each batch of new messages that the bot
+ * received and for each message the bot posted. Each record contains the
+ * number of milliseconds since the previous record, so the sessions are
+ * replayed back to back. Numbers are written as variable-length integers and
+ * strings are written in UTF-8, prefixed with their length. If the file ends
+ * in the middle of a record (for example, because the bot crashed), the
+ * partial record is ignored when the file is read, and is cut off when the
+ * file is opened for appending, so that the next session's records do not
+ * end up after it.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChatRecording {
+	private static final byte[] MAGIC = { 'O', 'A', 'K', 'R', 'E', 'C' };
+	private static final int VERSION = 2;
+
+	private static final int RECORD_SESSION = 0;
+	private static final int RECORD_BATCH = 1;
+	private static final int RECORD_POST = 2;
+
+	private static final ZoneId zone = ZoneId.systemDefault();
+
+	private final List<Batch> batches;
+	private final List<Post> posts;
+
+	private ChatRecording(List<Batch> batches, List<Post> posts) {
+		this.batches = Collections.unmodifiableList(batches);
+		this.posts = Collections.unmodifiableList(posts);
+	}
+
+	/**
+	 * Reads a recording from a file.
+	 * @param file the file
+	 * @return the recording
+	 * @throws IOException if there's a problem reading the file or if it's not
+	 * a recording
+	 */
+	public static ChatRecording read(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * Reads a recording from a stream.
+	 * @param in the input stream
+	 * @return the recording
+	 * @throws IOException if there's a problem reading the stream or if it's
+	 * not a recording
+	 */
+	public static ChatRecording read(InputStream in) throws IOException {
+		return parse(in).recording;
+	}
+
+	/**
+	 * Parses a recording.
+	 * @param in the input stream
+	 * @return the recording and the length of its complete records
+	 * @throws IOException if there's a problem reading the stream or if it's
+	 * not a recording
+	 */
+	private static ParseResult parse(InputStream in) throws IOException {
+		CountingInputStream counting = new CountingInputStream(new BufferedInputStream(in));
+		DataInputStream data = new DataInputStream(counting);
+
+		byte[] magic = new byte[MAGIC.length];
+		try {
+			data.readFully(magic);
+		} catch (EOFException e) {
+			throw new IOException("Not a chat recording.", e);
+		}
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new IOException("Not a chat recording.");
+		}
+		int version = data.read();
+		if (version != VERSION) {
+			throw new IOException("Unsupported chat recording version: " + version);
+		}
+
+		List<Batch> batches = new ArrayList<>();
+		List<Post> posts = new ArrayList<>();
+		long offset = 0;
+		long complete = counting.getCount();
+		try {
+			int type;
+			while ((type = data.read()) >= 0) {
+				switch (type) {
+				case RECORD_SESSION:
+					//the time the session started, informational only
+					readLong(data);
+					break;
+				case RECORD_BATCH: {
+					offset += readLong(data);
+					int room = readInt(data);
+					int count = readInt(data);
+					List<ChatMessage> messages = new ArrayList<>(count);
+					for (int i = 0; i < count; i++) {
+						messages.add(readMessage(data));
+					}
+					batches.add(new Batch(offset, room, messages));
+					break;
+				}
+				case RECORD_POST: {
+					offset += readLong(data);
+					int room = readInt(data);
+					long latency = readLong(data);
+					SplitStrategy strategy = readSplitStrategy(data);
+					String message = readString(data);
+					posts.add(new Post(offset, room, latency, message, strategy));
+					break;
+				}
+				default:
+					throw new IOException("Unknown record type: " + type);
+				}
+				complete = counting.getCount();
+			}
+		} catch (EOFException e) {
+			//the last record is incomplete
+		}
+
+		return new ParseResult(new ChatRecording(batches, posts), complete);
+	}
+
+	private static class ParseResult {
+		private final ChatRecording recording;
+
+		/**
+		 * The number of bytes up to the end of the last complete record.
+		 */
+		private final long complete;
+
+		public ParseResult(ChatRecording recording, long complete) {
+			this.recording = recording;
+			this.complete = complete;
+		}
+	}
+
+	/**
+	 * Gets the batches of new messages the bot received.
+	 * @return the batches, in the order they were received
+	 */
+	public List<Batch> getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Gets the messages the bot posted.
+	 * @return the posts, in the order they were sent
+	 */
+	public List<Post> getPosts() {
+		return posts;
+	}
+
+	/**
+	 * The new messages that were returned from a single poll of a room.
+	 */
+	public static class Batch {
+		private final long offset;
+		private final int room;
+		private final List<ChatMessage> messages;
+
+		public Batch(long offset, int room, List<ChatMessage> messages) {
+			this.offset = offset;
+			this.room = room;
+			this.messages = messages;
+		}
+
+		/**
+		 * Gets when the batch was received.
+		 * @return the time since the beginning of the recording (in
+		 * milliseconds)
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Gets the room the messages were posted to.
+		 * @return the room ID
+		 */
+		public int getRoom() {
+			return room;
+		}
+
+		/**
+		 * Gets the messages.
+		 * @return the messages
+		 */
+		public List<ChatMessage> getMessages() {
+			return messages;
+		}
+	}
+
+	/**
+	 * A message that the bot posted.
+	 */
+	public static class Post {
+		private final long offset, latency;
+		private final int room;
+		private final String message;
+		private final SplitStrategy splitStrategy;
+
+		public Post(long offset, int room, long latency, String message, SplitStrategy splitStrategy) {
+			this.offset = offset;
+			this.room = room;
+			this.latency = latency;
+			this.message = message;
+			this.splitStrategy = splitStrategy;
+		}
+
+		/**
+		 * Gets when the message was posted.
+		 * @return the time since the beginning of the recording or replay (in
+		 * milliseconds)
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Gets the room the message was posted to.
+		 * @return the room ID
+		 */
+		public int getRoom() {
+			return room;
+		}
+
+		/**
+		 * Gets how long after the room's most recent batch of new messages was
+		 * received that the message was posted. This is the bot's response
+		 * time if the message is a reply.
+		 * @return the latency (in milliseconds) or -1 if no messages were
+		 * received from the room beforehand
+		 */
+		public long getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Gets the message.
+		 * @return the message
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Gets how the message was to be split up if it was too long.
+		 * @return the split strategy or null if not specified
+		 */
+		public SplitStrategy getSplitStrategy() {
+			return splitStrategy;
+		}
+	}
+
+	/**
+	 * Appends records to a recording file.
+	 */
+	static class Writer implements Closeable {
+		private final DataOutputStream out;
+		private long prevRecord;
+
+		/**
+		 * Opens a recording file for appending, creating it if it doesn't
+		 * exist, and starts a new session. If the file ends with a partial
+		 * record, the partial record is removed first.
+		 * @param file the file
+		 * @throws IOException if there's a problem opening the file or if it's
+		 * not a recording (or was written by a different version)
+		 */
+		public Writer(Path file) throws IOException {
+			long length = 0;
+			if (Files.exists(file) && Files.size(file) > MAGIC.length + 1) {
+				try (InputStream in = Files.newInputStream(file)) {
+					length = parse(in).complete;
+				}
+			}
+
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				channel.truncate(length);
+				channel.position(length);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+			if (length == 0) {
+				out.write(MAGIC);
+				out.write(VERSION);
+			}
+
+			prevRecord = System.currentTimeMillis();
+			out.write(RECORD_SESSION);
+			writeLong(out, prevRecord);
+			out.flush();
+		}
+
+		/**
+		 * Appends a batch of new messages.
+		 * @param room the room ID
+		 * @param messages the messages
+		 * @throws IOException if there's a problem writing to the file
+		 */
+		public synchronized void batch(int room, List<ChatMessage> messages) throws IOException {
+			out.write(RECORD_BATCH);
+			writeLong(out, elapsed());
+			writeLong(out, room);
+			writeLong(out, messages.size());
+			for (ChatMessage message : messages) {
+				writeMessage(out, message);
+			}
+			out.flush();
+		}
+
+		/**
+		 * Appends a posted message.
+		 * @param room the room ID
+		 * @param latency the time since the room's most recent batch of new
+		 * messages (in milliseconds) or -1 if none
+		 * @param message the message
+		 * @param splitStrategy the split strategy or null if not specified
+		 * @throws IOException if there's a problem writing to the file
+		 */
+		public synchronized void post(int room, long latency, String message, SplitStrategy splitStrategy) throws IOException {
+			out.write(RECORD_POST);
+			writeLong(out, elapsed());
+			writeLong(out, room);
+			writeLong(out, latency);
+			writeString(out, (splitStrategy == null) ? null : splitStrategy.name());
+			writeString(out, message);
+			out.flush();
+		}
+
+		private long elapsed() {
+			long now = System.currentTimeMillis();
+			long elapsed = Math.max(0, now - prevRecord);
+			prevRecord = now;
+			return elapsed;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			out.close();
+		}
+	}
+
+	private static void writeMessage(DataOutputStream out, ChatMessage message) throws IOException {
+		writeLong(out, message.getMessageId());
+		writeLong(out, message.getRoomId());
+		writeLong(out, message.getUserId());
+		writeString(out, message.getUsername());
+		writeString(out, message.getContent());
+		writeLong(out, message.getEdits());
+
+		LocalDateTime timestamp = message.getTimestamp();
+		writeLong(out, (timestamp == null) ? 0 : timestamp.atZone(zone).toEpochSecond() + 1);
+	}
+
+	private static ChatMessage readMessage(DataInputStream in) throws IOException {
+		ChatMessage message = new ChatMessage();
+		message.setMessageId(readLong(in));
+		message.setRoomId(readInt(in));
+		message.setUserId(readInt(in));
+		message.setUsername(readString(in));
+		message.setContent(readString(in));
+		message.setEdits(readInt(in));
+
+		long timestamp = readLong(in);
+		if (timestamp > 0) {
+			message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamp - 1), zone));
+		}
+		return message;
+	}
+
+	/**
+	 * Writes a string, prefixed with its length (in bytes) plus one. A length
+	 * of zero means null.
+	 * @param out the output stream
+	 * @param value the string or null
+	 * @throws IOException if there's a problem writing to the stream
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeLong(out, 0);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeLong(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static SplitStrategy readSplitStrategy(DataInputStream in) throws IOException {
+		String name = readString(in);
+		if (name == null) {
+			return null;
+		}
+
+		try {
+			return SplitStrategy.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown split strategy: " + name, e);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readInt(in);
+		if (length == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a number as a variable-length integer (7 bits per byte, with the
+	 * high bit set on every byte except the last). Negative numbers are
+	 * zig-zag encoded so that small negative numbers are short too.
+	 * @param out the output stream
+	 * @param value the number
+	 * @throws IOException if there's a problem writing to the stream
+	 */
+	private static void writeLong(DataOutputStream out, long value) throws IOException {
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			out.write((int) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		out.write((int) zigZag);
+	}
+
+	private static long readLong(DataInputStream in) throws IOException {
+		long zigZag = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			zigZag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (zigZag >>> 1) ^ -(zigZag & 1);
+			}
+		}
+		throw new IOException("Malformed number.");
+	}
+
+	private static int readInt(DataInputStream in) throws IOException {
+		return (int) readLong(in);
+	}
+}
@@ -0,0 +1,276 @@
+package oakbot.chat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+import oakbot.util.PropertiesWrapper;
+
+/**
+ * Saves the state of a chat session to a file, so that the bot does not have
+ * to log in and scrape every room's webpage again each time it is restarted.
+ * This includes the login cookies and the "fkey" of each room that the bot is
+ * allowed to post to.
+ * <p>
+ * The HTTP client must be configured to use this session's
+ * {@link #getCookieStore cookie store}. Only the cookies of Stack Overflow's
+ * domains are saved, so the store can be shared with an HTTP client that
+ * also sends requests to other sites. The session is saved whenever the
+ * chat system changes the value of one of its cookies, and should also be
+ * {@link #save saved} when the bot shuts down, so that the latest expiry
+ * dates are kept.
+ * </p>
+ * <p>
+ * The file contains login cookies, so on file systems that support POSIX
+ * permissions, only its owner can read or write it.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChatSession {
+	private static final Logger logger = Logger.getLogger(ChatSession.class.getName());
+
+	private final Path file;
+	private final CookieStore cookieStore = new SessionCookieStore();
+	private final Map<Integer, String> fkeys = new HashMap<>();
+	private String email;
+
+	/**
+	 * @param file the session file (it is loaded if it exists)
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public ChatSession(Path file) throws IOException {
+		this.file = file;
+		if (!Files.exists(file)) {
+			return;
+		}
+
+		PropertiesWrapper properties = new PropertiesWrapper(file);
+
+		for (int i = 0; properties.get("cookie." + i + ".name") != null; i++) {
+			String prefix = "cookie." + i + ".";
+			BasicClientCookie cookie = new BasicClientCookie(properties.get(prefix + "name"), properties.get(prefix + "value"));
+
+			String domain = properties.get(prefix + "domain");
+			cookie.setDomain(domain);
+			cookie.setAttribute(ClientCookie.DOMAIN_ATTR, domain);
+			cookie.setPath(properties.get(prefix + "path"));
+			cookie.setSecure(properties.getBoolean(prefix + "secure", false));
+
+			String expiry = properties.get(prefix + "expiry");
+			if (expiry != null) {
+				cookie.setExpiryDate(new Date(Long.parseLong(expiry)));
+			}
+
+			cookieStore.addCookie(cookie);
+		}
+
+		for (String key : properties.keySet()) {
+			if (key.startsWith("room.") && key.endsWith(".fkey")) {
+				int room = Integer.parseInt(key.substring("room.".length(), key.length() - ".fkey".length()));
+				fkeys.put(room, properties.get(key));
+			}
+		}
+
+		//remove cookies that expired while the bot was offline
+		cookieStore.clearExpired(new Date());
+
+		//set last, so the cookies are not saved as they are loaded
+		email = properties.get("email");
+	}
+
+	/**
+	 * Gets the cookie store that the HTTP client must use.
+	 * @return the cookie store
+	 */
+	public CookieStore getCookieStore() {
+		return cookieStore;
+	}
+
+	/**
+	 * Determines if the session contains the cookies of a previous login. The
+	 * cookies may no longer be valid.
+	 * @param email the email address of the account that the bot is logging in
+	 * with
+	 * @return true if the saved session belongs to this account and has
+	 * cookies, false if not
+	 */
+	public synchronized boolean hasLogin(String email) {
+		return email.equals(this.email) && !cookieStore.getCookies().isEmpty();
+	}
+
+	/**
+	 * Records a successful login, and saves the login cookies.
+	 * @param email the email address of the account
+	 */
+	public synchronized void loggedIn(String email) {
+		this.email = email;
+		fkeys.clear();
+		save();
+	}
+
+	/**
+	 * Gets the saved fkey of a room. A room's fkey is only saved if the bot can
+	 * post to it.
+	 * @param room the room ID
+	 * @return the fkey or null if not saved
+	 */
+	public synchronized String getFKey(int room) {
+		return fkeys.get(room);
+	}
+
+	/**
+	 * Saves the fkey of a room.
+	 * @param room the room ID
+	 * @param fkey the fkey
+	 */
+	public synchronized void setFKey(int room, String fkey) {
+		if (fkey.equals(fkeys.put(room, fkey))) {
+			return;
+		}
+		save();
+	}
+
+	/**
+	 * Discards the session, because the chat system no longer accepts it.
+	 */
+	public synchronized void clear() {
+		email = null;
+		fkeys.clear();
+		cookieStore.clear();
+		save();
+	}
+
+	/**
+	 * Saves the session to the file.
+	 */
+	public synchronized void save() {
+		PropertiesWrapper properties = new PropertiesWrapper();
+		properties.set("email", email);
+
+		List<Cookie> cookies = new ArrayList<>();
+		for (Cookie cookie : cookieStore.getCookies()) {
+			if (isChatCookie(cookie)) {
+				cookies.add(cookie);
+			}
+		}
+		for (int i = 0; i < cookies.size(); i++) {
+			Cookie cookie = cookies.get(i);
+			String prefix = "cookie." + i + ".";
+			properties.set(prefix + "name", cookie.getName());
+			properties.set(prefix + "value", cookie.getValue());
+			properties.set(prefix + "domain", cookie.getDomain());
+			properties.set(prefix + "path", cookie.getPath());
+			properties.set(prefix + "secure", cookie.isSecure());
+
+			Date expiry = cookie.getExpiryDate();
+			if (expiry != null) {
+				properties.set(prefix + "expiry", expiry.getTime());
+			}
+		}
+
+		for (Map.Entry<Integer, String> entry : fkeys.entrySet()) {
+			properties.set("room." + entry.getKey() + ".fkey", entry.getValue());
+		}
+
+		try {
+			restrictPermissions();
+			properties.store(file, "Chat session. Contains login cookies, do not share.");
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not save chat session.", e);
+		}
+	}
+
+	/**
+	 * Makes sure that only the file's owner can read or write the file,
+	 * before anything is written to it.
+	 * @throws IOException if the permissions cannot be set
+	 */
+	private void restrictPermissions() throws IOException {
+		if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			return;
+		}
+
+		Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+		if (Files.exists(file)) {
+			Files.setPosixFilePermissions(file, ownerOnly);
+		} else {
+			Files.createFile(file, PosixFilePermissions.asFileAttribute(ownerOnly));
+		}
+	}
+
+	/**
+	 * Determines if a cookie belongs to Stack Overflow (as opposed to another
+	 * site that one of the commands sent a request to).
+	 * @param cookie the cookie
+	 * @return true if it belongs to Stack Overflow, false if not
+	 */
+	private static boolean isChatCookie(Cookie cookie) {
+		String domain = cookie.getDomain();
+		if (domain == null) {
+			return false;
+		}
+
+		domain = domain.toLowerCase();
+		if (domain.startsWith(".")) {
+			domain = domain.substring(1);
+		}
+		return domain.equals("stackoverflow.com") || domain.endsWith(".stackoverflow.com");
+	}
+
+	/**
+	 * Saves the session when the chat system changes one of its cookies.
+	 */
+	private class SessionCookieStore extends BasicCookieStore {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void addCookie(Cookie cookie) {
+			boolean changed = (cookie != null) && isChatCookie(cookie) && !sameValue(cookie);
+			super.addCookie(cookie);
+
+			/*
+			 * Not saved while this store's lock is held, because saving locks
+			 * the session, and the session locks this store.
+			 */
+			if (changed && hasSession()) {
+				save();
+			}
+		}
+
+		private boolean sameValue(Cookie cookie) {
+			for (Cookie existing : getCookies()) {
+				if (existing.getName().equals(cookie.getName()) && Objects.equals(existing.getDomain(), cookie.getDomain()) && Objects.equals(existing.getPath(), cookie.getPath())) {
+					return Objects.equals(existing.getValue(), cookie.getValue());
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Determines if the bot has logged in, in which case changes to the
+	 * cookies are saved right away. Cookies that are set before the bot logs in
+	 * are saved by {@link #loggedIn}.
+	 * @return true if the bot has logged in, false if not
+	 */
+	private synchronized boolean hasSession() {
+		return email != null;
+	}
+}
@@ -0,0 +1,210 @@
+package oakbot.chat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Stops sending requests to a part of the chat system that keeps failing, so
+ * that threads are not tied up retrying requests during an outage.
+ * <p>
+ * The breaker starts out closed, which means requests are sent. After a number
+ * of requests fail in a row, it opens, and requests fail immediately with a
+ * {@link CircuitOpenException}. Once the open time has passed, it becomes
+ * half-open and lets a single request through. If that request succeeds, the
+ * breaker closes. If it fails, the breaker opens again for twice as long (up
+ * to a max).
+ * </p>
+ * @author Michael Angstadt
+ */
+public class CircuitBreaker {
+	private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+	public enum State {
+		/**
+		 * Requests are sent.
+		 */
+		CLOSED,
+
+		/**
+		 * Requests fail without being sent.
+		 */
+		OPEN,
+
+		/**
+		 * A single request is sent to find out if the chat system has
+		 * recovered.
+		 */
+		HALF_OPEN
+	}
+
+	private final String name;
+	private final int failureThreshold;
+	private final long minOpenTime, maxOpenTime;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long openTime, openUntil;
+	private boolean probing;
+	private long trips, rejected;
+
+	/**
+	 * Creates a breaker that opens after 5 failures in a row, for 30 seconds
+	 * at first and for up to 5 minutes.
+	 * @param name the name of the breaker (for logging)
+	 */
+	public CircuitBreaker(String name) {
+		this(name, 5, TimeUnit.SECONDS.toMillis(30), TimeUnit.MINUTES.toMillis(5));
+	}
+
+	/**
+	 * @param name the name of the breaker (for logging)
+	 * @param failureThreshold the number of failures in a row that opens the
+	 * breaker
+	 * @param minOpenTime how long the breaker stays open the first time it
+	 * opens (in milliseconds)
+	 * @param maxOpenTime the longest the breaker stays open (in milliseconds)
+	 */
+	public CircuitBreaker(String name, int failureThreshold, long minOpenTime, long maxOpenTime) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.minOpenTime = minOpenTime;
+		this.maxOpenTime = maxOpenTime;
+		openTime = minOpenTime;
+	}
+
+	/**
+	 * Determines if a request can be sent. If this method returns true, the
+	 * outcome of the request must be reported with {@link #onSuccess} or
+	 * {@link #onFailure}.
+	 * @param now the current time (timestamp)
+	 * @return true if the request can be sent, false if not
+	 */
+	public synchronized boolean tryAcquire(long now) {
+		if (state == State.CLOSED) {
+			return true;
+		}
+
+		if (state == State.OPEN) {
+			if (now < openUntil) {
+				rejected++;
+				return false;
+			}
+			state = State.HALF_OPEN;
+			probing = false;
+		}
+
+		//half-open
+		if (probing) {
+			rejected++;
+			return false;
+		}
+		probing = true;
+		return true;
+	}
+
+	/**
+	 * Records that a request succeeded. This includes responses that were
+	 * errors, as long as they show that the chat system is up.
+	 */
+	public synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			logger.info("Circuit breaker \"" + name + "\" closed.");
+		}
+
+		state = State.CLOSED;
+		failures = 0;
+		openTime = minOpenTime;
+		probing = false;
+	}
+
+	/**
+	 * Records that a request that was let through by {@link #tryAcquire} was
+	 * not sent after all (for example, because no pooled connection became
+	 * free in time). This says nothing about whether the chat system is up.
+	 */
+	public synchronized void onNotSent() {
+		probing = false;
+	}
+
+	/**
+	 * Records that a request failed.
+	 * @param now the current time (timestamp)
+	 */
+	public synchronized void onFailure(long now) {
+		failures++;
+		switch (state) {
+		case CLOSED:
+			if (failures < failureThreshold) {
+				return;
+			}
+			break;
+		case HALF_OPEN:
+			openTime = Math.min(openTime * 2, maxOpenTime);
+			break;
+		case OPEN:
+			//a request that was sent before the breaker opened
+			return;
+		}
+
+		state = State.OPEN;
+		openUntil = now + openTime;
+		probing = false;
+		trips++;
+		logger.warning("Circuit breaker \"" + name + "\" opened after " + failures + " failures in a row. Requests will not be sent for " + openTime + "ms.");
+	}
+
+	/**
+	 * Gets the name of the breaker.
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the state of the breaker.
+	 * @return the state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Gets when the breaker will let a request through again.
+	 * @param now the current time (timestamp)
+	 * @return the time (timestamp, may be in the past)
+	 */
+	public synchronized long getRetryAt(long now) {
+		return (state == State.OPEN) ? openUntil : now;
+	}
+
+	/**
+	 * Gets the number of requests that have failed in a row.
+	 * @return the number of failures
+	 */
+	public synchronized int getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Gets the number of times the breaker opened.
+	 * @return the number of times
+	 */
+	public synchronized long getTrips() {
+		return trips;
+	}
+
+	/**
+	 * Gets the number of requests that were not sent because the breaker was
+	 * open.
+	 * @return the number of requests
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return name + ": state=" + state + ", failures=" + failures + ", trips=" + trips + ", rejected=" + rejected;
+	}
+}
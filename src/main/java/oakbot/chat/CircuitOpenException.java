@@ -0,0 +1,30 @@
+package oakbot.chat;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request is not sent because the chat system is failing and
+ * its {@link CircuitBreaker} is open.
+ * @author Michael Angstadt
+ */
+public class CircuitOpenException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final CircuitBreaker breaker;
+
+	/**
+	 * @param breaker the open circuit breaker
+	 */
+	public CircuitOpenException(CircuitBreaker breaker) {
+		super("Circuit breaker \"" + breaker.getName() + "\" is open. Not sending request.");
+		this.breaker = breaker;
+	}
+
+	/**
+	 * Gets the circuit breaker that is open.
+	 * @return the circuit breaker
+	 */
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+}
@@ -0,0 +1,289 @@
+package oakbot.chat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Decodes the chat events that Stackoverflow chat returns. The JSON is read
+ * token by token straight into {@link ChatMessage} objects, without building
+ * a tree of the whole response first. Events that are not new messages are
+ * skipped over.
+ * @author Michael Angstadt
+ */
+final class EventDecoder {
+	/**
+	 * The event type of a new chat message.
+	 */
+	static final int EVENT_MESSAGE_POSTED = 1;
+
+	/**
+	 * Thread-safe, and caches the field names it has seen, so it is shared by
+	 * all parsers.
+	 */
+	static final JsonFactory factory = new JsonFactory();
+
+	/**
+	 * The chat system returns UNIX timestamps, which are converted to the
+	 * local time zone. This is looked up once because
+	 * {@link ZoneId#systemDefault} creates a new object each time it is
+	 * called.
+	 */
+	private static final ZoneId zone = ZoneId.systemDefault();
+
+	private EventDecoder() {
+		//hide
+	}
+
+	/**
+	 * Decodes the response of a single room's event request (for example,
+	 * "/chats/{room}/events").
+	 * @param in the response body
+	 * @return the room's events
+	 * @throws IOException if the response is not valid JSON
+	 */
+	public static Events decodeRoom(InputStream in) throws IOException {
+		try (JsonParser parser = factory.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return new Events(Collections.emptyList(), null);
+			}
+			return readEvents(parser, "events", "time");
+		}
+	}
+
+	/**
+	 * Decodes a response that contains the events of multiple rooms (the
+	 * "/events" request and the WebSocket feed). The events of each room are
+	 * under a field named after the room (for example, "r139").
+	 * @param in the response body
+	 * @return the events of each room (key = room ID)
+	 * @throws IOException if the response is not valid JSON
+	 */
+	public static Map<Integer, Events> decodeRooms(InputStream in) throws IOException {
+		try (JsonParser parser = factory.createParser(in)) {
+			return readRooms(parser);
+		}
+	}
+
+	/**
+	 * Decodes a response that contains the events of multiple rooms.
+	 * @param json the JSON
+	 * @return the events of each room (key = room ID)
+	 * @throws IOException if the JSON is not valid
+	 * @see #decodeRooms(InputStream)
+	 */
+	public static Map<Integer, Events> decodeRooms(String json) throws IOException {
+		try (JsonParser parser = factory.createParser(json)) {
+			return readRooms(parser);
+		}
+	}
+
+	private static Map<Integer, Events> readRooms(JsonParser parser) throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			return Collections.emptyMap();
+		}
+
+		Map<Integer, Events> rooms = new LinkedHashMap<>();
+		String field;
+		while ((field = nextField(parser)) != null) {
+			JsonToken token = parser.nextToken();
+			Integer room = parseRoomField(field);
+			if (room == null || token != JsonToken.START_OBJECT) {
+				parser.skipChildren();
+				continue;
+			}
+
+			rooms.put(room, readEvents(parser, "e", "t"));
+		}
+		return rooms;
+	}
+
+	/**
+	 * Parses the room ID out of a field name such as "r139".
+	 * @param field the field name
+	 * @return the room ID or null if the field is not a room
+	 */
+	private static Integer parseRoomField(String field) {
+		if (field.length() < 2 || field.charAt(0) != 'r') {
+			return null;
+		}
+
+		int room = 0;
+		for (int i = 1; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c < '0' || c > '9') {
+				return null;
+			}
+			room = room * 10 + (c - '0');
+		}
+		return room;
+	}
+
+	/**
+	 * Reads an object that contains a list of events and an event cursor. The
+	 * parser must be positioned on the object's start token.
+	 * @param parser the parser
+	 * @param eventsField the name of the field that holds the events
+	 * @param cursorField the name of the field that holds the cursor
+	 * @return the events
+	 * @throws IOException if the JSON is not valid
+	 */
+	private static Events readEvents(JsonParser parser, String eventsField, String cursorField) throws IOException {
+		List<ChatMessage> messages = null;
+		Long cursor = null;
+
+		String field;
+		while ((field = nextField(parser)) != null) {
+			JsonToken token = parser.nextToken();
+			if (eventsField.equals(field) && token == JsonToken.START_ARRAY) {
+				messages = new ArrayList<>();
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					ChatMessage message = readEvent(parser);
+					if (message != null) {
+						messages.add(message);
+					}
+				}
+			} else if (cursorField.equals(field) && token.isNumeric()) {
+				cursor = parser.getLongValue();
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (messages == null) {
+			messages = Collections.emptyList();
+		}
+		return new Events(messages, cursor);
+	}
+
+	/**
+	 * Reads a single event. The parser must be positioned on the event's start
+	 * token.
+	 * @param parser the parser
+	 * @return the message or null if the event is not a new message
+	 * @throws IOException if the JSON is not valid
+	 */
+	private static ChatMessage readEvent(JsonParser parser) throws IOException {
+		String content = null, username = null;
+		int edits = 0, roomId = 0, userId = 0;
+		long messageId = 0, timestamp = 0;
+		boolean hasTimestamp = false;
+
+		String field;
+		while ((field = nextField(parser)) != null) {
+			parser.nextToken();
+			switch (field) {
+			case "event_type":
+				if (parser.getValueAsInt() != EVENT_MESSAGE_POSTED) {
+					skipRest(parser);
+					return null;
+				}
+				break;
+			case "content":
+				content = parser.getValueAsString();
+				break;
+			case "edits":
+				edits = parser.getValueAsInt();
+				break;
+			case "message_id":
+				messageId = parser.getValueAsLong();
+				break;
+			case "room_id":
+				roomId = parser.getValueAsInt();
+				break;
+			case "time_stamp":
+				timestamp = parser.getValueAsLong();
+				hasTimestamp = true;
+				break;
+			case "user_id":
+				userId = parser.getValueAsInt();
+				break;
+			case "user_name":
+				username = parser.getValueAsString();
+				break;
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		ChatMessage message = new ChatMessage();
+		message.setContent(content);
+		message.setEdits(edits);
+		message.setMessageId(messageId);
+		message.setRoomId(roomId);
+		if (hasTimestamp) {
+			message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamp), zone));
+		}
+		message.setUserId(userId);
+		message.setUsername(username);
+		return message;
+	}
+
+	/**
+	 * Advances to the next field of the current object.
+	 * @param parser the parser
+	 * @return the field name or null if the end of the object was reached
+	 * @throws IOException if the JSON is not valid
+	 */
+	private static String nextField(JsonParser parser) throws IOException {
+		return (parser.nextToken() == JsonToken.FIELD_NAME) ? parser.getCurrentName() : null;
+	}
+
+	/**
+	 * Skips over the rest of the current object.
+	 * @param parser the parser
+	 * @throws IOException if the JSON is not valid
+	 */
+	private static void skipRest(JsonParser parser) throws IOException {
+		while (nextField(parser) != null) {
+			parser.nextToken();
+			parser.skipChildren();
+		}
+	}
+
+	/**
+	 * The new messages from a room's events.
+	 */
+	static class Events {
+		private final List<ChatMessage> messages;
+		private final Long cursor;
+
+		/**
+		 * @param messages the new messages
+		 * @param cursor the position of the room in the chat's event stream
+		 * (may be null)
+		 */
+		public Events(List<ChatMessage> messages, Long cursor) {
+			this.messages = messages;
+			this.cursor = cursor;
+		}
+
+		/**
+		 * Gets the new messages, in the order they appeared in the response.
+		 * @return the messages
+		 */
+		public List<ChatMessage> getMessages() {
+			return messages;
+		}
+
+		/**
+		 * Gets the position of the room in the chat's event stream.
+		 * @return the cursor or null if the response did not include one
+		 */
+		public Long getCursor() {
+			return cursor;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package oakbot.chat;
+
+/**
+ * Is notified when a chat connection could not retrieve all of the messages
+ * that were posted to a room since it was last polled (for example, after a
+ * long network outage in a busy room).
+ * @author Michael Angstadt
+ * @see ChatConnection#setGapHandler
+ */
+@FunctionalInterface
+public interface GapHandler {
+	/**
+	 * Called when messages were missed.
+	 * @param room the room ID
+	 * @param lastMessageId the ID of the last message that was retrieved
+	 * before the gap
+	 * @param firstMessageId the ID of the oldest message that was retrieved
+	 * after the gap. All messages in between were skipped.
+	 */
+	void onGap(int room, long lastMessageId, long firstMessageId);
+}
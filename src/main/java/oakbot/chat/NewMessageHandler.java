@@ -0,0 +1,17 @@
+package oakbot.chat;
+
+/**
+ * Is notified when new messages are pushed to a chat connection, so that the
+ * room can be polled right away instead of at its next scheduled poll.
+ * @author Michael Angstadt
+ * @see ChatConnection#setNewMessageHandler
+ */
+@FunctionalInterface
+public interface NewMessageHandler {
+	/**
+	 * Called when new messages are waiting to be retrieved with
+	 * {@link ChatConnection#getNewMessages(int)}.
+	 * @param room the room ID
+	 */
+	void onNewMessages(int room);
+}
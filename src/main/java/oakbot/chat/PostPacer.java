@@ -0,0 +1,201 @@
+package oakbot.chat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out posts so that they rarely exceed the chat system's posting rate
+ * limits. The limits are not published, so they are learned from the 409
+ * responses the chat system sends back when the bot posts too quickly ("You
+ * can perform this action again in N seconds").
+ * <p>
+ * Two limits are modeled: the minimum amount of time between two posts to the
+ * same room, and the minimum amount of time between any two posts. A 409
+ * response sets the room's spacing to at least the penalty it contained (or
+ * doubles it, if that is more), and raises the global spacing to at least half
+ * of the penalty. The learned spacing then relaxes back to its minimum over
+ * time, halving every "half-life" that passes without another 409.
+ * </p>
+ * @author Michael Angstadt
+ */
+class PostPacer {
+	private final long minRoomSpacing, minGlobalSpacing, maxSpacing, halfLife;
+	private final Map<Integer, Limit> rooms = new HashMap<>();
+	private final Limit global;
+	private long avoided, rejected;
+
+	/**
+	 * Creates a pacer that does not space out posts until it receives a 409
+	 * response. The learned spacing is capped at one minute and has a
+	 * half-life of one minute.
+	 */
+	public PostPacer() {
+		this(0, 0, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+	}
+
+	/**
+	 * @param minRoomSpacing the minimum amount of time between two posts to
+	 * the same room (in milliseconds)
+	 * @param minGlobalSpacing the minimum amount of time between any two posts
+	 * (in milliseconds)
+	 * @param maxSpacing the max spacing that can be learned (in milliseconds)
+	 * @param halfLife how long it takes the learned spacing to relax halfway
+	 * back to its minimum (in milliseconds)
+	 */
+	public PostPacer(long minRoomSpacing, long minGlobalSpacing, long maxSpacing, long halfLife) {
+		this.minRoomSpacing = minRoomSpacing;
+		this.minGlobalSpacing = minGlobalSpacing;
+		this.maxSpacing = maxSpacing;
+		this.halfLife = halfLife;
+		global = new Limit(minGlobalSpacing);
+	}
+
+	/**
+	 * Determines when a post can be sent to a room.
+	 * @param room the room ID
+	 * @param now the current time (timestamp)
+	 * @return the earliest time the post can be sent without exceeding the
+	 * learned limits (timestamp, may be in the past)
+	 */
+	public synchronized long readyAt(int room, long now) {
+		Limit limit = rooms.get(room);
+		long readyAt = global.readyAt(now);
+		return (limit == null) ? readyAt : Math.max(readyAt, limit.readyAt(now));
+	}
+
+	/**
+	 * Records that a post was accepted. The post is only counted as an
+	 * avoided 409 response if it was held back for at least half of the
+	 * spacing that applied to it. Shorter holds are usually just the tail end
+	 * of a spacing that had almost passed anyway.
+	 * @param room the room ID
+	 * @param now the time the post was sent (timestamp)
+	 * @param heldFor how long the post was held back to stay within the
+	 * learned limits (in milliseconds)
+	 */
+	public synchronized void onPosted(int room, long now, long heldFor) {
+		Limit limit = room(room);
+		long spacing = Math.max(limit.spacing(now), global.spacing(now));
+		if (heldFor > 0 && heldFor * 2 >= spacing) {
+			avoided++;
+		}
+
+		limit.lastPost = now;
+		global.lastPost = now;
+	}
+
+	/**
+	 * Records that a post was rejected because the bot posted too quickly.
+	 * @param room the room ID
+	 * @param now the time the post was sent (timestamp)
+	 * @param penalty how long the chat system said to wait before posting
+	 * again (in milliseconds)
+	 */
+	public synchronized void onRejected(int room, long now, long penalty) {
+		rejected++;
+
+		Limit limit = room(room);
+		limit.lastPost = now;
+		limit.penaltyUntil = Math.max(limit.penaltyUntil, now + penalty);
+		limit.tighten(now, Math.max(limit.spacing(now) * 2, penalty));
+		global.tighten(now, Math.max(global.spacing(now), penalty / 2));
+	}
+
+	/**
+	 * Gets the number of posts that were held back for a good part of the
+	 * learned spacing, and then accepted. Each of these is a 409 response that
+	 * was most likely avoided.
+	 * @return the number of posts
+	 */
+	public synchronized long getAvoided() {
+		return avoided;
+	}
+
+	/**
+	 * Gets the number of posts that were rejected with a 409 response.
+	 * @return the number of posts
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Gets the current spacing of a room.
+	 * @param room the room ID
+	 * @param now the current time (timestamp)
+	 * @return the minimum amount of time between two posts to the room (in
+	 * milliseconds)
+	 */
+	public synchronized long getSpacing(int room, long now) {
+		Limit limit = rooms.get(room);
+		return (limit == null) ? minRoomSpacing : limit.spacing(now);
+	}
+
+	/**
+	 * Gets the current global spacing.
+	 * @param now the current time (timestamp)
+	 * @return the minimum amount of time between any two posts (in
+	 * milliseconds)
+	 */
+	public synchronized long getGlobalSpacing(long now) {
+		return global.spacing(now);
+	}
+
+	@Override
+	public synchronized String toString() {
+		long now = System.currentTimeMillis();
+		return "avoided=" + avoided + ", rejected=" + rejected + ", globalSpacing=" + global.spacing(now) + "ms";
+	}
+
+	private Limit room(int room) {
+		return rooms.computeIfAbsent(room, k -> new Limit(minRoomSpacing));
+	}
+
+	/**
+	 * A learned minimum amount of time between posts.
+	 */
+	private class Limit {
+		private final long min;
+
+		/**
+		 * The spacing when it was last tightened.
+		 */
+		private long learned;
+		private long tightenedAt;
+
+		/**
+		 * When the last post was sent (timestamp).
+		 */
+		private long lastPost = Long.MIN_VALUE / 2;
+
+		/**
+		 * Nothing can be posted until this time (timestamp).
+		 */
+		private long penaltyUntil;
+
+		public Limit(long min) {
+			this.min = min;
+			learned = min;
+		}
+
+		public long spacing(long now) {
+			if (learned <= min || halfLife <= 0) {
+				return min;
+			}
+
+			double halfLives = (now - tightenedAt) / (double) halfLife;
+			long excess = (long) ((learned - min) * Math.pow(0.5, halfLives));
+			return min + excess;
+		}
+
+		public void tighten(long now, long spacing) {
+			learned = Math.max(min, Math.min(maxSpacing, spacing));
+			tightenedAt = now;
+		}
+
+		public long readyAt(long now) {
+			return Math.max(penaltyUntil, lastPost + spacing(now));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package oakbot.chat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Wraps a chat connection and records all of the new messages it receives and
+ * all of the messages the bot posts to a file. The recording can then be
+ * replayed with a {@link ReplayChat} to load test the bot offline with real
+ * traffic.
+ * @author Michael Angstadt
+ * @see ChatRecording
+ */
+public class RecordingChat implements ChatConnection, Closeable {
+	private static final Logger logger = Logger.getLogger(RecordingChat.class.getName());
+
+	private final ChatConnection connection;
+	private final ChatRecording.Writer writer;
+
+	/**
+	 * When the most recent batch of new messages was received from each room.
+	 * <ul>
+	 * <li><b>Key:</b> The room ID.</li>
+	 * <li><b>Value:</b> The time (timestamp).</li>
+	 * </ul>
+	 */
+	private final Map<Integer, Long> lastReceived = new ConcurrentHashMap<>();
+
+	/**
+	 * @param connection the connection to record
+	 * @param file the file to append the recording to (created if it doesn't
+	 * exist)
+	 * @throws IOException if there's a problem opening the file
+	 */
+	public RecordingChat(ChatConnection connection, Path file) throws IOException {
+		this.connection = connection;
+		writer = new ChatRecording.Writer(file);
+	}
+
+	@Override
+	public void login(String email, String password) throws IllegalArgumentException, IOException {
+		connection.login(email, password);
+	}
+
+	@Override
+	public void joinRoom(int roomId) throws IOException {
+		connection.joinRoom(roomId);
+	}
+
+	@Override
+	public void sendMessage(int room, String message) throws IOException {
+		record(room, message, null);
+		connection.sendMessage(room, message);
+	}
+
+	@Override
+	public void sendMessage(int room, String message, SplitStrategy splitStrategy) throws IOException {
+		record(room, message, splitStrategy);
+		connection.sendMessage(room, message, splitStrategy);
+	}
+
+	@Override
+	public List<ChatMessage> getMessages(int room, int count) throws IOException {
+		return connection.getMessages(room, count);
+	}
+
+	@Override
+	public List<ChatMessage> getNewMessages(int room) throws IOException {
+		List<ChatMessage> messages = connection.getNewMessages(room);
+		record(room, messages);
+		return messages;
+	}
+
+	@Override
+	public Map<Integer, List<ChatMessage>> getNewMessages(Collection<Integer> rooms) throws IOException {
+		Map<Integer, List<ChatMessage>> messages = connection.getNewMessages(rooms);
+		for (Map.Entry<Integer, List<ChatMessage>> entry : messages.entrySet()) {
+			record(entry.getKey(), entry.getValue());
+		}
+		return messages;
+	}
+
+	@Override
+	public boolean supportsBulkPolling() {
+		return connection.supportsBulkPolling();
+	}
+
+	@Override
+	public void setGapHandler(GapHandler handler) {
+		connection.setGapHandler(handler);
+	}
+
+	@Override
+	public void setNewMessageHandler(NewMessageHandler handler) {
+		connection.setNewMessageHandler(handler);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		connection.flush();
+	}
+
+	/**
+	 * Closes the recording file. The wrapped connection is not closed.
+	 * @throws IOException if there's a problem closing the file
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void record(int room, List<ChatMessage> messages) {
+		if (messages.isEmpty()) {
+			return;
+		}
+
+		lastReceived.put(room, System.currentTimeMillis());
+		try {
+			writer.batch(room, messages);
+		} catch (IOException e) {
+			//a problem with the recording should not affect the bot
+			logger.log(Level.SEVERE, "Could not record new messages.", e);
+		}
+	}
+
+	private void record(int room, String message, SplitStrategy splitStrategy) {
+		Long received = lastReceived.get(room);
+		long latency = (received == null) ? -1 : System.currentTimeMillis() - received;
+		try {
+			writer.post(room, latency, message, splitStrategy);
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not record posted message.", e);
+		}
+	}
+}
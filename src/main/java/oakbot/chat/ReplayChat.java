@@ -0,0 +1,240 @@
+package oakbot.chat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+
+import oakbot.chat.ChatRecording.Batch;
+import oakbot.chat.ChatRecording.Post;
+
+/**
+ * A chat connection that replays a {@link ChatRecording} instead of
+ * connecting to a chat system, and captures the messages that the bot posts.
+ * This allows the bot's throughput and response times to be measured offline
+ * with real traffic.
+ * <p>
+ * The recording's clock starts when the bot logs in. Each batch of new
+ * messages is returned once the (scaled) amount of time that passed before it
+ * was recorded has passed. If the replay runs {@link #AS_FAST_AS_POSSIBLE as
+ * fast as possible}, one batch is returned each time a room is polled,
+ * regardless of the clock.
+ * </p>
+ * @author Michael Angstadt
+ * @see RecordingChat
+ */
+public class ReplayChat implements ChatConnection {
+	/**
+	 * Replays the recording without waiting in between batches.
+	 */
+	public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The number of replayed messages that are kept for
+	 * {@link #getMessages}.
+	 */
+	private static final int HISTORY_SIZE = 100;
+
+	/**
+	 * The max message size of Stackoverflow chat, which determines how
+	 * messages are split up.
+	 */
+	private static final int MAX_MESSAGE_LENGTH = 500;
+
+	private final double speed;
+	private final Ticker ticker;
+	private final Map<Integer, Room> rooms = new HashMap<>();
+	private final List<Post> posts = new ArrayList<>();
+	private int remaining;
+	private long parts;
+	private boolean started;
+	private long start;
+
+	/**
+	 * @param file the recording
+	 * @param speed how fast to replay the recording (for example, 1 for real
+	 * time, 10 for ten times faster than real time, or
+	 * {@link #AS_FAST_AS_POSSIBLE})
+	 * @throws IOException if there's a problem reading the recording
+	 */
+	public ReplayChat(Path file, double speed) throws IOException {
+		this(ChatRecording.read(file), speed);
+	}
+
+	/**
+	 * @param recording the recording
+	 * @param speed how fast to replay the recording (for example, 1 for real
+	 * time, 10 for ten times faster than real time, or
+	 * {@link #AS_FAST_AS_POSSIBLE})
+	 */
+	public ReplayChat(ChatRecording recording, double speed) {
+		this(recording, speed, Ticker.systemTicker());
+	}
+
+	/**
+	 * @param recording the recording
+	 * @param speed how fast to replay the recording
+	 * @param ticker the clock that the replay is timed with
+	 */
+	ReplayChat(ChatRecording recording, double speed, Ticker ticker) {
+		if (speed <= 0) {
+			throw new IllegalArgumentException("Speed must be positive.");
+		}
+		this.speed = speed;
+		this.ticker = ticker;
+
+		for (Batch batch : recording.getBatches()) {
+			room(batch.getRoom()).batches.add(batch);
+			remaining++;
+		}
+	}
+
+	@Override
+	public synchronized void login(String email, String password) {
+		startClock();
+	}
+
+	@Override
+	public synchronized void joinRoom(int roomId) {
+		room(roomId);
+	}
+
+	@Override
+	public void sendMessage(int room, String message) {
+		capture(room, message, null, 1);
+	}
+
+	@Override
+	public void sendMessage(int room, String message, SplitStrategy splitStrategy) {
+		//split it up like a real connection would, so the cost is measured too
+		int parts = splitStrategy.split(message, MAX_MESSAGE_LENGTH).size();
+		capture(room, message, splitStrategy, parts);
+	}
+
+	/**
+	 * Gets the room's most recently replayed messages. The recording only
+	 * contains new messages, so the room's history from before the recording
+	 * started is not available.
+	 */
+	@Override
+	public synchronized List<ChatMessage> getMessages(int room, int count) {
+		Deque<ChatMessage> history = room(room).history;
+		List<ChatMessage> messages = new ArrayList<>(history);
+		return messages.subList(Math.max(0, messages.size() - count), messages.size());
+	}
+
+	@Override
+	public synchronized List<ChatMessage> getNewMessages(int roomId) {
+		startClock();
+
+		Room room = room(roomId);
+		long elapsed = elapsed();
+		List<ChatMessage> messages = new ArrayList<>();
+		while (!room.batches.isEmpty()) {
+			Batch batch = room.batches.peek();
+			if (speed != AS_FAST_AS_POSSIBLE && batch.getOffset() / speed > elapsed) {
+				break;
+			}
+
+			room.batches.remove();
+			remaining--;
+			for (ChatMessage message : batch.getMessages()) {
+				messages.add(new ChatMessage(message));
+			}
+
+			if (speed == AS_FAST_AS_POSSIBLE) {
+				break;
+			}
+		}
+
+		if (!messages.isEmpty()) {
+			room.lastReceived = elapsed;
+			for (ChatMessage message : messages) {
+				if (room.history.size() == HISTORY_SIZE) {
+					room.history.remove();
+				}
+				room.history.add(message);
+			}
+		}
+
+		return messages;
+	}
+
+	@Override
+	public void flush() {
+		//messages are not queued
+	}
+
+	/**
+	 * Determines if every batch of new messages in the recording has been
+	 * returned.
+	 * @return true if the replay is finished, false if not
+	 */
+	public synchronized boolean isFinished() {
+		return remaining == 0;
+	}
+
+	/**
+	 * Gets the messages that the bot posted. Each post's offset is the time
+	 * since the replay started, in real (unscaled) time.
+	 * @return the posts, in the order they were sent
+	 */
+	public synchronized List<Post> getPosts() {
+		return new ArrayList<>(posts);
+	}
+
+	/**
+	 * Gets the number of posts that the bot's messages were split up into.
+	 * @return the number of posts
+	 */
+	public synchronized long getParts() {
+		return parts;
+	}
+
+	private synchronized void capture(int roomId, String message, SplitStrategy splitStrategy, int parts) {
+		startClock();
+
+		Room room = room(roomId);
+		long elapsed = elapsed();
+		long latency = (room.lastReceived < 0) ? -1 : elapsed - room.lastReceived;
+		posts.add(new Post(elapsed, roomId, latency, message, splitStrategy));
+		this.parts += parts;
+	}
+
+	private void startClock() {
+		if (!started) {
+			start = ticker.read();
+			started = true;
+		}
+	}
+
+	/**
+	 * Gets the amount of real time since the replay started.
+	 * @return the elapsed time (in milliseconds)
+	 */
+	private long elapsed() {
+		return TimeUnit.NANOSECONDS.toMillis(ticker.read() - start);
+	}
+
+	private Room room(int roomId) {
+		return rooms.computeIfAbsent(roomId, k -> new Room());
+	}
+
+	private static class Room {
+		private final Deque<Batch> batches = new ArrayDeque<>();
+		private final Deque<ChatMessage> history = new ArrayDeque<>();
+
+		/**
+		 * When the most recent batch was returned (milliseconds since the
+		 * replay started) or -1 if none.
+		 */
+		private long lastReceived = -1;
+	}
+}
@@ -0,0 +1,114 @@
+package oakbot.chat;
+
+/**
+ * Records how long the messages that are posted to a single chat room wait in
+ * the room's outbound queue.
+ * @author Michael Angstadt
+ */
+public class SendStatistics {
+	private long sent, dropped, throttled, totalWait, maxWait, lastWait;
+	private int depth;
+
+	/**
+	 * Records that a message was added to the queue.
+	 */
+	synchronized void recordQueued() {
+		depth++;
+	}
+
+	/**
+	 * Records that the first part of a message was posted.
+	 * @param wait how long the message waited in the queue (in milliseconds)
+	 */
+	synchronized void recordStarted(long wait) {
+		sent++;
+		totalWait += wait;
+		lastWait = wait;
+		if (wait > maxWait) {
+			maxWait = wait;
+		}
+	}
+
+	/**
+	 * Records that a message left the queue, either because all of its parts
+	 * were posted or because it was dropped.
+	 * @param posted true if it was posted, false if it was dropped
+	 */
+	synchronized void recordDone(boolean posted) {
+		depth--;
+		if (!posted) {
+			dropped++;
+		}
+	}
+
+	/**
+	 * Records that the chat system rejected a post because the bot was posting
+	 * too quickly.
+	 */
+	synchronized void recordThrottled() {
+		throttled++;
+	}
+
+	/**
+	 * Gets the number of messages that are waiting to be posted, including
+	 * the one that is being posted.
+	 * @return the queue depth
+	 */
+	public synchronized int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the number of messages that started being posted.
+	 * @return the number of messages
+	 */
+	public synchronized long getSent() {
+		return sent;
+	}
+
+	/**
+	 * Gets the number of messages that could not be posted.
+	 * @return the number of messages
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Gets the number of times the chat system told the bot to slow down.
+	 * @return the number of 409 responses
+	 */
+	public synchronized long getThrottled() {
+		return throttled;
+	}
+
+	/**
+	 * Gets the average amount of time a message waited in the queue before
+	 * its first part was posted.
+	 * @return the average time-in-queue (in milliseconds)
+	 */
+	public synchronized long getAverageWait() {
+		return (sent == 0) ? 0 : totalWait / sent;
+	}
+
+	/**
+	 * Gets the longest amount of time a message waited in the queue.
+	 * @return the max time-in-queue (in milliseconds)
+	 */
+	public synchronized long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Gets how long the most recent message waited in the queue.
+	 * @return the time-in-queue (in milliseconds)
+	 */
+	public synchronized long getLastWait() {
+		return lastWait;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "depth=" + depth + ", sent=" + sent + ", dropped=" + dropped + ", throttled=" + throttled + ", avgWait=" + getAverageWait() + "ms, maxWait=" + maxWait + "ms, lastWait=" + lastWait + "ms";
+	}
+}
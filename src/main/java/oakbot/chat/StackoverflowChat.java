@@ -1,20 +1,30 @@
 package oakbot.chat;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.net.SocketException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -31,7 +41,7 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
@@ -39,6 +49,9 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import oakbot.chat.EventDecoder.Events;
+import oakbot.util.ThreadMode;
+
 /**
  * A connection to Stackoverflow chat.
  * @author Michael Angstadt
@@ -49,14 +62,64 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class StackoverflowChat implements ChatConnection {
 	private static final Logger logger = Logger.getLogger(StackoverflowChat.class.getName());
+	private static final Pattern penaltyRegex = Pattern.compile("\\d+");
+
+	/**
+	 * Reads the JSON responses that are not chat events. It is thread-safe, so
+	 * it is shared instead of being created for each request.
+	 */
+	private static final ObjectMapper mapper = new ObjectMapper(EventDecoder.factory);
 
 	private final HttpClient client;
 	private final Pattern fkeyRegex = Pattern.compile("value=\"([0-9a-f]{32})\"");
-	private final Map<Integer, String> fkeyCache = new HashMap<>();
-	private final Map<Integer, Long> prevMessageIds = new HashMap<>();
+	private final Map<Integer, String> fkeyCache = new ConcurrentHashMap<>();
+	private final Map<Integer, Long> prevMessageIds = new ConcurrentHashMap<>();
+
+	/**
+	 * The position of each room in the chat's event stream, as of the last
+	 * time the room was polled. This is what the multi-room events endpoint
+	 * uses to determine which events are new.
+	 * <ul>
+	 * <li><b>Key:</b> The room ID.</li>
+	 * <li><b>Value:</b> The event cursor.</li>
+	 * </ul>
+	 */
+	private final Map<Integer, Long> eventCursors = new ConcurrentHashMap<>();
 
-	private final MessageSenderThread sender;
+	private final MessageSender sender;
+	private final PostPacer pacer = new PostPacer();
 	private final long retryPause;
+	private final long maxRetryPause = TimeUnit.SECONDS.toMillis(60);
+	private final Map<Endpoint, CircuitBreaker> breakers = new EnumMap<>(Endpoint.class);
+	private final ChatSession session;
+	private volatile GapHandler gapHandler;
+	private String email, password;
+
+	/**
+	 * Whether the login cookies and fkeys were loaded from a saved session
+	 * instead of being retrieved from the chat system. If so, they may have
+	 * expired, which is only found out when a request fails.
+	 */
+	private volatile boolean restored;
+
+	/**
+	 * The number of messages to request when checking a room for new
+	 * messages. Each additional request for older messages asks for twice as
+	 * many, up to {@link #MAX_FETCH_SIZE}.
+	 */
+	static final int INITIAL_FETCH_SIZE = 5;
+
+	/**
+	 * The max number of messages to request at once.
+	 */
+	static final int MAX_FETCH_SIZE = 100;
+
+	/**
+	 * The max number of new messages to retrieve from a room at once. If more
+	 * messages than this were posted since the room was last checked, the
+	 * older ones are skipped and the {@link GapHandler} is notified.
+	 */
+	static final int MAX_CATCH_UP = 500;
 
 	/**
 	 * Creates a new connection to Stackoverflow chat.
@@ -73,17 +136,66 @@ public class StackoverflowChat implements ChatConnection {
 	 * retries (in milliseconds)
 	 */
 	public StackoverflowChat(HttpClient client, long retryPause) {
+		this(client, retryPause, ThreadMode.PLATFORM);
+	}
+
+	/**
+	 * Creates a new connection to Stackoverflow chat.
+	 * @param client the HTTP client
+	 * @param retryPause the base amount of time to wait in between request
+	 * retries (in milliseconds)
+	 * @param threadMode the kind of thread to send messages from
+	 */
+	public StackoverflowChat(HttpClient client, long retryPause, ThreadMode threadMode) {
+		this(client, retryPause, threadMode, null);
+	}
+
+	/**
+	 * Creates a new connection to Stackoverflow chat.
+	 * @param client the HTTP client (must use the session's cookie store)
+	 * @param retryPause the base amount of time to wait in between request
+	 * retries (in milliseconds)
+	 * @param threadMode the kind of thread to send messages from
+	 * @param session the saved session to resume, and to save the new session
+	 * to (may be null)
+	 */
+	public StackoverflowChat(HttpClient client, long retryPause, ThreadMode threadMode, ChatSession session) {
 		this.client = client;
 		this.retryPause = retryPause;
+		this.session = session;
+		for (Endpoint endpoint : Endpoint.values()) {
+			breakers.put(endpoint, new CircuitBreaker(endpoint.name().toLowerCase()));
+		}
 
-		MessageSenderThread sender = new MessageSenderThread();
+		MessageSender sender = new MessageSender(threadMode.threadFactory("MessageSender"));
 		sender.start();
 		this.sender = sender;
-
 	}
 
+	/**
+	 * Logs in. If a saved session exists for the account, it is resumed
+	 * instead, and the bot only logs in again if the chat system rejects it.
+	 */
 	@Override
 	public void login(String email, String password) throws IOException {
+		this.email = email;
+		this.password = password;
+
+		if (session != null && session.hasLogin(email)) {
+			logger.info("Resuming saved session of " + email + ".");
+			restored = true;
+			return;
+		}
+
+		authenticate();
+	}
+
+	/**
+	 * Logs in with the account's credentials.
+	 * @throws IOException if there's an I/O problem
+	 * @throws IllegalArgumentException if the credentials are bad
+	 */
+	private void authenticate() throws IOException {
 		logger.info("Logging in as " + email + "...");
 
 		String fkey = parseFkeyFromUrl("https://stackoverflow.com/users/login");
@@ -107,6 +219,45 @@ public class StackoverflowChat implements ChatConnection {
 		if (statusCode != 302) {
 			throw new IllegalArgumentException("Bad login");
 		}
+
+		if (session != null) {
+			session.loggedIn(email);
+		}
+	}
+
+	/**
+	 * Logs in again because the chat system rejected the saved session. This
+	 * is only done once, so that bad credentials or a genuine lack of
+	 * permission do not cause a login for every request.
+	 * @throws IOException if there's a problem logging in
+	 */
+	private synchronized void renewSession() throws IOException {
+		if (!restored) {
+			//already renewed by another thread
+			return;
+		}
+
+		logger.info("Saved session has expired.");
+		restored = false;
+		fkeyCache.clear();
+		session.clear();
+		authenticate();
+	}
+
+	/**
+	 * Sends a request that depends on the session, logging in again and
+	 * resending it if the saved session has expired.
+	 * @param request sends the request
+	 * @return the value returned by the request
+	 * @throws IOException if there's a problem sending the request
+	 */
+	private <T> T withSession(SessionRequest<T> request) throws IOException {
+		try {
+			return request.send();
+		} catch (SessionExpiredException e) {
+			renewSession();
+			return request.send();
+		}
 	}
 
 	@Override
@@ -130,40 +281,49 @@ public class StackoverflowChat implements ChatConnection {
 
 	@Override
 	public List<ChatMessage> getMessages(int room, int num) throws IOException {
-		String fkey = getFKey(room);
+		return getMessages(room, num, null, false);
+	}
 
-		HttpPost request = new HttpPost("https://chat.stackoverflow.com/chats/" + room + "/events");
-		//@formatter:off
-		List<NameValuePair> params = Arrays.asList(
-			new BasicNameValuePair("mode", "messages"),
-			new BasicNameValuePair("msgCount", num + ""),
-			new BasicNameValuePair("fkey", fkey)
-		);
-		//@formatter:on
-		request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
+	/**
+	 * Gets the messages that were posted to a room before a given message.
+	 * @param room the room ID
+	 * @param num the number of messages to retrieve
+	 * @param before the ID of the message or null to get the room's most
+	 * recent messages
+	 * @param updateCursor true to record the room's current position in the
+	 * event stream, which means that all messages up to this point have been
+	 * seen
+	 * @return the messages, oldest first
+	 * @throws IOException if there's a problem retrieving the messages
+	 */
+	private List<ChatMessage> getMessages(int room, int num, Long before, boolean updateCursor) throws IOException {
+		Events events = withSession(() -> {
+			String fkey = getFKey(room);
+
+			HttpPost request = new HttpPost("https://chat.stackoverflow.com/chats/" + room + "/events");
+			List<NameValuePair> params = new ArrayList<>(4);
+			params.add(new BasicNameValuePair("mode", "messages"));
+			params.add(new BasicNameValuePair("msgCount", num + ""));
+			if (before != null) {
+				params.add(new BasicNameValuePair("before", before + ""));
+			}
+			params.add(new BasicNameValuePair("fkey", fkey));
+			request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
 
-		JsonNode node = executeWithRetriesJson(request);
-		JsonNode events = node.get("events");
-		if (events == null) {
-			return Collections.emptyList();
+			return executeWithRetriesJson(request, Endpoint.EVENTS, EventDecoder::decodeRoom);
+		});
+		if (updateCursor && events.getCursor() != null) {
+			eventCursors.put(room, events.getCursor());
 		}
 
-		Iterator<JsonNode> it = events.elements();
-		List<ChatMessage> messages = new ArrayList<>();
-		while (it.hasNext()) {
-			JsonNode element = it.next();
-			ChatMessage chatMessage = parseChatMessage(element);
-			messages.add(chatMessage);
-		}
-
-		return messages;
+		return events.getMessages();
 	}
 
 	@Override
 	public List<ChatMessage> getNewMessages(int room) throws IOException {
 		Long prevMessageId = prevMessageIds.get(room);
 		if (prevMessageId == null) {
-			List<ChatMessage> messages = getMessages(room, 1);
+			List<ChatMessage> messages = getMessages(room, 1, null, true);
 
 			if (messages.isEmpty()) {
 				prevMessageId = 0L;
@@ -176,31 +336,208 @@ public class StackoverflowChat implements ChatConnection {
 			return Collections.emptyList();
 		}
 
-		//keep retrieving more and more messages until we got all of the ones that came in since we last pinged
-		List<ChatMessage> messages;
-		for (int count = 5; true; count += 5) {
-			messages = getMessages(room, count);
-			if (messages.isEmpty() || messages.get(0).getMessageId() <= prevMessageId) {
+		List<ChatMessage> messages = getMessagesSince(room, prevMessageId);
+		if (!messages.isEmpty()) {
+			prevMessageIds.put(room, messages.get(messages.size() - 1).getMessageId());
+		}
+		return messages;
+	}
+
+	/**
+	 * Gets the messages that were posted to a room after a given message.
+	 * @param room the room ID
+	 * @param prevMessageId the ID of the message
+	 * @return the messages that were posted after the given message
+	 * @throws IOException if there's a problem retrieving the messages
+	 */
+	List<ChatMessage> getMessagesSince(int room, long prevMessageId) throws IOException {
+		/*
+		 * Page backwards through the room's messages until the previous
+		 * message is reached. Each page only contains messages that are older
+		 * than the ones already retrieved, and is twice as big as the last.
+		 */
+		LinkedList<List<ChatMessage>> pages = new LinkedList<>();
+		int retrieved = 0;
+		int count = INITIAL_FETCH_SIZE;
+		Long before = null;
+		boolean gap = false;
+		while (true) {
+			List<ChatMessage> page = getMessages(room, count, before, before == null);
+			if (page.isEmpty()) {
+				break;
+			}
+
+			pages.addFirst(page);
+			long oldest = page.get(0).getMessageId();
+			if (oldest <= prevMessageId || page.size() < count) {
+				//reached the previous message or the beginning of the room
+				break;
+			}
+
+			retrieved += page.size();
+			if (retrieved >= MAX_CATCH_UP) {
+				gap = true;
 				break;
 			}
+
+			before = oldest;
+			count = Math.min(count * 2, MAX_FETCH_SIZE);
 		}
 
 		//only return the new messages
-		int pos = -1;
-		for (int i = 0; i < messages.size(); i++) {
-			ChatMessage message = messages.get(i);
-			if (message.getMessageId() > prevMessageId) {
-				pos = i;
-				break;
+		List<ChatMessage> messages = new ArrayList<>();
+		for (List<ChatMessage> page : pages) {
+			for (ChatMessage message : page) {
+				if (message.getMessageId() > prevMessageId) {
+					messages.add(message);
+				}
 			}
 		}
 
-		if (pos < 0) {
-			return Collections.emptyList();
+		if (gap) {
+			long firstMessageId = messages.get(0).getMessageId();
+			logger.warning("More than " + MAX_CATCH_UP + " messages were posted to room " + room + " since it was last checked. Skipping the messages between " + prevMessageId + " and " + firstMessageId + ".");
+
+			GapHandler handler = gapHandler;
+			if (handler != null) {
+				handler.onGap(room, prevMessageId, firstMessageId);
+			}
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Gets the new messages of several rooms with a single request to the
+	 * chat's multi-room events endpoint. Rooms that have not been polled
+	 * before are polled individually first.
+	 */
+	@Override
+	public Map<Integer, List<ChatMessage>> getNewMessages(Collection<Integer> rooms) throws IOException {
+		Map<Integer, List<ChatMessage>> newMessages = new LinkedHashMap<>();
+
+		List<Integer> polled = new ArrayList<>(rooms.size());
+		for (Integer room : rooms) {
+			if (eventCursors.containsKey(room) && prevMessageIds.containsKey(room)) {
+				polled.add(room);
+			} else {
+				newMessages.put(room, getNewMessages(room));
+			}
+		}
+
+		if (polled.isEmpty()) {
+			return newMessages;
+		}
+
+		Map<Integer, Events> response = withSession(() -> {
+			List<NameValuePair> params = new ArrayList<>(polled.size() + 1);
+			for (Integer room : polled) {
+				params.add(new BasicNameValuePair("r" + room, eventCursors.get(room) + ""));
+			}
+			params.add(new BasicNameValuePair("fkey", getFKey(polled.get(0))));
+
+			HttpPost request = new HttpPost("https://chat.stackoverflow.com/events");
+			request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
+
+			return executeWithRetriesJson(request, Endpoint.EVENTS, EventDecoder::decodeRooms);
+		});
+
+		for (Integer room : rooms) {
+			if (newMessages.containsKey(room)) {
+				continue;
+			}
+
+			//the response may also contain events from rooms that were not requested
+			Events events = response.get(room);
+			if (events == null) {
+				newMessages.put(room, Collections.emptyList());
+				continue;
+			}
+
+			if (events.getCursor() != null) {
+				eventCursors.put(room, events.getCursor());
+			}
+
+			long prevMessageId = prevMessageIds.get(room);
+			List<ChatMessage> messages = new ArrayList<>();
+			for (ChatMessage message : events.getMessages()) {
+				if (message.getRoomId() == room && message.getMessageId() > prevMessageId) {
+					messages.add(message);
+					prevMessageId = message.getMessageId();
+				}
+			}
+
+			prevMessageIds.put(room, prevMessageId);
+			newMessages.put(room, messages);
+		}
+
+		return newMessages;
+	}
+
+	@Override
+	public boolean supportsBulkPolling() {
+		return true;
+	}
+
+	@Override
+	public void setGapHandler(GapHandler handler) {
+		gapHandler = handler;
+	}
+
+	/**
+	 * Gets the address of the WebSocket that pushes chat events to the bot.
+	 * The events of all the rooms the bot is in are pushed through the same
+	 * WebSocket, no matter which room's ID is used to get the address.
+	 * @param room the ID of a room the bot is in
+	 * @return the WebSocket address
+	 * @throws IOException if there's a problem getting the address
+	 */
+	URI getWebSocketUri(int room) throws IOException {
+		return withSession(() -> requestWebSocketUri(room));
+	}
+
+	private URI requestWebSocketUri(int room) throws IOException {
+		String fkey = getFKey(room);
+
+		HttpPost request = new HttpPost("https://chat.stackoverflow.com/ws-auth");
+		//@formatter:off
+		List<NameValuePair> params = Arrays.asList(
+			new BasicNameValuePair("roomid", room + ""),
+			new BasicNameValuePair("fkey", fkey)
+		);
+		//@formatter:on
+		request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
+
+		JsonNode node = executeWithRetriesJson(request, Endpoint.EVENTS);
+		JsonNode url = node.get("url");
+		if (url == null) {
+			throw new IOException("WebSocket address not found in response: " + node);
 		}
 
-		prevMessageIds.put(room, messages.get(messages.size() - 1).getMessageId());
-		return messages.subList(pos, messages.size());
+		/*
+		 * The "l" parameter is the time of the last event the client knows
+		 * about. Passing the time of the room's most recent event prevents
+		 * the socket from replaying old events (missed messages are retrieved
+		 * separately).
+		 */
+		request = new HttpPost("https://chat.stackoverflow.com/chats/" + room + "/events");
+		//@formatter:off
+		params = Arrays.asList(
+			new BasicNameValuePair("mode", "messages"),
+			new BasicNameValuePair("msgCount", "1"),
+			new BasicNameValuePair("fkey", fkey)
+		);
+		//@formatter:on
+		request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
+
+		node = executeWithRetriesJson(request, Endpoint.EVENTS);
+		JsonNode time = node.get("time");
+
+		try {
+			return new URI(url.asText() + "?l=" + ((time == null) ? "" : time.asText()));
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid WebSocket address: " + url.asText(), e);
+		}
 	}
 
 	/**
@@ -211,7 +548,7 @@ public class StackoverflowChat implements ChatConnection {
 	 */
 	private String parseFkeyFromUrl(String url) throws IOException {
 		HttpGet request = new HttpGet(url);
-		HttpResponse response = executeWithRetries(request);
+		HttpResponse response = executeWithRetries(request, Endpoint.LOGIN);
 		if (response == null) {
 			throw new IOException("Couldn't load page.");
 		}
@@ -231,36 +568,77 @@ public class StackoverflowChat implements ChatConnection {
 	}
 
 	/**
-	 * Gets the "fkey" parameter for a room.
+	 * Gets the "fkey" parameter for a room, loading the room's webpage if the
+	 * fkey is not known yet. The page is requested again if the request fails.
+	 * No lock is held while the page loads, so the other rooms are not held
+	 * up.
 	 * @param room the room ID
 	 * @return the fkey
 	 * @throws IOException if there's a problem getting the fkey, or if messages
 	 * can't be posted to this room, or if the room doesn't exist
 	 */
-	private synchronized String getFKey(int room) throws IOException {
-		String fkey = fkeyCache.get(room);
+	private String getFKey(int room) throws IOException {
+		String fkey = getCachedFKey(room);
 		if (fkey != null) {
 			return fkey;
 		}
 
-		String roomUrl = "https://chat.stackoverflow.com/rooms/" + room;
-		HttpGet request = new HttpGet(roomUrl);
-		HttpResponse response = executeWithRetries(request);
+		HttpGet request = new HttpGet(roomUrl(room));
+		HttpResponse response = executeWithRetries(request, Endpoint.ROOM_PAGE);
 		if (response == null) {
 			throw new IOException("Room doesn't exist.");
 		}
 
-		String html = EntityUtils.toString(response.getEntity());
+		return readFKey(room, EntityUtils.toString(response.getEntity()));
+	}
+
+	/**
+	 * Gets the "fkey" parameter for a room if it is already known.
+	 * @param room the room ID
+	 * @return the fkey or null if the room's webpage has to be loaded to get
+	 * it
+	 */
+	private String getCachedFKey(int room) {
+		String fkey = fkeyCache.get(room);
+		if (fkey == null && session != null) {
+			fkey = session.getFKey(room);
+			if (fkey != null) {
+				fkeyCache.put(room, fkey);
+			}
+		}
+		return fkey;
+	}
+
+	private static String roomUrl(int room) {
+		return "https://chat.stackoverflow.com/rooms/" + room;
+	}
+
+	/**
+	 * Reads the "fkey" parameter out of a room's webpage and caches it.
+	 * @param room the room ID
+	 * @param html the room's webpage
+	 * @return the fkey
+	 * @throws IOException if messages can't be posted to this room or if the
+	 * fkey can't be found
+	 */
+	private String readFKey(int room, String html) throws IOException {
 		if (!canPostToRoom(html)) {
+			if (restored) {
+				//the saved session may have expired, which logs the bot out
+				throw new SessionExpiredException();
+			}
 			throw new IOException("Cannot post to this room. It's either inactive or protected.");
 		}
 
-		fkey = parseFkey(html);
+		String fkey = parseFkey(html);
 		if (fkey == null) {
 			throw new IOException("Cannot get room's fkey.");
 		}
 
 		fkeyCache.put(room, fkey);
+		if (session != null) {
+			session.setFKey(room, fkey);
+		}
 		return fkey;
 	}
 
@@ -283,57 +661,79 @@ public class StackoverflowChat implements ChatConnection {
 	 * Executes an HTTP request whose response is expected to be JSON. The
 	 * request is retried if it fails.
 	 * @param request the request to send
+	 * @param endpoint the part of the chat system the request is sent to
 	 * @return the parsed JSON response
 	 * @throws IOException if there was an I/O error
 	 */
-	private JsonNode executeWithRetriesJson(HttpUriRequest request) throws IOException {
-		ObjectMapper mapper = new ObjectMapper();
+	private JsonNode executeWithRetriesJson(HttpUriRequest request, Endpoint endpoint) throws IOException {
+		return executeWithRetriesJson(request, endpoint, mapper::readTree);
+	}
 
-		while (true) {
-			HttpResponse response = executeWithRetries(request);
-			try {
-				return mapper.readTree(response.getEntity().getContent());
-			} catch (JsonParseException e) {
-				//make the request again if a non-JSON response is returned
-				logger.log(Level.SEVERE, "Could not parse the response as a JSON object.  Retrying the request in " + retryPause + "ms.", e);
-				try {
-					Thread.sleep(retryPause);
-				} catch (InterruptedException e2) {
-					throw new IOException(e2);
-				}
+	/**
+	 * Executes an HTTP request whose response is expected to be JSON. The
+	 * request is retried if it fails or if the response is not JSON.
+	 * @param request the request to send
+	 * @param endpoint the part of the chat system the request is sent to
+	 * @param reader reads the response body
+	 * @return the value returned by the reader
+	 * @throws IOException if there was an I/O error, if the request could not
+	 * be executed before its deadline, or if the endpoint's circuit breaker is
+	 * open
+	 */
+	private <T> T executeWithRetriesJson(HttpUriRequest request, Endpoint endpoint, JsonReader<T> reader) throws IOException {
+		T value = executeWithRetries(request, endpoint, response -> {
+			try (InputStream in = response.getEntity().getContent()) {
+				return reader.read(in);
 			}
+		});
+		if (value == null) {
+			throw new IOException("404 response received from request URI " + request.getURI() + ".");
 		}
+		return value;
 	}
 
 	/**
-	 * Executes an HTTP request, retrying after a short pause if the request
-	 * fails.
+	 * Executes an HTTP request, retrying after a pause if the request fails.
 	 * @param request the request to send
-	 * @return the HTTP response or null if the request couldn't be executed
-	 * @throws IOException if there was an I/O error
+	 * @param endpoint the part of the chat system the request is sent to
+	 * @return the HTTP response or null if a 404 response was returned
+	 * @throws IOException if there was an I/O error, if the request could not
+	 * be executed before its deadline, or if the endpoint's circuit breaker is
+	 * open
 	 */
-	private HttpResponse executeWithRetries(HttpUriRequest request) throws IOException {
-		return executeWithRetries(request, null, null);
+	private HttpResponse executeWithRetries(HttpUriRequest request, Endpoint endpoint) throws IOException {
+		return executeWithRetries(request, endpoint, response -> response);
 	}
 
 	/**
-	 * Executes an HTTP request, retrying after a short pause if the request
-	 * fails.
+	 * Executes an HTTP request, retrying after a pause if the request fails.
+	 * The pauses are randomized and grow with each attempt (see
+	 * {@link Backoff}). The request is given up on if it does not succeed
+	 * before the endpoint's deadline, and it is not sent at all if the
+	 * endpoint's {@link CircuitBreaker} is open.
 	 * @param request the request to send
-	 * @param numRetries the number of times to retry the request if it fails,
-	 * or null to retry forever
-	 * @param expectedStatusCode the expected HTTP response status code. If the
-	 * response does not have this status code, the request will be retried
-	 * @return the HTTP response or null if the request couldn't be executed
-	 * @throws IOException if there was an I/O error
+	 * @param endpoint the part of the chat system the request is sent to
+	 * @param reader reads the response. If it throws a
+	 * {@link JsonParseException}, the response is treated as a failure and the
+	 * request is retried
+	 * @return the value returned by the reader or null if a 404 response was
+	 * returned
+	 * @throws IOException if there was an I/O error, if the request could not
+	 * be executed before its deadline, or if the endpoint's circuit breaker is
+	 * open
 	 */
-	private HttpResponse executeWithRetries(HttpUriRequest request, Integer numRetries, Integer expectedStatusCode) throws IOException {
+	private <T> T executeWithRetries(HttpUriRequest request, Endpoint endpoint, ResponseReader<T> reader) throws IOException {
+		CircuitBreaker breaker = breakers.get(endpoint);
+		Backoff backoff = new Backoff(retryPause, maxRetryPause);
+		long deadline = System.currentTimeMillis() + endpoint.deadline;
 		int attempts = 0;
 		long sleep = 0;
-		final long maxSleep = TimeUnit.SECONDS.toMillis(60);
-		while (numRetries == null || attempts <= numRetries) {
-			attempts++;
+		while (true) {
 			if (sleep > 0) {
+				if (System.currentTimeMillis() + sleep > deadline) {
+					throw new IOException("Giving up on request " + request.getURI() + " after " + attempts + " attempts.");
+				}
+
 				try {
 					logger.info("Sleeping for " + sleep + " ms before resending the request...");
 					Thread.sleep(sleep);
@@ -343,41 +743,92 @@ public class StackoverflowChat implements ChatConnection {
 				}
 			}
 
-			sleep = (attempts + 1) * retryPause;
-			if (sleep > maxSleep) {
-				sleep = maxSleep;
+			if (!breaker.tryAcquire(System.currentTimeMillis())) {
+				throw new CircuitOpenException(breaker);
 			}
+			attempts++;
 
 			HttpResponse response;
 			try {
 				response = client.execute(request);
-			} catch (NoHttpResponseException | SocketException | ConnectTimeoutException | SSLHandshakeException e) {
+			} catch (ConnectionPoolTimeoutException e) {
+				//the request was never sent, all of the connections are in use
+				breaker.onNotSent();
+				logger.warning("No HTTP connection became free for request " + request.getURI() + ".");
+				sleep = backoff.next();
+				continue;
+			} catch (NoHttpResponseException | SocketException | InterruptedIOException | SSLHandshakeException e) {
+				breaker.onFailure(System.currentTimeMillis());
 				logger.log(Level.SEVERE, e.getClass().getSimpleName() + " thrown from request " + request.getURI() + ".", e);
+				sleep = backoff.next();
 				continue;
+			} catch (IOException | RuntimeException e) {
+				breaker.onFailure(System.currentTimeMillis());
+				throw e;
 			}
 
 			int actualStatusCode = response.getStatusLine().getStatusCode();
+			if (actualStatusCode >= 500) {
+				breaker.onFailure(System.currentTimeMillis());
+				logger.severe(actualStatusCode + " response received from request URI " + request.getURI() + ".");
+				EntityUtils.consumeQuietly(response.getEntity());
+				sleep = backoff.next();
+				continue;
+			}
+
 			if (actualStatusCode == 409) {
 				//"You can perform this action again in 2 seconds"
+				breaker.onSuccess();
 				Long sleepValue = parse409Response(response);
 				sleep = (sleepValue == null) ? 5000 : sleepValue;
 				continue;
 			}
 
+			if (restored && isAuthFailure(actualStatusCode)) {
+				breaker.onSuccess();
+				EntityUtils.consumeQuietly(response.getEntity());
+				throw new SessionExpiredException();
+			}
+
 			if (actualStatusCode == 404) {
 				//chat room does not exist or cannot be posted to
+				breaker.onSuccess();
 				logger.severe("404 response received from request URI " + request.getURI() + ".");
+				EntityUtils.consumeQuietly(response.getEntity());
 				return null;
 			}
 
-			if (expectedStatusCode != null && expectedStatusCode != actualStatusCode) {
-				logger.severe("Expected status code " + expectedStatusCode + ", but was " + actualStatusCode + ".");
+			T value;
+			try {
+				value = reader.read(response);
+			} catch (JsonParseException e) {
+				//an outage often produces an HTML error page
+				breaker.onFailure(System.currentTimeMillis());
+				logger.log(Level.SEVERE, "Could not parse the response as a JSON object.", e);
+				sleep = backoff.next();
 				continue;
+			} catch (IOException | RuntimeException e) {
+				breaker.onFailure(System.currentTimeMillis());
+				throw e;
 			}
 
-			return response;
+			breaker.onSuccess();
+			return value;
 		}
-		return null;
+	}
+
+	/**
+	 * Determines if a response status code means that the chat system did not
+	 * accept the bot's login cookies or fkey.
+	 * @param statusCode the status code
+	 * @return true if authentication failed, false if not
+	 */
+	private static boolean isAuthFailure(int statusCode) {
+		/*
+		 * Requests that are made with bad credentials are redirected to the
+		 * login page (POST redirects are not followed automatically).
+		 */
+		return statusCode == 302 || statusCode == 401 || statusCode == 403;
 	}
 
 	/**
@@ -394,8 +845,7 @@ public class StackoverflowChat implements ChatConnection {
 		String body = EntityUtils.toString(response.getEntity());
 		logger.fine("409 response received: " + body);
 
-		Pattern p = Pattern.compile("\\d+");
-		Matcher m = p.matcher(body);
+		Matcher m = penaltyRegex.matcher(body);
 		if (!m.find()) {
 			return null;
 		}
@@ -410,123 +860,392 @@ public class StackoverflowChat implements ChatConnection {
 	}
 
 	/**
-	 * Unmarshals a chat message from its JSON representation.
-	 * @param element the JSON element
-	 * @return the parsed chat message
+	 * Sets how long {@link #flush} waits for the queued messages to be
+	 * posted. The messages that are left after that are dropped.
+	 * @param timeout the timeout (in milliseconds, defaults to the posting
+	 * deadline of 2 minutes)
 	 */
-	private static ChatMessage parseChatMessage(JsonNode element) {
-		ChatMessage chatMessage = new ChatMessage();
+	void setFlushTimeout(long timeout) {
+		sender.finishTimeout = timeout;
+	}
 
-		JsonNode value = element.get("content");
-		if (value != null) {
-			chatMessage.setContent(value.asText());
-		}
+	/**
+	 * Gets the number of posts that were held back for a good part of the
+	 * posting rate limits that were learned from previous 409 responses. Each
+	 * of these is a 409 response that was most likely avoided.
+	 * @return the number of posts
+	 */
+	public long getRejectionsAvoided() {
+		return pacer.getAvoided();
+	}
 
-		value = element.get("edits");
-		if (value != null) {
-			chatMessage.setEdits(value.asInt());
-		}
+	/**
+	 * Gets the circuit breaker of a part of the chat system.
+	 * @param endpoint the part of the chat system
+	 * @return the circuit breaker
+	 */
+	public CircuitBreaker getCircuitBreaker(Endpoint endpoint) {
+		return breakers.get(endpoint);
+	}
 
-		value = element.get("message_id");
-		if (value != null) {
-			chatMessage.setMessageId(value.asLong());
-		}
+	/**
+	 * Gets the outbound queue statistics of a room.
+	 * @param room the room ID
+	 * @return the statistics or null if nothing has been posted to the room
+	 */
+	public SendStatistics getSendStatistics(int room) {
+		return sender.getStatistics(room);
+	}
 
-		value = element.get("room_id");
-		if (value != null) {
-			chatMessage.setRoomId(value.asInt());
-		}
+	/**
+	 * A request that depends on the login cookies or a room's fkey.
+	 * @param <T> the type of value the request returns
+	 */
+	private interface SessionRequest<T> {
+		/**
+		 * @return the value
+		 * @throws IOException if there's a problem sending the request
+		 */
+		T send() throws IOException;
+	}
 
-		value = element.get("time_stamp");
-		if (value != null) {
-			LocalDateTime ts = LocalDateTime.ofInstant(Instant.ofEpochMilli(value.asLong() * 1000), ZoneId.systemDefault());
-			chatMessage.setTimestamp(ts);
-		}
+	/**
+	 * Thrown when the chat system rejects a saved session.
+	 */
+	private static class SessionExpiredException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
 
-		value = element.get("user_id");
-		if (value != null) {
-			chatMessage.setUserId(value.asInt());
-		}
+	/**
+	 * Reads an HTTP response.
+	 * @param <T> the type of value that is read
+	 */
+	private interface ResponseReader<T> {
+		/**
+		 * @param response the response
+		 * @return the value
+		 * @throws IOException if the response could not be read
+		 */
+		T read(HttpResponse response) throws IOException;
+	}
 
-		value = element.get("user_name");
-		if (value != null) {
-			chatMessage.setUsername(value.asText());
-		}
+	/**
+	 * Reads a JSON response body.
+	 * @param <T> the type of value that is read
+	 */
+	private interface JsonReader<T> {
+		/**
+		 * @param in the response body
+		 * @return the value
+		 * @throws IOException if the body could not be read or is not JSON
+		 */
+		T read(InputStream in) throws IOException;
+	}
 
-		return chatMessage;
+	/**
+	 * The parts of the chat system that each have their own
+	 * {@link CircuitBreaker} and request deadline. If one part of the chat
+	 * system is down, requests to the other parts are still sent.
+	 */
+	public enum Endpoint {
+		/**
+		 * Retrieving new messages and the WebSocket address.
+		 */
+		EVENTS(TimeUnit.SECONDS.toMillis(30)),
+
+		/**
+		 * Posting messages. The deadline is measured from the first failed
+		 * attempt to post the message, and the message is dropped once it
+		 * passes. Once part of a long message has been posted, the rest of it
+		 * is given five times as long, so that it is only cut short by a long
+		 * outage.
+		 */
+		NEW_MESSAGE(TimeUnit.MINUTES.toMillis(2)),
+
+		/**
+		 * Loading a room's webpage, which contains the room's fkey.
+		 */
+		ROOM_PAGE(TimeUnit.MINUTES.toMillis(1)),
+
+		/**
+		 * Loading the login page.
+		 */
+		LOGIN(TimeUnit.MINUTES.toMillis(1));
+
+		/**
+		 * How long a request is retried before it is given up on (in
+		 * milliseconds).
+		 */
+		private final long deadline;
+
+		private Endpoint(long deadline) {
+			this.deadline = deadline;
+		}
 	}
 
-	private class MessageSenderThread extends Thread {
+	/**
+	 * Posts the queued messages on its own thread. Each room has its own
+	 * queue, and the rooms take turns: one post is sent to a room, then one
+	 * post to the next room that has messages waiting, and so on. A message
+	 * that is split into multiple posts therefore does not hold up the other
+	 * rooms.
+	 * <p>
+	 * Each room is also throttled on its own. When a room's post is rejected
+	 * because the bot is posting too quickly, or when it fails and must be
+	 * retried, that room is skipped until it is allowed to post again, while
+	 * the other rooms continue to be served.
+	 * </p>
+	 */
+	private class MessageSender implements Runnable {
 		private final int MAX_MESSAGE_LENGTH = 500;
-		private volatile boolean finish = false;
-		private final BlockingQueue<ChatPost> messageQueue = new LinkedBlockingQueue<>();
+		private final CircuitBreaker breaker = breakers.get(Endpoint.NEW_MESSAGE);
+		private final Thread thread;
+
+		/**
+		 * How long the rest of a message is retried once part of it has been
+		 * posted (in milliseconds).
+		 */
+		private final long continuationDeadline = Endpoint.NEW_MESSAGE.deadline * 5;
+
+		/**
+		 * How long {@link #finish} waits for the queued messages to be posted
+		 * (in milliseconds).
+		 */
+		private volatile long finishTimeout = Endpoint.NEW_MESSAGE.deadline;
+
+		/**
+		 * Guards everything below.
+		 */
+		private final Lock lock = new ReentrantLock();
+		private final Condition changed = lock.newCondition();
+		private final Map<Integer, RoomQueue> queues = new HashMap<>();
 
-		public MessageSenderThread() {
-			setName(getClass().getSimpleName());
-			setDaemon(true);
+		/**
+		 * The rooms that have messages waiting, in the order they will be
+		 * served.
+		 */
+		private final Deque<RoomQueue> rotation = new ArrayDeque<>();
+
+		private boolean finish = false;
+
+		public MessageSender(ThreadFactory threadFactory) {
+			thread = threadFactory.newThread(this);
+		}
+
+		public void start() {
+			thread.start();
+		}
+
+		public void send(int room, String message, SplitStrategy splitStrategy) {
+			List<String> posts;
+			if (message.contains("\n")) {
+				//messages with newlines have no length limit
+				posts = Arrays.asList(message);
+			} else {
+				posts = splitStrategy.split(message, MAX_MESSAGE_LENGTH);
+			}
+			if (posts.isEmpty()) {
+				return;
+			}
+
+			lock.lock();
+			try {
+				RoomQueue queue = queues.computeIfAbsent(room, RoomQueue::new);
+				queue.posts.add(new ChatPost(posts, new Backoff(retryPause, maxRetryPause)));
+				queue.stats.recordQueued();
+				if (queue.posts.size() == 1) {
+					rotation.add(queue);
+				}
+				changed.signal();
+			} finally {
+				lock.unlock();
+			}
 		}
 
-		public void send(int room, String message, SplitStrategy splitStrategy) throws IOException {
-			messageQueue.add(new ChatPost(room, message, splitStrategy));
+		public SendStatistics getStatistics(int room) {
+			lock.lock();
+			try {
+				RoomQueue queue = queues.get(room);
+				return (queue == null) ? null : queue.stats;
+			} finally {
+				lock.unlock();
+			}
 		}
 
+		/**
+		 * Waits for all the queued messages to be posted, then stops the
+		 * thread. If the messages are not posted in time, the ones that are
+		 * left are dropped.
+		 */
 		public void finish() {
-			finish = true;
-			interrupt();
+			lock.lock();
+			try {
+				finish = true;
+				changed.signal();
+			} finally {
+				lock.unlock();
+			}
 
 			try {
-				join();
+				thread.join(finishTimeout);
 			} catch (InterruptedException e) {
 				//do nothing
 			}
+
+			if (thread.isAlive()) {
+				logger.severe("Queued messages could not be posted within " + finishTimeout + "ms. Dropping them.");
+				thread.interrupt();
+			}
 		}
 
 		@Override
 		public void run() {
-			while (true) {
-				if (finish && messageQueue.isEmpty()) {
+			while (!Thread.currentThread().isInterrupted()) {
+				RoomQueue queue;
+				try {
+					queue = next();
+				} catch (InterruptedException e) {
 					return;
 				}
+				if (queue == null) {
+					return;
+				}
+
+				ChatPost chatPost = queue.posts.peek();
+				if (chatPost.next == 0 && chatPost.attempts == 0) {
+					queue.stats.recordStarted(System.currentTimeMillis() - chatPost.queued);
+				}
 
-				ChatPost chatPost;
+				long retryIn;
 				try {
-					chatPost = messageQueue.take();
-				} catch (InterruptedException e) {
-					if (finish && !messageQueue.isEmpty()) {
-						continue;
-					}
-					return;
+					retryIn = post(queue, chatPost);
+				} catch (IOException e) {
+					logger.log(Level.SEVERE, "Problem sending message.  Skipping to next message in queue.", e);
+					retryIn = -1;
 				}
 
-				int room = chatPost.room;
-				String message = chatPost.post;
-				SplitStrategy splitStrategy = chatPost.splitStrategy;
+				if (retryIn == 0) {
+					chatPost.next++;
+					chatPost.attempts = 0;
+				} else if (retryIn > 0) {
+					long now = System.currentTimeMillis();
+					if (chatPost.attempts == 0) {
+						chatPost.firstFailure = now;
+					}
+					chatPost.attempts++;
+					queue.notBefore = now + retryIn;
+				}
 
+				lock.lock();
 				try {
-					String fkey = getFKey(room);
-					String url = "https://chat.stackoverflow.com/chats/" + room + "/messages/new";
+					if (retryIn < 0 || chatPost.next == chatPost.posts.size()) {
+						queue.posts.poll();
+						queue.stats.recordDone(retryIn == 0);
+					}
+					if (!queue.posts.isEmpty()) {
+						rotation.add(queue);
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
 
-					List<String> posts;
-					if (message.contains("\n")) {
-						//messages with newlines have no length limit
-						posts = Arrays.asList(message);
-					} else {
-						posts = splitStrategy.split(message, MAX_MESSAGE_LENGTH);
+		/**
+		 * Waits for a room that is allowed to post and removes it from the
+		 * rotation.
+		 * @return the room or null if the sender is finished
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		private RoomQueue next() throws InterruptedException {
+			lock.lock();
+			try {
+				while (true) {
+					long now = System.currentTimeMillis();
+					long soonest = Long.MAX_VALUE;
+					Iterator<RoomQueue> it = rotation.iterator();
+					while (it.hasNext()) {
+						RoomQueue queue = it.next();
+						long paceAt = pacer.readyAt(queue.room, now);
+						long readyAt = Math.max(queue.notBefore, paceAt);
+						if (readyAt <= now) {
+							it.remove();
+							return queue;
+						}
+
+						if (paceAt > queue.notBefore) {
+							//would otherwise have been sent sooner
+							queue.heldFor = Math.max(queue.heldFor, paceAt - Math.max(queue.notBefore, now));
+						}
+						soonest = Math.min(soonest, readyAt);
 					}
 
-					for (String post : posts) {
-						send(room, url, fkey, post);
+					if (rotation.isEmpty()) {
+						if (finish) {
+							return null;
+						}
+						changed.await();
+					} else {
+						changed.await(soonest - now, TimeUnit.MILLISECONDS);
 					}
-				} catch (IOException e) {
-					logger.log(Level.SEVERE, "Problem sending message.  Skipping to next message in queue.", e);
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
-		private void send(int room, String url, String fkey, String message) throws IOException {
+		/**
+		 * Makes a single attempt at sending the next post of a message.
+		 * @param queue the room's queue
+		 * @param chatPost the message
+		 * @return 0 if the message was posted, the amount of time to wait
+		 * before trying again (in milliseconds), or -1 if the message cannot
+		 * be posted
+		 * @throws IOException if there's a problem that retrying will not fix
+		 */
+		private long post(RoomQueue queue, ChatPost chatPost) throws IOException {
+			int room = queue.room;
+			long now = System.currentTimeMillis();
+			if (chatPost.attempts > 0) {
+				long failingFor = now - chatPost.firstFailure;
+				if (chatPost.next == 0 && failingFor > Endpoint.NEW_MESSAGE.deadline) {
+					logger.severe("Message to room " + room + " could not be posted within " + Endpoint.NEW_MESSAGE.deadline + "ms. Dropping it.");
+					return -1;
+				}
+
+				/*
+				 * Once part of a long message has been posted, the rest is
+				 * given longer, so that the message is not cut off in the
+				 * middle by a short outage.
+				 */
+				if (chatPost.next > 0 && failingFor > continuationDeadline) {
+					logger.severe("The rest of a message to room " + room + " could not be posted within " + continuationDeadline + "ms. Dropping the last " + (chatPost.posts.size() - chatPost.next) + " of its " + chatPost.posts.size() + " parts, so the message is cut short.");
+					return -1;
+				}
+			}
+
+			String message = chatPost.posts.get(chatPost.next);
+			String fkey = getCachedFKey(room);
+			if (fkey == null) {
+				long retryIn = loadFKey(room, chatPost, now);
+				if (retryIn != 0) {
+					return retryIn;
+				}
+
+				fkey = getCachedFKey(room);
+				if (fkey == null) {
+					//the session was renewed in the meantime
+					return 1;
+				}
+			}
+
+			if (!breaker.tryAcquire(now)) {
+				//hold the message until the chat system recovers
+				return Math.max(1, breaker.getRetryAt(now) - now);
+			}
 			logger.info("Posting message to room " + room + ": " + message);
 
-			HttpPost request = new HttpPost(url);
+			HttpPost request = new HttpPost("https://chat.stackoverflow.com/chats/" + room + "/messages/new");
 			//@formatter:off
 			List<NameValuePair> params = Arrays.asList(
 				new BasicNameValuePair("text", message),
@@ -535,25 +1254,199 @@ public class StackoverflowChat implements ChatConnection {
 			//@formatter:on
 			request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
 
-			HttpResponse response = executeWithRetries(request, null, 200);
-			if (response == null) {
-				return;
+			long sent = System.currentTimeMillis();
+			long heldFor = queue.heldFor;
+			queue.heldFor = 0;
+
+			HttpResponse response;
+			try {
+				response = client.execute(request);
+			} catch (ConnectionPoolTimeoutException e) {
+				//the message was never sent, all of the connections are in use
+				breaker.onNotSent();
+				logger.warning("No HTTP connection became free for request " + request.getURI() + ".");
+				return chatPost.backoff.next();
+			} catch (NoHttpResponseException | SocketException | InterruptedIOException | SSLHandshakeException e) {
+				breaker.onFailure(System.currentTimeMillis());
+				logger.log(Level.SEVERE, e.getClass().getSimpleName() + " thrown from request " + request.getURI() + ".", e);
+				return chatPost.backoff.next();
+			} catch (IOException | RuntimeException e) {
+				breaker.onFailure(System.currentTimeMillis());
+				throw e;
+			}
+
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode >= 500) {
+				breaker.onFailure(System.currentTimeMillis());
+				EntityUtils.consumeQuietly(response.getEntity());
+				logger.severe(statusCode + " response received from request URI " + request.getURI() + ".");
+				return chatPost.backoff.next();
+			}
+
+			//the chat system is up
+			breaker.onSuccess();
+
+			if (restored && isAuthFailure(statusCode)) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				renewSession();
+
+				//try again with the new fkey
+				return 1;
+			}
+
+			if (statusCode == 409) {
+				//"You can perform this action again in 2 seconds"
+				Long wait = parse409Response(response);
+				if (wait == null) {
+					wait = 5000L;
+				}
+				pacer.onRejected(room, sent, wait);
+				queue.stats.recordThrottled();
+				logger.info("Room " + room + " is being throttled. Posting to the other rooms in the meantime.");
+				return wait;
 			}
 
 			EntityUtils.consumeQuietly(response.getEntity());
+
+			if (statusCode == 404) {
+				//chat room does not exist or cannot be posted to
+				logger.severe("404 response received from request URI " + request.getURI() + ".");
+				return -1;
+			}
+
+			if (statusCode != 200) {
+				logger.severe("Expected status code 200, but was " + statusCode + ".");
+				return chatPost.backoff.next();
+			}
+
+			pacer.onPosted(room, sent, heldFor);
 			logger.info("Message received.");
+			logger.fine("Room " + room + " send statistics: " + queue.stats + ", pacing: " + pacer);
+			return 0;
+		}
+
+		/**
+		 * Makes a single attempt at loading a room's webpage to get the room's
+		 * fkey. A failed attempt is retried on a later turn, like a failed
+		 * post, so a room whose page is not loading does not hold up the posts
+		 * to the other rooms.
+		 * @param room the room ID
+		 * @param chatPost the message that needs the fkey
+		 * @param now the current time
+		 * @return 0 if the fkey was loaded, the amount of time to wait before
+		 * trying again (in milliseconds), or -1 if the room does not exist
+		 * @throws IOException if messages can't be posted to the room or if
+		 * there's a problem that retrying will not fix
+		 */
+		private long loadFKey(int room, ChatPost chatPost, long now) throws IOException {
+			CircuitBreaker pageBreaker = breakers.get(Endpoint.ROOM_PAGE);
+			if (!pageBreaker.tryAcquire(now)) {
+				//the room page is not loading, so hold the message until it does
+				return Math.max(1, pageBreaker.getRetryAt(now) - now);
+			}
+
+			HttpGet request = new HttpGet(roomUrl(room));
+			HttpResponse response;
+			try {
+				response = client.execute(request);
+			} catch (ConnectionPoolTimeoutException e) {
+				pageBreaker.onNotSent();
+				logger.warning("No HTTP connection became free for request " + request.getURI() + ".");
+				return chatPost.backoff.next();
+			} catch (NoHttpResponseException | SocketException | InterruptedIOException | SSLHandshakeException e) {
+				pageBreaker.onFailure(System.currentTimeMillis());
+				logger.log(Level.SEVERE, e.getClass().getSimpleName() + " thrown from request " + request.getURI() + ".", e);
+				return chatPost.backoff.next();
+			} catch (IOException | RuntimeException e) {
+				pageBreaker.onFailure(System.currentTimeMillis());
+				throw e;
+			}
+
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode >= 500) {
+				pageBreaker.onFailure(System.currentTimeMillis());
+				EntityUtils.consumeQuietly(response.getEntity());
+				logger.severe(statusCode + " response received from request URI " + request.getURI() + ".");
+				return chatPost.backoff.next();
+			}
+
+			pageBreaker.onSuccess();
+
+			if (statusCode == 404) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				logger.severe("404 response received from request URI " + request.getURI() + ".");
+				return -1;
+			}
+
+			if (statusCode != 200) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				logger.severe("Expected status code 200, but was " + statusCode + ".");
+				return chatPost.backoff.next();
+			}
+
+			try {
+				readFKey(room, EntityUtils.toString(response.getEntity()));
+			} catch (SessionExpiredException e) {
+				renewSession();
+				return 1;
+			}
+			return 0;
 		}
 	}
 
-	private static class ChatPost {
+	/**
+	 * The messages that are waiting to be posted to a room. The queue is
+	 * accessed under the sender's lock, except for the message at its head,
+	 * which only the sender thread touches.
+	 */
+	private static class RoomQueue {
 		private final int room;
-		private final String post;
-		private final SplitStrategy splitStrategy;
+		private final Deque<ChatPost> posts = new ArrayDeque<>();
+		private final SendStatistics stats = new SendStatistics();
+
+		/**
+		 * The room cannot be posted to until this time (timestamp).
+		 */
+		private long notBefore;
 
-		public ChatPost(int room, String post, SplitStrategy splitStrategy) {
+		/**
+		 * How long the message at the head of the queue was held back by the
+		 * {@link PostPacer} (in milliseconds).
+		 */
+		private long heldFor;
+
+		public RoomQueue(int room) {
 			this.room = room;
-			this.post = post;
-			this.splitStrategy = splitStrategy;
 		}
 	}
-}
\ No newline at end of file
+
+	private static class ChatPost {
+		private final List<String> posts;
+		private final long queued = System.currentTimeMillis();
+
+		/**
+		 * How long to wait before resending the next post if it fails.
+		 */
+		private final Backoff backoff;
+
+		/**
+		 * The index of the next post to send.
+		 */
+		private int next;
+
+		/**
+		 * The number of times the next post failed to send.
+		 */
+		private int attempts;
+
+		/**
+		 * When the next post first failed to send (timestamp).
+		 */
+		private long firstFailure;
+
+		public ChatPost(List<String> posts, Backoff backoff) {
+			this.posts = posts;
+			this.backoff = backoff;
+		}
+	}
+}
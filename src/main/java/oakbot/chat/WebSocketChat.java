@@ -0,0 +1,346 @@
+package oakbot.chat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import oakbot.chat.EventDecoder.Events;
+
+/**
+ * A connection to Stackoverflow chat that receives new messages through the
+ * chat's WebSocket feed instead of polling each room over HTTP. The events of
+ * all joined rooms arrive over a single socket, so retrieving a room's new
+ * messages does not send any requests.
+ * <p>
+ * If the socket cannot be opened or is lost, the connection falls back to
+ * polling the rooms over HTTP, and periodically tries to reopen the socket.
+ * Each time the socket is (re)opened, the messages that were posted since the
+ * last message that was returned for each room are retrieved over HTTP, so
+ * that no messages are missed.
+ * </p>
+ * <p>
+ * When messages are pushed to a room, the {@link NewMessageHandler} is
+ * notified so the room can be polled right away. Scheduled polls are then
+ * only needed as a fallback for when the socket is closed, and to retrieve
+ * missed messages after it is reopened.
+ * </p>
+ * <p>
+ * Posting messages and everything else is delegated to a
+ * {@link StackoverflowChat} instance.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class WebSocketChat implements ChatConnection {
+	private static final Logger logger = Logger.getLogger(WebSocketChat.class.getName());
+
+	private final StackoverflowChat http;
+	private final UriSource uriSource;
+	private final long reconnectDelay;
+
+	/**
+	 * The ID of the most recent message that was returned for each joined
+	 * room.
+	 * <ul>
+	 * <li><b>Key:</b> The room ID.</li>
+	 * <li><b>Value:</b> The message ID.</li>
+	 * </ul>
+	 */
+	private final Map<Integer, Long> lastMessageIds = new ConcurrentHashMap<>();
+
+	/**
+	 * The messages that were pushed through the socket, but have not been
+	 * returned yet. Each list must be synchronized on when it is accessed.
+	 * <ul>
+	 * <li><b>Key:</b> The room ID.</li>
+	 * <li><b>Value:</b> The messages.</li>
+	 * </ul>
+	 */
+	private final Map<Integer, List<ChatMessage>> received = new ConcurrentHashMap<>();
+
+	/**
+	 * The rooms whose missed messages need to be retrieved over HTTP because
+	 * the socket was (re)opened.
+	 */
+	private final Set<Integer> needsBackfill = ConcurrentHashMap.newKeySet();
+
+	private volatile EventSocket socket;
+	private volatile NewMessageHandler newMessageHandler;
+	private long nextConnectAttempt;
+
+	/**
+	 * @param http the HTTP connection to post messages with and to fall back
+	 * on
+	 */
+	public WebSocketChat(StackoverflowChat http) {
+		this(http, http::getWebSocketUri, TimeUnit.SECONDS.toMillis(30));
+	}
+
+	/**
+	 * @param http the HTTP connection to post messages with and to fall back
+	 * on
+	 * @param uriSource gets the address of the WebSocket
+	 * @param reconnectDelay how long to wait in between attempts to reopen the
+	 * socket (in milliseconds)
+	 */
+	WebSocketChat(StackoverflowChat http, UriSource uriSource, long reconnectDelay) {
+		this.http = http;
+		this.uriSource = uriSource;
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	@Override
+	public void login(String email, String password) throws IllegalArgumentException, IOException {
+		http.login(email, password);
+	}
+
+	@Override
+	public void joinRoom(int roomId) throws IOException {
+		//also checks that the room exists and can be posted to
+		List<ChatMessage> messages = http.getMessages(roomId, 1);
+		long lastMessageId = messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getMessageId();
+
+		received.putIfAbsent(roomId, new ArrayList<>());
+		lastMessageIds.putIfAbsent(roomId, lastMessageId);
+
+		if (isConnected()) {
+			//the room may have had messages pushed to it before it was joined
+			needsBackfill.add(roomId);
+		} else {
+			connectIfDue(roomId, true);
+		}
+	}
+
+	@Override
+	public void sendMessage(int room, String message) throws IOException {
+		http.sendMessage(room, message);
+	}
+
+	@Override
+	public void sendMessage(int room, String message, SplitStrategy splitStrategy) throws IOException {
+		http.sendMessage(room, message, splitStrategy);
+	}
+
+	@Override
+	public List<ChatMessage> getMessages(int room, int count) throws IOException {
+		return http.getMessages(room, count);
+	}
+
+	@Override
+	public List<ChatMessage> getNewMessages(int room) throws IOException {
+		Long lastMessageId = lastMessageIds.get(room);
+		if (lastMessageId == null) {
+			joinRoom(room);
+			return new ArrayList<>(0);
+		}
+
+		if (!isConnected()) {
+			connectIfDue(room, false);
+		}
+
+		List<ChatMessage> messages = new ArrayList<>();
+		boolean backfill = needsBackfill.remove(room);
+		if (backfill || !isConnected()) {
+			try {
+				messages.addAll(http.getMessagesSince(room, lastMessageId));
+			} catch (IOException e) {
+				if (backfill) {
+					needsBackfill.add(room);
+				}
+				throw e;
+			}
+		}
+
+		List<ChatMessage> pushed = received.get(room);
+		synchronized (pushed) {
+			messages.addAll(pushed);
+			pushed.clear();
+		}
+
+		/*
+		 * Messages retrieved over HTTP may also have been pushed through the
+		 * socket, so remove duplicates and anything that was already returned.
+		 */
+		messages.sort(Comparator.comparingLong(ChatMessage::getMessageId));
+		long prev = lastMessageId;
+		Iterator<ChatMessage> it = messages.iterator();
+		while (it.hasNext()) {
+			long id = it.next().getMessageId();
+			if (id <= prev) {
+				it.remove();
+			} else {
+				prev = id;
+			}
+		}
+
+		lastMessageIds.put(room, prev);
+		return messages;
+	}
+
+	@Override
+	public void setGapHandler(GapHandler handler) {
+		http.setGapHandler(handler);
+	}
+
+	@Override
+	public void setNewMessageHandler(NewMessageHandler handler) {
+		newMessageHandler = handler;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		http.flush();
+	}
+
+	/**
+	 * Determines if the socket is open.
+	 * @return true if new messages are being pushed through the socket, false
+	 * if the rooms are being polled over HTTP
+	 */
+	public boolean isConnected() {
+		EventSocket socket = this.socket;
+		return socket != null && socket.isOpen();
+	}
+
+	/**
+	 * Closes the socket. Rooms will be polled over HTTP until the socket is
+	 * reopened.
+	 */
+	public void disconnect() {
+		EventSocket socket = this.socket;
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Tries to open the socket, unless an attempt was made recently.
+	 * @param room the ID of a joined room
+	 * @param wait true to wait for the socket to open, false to open it in the
+	 * background
+	 */
+	private synchronized void connectIfDue(int room, boolean wait) {
+		if (isConnected()) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now < nextConnectAttempt) {
+			return;
+		}
+		nextConnectAttempt = now + reconnectDelay;
+
+		EventSocket socket;
+		try {
+			socket = new EventSocket(uriSource.get(room));
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not get WebSocket address. Polling rooms over HTTP.", e);
+			return;
+		}
+
+		this.socket = socket;
+		if (wait) {
+			try {
+				socket.connectBlocking(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			socket.connect();
+		}
+	}
+
+	/**
+	 * Queues the new messages in a WebSocket event and notifies the
+	 * {@link NewMessageHandler}.
+	 * @param json the event JSON
+	 */
+	void onEvent(String json) {
+		Map<Integer, Events> rooms;
+		try {
+			rooms = EventDecoder.decodeRooms(json);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not parse WebSocket event: " + json, e);
+			return;
+		}
+
+		Set<Integer> roomsWithMessages = new LinkedHashSet<>();
+		for (Events events : rooms.values()) {
+			for (ChatMessage message : events.getMessages()) {
+				List<ChatMessage> pushed = received.get(message.getRoomId());
+				if (pushed == null) {
+					//the bot is in the room, but has not joined it
+					continue;
+				}
+
+				synchronized (pushed) {
+					pushed.add(message);
+				}
+				roomsWithMessages.add(message.getRoomId());
+			}
+		}
+
+		NewMessageHandler handler = newMessageHandler;
+		if (handler != null) {
+			for (Integer room : roomsWithMessages) {
+				handler.onNewMessages(room);
+			}
+		}
+	}
+
+	/**
+	 * Gets the address of the WebSocket.
+	 */
+	interface UriSource {
+		/**
+		 * @param room the ID of a joined room
+		 * @return the address
+		 * @throws IOException if there's a problem getting the address
+		 */
+		URI get(int room) throws IOException;
+	}
+
+	private class EventSocket extends WebSocketClient {
+		public EventSocket(URI uri) {
+			super(uri);
+			addHeader("Origin", "https://chat.stackoverflow.com");
+			setDaemon(true);
+			setConnectionLostTimeout(30);
+		}
+
+		@Override
+		public void onOpen(ServerHandshake handshake) {
+			logger.info("WebSocket opened. Rooms will no longer be polled over HTTP.");
+
+			//retrieve any messages that were posted while the socket was closed
+			needsBackfill.addAll(lastMessageIds.keySet());
+		}
+
+		@Override
+		public void onMessage(String json) {
+			onEvent(json);
+		}
+
+		@Override
+		public void onClose(int code, String reason, boolean remote) {
+			logger.warning("WebSocket closed (code=" + code + ", reason=" + reason + "). Polling rooms over HTTP until it can be reopened.");
+		}
+
+		@Override
+		public void onError(Exception e) {
+			logger.log(Level.SEVERE, "WebSocket error.", e);
+		}
+	}
+}
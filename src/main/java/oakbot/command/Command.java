@@ -2,6 +2,7 @@ package oakbot.command;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import oakbot.bot.Bot;
 import oakbot.bot.ChatResponse;
@@ -42,6 +43,31 @@ public interface Command {
 	 */
 	String helpText(String trigger);
 
+	/**
+	 * Gets the amount of time this command has to respond before the bot gives
+	 * up on it and posts a "took too long" message instead. Commands that
+	 * contact external websites should allow more time than this default.
+	 * @return the timeout (in milliseconds)
+	 */
+	default long timeout() {
+		return TimeUnit.SECONDS.toMillis(5);
+	}
+
+	/**
+	 * Gets a key that identifies invocations of this command that produce the
+	 * same response. While an invocation is running, any other invocation with
+	 * the same key shares its response instead of running the command again.
+	 * Commands that contact external websites should override this so that the
+	 * same request is not sent more than once at a time.
+	 * @param message the message that invoked the command (its content
+	 * contains only the command's arguments)
+	 * @return the key (e.g. the normalized arguments) or null to always run
+	 * the command (default)
+	 */
+	default String singleFlightKey(ChatMessage message) {
+		return null;
+	}
+
 	/**
 	 * Called when a user invokes this command.
 	 * @param message the message that invoked the command
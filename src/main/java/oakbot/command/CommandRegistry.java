@@ -0,0 +1,119 @@
+package oakbot.command;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes commands by name and alias. Lookups are case-insensitive and do not
+ * depend on the number of registered commands. Commands can be registered and
+ * removed while the bot is running.
+ * @author Michael Angstadt
+ */
+public class CommandRegistry {
+	/**
+	 * <ul>
+	 * <li><b>Key:</b> The command name or alias (in lower case).</li>
+	 * <li><b>Value:</b> The command.</li>
+	 * </ul>
+	 */
+	private final Map<String, Command> index = new ConcurrentHashMap<>();
+
+	/**
+	 * The registered commands, in the order they were registered.
+	 * <ul>
+	 * <li><b>Key:</b> The command.</li>
+	 * <li><b>Value:</b> The keys the command was indexed under.</li>
+	 * </ul>
+	 */
+	private final Map<Command, List<String>> commands = new LinkedHashMap<>();
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public CommandRegistry() {
+		//empty
+	}
+
+	/**
+	 * Creates a registry populated with the given commands.
+	 * @param commands the commands
+	 * @throws IllegalArgumentException if two commands share a name or alias
+	 */
+	public CommandRegistry(Collection<Command> commands) {
+		for (Command command : commands) {
+			register(command);
+		}
+	}
+
+	/**
+	 * Adds a command to the registry.
+	 * @param command the command
+	 * @throws IllegalArgumentException if the command's name or one of its
+	 * aliases is already used by another command
+	 */
+	public synchronized void register(Command command) {
+		if (commands.containsKey(command)) {
+			throw new IllegalArgumentException("Command \"" + command.name() + "\" is already registered.");
+		}
+
+		List<String> keys = new ArrayList<>();
+		keys.add(command.name().toLowerCase());
+		for (String alias : command.aliases()) {
+			String key = alias.toLowerCase();
+			if (!keys.contains(key)) {
+				keys.add(key);
+			}
+		}
+
+		for (String key : keys) {
+			Command existing = index.get(key);
+			if (existing != null) {
+				throw new IllegalArgumentException("Command \"" + command.name() + "\" cannot use the name \"" + key + "\" because it is already used by command \"" + existing.name() + "\".");
+			}
+		}
+
+		for (String key : keys) {
+			index.put(key, command);
+		}
+		commands.put(command, keys);
+	}
+
+	/**
+	 * Removes a command from the registry.
+	 * @param command the command
+	 * @return true if the command was removed, false if it wasn't registered
+	 */
+	public synchronized boolean unregister(Command command) {
+		List<String> keys = commands.remove(command);
+		if (keys == null) {
+			return false;
+		}
+
+		for (String key : keys) {
+			index.remove(key);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the command that has a given name or alias.
+	 * @param name the name or alias (case-insensitive)
+	 * @return the command or null if not found
+	 */
+	public Command get(String name) {
+		Command command = index.get(name);
+		return (command == null) ? index.get(name.toLowerCase()) : command;
+	}
+
+	/**
+	 * Gets all the registered commands.
+	 * @return the commands, in the order they were registered
+	 */
+	public synchronized List<Command> getCommands() {
+		return new ArrayList<>(commands.keySet());
+	}
+}
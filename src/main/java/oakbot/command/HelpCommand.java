@@ -22,11 +22,17 @@ import com.google.common.collect.TreeMultimap;
  * @author Michael Angstadt
  */
 public class HelpCommand implements Command {
-	private final List<Command> commands;
+	private final CommandRegistry commands;
 	private final List<Listener> listeners;
 	private final String trigger;
 
-	public HelpCommand(List<Command> commands, List<Listener> listeners, String trigger) {
+	/**
+	 * @param commands the bot's command registry, so that commands that are
+	 * added or removed while the bot is running are reflected in the help
+	 * @param listeners the bot's listeners
+	 * @param trigger the command trigger
+	 */
+	public HelpCommand(CommandRegistry commands, List<Listener> listeners, String trigger) {
 		this.commands = commands;
 		this.listeners = listeners;
 		this.trigger = trigger;
@@ -112,7 +118,7 @@ public class HelpCommand implements Command {
 
 	private Multimap<String, String> getCommandDescriptions() {
 		Multimap<String, String> descriptions = TreeMultimap.create();
-		for (Command command : commands) {
+		for (Command command : commands.getCommands()) {
 			String name = command.name();
 			if (name == null) {
 				continue;
@@ -140,16 +146,9 @@ public class HelpCommand implements Command {
 		String commandText = message.getContent().toLowerCase();
 		List<String> helpTexts = new ArrayList<>();
 
-		for (Command command : commands) {
-			String name = command.name();
-			if (name == null) {
-				continue;
-			}
-
-			name = name.toLowerCase();
-			if (name.equals(commandText) || command.aliases().contains(commandText)) {
-				helpTexts.add(command.helpText(trigger));
-			}
+		Command command = commands.get(commandText);
+		if (command != null) {
+			helpTexts.add(command.helpText(trigger));
 		}
 
 		for (Listener listener : listeners) {
@@ -1,6 +1,7 @@
 package oakbot.command;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,10 +12,9 @@ import oakbot.chat.SplitStrategy;
 import oakbot.util.ChatBuilder;
 
 import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -31,6 +31,15 @@ import com.google.common.net.UrlEscapers;
 public class TagCommand implements Command {
 	private static final Logger logger = Logger.getLogger(TagCommand.class.getName());
 
+	private final HttpClient client;
+
+	/**
+	 * @param client the HTTP client to send requests with
+	 */
+	public TagCommand(HttpClient client) {
+		this.client = client;
+	}
+
 	@Override
 	public String name() {
 		return "tag";
@@ -41,6 +50,16 @@ public class TagCommand implements Command {
 		return "Displays the description of a StackOverflow tag (acts like a Computer Science urban dictionary).";
 	}
 
+	@Override
+	public long timeout() {
+		return TimeUnit.SECONDS.toMillis(15);
+	}
+
+	@Override
+	public String singleFlightKey(ChatMessage message) {
+		return message.getContent().trim().toLowerCase().replace(' ', '-');
+	}
+
 	@Override
 	public String helpText(String trigger) {
 		//@formatter:off
@@ -112,9 +131,7 @@ public class TagCommand implements Command {
 	 */
 	String get(String url) throws IOException {
 		HttpUriRequest request = new HttpGet(url);
-		try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
-			HttpResponse response = client.execute(request);
-			return EntityUtils.toString(response.getEntity());
-		}
+		HttpResponse response = client.execute(request);
+		return EntityUtils.toString(response.getEntity());
 	}
 }
@@ -5,9 +5,9 @@ import static oakbot.util.XPathWrapper.children;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,7 +23,11 @@ import oakbot.command.Command;
 import oakbot.util.ChatBuilder;
 import oakbot.util.XPathWrapper;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.util.EntityUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
@@ -73,9 +77,15 @@ public class DefineCommand implements Command {
 
 	private final XPathWrapper xpath = new XPathWrapper();
 	private final String apiKey;
+	private final HttpClient client;
 
-	public DefineCommand(String apiKey) {
+	/**
+	 * @param apiKey the dictionary API key
+	 * @param client the HTTP client to send requests with
+	 */
+	public DefineCommand(String apiKey, HttpClient client) {
 		this.apiKey = apiKey;
+		this.client = client;
 	}
 
 	@Override
@@ -88,6 +98,16 @@ public class DefineCommand implements Command {
 		return "Displays word definitions from the dictionary.";
 	}
 
+	@Override
+	public long timeout() {
+		return TimeUnit.SECONDS.toMillis(15);
+	}
+
+	@Override
+	public String singleFlightKey(ChatMessage message) {
+		return message.getContent().trim();
+	}
+
 	@Override
 	public String helpText(String trigger) {
 		//@formatter:off
@@ -236,7 +256,13 @@ public class DefineCommand implements Command {
 	 * @throws IOException
 	 */
 	InputStream get(String url) throws IOException {
-		URL urlObj = new URL(url);
-		return urlObj.openStream();
+		HttpResponse response = client.execute(new HttpGet(url));
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != 200) {
+			//release the connection
+			EntityUtils.consumeQuietly(response.getEntity());
+			throw new IOException("HTTP " + statusCode + " response received from " + url + ".");
+		}
+		return response.getEntity().getContent();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,447 @@
+package oakbot.command.javadoc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed classes. The cache is limited by the approximate
+ * amount of memory that the classes take up, rather than by the number of
+ * classes, because the size of a class's Javadoc info varies greatly (a
+ * class like {@code java.lang.String} is much larger than a small
+ * exception class).
+ * <p>
+ * Entries are evicted using the W-TinyLFU policy. New classes enter a small
+ * "window" region, which is ordered by how recently each class was used. When
+ * a class leaves the window, it competes with the least recently used class
+ * in the "main" region, and whichever one was looked up more often stays. This
+ * means that a burst of one-off lookups (for example, from walking a class
+ * hierarchy) cannot push out the classes that are looked up all of the time.
+ * How often each class was looked up is tracked with a small, periodically
+ * aged {@link FrequencySketch}, which also remembers classes that are no
+ * longer in the cache.
+ * </p>
+ * <p>
+ * The main region is divided into a "probation" segment, which holds classes
+ * that have only been used once since they entered the main region, and a
+ * "protected" segment, which holds classes that have been used more than
+ * once. Eviction candidates are taken from the probation segment first.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ClassInfoCache {
+	/**
+	 * The percentage of the max weight that the window region can use.
+	 */
+	private static final int WINDOW_PERCENT = 1;
+
+	/**
+	 * The percentage of the main region that the protected segment can use.
+	 */
+	private static final int PROTECTED_PERCENT = 80;
+
+	/**
+	 * The approximate weight of a class, used to size the frequency sketch.
+	 */
+	private static final long AVERAGE_WEIGHT = 4096;
+
+	private final long maxWeight, windowMaxWeight, mainMaxWeight, protectedMaxWeight;
+
+	//@formatter:off
+	private final Map<String, Entry>
+		window = new LinkedHashMap<>(16, 0.75f, true),
+		probation = new LinkedHashMap<>(16, 0.75f, true),
+		protected_ = new LinkedHashMap<>(16, 0.75f, true);
+	//@formatter:on
+
+	private long windowWeight, probationWeight, protectedWeight;
+
+	private final FrequencySketch sketch;
+
+	private long hits, misses, evictions, evictedWeight;
+
+	/**
+	 * @param maxWeight the max total weight of the cached classes (roughly, in
+	 * bytes)
+	 */
+	public ClassInfoCache(long maxWeight) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("Max weight must be positive.");
+		}
+
+		this.maxWeight = maxWeight;
+		windowMaxWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+		mainMaxWeight = maxWeight - windowMaxWeight;
+		protectedMaxWeight = mainMaxWeight * PROTECTED_PERCENT / 100;
+		sketch = new FrequencySketch(maxWeight / AVERAGE_WEIGHT);
+	}
+
+	/**
+	 * Gets a class from the cache.
+	 * @param fullName the fully-qualified class name
+	 * @return the class or null if it's not in the cache
+	 */
+	public synchronized ClassInfo get(String fullName) {
+		sketch.increment(fullName);
+
+		Entry entry = window.get(fullName);
+		if (entry == null) {
+			entry = probation.remove(fullName);
+			if (entry != null) {
+				//used again, so promote it
+				probationWeight -= entry.weight;
+				protected_.put(fullName, entry);
+				protectedWeight += entry.weight;
+				demoteProtected();
+			} else {
+				entry = protected_.get(fullName);
+			}
+		}
+
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.info;
+	}
+
+	/**
+	 * Adds a class to the cache. The lookup that missed the cache is counted
+	 * as a use of the class, so there is no need to record it again.
+	 * @param fullName the fully-qualified class name
+	 * @param info the class
+	 */
+	public synchronized void put(String fullName, ClassInfo info) {
+		remove(fullName);
+
+		long weight = weigh(info);
+		if (weight > maxWeight) {
+			evictions++;
+			evictedWeight += weight;
+			return;
+		}
+
+		window.put(fullName, new Entry(info, weight));
+		windowWeight += weight;
+
+		while (windowWeight > windowMaxWeight) {
+			Map.Entry<String, Entry> eldest = eldest(window);
+			window.remove(eldest.getKey());
+			windowWeight -= eldest.getValue().weight;
+			admit(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	/**
+	 * Removes classes from the cache.
+	 * @param fullNames the fully-qualified class names
+	 */
+	public synchronized void invalidateAll(Collection<String> fullNames) {
+		for (String fullName : fullNames) {
+			remove(fullName);
+		}
+	}
+
+	/**
+	 * Gets the number of lookups that found the class in the cache.
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that did not find the class in the cache.
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the fraction of lookups that found the class in the cache.
+	 * @return the hit rate (0 to 1) or 0 if there have been no lookups
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Gets the number of classes that were evicted from the cache or were not
+	 * admitted to it.
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the total weight of the classes that were evicted from the cache
+	 * or were not admitted to it.
+	 * @return the weight (roughly, in bytes)
+	 */
+	public synchronized long getEvictedWeight() {
+		return evictedWeight;
+	}
+
+	/**
+	 * Gets the total weight of the cached classes.
+	 * @return the weight (roughly, in bytes)
+	 */
+	public synchronized long getWeight() {
+		return windowWeight + probationWeight + protectedWeight;
+	}
+
+	/**
+	 * Gets the max total weight of the cached classes.
+	 * @return the max weight (roughly, in bytes)
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Gets the number of cached classes.
+	 * @return the number of classes
+	 */
+	public synchronized int size() {
+		return window.size() + probation.size() + protected_.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "size=" + size() + ", weight=" + getWeight() + "/" + maxWeight + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", evictedWeight=" + evictedWeight;
+	}
+
+	/**
+	 * Estimates how much memory a class takes up.
+	 * @param info the class
+	 * @return the weight (roughly, in bytes)
+	 */
+	static long weigh(ClassInfo info) {
+		long weight = 200;
+		weight += weigh(info.getDescription()) + weigh(info.getSince());
+		weight += 16L * info.getModifiers().size();
+		weight += 64L * info.getInterfaces().size();
+
+		for (MethodInfo method : info.getMethods()) {
+			weight += 150;
+			weight += weigh(method.getName()) + weigh(method.getDescription()) + weigh(method.getSince()) + weigh(method.getUrlAnchor());
+			weight += 16L * method.getModifiers().size();
+			for (ParameterInfo parameter : method.getParameters()) {
+				weight += 100 + weigh(parameter.getName()) + weigh(parameter.getGeneric());
+			}
+		}
+
+		return weight;
+	}
+
+	private static long weigh(String string) {
+		return (string == null) ? 0 : 40 + 2L * string.length();
+	}
+
+	/**
+	 * Moves a class that left the window region into the main region, if it
+	 * has been used more often than every class it would push out. The
+	 * candidate is compared against all of those classes before any of them
+	 * are evicted, so a candidate that loses to one of them does not push out
+	 * the others.
+	 * @param fullName the fully-qualified class name
+	 * @param candidate the class
+	 */
+	private void admit(String fullName, Entry candidate) {
+		int frequency = sketch.frequency(fullName);
+		long excess = probationWeight + protectedWeight + candidate.weight - mainMaxWeight;
+
+		List<String> probationVictims = new ArrayList<>();
+		List<String> protectedVictims = new ArrayList<>();
+		if (excess > 0) {
+			excess = victims(probation, frequency, excess, probationVictims);
+			if (excess > 0) {
+				excess = victims(protected_, frequency, excess, protectedVictims);
+			}
+			if (excess != 0) {
+				//it lost to one of the victims, or it doesn't fit
+				evict(candidate);
+				return;
+			}
+		}
+
+		for (String victim : probationVictims) {
+			Entry entry = probation.remove(victim);
+			probationWeight -= entry.weight;
+			evict(entry);
+		}
+		for (String victim : protectedVictims) {
+			Entry entry = protected_.remove(victim);
+			protectedWeight -= entry.weight;
+			evict(entry);
+		}
+
+		probation.put(fullName, candidate);
+		probationWeight += candidate.weight;
+	}
+
+	/**
+	 * Walks a segment from its least recently used class, collecting the
+	 * classes that would have to be evicted to make room for a candidate.
+	 * Nothing is removed from the segment.
+	 * @param segment the segment
+	 * @param frequency the candidate's frequency
+	 * @param excess the amount of weight that needs to be freed
+	 * @param victims the list to add the victims to
+	 * @return the amount of weight that still needs to be freed (zero or
+	 * less if enough weight was found) or -1 if the candidate was used less
+	 * often than one of the victims
+	 */
+	private long victims(Map<String, Entry> segment, int frequency, long excess, List<String> victims) {
+		for (Map.Entry<String, Entry> entry : segment.entrySet()) {
+			if (frequency <= sketch.frequency(entry.getKey())) {
+				return -1;
+			}
+
+			victims.add(entry.getKey());
+			excess -= entry.getValue().weight;
+			if (excess <= 0) {
+				return 0;
+			}
+		}
+		return excess;
+	}
+
+	/**
+	 * Moves the least recently used classes in the protected segment to the
+	 * probation segment until the protected segment is within its limit.
+	 */
+	private void demoteProtected() {
+		while (protectedWeight > protectedMaxWeight) {
+			Map.Entry<String, Entry> eldest = eldest(protected_);
+			protected_.remove(eldest.getKey());
+			protectedWeight -= eldest.getValue().weight;
+			probation.put(eldest.getKey(), eldest.getValue());
+			probationWeight += eldest.getValue().weight;
+		}
+	}
+
+	private void evict(Entry entry) {
+		evictions++;
+		evictedWeight += entry.weight;
+	}
+
+	private void remove(String fullName) {
+		Entry entry = window.remove(fullName);
+		if (entry != null) {
+			windowWeight -= entry.weight;
+			return;
+		}
+
+		entry = probation.remove(fullName);
+		if (entry != null) {
+			probationWeight -= entry.weight;
+			return;
+		}
+
+		entry = protected_.remove(fullName);
+		if (entry != null) {
+			protectedWeight -= entry.weight;
+		}
+	}
+
+	/**
+	 * Gets the least recently used entry of a region.
+	 * @param map the region (must not be empty)
+	 * @return the entry
+	 */
+	private static Map.Entry<String, Entry> eldest(Map<String, Entry> map) {
+		Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+		return it.next();
+	}
+
+	private static class Entry {
+		private final ClassInfo info;
+		private final long weight;
+
+		public Entry(ClassInfo info, long weight) {
+			this.info = info;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Estimates how often each class has been looked up, using a count-min
+	 * sketch of 4-bit counters. Once the number of lookups reaches ten times
+	 * the width of the sketch, every counter is halved, so that classes that
+	 * used to be popular eventually make room for classes that are popular
+	 * now.
+	 */
+	static class FrequencySketch {
+		private static final int[] seeds = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+		private static final int maxCount = 15;
+
+		private final byte[][] rows = new byte[seeds.length][];
+		private final int shift;
+		private final int sampleSize;
+		private int additions;
+
+		/**
+		 * @param expectedEntries the approximate number of entries in the
+		 * cache
+		 */
+		public FrequencySketch(long expectedEntries) {
+			int width = 256;
+			while (width < expectedEntries * 4 && width < (1 << 20)) {
+				width <<= 1;
+			}
+
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = new byte[width];
+			}
+			shift = 32 - Integer.numberOfTrailingZeros(width);
+			sampleSize = width * 10;
+		}
+
+		public void increment(String key) {
+			int hash = key.hashCode();
+			boolean added = false;
+			for (int i = 0; i < rows.length; i++) {
+				int index = index(hash, i);
+				if (rows[i][index] < maxCount) {
+					rows[i][index]++;
+					added = true;
+				}
+			}
+
+			if (added && ++additions >= sampleSize) {
+				age();
+			}
+		}
+
+		public int frequency(String key) {
+			int hash = key.hashCode();
+			int frequency = maxCount;
+			for (int i = 0; i < rows.length; i++) {
+				frequency = Math.min(frequency, rows[i][index(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private int index(int hash, int row) {
+			return (hash * seeds[row]) >>> shift;
+		}
+
+		private void age() {
+			for (byte[] row : rows) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] >>= 1;
+				}
+			}
+			additions /= 2;
+		}
+	}
+}
@@ -1,230 +1,279 @@
 package oakbot.command.javadoc;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import oakbot.util.XPathWrapper;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
- * Parses {@link ClassInfo} objects from XML documents.
+ * Parses {@link ClassInfo} objects from the XML files generated by
+ * oakbot-doclet.
+ * <p>
+ * The XML is read in a single pass with a {@link XMLStreamReader}, so no DOM
+ * tree is built. A parser can also be created that only parses some of the
+ * class's methods (for example, only the overloads of a single method). The
+ * descriptions of the methods it skips are never read into memory, and it
+ * stops reading the file once it has parsed the maximum number of methods.
+ * </p>
  * @author Michael Angstadt
  */
 public class ClassInfoXmlParser {
-	private final XPathWrapper xpath = new XPathWrapper();
+	private static final XMLInputFactory inputFactory;
+	static {
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private static final Pattern whitespace = Pattern.compile("\\s+");
+
+	private final Predicate<String> methodFilter;
+	private final int maxMethods;
+
+	/**
+	 * Creates a parser that parses all of the class's constructors and
+	 * methods.
+	 */
+	public ClassInfoXmlParser() {
+		this(name -> true, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a parser that only parses some of the class's constructors and
+	 * methods.
+	 * @param methodFilter determines which methods are parsed, given the
+	 * method's name (constructors have the same name as the class)
+	 * @param maxMethods the number of methods to parse before the rest of the
+	 * file is ignored
+	 */
+	public ClassInfoXmlParser(Predicate<String> methodFilter, int maxMethods) {
+		this.methodFilter = methodFilter;
+		this.maxMethods = maxMethods;
+	}
+
+	/**
+	 * Creates a parser that only parses the class's name, modifiers, super
+	 * class, interfaces, and description. The parser stops reading the file
+	 * as soon as it reaches the first constructor or method.
+	 * @return the parser
+	 */
+	public static ClassInfoXmlParser headerOnly() {
+		return new ClassInfoXmlParser(name -> false, 0);
+	}
 
 	/**
 	 * Parses a {@link ClassInfo} object out of the XML data.
-	 * @param document the XML document
+	 * @param in the XML data
 	 * @param zipFile the ZIP file the class belongs to
 	 * @return the parsed information
+	 * @throws IOException if there's a problem reading or parsing the XML
 	 * @throws IllegalArgumentException if the given XML document does not have
 	 * a root {@literal <class>} element.
 	 */
-	public static ClassInfo parse(Document document, JavadocZipFile zipFile) {
+	public static ClassInfo parse(InputStream in, JavadocZipFile zipFile) throws IOException {
 		ClassInfoXmlParser parser = new ClassInfoXmlParser();
-		ClassInfo.Builder builder = parser.parse(document);
+		ClassInfo.Builder builder = parser.parse(in);
 		builder.zipFile(zipFile);
 		return builder.build();
 	}
 
 	/**
 	 * Parses a {@link ClassInfo} object from an XML document.
-	 * @param document the XML document
+	 * @param in the XML data
 	 * @return the parsed object
+	 * @throws IOException if there's a problem reading or parsing the XML
 	 * @throws IllegalArgumentException if the given XML document does not have
 	 * a root {@literal <class>} element.
 	 */
-	public ClassInfo.Builder parse(Document document) {
+	public ClassInfo.Builder parse(InputStream in) throws IOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(in);
+			return parse(reader);
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	private ClassInfo.Builder parse(XMLStreamReader reader) throws XMLStreamException {
 		ClassInfo.Builder builder = new ClassInfo.Builder();
 
-		Element classElement = xpath.element("/class", document);
-		if (classElement == null) {
+		while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+			//skip the prolog
+		}
+		if (!reader.isStartElement() || !"class".equals(reader.getLocalName())) {
 			throw new IllegalArgumentException("XML file does not have a root <class> element.");
 		}
 
 		//class name
-		ClassName className = parseClassName(classElement.getAttribute("name"));
+		ClassName className = parseClassName(reader.getAttributeValue(null, "name"));
 		builder.name(className);
 
 		//modifiers
-		String value = classElement.getAttribute("modifiers");
-		if (!value.isEmpty()) {
-			builder.modifiers(Arrays.asList(value.split("\\s+")));
+		String value = attribute(reader, "modifiers");
+		if (value != null) {
+			builder.modifiers(Arrays.asList(whitespace.split(value)));
 		}
 
 		//super class
-		value = classElement.getAttribute("extends");
-		if (!value.isEmpty()) {
+		value = attribute(reader, "extends");
+		if (value != null) {
 			builder.superClass(parseClassName(value));
 		}
 
 		//interfaces
-		value = classElement.getAttribute("implements");
-		if (!value.isEmpty()) {
+		value = attribute(reader, "implements");
+		if (value != null) {
 			builder.interfaces(parseClassNames(value));
 		}
 
 		//deprecated
-		value = classElement.getAttribute("deprecated");
-		builder.deprecated(value.isEmpty() ? false : Boolean.parseBoolean(value));
+		builder.deprecated(Boolean.parseBoolean(attribute(reader, "deprecated")));
 
 		//since
-		value = classElement.getAttribute("since");
-		if (!value.isEmpty()) {
-			builder.since(value);
-		}
-
-		//description
-		Element element = xpath.element("/class/description", document);
-		if (element != null) {
-			builder.description(element.getTextContent());
+		builder.since(attribute(reader, "since"));
+
+		/*
+		 * Constructors are added before methods, regardless of the order they
+		 * appear in the file.
+		 */
+		List<MethodInfo> constructors = new ArrayList<>();
+		List<MethodInfo> methods = new ArrayList<>();
+		int parsed = 0;
+		boolean description = false;
+
+		children: while (nextChild(reader)) {
+			switch (reader.getLocalName()) {
+			case "description":
+				String text = readText(reader);
+				if (!description) {
+					builder.description(text);
+					description = true;
+				}
+				break;
+
+			case "constructor":
+				if (parsed >= maxMethods) {
+					break children;
+				}
+				if (!methodFilter.test(className.getSimpleName())) {
+					skipElement(reader);
+					break;
+				}
+				constructors.add(parseMethod(reader, className.getSimpleName()));
+				parsed++;
+				break;
+
+			case "method":
+				if (parsed >= maxMethods) {
+					break children;
+				}
+				String name = attribute(reader, "name");
+				if (name == null || !methodFilter.test(name)) {
+					skipElement(reader);
+					break;
+				}
+				methods.add(parseMethod(reader, name));
+				parsed++;
+				break;
+
+			default:
+				skipElement(reader);
+				break;
+			}
 		}
 
-		//constructors
-		for (Element constructorElement : xpath.elements("/class/constructor", document)) {
-			MethodInfo info = parseConstructor(constructorElement, className.getSimpleName());
-			builder.method(info);
+		for (MethodInfo constructor : constructors) {
+			builder.method(constructor);
 		}
-
-		//methods
-		for (Element methodElement : xpath.elements("/class/method", document)) {
-			MethodInfo method = parseMethod(methodElement);
-			if (method != null) {
-				builder.method(method);
-			}
+		for (MethodInfo method : methods) {
+			builder.method(method);
 		}
 
 		return builder;
 	}
 
 	/**
-	 * Parses a {@link ClassName} object from the special format the XML file
-	 * uses.
-	 * @param value the string value from the XML file (e.g.
-	 * "java.util|Map.Entry")
-	 * @return the {@link ClassName} object
-	 */
-	private static ClassName parseClassName(String value) {
-		int pipe = value.indexOf('|');
-		String packageName = (pipe < 0) ? null : value.substring(0, pipe);
-
-		String afterPipe = (pipe < 0) ? value : value.substring(pipe + 1);
-		String split[] = afterPipe.split("\\.");
-		List<String> outerClassNames = new ArrayList<>(split.length - 1);
-		for (int i = 0; i < split.length - 1; i++) {
-			outerClassNames.add(split[i]);
-		}
-		String simpleName = split[split.length - 1];
-
-		return new ClassName(packageName, outerClassNames, simpleName);
-	}
-
-	/**
-	 * Parses {@link ClassName} objects from the special class name format the
-	 * XML file uses.
-	 * @param value space-delimited string value from the XML file (e.g.
-	 * "java.util|Map.Entry java.lang|String")
-	 * @return the {@link ClassName} objects
+	 * Parses a {@literal <constructor>} or {@literal <method>} element. The
+	 * reader must be positioned on the element's start tag, and is positioned
+	 * on its end tag when this method returns.
+	 * @param reader the XML reader
+	 * @param name the method name
+	 * @return the parsed method
+	 * @throws XMLStreamException if there's a problem reading the XML
 	 */
-	private static List<ClassName> parseClassNames(String value) {
-		String split[] = value.trim().split("\\s+");
-		return Arrays.stream(split).map(ClassInfoXmlParser::parseClassName).collect(Collectors.toList());
-	}
-
-	private MethodInfo parseConstructor(Element element, String simpleName) {
+	private static MethodInfo parseMethod(XMLStreamReader reader, String name) throws XMLStreamException {
 		MethodInfo.Builder builder = new MethodInfo.Builder();
 
 		//name
-		builder.name(simpleName);
-
-		//modifiers
-		String value = element.getAttribute("modifiers");
-		if (!value.isEmpty()) {
-			builder.modifiers(Arrays.asList(value.split("\\s+")));
-		}
-
-		//since
-		value = element.getAttribute("since");
-		if (!value.isEmpty()) {
-			builder.since(value);
-		}
-
-		//description
-		Element descriptionElement = xpath.element("description", element);
-		if (descriptionElement != null) {
-			builder.description(descriptionElement.getTextContent());
-		}
-
-		//deprecated
-		value = element.getAttribute("deprecated");
-		builder.deprecated(value.isEmpty() ? false : Boolean.parseBoolean(value));
-
-		//parameters
-		for (Element parameterElement : xpath.elements("parameter", element)) {
-			ParameterInfo parameter = parseParameter(parameterElement);
-			builder.parameter(parameter);
-		}
-
-		return builder.build();
-	}
-
-	private MethodInfo parseMethod(Element element) {
-		MethodInfo.Builder builder = new MethodInfo.Builder();
-
-		//name
-		String name = element.getAttribute("name");
-		if (name.isEmpty()) {
-			return null;
-		}
 		builder.name(name);
 
 		//modifiers
-		String value = element.getAttribute("modifiers");
-		if (!value.isEmpty()) {
-			builder.modifiers(Arrays.asList(value.split("\\s+")));
+		String value = attribute(reader, "modifiers");
+		if (value != null) {
+			builder.modifiers(Arrays.asList(whitespace.split(value)));
 		}
 
 		//since
-		value = element.getAttribute("since");
-		if (!value.isEmpty()) {
-			builder.since(value);
-		}
-
-		//description
-		Element descriptionElement = xpath.element("description", element);
-		if (descriptionElement != null) {
-			builder.description(descriptionElement.getTextContent());
-		}
+		builder.since(attribute(reader, "since"));
 
-		//return value
-		value = element.getAttribute("returns");
-		if (!value.isEmpty()) {
+		//return value (constructors do not have this attribute)
+		value = attribute(reader, "returns");
+		if (value != null) {
 			builder.returnValue(parseClassName(value));
 		}
 
 		//deprecated
-		value = element.getAttribute("deprecated");
-		builder.deprecated(value.isEmpty() ? false : Boolean.parseBoolean(value));
-
-		//parameters
-		for (Element parameterElement : xpath.elements("parameter", element)) {
-			ParameterInfo parameter = parseParameter(parameterElement);
-			if (parameter != null) {
-				builder.parameter(parameter);
+		builder.deprecated(Boolean.parseBoolean(attribute(reader, "deprecated")));
+
+		boolean description = false;
+		while (nextChild(reader)) {
+			switch (reader.getLocalName()) {
+			case "description":
+				String text = readText(reader);
+				if (!description) {
+					builder.description(text);
+					description = true;
+				}
+				break;
+
+			case "parameter":
+				builder.parameter(parseParameter(reader));
+				skipElement(reader);
+				break;
+
+			default:
+				skipElement(reader);
+				break;
 			}
 		}
 
 		return builder.build();
 	}
 
-	private ParameterInfo parseParameter(Element element) {
+	private static ParameterInfo parseParameter(XMLStreamReader reader) {
 		//type
-		String type = element.getAttribute("type");
+		String type = reader.getAttributeValue(null, "type");
+		if (type == null) {
+			type = "";
+		}
 
 		//is it an array?
 		boolean array = type.endsWith("[]");
@@ -248,8 +297,129 @@ public class ClassInfoXmlParser {
 		ClassName className = parseClassName(type);
 
 		//name
-		String name = element.getAttribute("name");
+		String name = reader.getAttributeValue(null, "name");
+		if (name == null) {
+			name = "";
+		}
 
 		return new ParameterInfo(className, name, array, varargs, generic);
 	}
+
+	/**
+	 * Parses a {@link ClassName} object from the special format the XML file
+	 * uses.
+	 * @param value the string value from the XML file (e.g.
+	 * "java.util|Map.Entry")
+	 * @return the {@link ClassName} object
+	 */
+	private static ClassName parseClassName(String value) {
+		if (value == null) {
+			value = "";
+		}
+
+		int pipe = value.indexOf('|');
+		String packageName = (pipe < 0) ? null : value.substring(0, pipe);
+
+		String afterPipe = (pipe < 0) ? value : value.substring(pipe + 1);
+		String split[] = afterPipe.split("\\.");
+		List<String> outerClassNames = new ArrayList<>(split.length - 1);
+		for (int i = 0; i < split.length - 1; i++) {
+			outerClassNames.add(split[i]);
+		}
+		String simpleName = split[split.length - 1];
+
+		return new ClassName(packageName, outerClassNames, simpleName);
+	}
+
+	/**
+	 * Parses {@link ClassName} objects from the special class name format the
+	 * XML file uses.
+	 * @param value space-delimited string value from the XML file (e.g.
+	 * "java.util|Map.Entry java.lang|String")
+	 * @return the {@link ClassName} objects
+	 */
+	private static List<ClassName> parseClassNames(String value) {
+		String split[] = whitespace.split(value.trim());
+		return Arrays.stream(split).map(ClassInfoXmlParser::parseClassName).collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets the value of an attribute on the current element.
+	 * @param reader the XML reader
+	 * @param name the attribute name
+	 * @return the value or null if the attribute is missing or empty
+	 */
+	private static String attribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return (value == null || value.isEmpty()) ? null : value;
+	}
+
+	/**
+	 * Reads all of the text inside of the current element, including the text
+	 * of any child elements. The reader is positioned on the element's end
+	 * tag when this method returns.
+	 * @param reader the XML reader
+	 * @return the text
+	 * @throws XMLStreamException if there's a problem reading the XML
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				sb.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Advances the reader to the next child of the current element, ignoring
+	 * any text in between.
+	 * @param reader the XML reader
+	 * @return true if the reader is positioned on a child's start tag, false
+	 * if it is positioned on the current element's end tag
+	 * @throws XMLStreamException if there's a problem reading the XML
+	 */
+	private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+		while (true) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				return true;
+			case XMLStreamConstants.END_ELEMENT:
+			case XMLStreamConstants.END_DOCUMENT:
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Skips over the current element and all of its children. The reader is
+	 * positioned on the element's end tag when this method returns.
+	 * @param reader the XML reader
+	 * @throws XMLStreamException if there's a problem reading the XML
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			}
+		}
+	}
 }
@@ -37,7 +37,10 @@ public class JavadocCommand implements Command {
 	private final JavadocDao dao;
 
 	/**
-	 * The most recent list of suggestions that were sent to the chat.
+	 * The most recent list of suggestions that were sent to the chat. Access
+	 * to this field (and {@link #prevChoicesPinged}) is synchronized because
+	 * the bot runs commands on multiple threads. Only the choices are locked,
+	 * so that lookups can run in parallel.
 	 */
 	private List<String> prevChoices = new ArrayList<>();
 
@@ -281,33 +284,38 @@ public class JavadocCommand implements Command {
 	 * @return the chat response or null not to respond to the message
 	 */
 	public ChatResponse showChoice(ChatMessage message, int num) {
-		if (prevChoicesPinged == 0) {
-			//no choices were ever printed to the chat, so ignore
-			return null;
-		}
+		String choice;
+		synchronized (this) {
+			if (prevChoicesPinged == 0) {
+				//no choices were ever printed to the chat, so ignore
+				return null;
+			}
 
-		boolean timedOut = System.currentTimeMillis() - prevChoicesPinged > choiceTimeout;
-		if (timedOut) {
-			//it's been a while since the choices were printed to the chat, so ignore
-			return null;
-		}
+			boolean timedOut = System.currentTimeMillis() - prevChoicesPinged > choiceTimeout;
+			if (timedOut) {
+				//it's been a while since the choices were printed to the chat, so ignore
+				return null;
+			}
 
-		//reset the time-out timer
-		prevChoicesPinged = System.currentTimeMillis();
+			//reset the time-out timer
+			prevChoicesPinged = System.currentTimeMillis();
+
+			int index = num - 1;
+			if (index < 0 || index >= prevChoices.size()) {
+				//check to make sure the number corresponds to a choice
+				//@formatter:off
+				return new ChatResponse(new ChatBuilder()
+					.reply(message)
+					.append("That's not a valid choice.")
+				);
+				//@formatter:on
+			}
 
-		int index = num - 1;
-		if (index < 0 || index >= prevChoices.size()) {
-			//check to make sure the number corresponds to a choice
-			//@formatter:off
-			return new ChatResponse(new ChatBuilder()
-				.reply(message)
-				.append("That's not a valid choice.")
-			);
-			//@formatter:on
+			choice = prevChoices.get(index);
 		}
 
 		//valid choice entered, print the info
-		message.setContent(prevChoices.get(index));
+		message.setContent(choice);
 		return onMessage(message, false, null);
 	}
 
@@ -380,8 +388,7 @@ public class JavadocCommand implements Command {
 	 * @return the chat response
 	 */
 	private ChatResponse printMethodChoices(Multimap<ClassInfo, MethodInfo> matchingMethods, List<String> methodParams, ChatMessage message) {
-		prevChoices = new ArrayList<>();
-		prevChoicesPinged = System.currentTimeMillis();
+		List<String> choices = new ArrayList<>();
 
 		ChatBuilder cb = new ChatBuilder();
 		cb.reply(message);
@@ -432,13 +439,23 @@ public class JavadocCommand implements Command {
 			}
 
 			cb.nl().append(count).append(". ").append(signature);
-			prevChoices.add(signature);
+			choices.add(signature);
 			count++;
 		}
+		setChoices(choices);
 
 		return new ChatResponse(cb, SplitStrategy.NEWLINE);
 	}
 
+	/**
+	 * Replaces the list of choices that the user can pick from.
+	 * @param choices the choices
+	 */
+	private synchronized void setChoices(List<String> choices) {
+		prevChoices = choices;
+		prevChoicesPinged = System.currentTimeMillis();
+	}
+
 	/**
 	 * Prints the classes to choose from when multiple class are found.
 	 * @param classes the fully-qualified names of the classes
@@ -448,8 +465,7 @@ public class JavadocCommand implements Command {
 	private ChatResponse printClassChoices(Collection<String> classes, ChatMessage message) {
 		List<String> choices = new ArrayList<>(classes);
 		Collections.sort(choices);
-		prevChoices = choices;
-		prevChoicesPinged = System.currentTimeMillis();
+		setChoices(choices);
 
 		ChatBuilder cb = new ChatBuilder();
 		cb.reply(message);
@@ -9,9 +9,19 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,6 +32,14 @@ import com.sun.nio.file.SensitivityWatchEventModifier;
 /**
  * Retrieves class information from Javadoc ZIP files generated by <a
  * href="https://github.com/mangstadt/oakbot-doclet">oakbot-doclet</a>.
+ * <p>
+ * The ZIP files are loaded in parallel in the background, so the bot does
+ * not have to wait for them before it connects to chat. A lookup only waits
+ * for as many ZIP files as it needs. A fully-qualified class name is returned
+ * as soon as a ZIP file containing it has been loaded, but a search by simple
+ * name waits for all of the ZIP files, since any of them may contain a class
+ * with that name.
+ * </p>
  * @author Michael Angstadt
  */
 public class JavadocDao {
@@ -52,31 +70,136 @@ public class JavadocDao {
 	 */
 	private final Multimap<String, String> aliases = HashMultimap.create();
 
+	/**
+	 * The default max weight of the class info cache (roughly, in bytes).
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 32 * 1024 * 1024;
+
 	/**
 	 * Caches class info that was parsed from the Javadoc ZIP files.
-	 * 
+	 */
+	private final ClassInfoCache cache;
+
+	/**
+	 * The directory where the binary indexes of the ZIP files are stored or
+	 * null not to use indexes.
+	 */
+	private final Path indexDir;
+
+	/**
+	 * Class info is read from the ZIP files while holding the read lock, so
+	 * that a ZIP file is not closed (which requires the write lock) while it
+	 * is being read. The DAO's monitor is not held while reading, so lookups
+	 * of different classes do not wait for each other.
+	 */
+	private final ReadWriteLock zipLock = new ReentrantReadWriteLock();
+
+	/**
+	 * The ZIP files that are still being loaded.
+	 */
+	private final Set<CompletableFuture<Void>> loading = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The paths of the ZIP files that are still being loaded in the
+	 * background. The watch thread does not touch these files while they are
+	 * loading. Instead, it marks them as changed, and they are reloaded once
+	 * their load finishes.
 	 * <ul>
-	 * <li><b>Key:</b> The fully-qualified class name.</li>
-	 * <li><b>Value:</b> The parsed Javadoc info for the class.</li>
+	 * <li><b>Key:</b> The path to the ZIP file.</li>
+	 * <li><b>Value:</b> Whether the file changed while it was loading.</li>
 	 * </ul>
 	 */
-	private final Map<String, ClassInfo> cache = new HashMap<>();
+	private final Map<Path, Boolean> loadingFiles = new ConcurrentHashMap<>();
+
+	private final WatchThread watchThread;
 
 	/**
 	 * @param dir the directory where the Javadoc ZIP files are stored
-	 * @throws IOException if there's a problem reading any of the ZIP files
+	 * @throws IOException if there's a problem reading the directory
 	 */
 	public JavadocDao(Path dir) throws IOException {
+		this(dir, null, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param dir the directory where the Javadoc ZIP files are stored
+	 * @param indexDir the directory where the binary indexes of the ZIP files
+	 * are stored (created if it doesn't exist) or null to read the ZIP files
+	 * directly
+	 * @param cacheSize the max weight of the class info cache (roughly, in
+	 * bytes)
+	 * @throws IOException if there's a problem reading the directory or
+	 * creating the index directory
+	 * @see JavadocIndex
+	 */
+	public JavadocDao(Path dir, Path indexDir, long cacheSize) throws IOException {
+		cache = new ClassInfoCache(cacheSize);
+		this.indexDir = indexDir;
+		if (indexDir != null) {
+			Files.createDirectories(indexDir);
+		}
+
+		List<Path> files = new ArrayList<>();
 		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, JavadocDao::isZipFile)) {
 			for (Path file : stream) {
-				register(file);
+				files.add(file);
 			}
 		}
 
-		WatchThread watchThread = new WatchThread(dir);
+		if (!files.isEmpty()) {
+			long start = System.nanoTime();
+			ForkJoinPool pool = new ForkJoinPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+
+			List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+			for (Path file : files) {
+				futures.add(registerAsync(file, pool));
+			}
+
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((result, thrown) -> {
+				pool.shutdown();
+				long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				logger.info("Loaded " + files.size() + " Javadoc ZIP files in " + elapsed + "ms.");
+			});
+		}
+
+		watchThread = new WatchThread(dir);
 		watchThread.start();
 	}
 
+	/**
+	 * Registers a Javadoc ZIP file with the DAO in the background. If the ZIP
+	 * file can't be read, the error is logged.
+	 * @param file the ZIP file containing the Javadoc info (generated by
+	 * oakbot-doclet)
+	 * @param executor the executor to load the ZIP file with
+	 * @return completes when the ZIP file has been registered (never
+	 * completes exceptionally)
+	 */
+	private CompletableFuture<Void> registerAsync(Path file, Executor executor) {
+		loadingFiles.put(file, false);
+		CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+			try {
+				register(file);
+			} catch (Exception e) {
+				//catch RuntimeExceptions too
+				logger.log(Level.SEVERE, "Could not load Javadoc ZIP file " + file + ".  Its classes will not be available.", e);
+			}
+		}, executor);
+
+		loading.add(future);
+		future.whenComplete((result, thrown) -> {
+			try {
+				if (Boolean.TRUE.equals(loadingFiles.remove(file))) {
+					watchThread.reload(file);
+				}
+			} finally {
+				//the reload is added to "loading" first, so lookups keep waiting
+				loading.remove(future);
+			}
+		});
+		return future;
+	}
+
 	/**
 	 * Registers a Javadoc ZIP file with the DAO.
 	 * @param file the ZIP file containing the Javadoc info (generated by
@@ -84,17 +207,31 @@ public class JavadocDao {
 	 * @throws IOException if there was a problem reading the ZIP file
 	 */
 	private void register(Path file) throws IOException {
-		JavadocZipFile zip = new JavadocZipFile(file);
-		for (ClassName className : zip.getClassNames()) {
-			String fullName = className.getFullyQualifiedName();
-			String simpleName = className.getSimpleName();
-
-			aliases.put(simpleName.toLowerCase(), fullName);
-			aliases.put(simpleName, fullName);
-			aliases.put(fullName.toLowerCase(), fullName);
-			aliases.put(fullName, fullName);
-			libraryClasses.put(zip, fullName);
+		long start = System.nanoTime();
+		JavadocZipFile zip = new JavadocZipFile(file, indexFile(file));
+
+		synchronized (this) {
+			if (libraryClasses.containsKey(zip)) {
+				//the same file was registered by someone else in the meantime
+				zip.close();
+				logger.info("Javadoc ZIP file " + file.getFileName() + " is already loaded.");
+				return;
+			}
+
+			for (ClassName className : zip.getClassNames()) {
+				String fullName = className.getFullyQualifiedName();
+				String simpleName = className.getSimpleName();
+
+				aliases.put(simpleName.toLowerCase(), fullName);
+				aliases.put(simpleName, fullName);
+				aliases.put(fullName.toLowerCase(), fullName);
+				aliases.put(fullName, fullName);
+				libraryClasses.put(zip, fullName);
+			}
 		}
+
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		logger.info("Loaded Javadoc ZIP file " + file.getFileName() + " (" + zip.getClassNames().size() + " classes) in " + elapsed + "ms.");
 	}
 
 	/**
@@ -106,13 +243,29 @@ public class JavadocDao {
 	 * @return the fully-qualified class name(s) that were found or an empty
 	 * list if none were found
 	 */
-	public synchronized Collection<String> search(String className) {
+	public Collection<String> search(String className) {
+		//a simple name may match classes in any of the ZIP files
+		boolean qualified = className.indexOf('.') >= 0;
+		awaitLoading(() -> qualified && !searchLoaded(className).isEmpty());
+
+		return searchLoaded(className);
+	}
+
+	/**
+	 * Searches the ZIP files that have been loaded so far for the
+	 * fully-qualified name of a class.
+	 * @param className the simple or fully-qualified class name (case
+	 * insensitive)
+	 * @return the fully-qualified class name(s) that were found or an empty
+	 * list if none were found
+	 */
+	private synchronized Collection<String> searchLoaded(String className) {
 		Collection<String> names = aliases.get(className);
 		if (names.isEmpty()) {
 			//try case-insensitive search
 			names = aliases.get(className.toLowerCase());
 		}
-		return names;
+		return new ArrayList<>(names);
 	}
 
 	/**
@@ -122,25 +275,73 @@ public class JavadocDao {
 	 * @return the Javadoc info or null if the class was not found
 	 * @throws IOException if there's a problem reading the class's Javadocs
 	 */
-	public synchronized ClassInfo getClassInfo(String fullyQualifiedClassName) throws IOException {
+	public ClassInfo getClassInfo(String fullyQualifiedClassName) throws IOException {
+		awaitLoading(() -> isLoaded(fullyQualifiedClassName));
+		return loadClassInfo(fullyQualifiedClassName);
+	}
+
+	private synchronized boolean isLoaded(String fullyQualifiedClassName) {
+		return aliases.containsEntry(fullyQualifiedClassName, fullyQualifiedClassName);
+	}
+
+	private ClassInfo loadClassInfo(String fullyQualifiedClassName) throws IOException {
 		//check the cache
 		ClassInfo info = cache.get(fullyQualifiedClassName);
 		if (info != null) {
 			return info;
 		}
 
+		List<JavadocZipFile> zips;
+		synchronized (this) {
+			zips = new ArrayList<>(libraryClasses.keySet());
+		}
+
 		//parse the class info from the Javadocs
-		for (JavadocZipFile zip : libraryClasses.keySet()) {
-			info = zip.getClassInfo(fullyQualifiedClassName);
-			if (info != null) {
-				cache.put(fullyQualifiedClassName, info);
-				return info;
+		zipLock.readLock().lock();
+		try {
+			for (JavadocZipFile zip : zips) {
+				if (zip.isClosed()) {
+					//removed since the list was copied
+					continue;
+				}
+
+				info = zip.getClassInfo(fullyQualifiedClassName);
+				if (info != null) {
+					cache.put(fullyQualifiedClassName, info);
+					logger.fine("Javadoc cache: " + cache);
+					return info;
+				}
 			}
+		} finally {
+			zipLock.readLock().unlock();
 		}
 
 		return null;
 	}
 
+	/**
+	 * Waits for the ZIP files that are still being loaded, one at a time,
+	 * until a condition is met or all of them have been loaded.
+	 * @param done the condition
+	 */
+	private void awaitLoading(BooleanSupplier done) {
+		for (CompletableFuture<Void> future : new ArrayList<>(loading)) {
+			if (done.getAsBoolean()) {
+				return;
+			}
+			future.join();
+		}
+	}
+
+	/**
+	 * Gets the class info cache, which holds the hit, miss, and eviction
+	 * counts.
+	 * @return the cache
+	 */
+	public ClassInfoCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * Watches the Javadoc directory for changes, loading or removing Javadoc
 	 * ZIP files that were added or deleted from the file system.
@@ -153,6 +354,7 @@ public class JavadocDao {
 		 * @param dir the directory to watch
 		 * @throws IOException if there's a problem watching the directory
 		 */
+		@SuppressWarnings("removal")
 		public WatchThread(Path dir) throws IOException {
 			setName(getClass().getSimpleName());
 			setDaemon(true);
@@ -187,6 +389,11 @@ public class JavadocDao {
 
 					file = dir.resolve(file);
 
+					if (loadingFiles.computeIfPresent(file, (k, changed) -> true) != null) {
+						logger.info("ZIP file " + file + " changed while it was being loaded. It will be reloaded once it finishes loading.");
+						continue;
+					}
+
 					if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
 						add(file);
 						continue;
@@ -194,6 +401,7 @@ public class JavadocDao {
 
 					if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
 						remove(file);
+						deleteIndex(file);
 						continue;
 					}
 
@@ -212,6 +420,20 @@ public class JavadocDao {
 			}
 		}
 
+		/**
+		 * Reloads a ZIP file that changed while it was being loaded in the
+		 * background.
+		 * @param file the ZIP file
+		 */
+		public void reload(Path file) {
+			remove(file);
+			if (Files.exists(file)) {
+				registerAsync(file, ForkJoinPool.commonPool());
+			} else {
+				deleteIndex(file);
+			}
+		}
+
 		private void add(Path file) {
 			logger.info("Loading ZIP file " + file + "...");
 			try {
@@ -227,9 +449,10 @@ public class JavadocDao {
 			logger.info("Removing ZIP file " + file + "...");
 			Path fileName = file.getFileName();
 
+			JavadocZipFile found = null;
+			Collection<String> classNames;
 			synchronized (JavadocDao.this) {
 				//find the corresponding JavadocZipFile object
-				JavadocZipFile found = null;
 				for (JavadocZipFile zip : libraryClasses.keys()) {
 					if (zip.getPath().getFileName().equals(fileName)) {
 						found = zip;
@@ -241,13 +464,48 @@ public class JavadocDao {
 					return;
 				}
 
-				Collection<String> classNames = libraryClasses.removeAll(found);
+				classNames = libraryClasses.removeAll(found);
 				aliases.values().removeAll(classNames);
-				cache.keySet().removeAll(classNames);
+				cache.invalidateAll(classNames);
+			}
+
+			//wait for any lookups that are reading from it
+			zipLock.writeLock().lock();
+			try {
+				found.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close ZIP file " + file + ".", e);
+			} finally {
+				zipLock.writeLock().unlock();
 			}
 
+			//a lookup that was reading from it may have cached one of its classes
+			cache.invalidateAll(classNames);
+
 			logger.info("ZIP file " + file + " removed.");
 		}
+
+		private void deleteIndex(Path file) {
+			Path indexFile = indexFile(file);
+			if (indexFile == null) {
+				return;
+			}
+
+			try {
+				Files.deleteIfExists(indexFile);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not delete Javadoc index " + indexFile + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the path to a ZIP file's index.
+	 * @param file the ZIP file
+	 * @return the path to the index or null if indexes are not used
+	 */
+	private Path indexFile(Path file) {
+		return (indexDir == null) ? null : indexDir.resolve(file.getFileName() + ".idx");
 	}
 
 	/**
@@ -0,0 +1,599 @@
+package oakbot.command.javadoc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * A precompiled, binary version of a Javadoc ZIP file. Reading a class from
+ * the index does not involve any XML parsing, and opening the index only
+ * requires reading its list of class names. The index file is memory-mapped.
+ * <p>
+ * The file consists of a header, followed by four sections:
+ * </p>
+ * <ol>
+ * <li><b>Strings:</b> Every distinct string (names, modifiers, "since"
+ * values, etc), which the rest of the file refers to by index.</li>
+ * <li><b>Directory:</b> The name of each class and the position of its
+ * record.</li>
+ * <li><b>Records:</b> Each class's modifiers, super class, interfaces, and
+ * methods (including their parameter types).</li>
+ * <li><b>Descriptions:</b> The descriptions of each class and its methods,
+ * compressed into one block per class, since they make up most of the data
+ * and are only needed when a class is looked up.</li>
+ * </ol>
+ * <p>
+ * The header contains the size and last modified time of the ZIP file the
+ * index was built from, so that an out of date index can be detected and
+ * rebuilt.
+ * </p>
+ * @author Michael Angstadt
+ */
+class JavadocIndex {
+	private static final byte[] MAGIC = { 'O', 'A', 'K', 'J', 'D', 'X' };
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the header (in bytes).
+	 */
+	private static final int HEADER_SIZE = MAGIC.length + 4 + 8 + 8 + (5 * 4) + (4 * 4);
+
+	private static final int FLAG_DEPRECATED = 1;
+	private static final int FLAG_ARRAY = 1;
+	private static final int FLAG_VARARGS = 2;
+
+	private final ByteBuffer buffer;
+	private final int stringsOffset, recordsOffset, descriptionsOffset;
+	private final int stringCount;
+
+	/**
+	 * The decoded strings. Strings are decoded when they are first needed.
+	 */
+	private final String[] strings;
+
+	private final String name, version, baseUrl, projectUrl, javadocUrlPattern;
+
+	/**
+	 * The position of each class's record, relative to the start of the
+	 * records section.
+	 * <ul>
+	 * <li><b>Key:</b> The fully-qualified class name.</li>
+	 * <li><b>Value:</b> The position.</li>
+	 * </ul>
+	 */
+	private final Map<String, Integer> records = new HashMap<>();
+
+	private final Collection<ClassName> classNames;
+
+	private JavadocIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+
+		ByteBuffer in = buffer.duplicate();
+		in.position(MAGIC.length + 4 + 8 + 8);
+		int nameId = in.getInt();
+		int versionId = in.getInt();
+		int baseUrlId = in.getInt();
+		int projectUrlId = in.getInt();
+		int javadocUrlPatternId = in.getInt();
+		stringsOffset = in.getInt();
+		int directoryOffset = in.getInt();
+		recordsOffset = in.getInt();
+		descriptionsOffset = in.getInt();
+
+		stringCount = buffer.getInt(stringsOffset);
+		strings = new String[stringCount];
+
+		name = string(nameId);
+		version = string(versionId);
+		baseUrl = string(baseUrlId);
+		projectUrl = string(projectUrlId);
+		javadocUrlPattern = string(javadocUrlPatternId);
+
+		in.position(directoryOffset);
+		int count = in.getInt();
+		List<ClassName> classNames = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ClassName className = readClassName(in);
+			classNames.add(className);
+			records.put(className.getFullyQualifiedName(), in.getInt());
+		}
+		this.classNames = Collections.unmodifiableCollection(classNames);
+	}
+
+	/**
+	 * Opens an index file.
+	 * @param file the index file
+	 * @param zipSize the current size of the ZIP file the index was built
+	 * from
+	 * @param zipModified the current last modified time of the ZIP file the
+	 * index was built from
+	 * @return the index or null if the file doesn't exist, is out of date, or
+	 * can't be read
+	 */
+	public static JavadocIndex open(Path file, long zipSize, long zipModified) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+
+			//the mapping remains valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (magic[i] != MAGIC[i]) {
+					return null;
+				}
+			}
+			if (buffer.getInt() != VERSION || buffer.getLong() != zipSize || buffer.getLong() != zipModified) {
+				return null;
+			}
+
+			return new JavadocIndex(buffer);
+		} catch (IOException | RuntimeException e) {
+			//corrupt, so it will be rebuilt
+			return null;
+		}
+	}
+
+	/**
+	 * Builds an index file from a Javadoc ZIP file. The index file is
+	 * replaced atomically, so an index that is being read is never seen half
+	 * written.
+	 * @param zip the ZIP file
+	 * @param file the index file to create
+	 * @param zipSize the size of the ZIP file
+	 * @param zipModified the last modified time of the ZIP file
+	 * @throws IOException if there's a problem reading the ZIP file or writing
+	 * the index file
+	 */
+	public static void write(JavadocZipFile zip, Path file, long zipSize, long zipModified) throws IOException {
+		Writer writer = new Writer();
+		try {
+			for (ClassName className : zip.getClassNames()) {
+				ClassInfo info = zip.getClassInfo(className.getFullyQualifiedName());
+				if (info != null) {
+					writer.add(className, info);
+				}
+			}
+		} finally {
+			writer.end();
+		}
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			writer.write(out, zip, zipSize, zipModified);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Gets the classes in the index.
+	 * @return the class names
+	 */
+	public Collection<ClassName> getClassNames() {
+		return classNames;
+	}
+
+	/**
+	 * Reads a class from the index.
+	 * @param fullName the fully-qualified class name (e.g. "java.lang.String")
+	 * @param zipFile the ZIP file the index belongs to
+	 * @return the class info or null if the class was not found
+	 * @throws IOException if the index is corrupt
+	 */
+	public ClassInfo getClassInfo(String fullName, JavadocZipFile zipFile) throws IOException {
+		Integer position = records.get(fullName);
+		if (position == null) {
+			return null;
+		}
+
+		try {
+			return readClass(recordsOffset + position, zipFile);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DataFormatException e) {
+			throw new IOException("Javadoc index is corrupt.", e);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public String getProjectUrl() {
+		return projectUrl;
+	}
+
+	public String getJavadocUrlPattern() {
+		return javadocUrlPattern;
+	}
+
+	private ClassInfo readClass(int position, JavadocZipFile zipFile) throws DataFormatException {
+		ByteBuffer in = buffer.duplicate();
+		in.position(position);
+
+		ClassInfo.Builder builder = new ClassInfo.Builder();
+		builder.zipFile(zipFile);
+		builder.name(readClassName(in));
+		builder.deprecated((in.getInt() & FLAG_DEPRECATED) != 0);
+		builder.since(string(in.getInt()));
+
+		int blockOffset = in.getInt();
+		int blockLength = in.getInt();
+		List<String> descriptions = readDescriptions(blockOffset, blockLength);
+		builder.description(description(descriptions, in.getInt()));
+
+		builder.modifiers(readStrings(in));
+		builder.superClass(readClassName(in));
+
+		int count = in.getInt();
+		for (int i = 0; i < count; i++) {
+			builder.interface_(readClassName(in));
+		}
+
+		count = in.getInt();
+		for (int i = 0; i < count; i++) {
+			MethodInfo.Builder method = new MethodInfo.Builder();
+			method.name(string(in.getInt()));
+			method.deprecated((in.getInt() & FLAG_DEPRECATED) != 0);
+			method.since(string(in.getInt()));
+			method.description(description(descriptions, in.getInt()));
+			method.modifiers(readStrings(in));
+			method.returnValue(readClassName(in));
+
+			int parameters = in.getInt();
+			for (int j = 0; j < parameters; j++) {
+				ClassName type = readClassName(in);
+				String name = string(in.getInt());
+				int flags = in.getInt();
+				String generic = string(in.getInt());
+				method.parameter(new ParameterInfo(type, name, (flags & FLAG_ARRAY) != 0, (flags & FLAG_VARARGS) != 0, generic));
+			}
+
+			builder.method(method.build());
+		}
+
+		return builder.build();
+	}
+
+	private List<String> readDescriptions(int blockOffset, int blockLength) throws DataFormatException {
+		if (blockLength == 0) {
+			return Collections.emptyList();
+		}
+
+		byte[] compressed = new byte[blockLength];
+		ByteBuffer in = buffer.duplicate();
+		in.position(descriptionsOffset + blockOffset);
+		in.get(compressed);
+
+		Inflater inflater = new Inflater();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(blockLength * 4);
+		try {
+			inflater.setInput(compressed);
+			byte[] chunk = new byte[8192];
+			while (!inflater.finished()) {
+				int read = inflater.inflate(chunk);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new DataFormatException("Description block is truncated.");
+				}
+				out.write(chunk, 0, read);
+			}
+		} finally {
+			inflater.end();
+		}
+
+		ByteBuffer block = ByteBuffer.wrap(out.toByteArray());
+		int count = block.getInt();
+		List<String> descriptions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int length = block.getInt();
+			descriptions.add(new String(block.array(), block.position(), length, StandardCharsets.UTF_8));
+			block.position(block.position() + length);
+		}
+		return descriptions;
+	}
+
+	private static String description(List<String> descriptions, int index) {
+		return (index < 0) ? null : descriptions.get(index);
+	}
+
+	private List<String> readStrings(ByteBuffer in) {
+		int count = in.getInt();
+		List<String> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(string(in.getInt()));
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a class name.
+	 * @param in the buffer
+	 * @return the class name or null if the value is null
+	 */
+	private ClassName readClassName(ByteBuffer in) {
+		int simpleName = in.getInt();
+		if (simpleName < 0) {
+			return null;
+		}
+
+		String packageName = string(in.getInt());
+		int count = in.getInt();
+		List<String> outerClassNames = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			outerClassNames.add(string(in.getInt()));
+		}
+		return new ClassName(packageName, outerClassNames, string(simpleName));
+	}
+
+	/**
+	 * Gets a string from the string table.
+	 * @param id the string's index or -1 for null
+	 * @return the string
+	 */
+	private String string(int id) {
+		if (id < 0) {
+			return null;
+		}
+		if (id >= stringCount) {
+			throw new IllegalArgumentException("Invalid string ID: " + id);
+		}
+
+		String value = strings[id];
+		if (value == null) {
+			//strings are immutable, so it doesn't matter if two threads decode the same one
+			int offsets = stringsOffset + 4;
+			int start = buffer.getInt(offsets + id * 4);
+			int end = buffer.getInt(offsets + (id + 1) * 4);
+			int data = offsets + (stringCount + 1) * 4;
+
+			byte[] bytes = new byte[end - start];
+			ByteBuffer in = buffer.duplicate();
+			in.position(data + start);
+			in.get(bytes);
+
+			value = new String(bytes, StandardCharsets.UTF_8);
+			strings[id] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Builds an index file.
+	 */
+	private static class Writer {
+		private final Map<String, Integer> strings = new LinkedHashMap<>();
+		private final List<ClassName> classNames = new ArrayList<>();
+		private final List<Integer> recordPositions = new ArrayList<>();
+		private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+		private final DataOutputStream recordsOut = new DataOutputStream(records);
+		private final ByteArrayOutputStream descriptions = new ByteArrayOutputStream();
+		private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+		/**
+		 * Adds a class.
+		 * @param className the name of the class's XML file in the ZIP file
+		 * @param info the class
+		 * @throws IOException never thrown
+		 */
+		public void add(ClassName className, ClassInfo info) throws IOException {
+			classNames.add(className);
+			recordPositions.add(records.size());
+
+			List<String> blockDescriptions = new ArrayList<>();
+			DataOutputStream out = recordsOut;
+			writeClassName(out, info.getName());
+			out.writeInt(info.isDeprecated() ? FLAG_DEPRECATED : 0);
+			out.writeInt(id(info.getSince()));
+
+			//the descriptions are written last, once they are all known
+			ByteArrayOutputStream rest = new ByteArrayOutputStream();
+			DataOutputStream restOut = new DataOutputStream(rest);
+			restOut.writeInt(description(blockDescriptions, info.getDescription()));
+			writeStrings(restOut, info.getModifiers());
+			writeClassName(restOut, info.getSuperClass());
+
+			restOut.writeInt(info.getInterfaces().size());
+			for (ClassName interfaceName : info.getInterfaces()) {
+				writeClassName(restOut, interfaceName);
+			}
+
+			Collection<MethodInfo> methods = info.getMethods();
+			restOut.writeInt(methods.size());
+			for (MethodInfo method : methods) {
+				restOut.writeInt(id(method.getName()));
+				restOut.writeInt(method.isDeprecated() ? FLAG_DEPRECATED : 0);
+				restOut.writeInt(id(method.getSince()));
+				restOut.writeInt(description(blockDescriptions, method.getDescription()));
+				writeStrings(restOut, method.getModifiers());
+				writeClassName(restOut, method.getReturnValue());
+
+				restOut.writeInt(method.getParameters().size());
+				for (ParameterInfo parameter : method.getParameters()) {
+					writeClassName(restOut, parameter.getType());
+					restOut.writeInt(id(parameter.getName()));
+					int flags = (parameter.isArray() ? FLAG_ARRAY : 0) | (parameter.isVarargs() ? FLAG_VARARGS : 0);
+					restOut.writeInt(flags);
+					restOut.writeInt(id(parameter.getGeneric()));
+				}
+			}
+
+			int blockOffset = descriptions.size();
+			if (!blockDescriptions.isEmpty()) {
+				deflater.reset();
+				DeflaterOutputStream blockStream = new DeflaterOutputStream(descriptions, deflater);
+				DataOutputStream blockOut = new DataOutputStream(blockStream);
+				blockOut.writeInt(blockDescriptions.size());
+				for (String description : blockDescriptions) {
+					byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+					blockOut.writeInt(bytes.length);
+					blockOut.write(bytes);
+				}
+				blockStream.finish();
+			}
+			out.writeInt(blockOffset);
+			out.writeInt(descriptions.size() - blockOffset);
+
+			rest.writeTo(out);
+		}
+
+		/**
+		 * Releases the compressor. Classes cannot be added once this is
+		 * called.
+		 */
+		public void end() {
+			deflater.end();
+		}
+
+		/**
+		 * Writes the index file.
+		 * @param out the output stream
+		 * @param zip the ZIP file the index is built from
+		 * @param zipSize the size of the ZIP file
+		 * @param zipModified the last modified time of the ZIP file
+		 * @throws IOException if there's a problem writing to the stream
+		 */
+		public void write(OutputStream out, JavadocZipFile zip, long zipSize, long zipModified) throws IOException {
+			int nameId = id(zip.getName());
+			int versionId = id(zip.getVersion());
+			int baseUrlId = id(zip.getBaseUrl());
+			int projectUrlId = id(zip.getProjectUrl());
+			int javadocUrlPatternId = id(zip.getJavadocUrlPattern());
+
+			ByteArrayOutputStream directory = new ByteArrayOutputStream();
+			DataOutputStream directoryOut = new DataOutputStream(directory);
+			directoryOut.writeInt(classNames.size());
+			for (int i = 0; i < classNames.size(); i++) {
+				writeClassName(directoryOut, classNames.get(i));
+				directoryOut.writeInt(recordPositions.get(i));
+			}
+
+			//encode the strings last, since the directory may have added some
+			ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+			int[] offsets = new int[strings.size() + 1];
+			int i = 0;
+			for (String string : strings.keySet()) {
+				offsets[i++] = stringData.size();
+				stringData.write(string.getBytes(StandardCharsets.UTF_8));
+			}
+			offsets[i] = stringData.size();
+
+			ByteArrayOutputStream stringTable = new ByteArrayOutputStream();
+			DataOutputStream stringTableOut = new DataOutputStream(stringTable);
+			stringTableOut.writeInt(strings.size());
+			for (int offset : offsets) {
+				stringTableOut.writeInt(offset);
+			}
+			stringData.writeTo(stringTableOut);
+
+			long stringsOffset = HEADER_SIZE;
+			long directoryOffset = stringsOffset + stringTable.size();
+			long recordsOffset = directoryOffset + directory.size();
+			long descriptionsOffset = recordsOffset + records.size();
+			long end = descriptionsOffset + descriptions.size();
+			if (end > Integer.MAX_VALUE) {
+				throw new IOException("Javadoc index would be too large.");
+			}
+
+			DataOutputStream dataOut = new DataOutputStream(out);
+			dataOut.write(MAGIC);
+			dataOut.writeInt(VERSION);
+			dataOut.writeLong(zipSize);
+			dataOut.writeLong(zipModified);
+			dataOut.writeInt(nameId);
+			dataOut.writeInt(versionId);
+			dataOut.writeInt(baseUrlId);
+			dataOut.writeInt(projectUrlId);
+			dataOut.writeInt(javadocUrlPatternId);
+			dataOut.writeInt((int) stringsOffset);
+			dataOut.writeInt((int) directoryOffset);
+			dataOut.writeInt((int) recordsOffset);
+			dataOut.writeInt((int) descriptionsOffset);
+			stringTable.writeTo(dataOut);
+			directory.writeTo(dataOut);
+			records.writeTo(dataOut);
+			descriptions.writeTo(dataOut);
+			dataOut.flush();
+		}
+
+		private void writeClassName(DataOutputStream out, ClassName className) throws IOException {
+			if (className == null) {
+				out.writeInt(-1);
+				return;
+			}
+
+			out.writeInt(id(className.getSimpleName()));
+			out.writeInt(id(className.getPackageName()));
+			out.writeInt(className.getOuterClassNames().size());
+			for (String outerClassName : className.getOuterClassNames()) {
+				out.writeInt(id(outerClassName));
+			}
+		}
+
+		private void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+			out.writeInt(values.size());
+			for (String value : values) {
+				out.writeInt(id(value));
+			}
+		}
+
+		/**
+		 * Adds a description to the class's description block.
+		 * @param blockDescriptions the descriptions in the block
+		 * @param description the description (may be null)
+		 * @return the description's index in the block or -1 if it's null
+		 */
+		private static int description(List<String> blockDescriptions, String description) {
+			if (description == null) {
+				return -1;
+			}
+			blockDescriptions.add(description);
+			return blockDescriptions.size() - 1;
+		}
+
+		/**
+		 * Gets a string's index in the string table, adding it if necessary.
+		 * @param value the string (may be null)
+		 * @return the index or -1 if the string is null
+		 */
+		private int id(String value) {
+			if (value == null) {
+				return -1;
+			}
+			return strings.computeIfAbsent(value, k -> strings.size());
+		}
+	}
+}
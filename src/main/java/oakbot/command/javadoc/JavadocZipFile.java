@@ -1,20 +1,22 @@
 package oakbot.command.javadoc;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -28,9 +30,21 @@ import org.xml.sax.SAXException;
 /**
  * Represents a Javadoc ZIP file that was generated by <a
  * href="https://github.com/mangstadt/oakbot-doclet">oakbot-doclet</a>.
+ * <p>
+ * The ZIP file is kept open until {@link #close} is called, and the location
+ * of each class's XML file is indexed when the object is created, so looking
+ * up a class does not have to re-read the ZIP file's directory. Classes can be
+ * read by multiple threads at once.
+ * </p>
+ * <p>
+ * If an index file is given, the ZIP file is compiled into a
+ * {@link JavadocIndex binary index} the first time it is loaded (and whenever
+ * the ZIP file changes). From then on, the classes are read from the index
+ * and the ZIP file is not opened at all.
+ * </p>
  * @author Michael Angstadt
  */
-public class JavadocZipFile {
+public class JavadocZipFile implements Closeable {
 	private static final String extension = ".xml";
 	private static final String infoFileName = "info" + extension;
 
@@ -44,6 +58,35 @@ public class JavadocZipFile {
 	 */
 	private final Path file;
 
+	/**
+	 * The open ZIP file or null if the classes are read from an index.
+	 */
+	private final ZipFile zip;
+
+	/**
+	 * The index or null if the classes are read from the ZIP file (set to
+	 * null when this object is closed, so the mapped index file can be
+	 * released).
+	 */
+	private volatile JavadocIndex index;
+
+	private volatile boolean closed;
+
+	/**
+	 * The XML file of each class.
+	 * <ul>
+	 * <li><b>Key:</b> The fully-qualified class name (e.g.
+	 * "java.util.Map.Entry").</li>
+	 * <li><b>Value:</b> The ZIP entry.</li>
+	 * </ul>
+	 */
+	private final Map<String, ZipEntry> classEntries = new HashMap<>();
+
+	/**
+	 * The classes in the ZIP file.
+	 */
+	private final Collection<ClassName> classNames;
+
 	/**
 	 * The base URL for the project's online Javadoc page (e.g.
 	 * "http://www.example.com/javadocs/")
@@ -77,17 +120,89 @@ public class JavadocZipFile {
 	 * file
 	 */
 	public JavadocZipFile(Path file) throws IOException {
+		this(file, null);
+	}
+
+	/**
+	 * @param file the ZIP file
+	 * @param indexFile the index file to read the classes from or null not to
+	 * use an index. The index is (re)built if it doesn't exist or if the ZIP
+	 * file has changed since it was built.
+	 * @throws IOException if there's a problem reading the metadata from the
+	 * file or building the index
+	 */
+	public JavadocZipFile(Path file, Path indexFile) throws IOException {
 		this.file = file.toRealPath();
 
-		Document document;
-		try (FileSystem fs = open()) {
-			Path info = fs.getPath("/" + infoFileName);
-			if (!Files.exists(info)) {
-				baseUrl = name = version = projectUrl = javadocUrlPattern = null;
-				return;
+		JavadocIndex index = null;
+		if (indexFile != null) {
+			BasicFileAttributes attributes = Files.readAttributes(this.file, BasicFileAttributes.class);
+			long size = attributes.size();
+			long modified = attributes.lastModifiedTime().toMillis();
+
+			index = JavadocIndex.open(indexFile, size, modified);
+			if (index == null) {
+				try (JavadocZipFile source = new JavadocZipFile(this.file)) {
+					JavadocIndex.write(source, indexFile, size, modified);
+				}
+				index = JavadocIndex.open(indexFile, size, modified);
+				if (index == null) {
+					throw new IOException("Could not read Javadoc index " + indexFile + ".");
+				}
 			}
+		}
+
+		if (index != null) {
+			this.index = index;
+			zip = null;
+			classNames = index.getClassNames();
+			name = index.getName();
+			version = index.getVersion();
+			baseUrl = index.getBaseUrl();
+			projectUrl = index.getProjectUrl();
+			javadocUrlPattern = index.getJavadocUrlPattern();
+			return;
+		}
+
+		this.index = null;
+		zip = new ZipFile(this.file.toFile());
+
+		Document document = null;
+		try {
+			List<ClassName> classNames = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String entryName = entry.getName();
+				if (entry.isDirectory() || !entryName.endsWith(extension)) {
+					continue;
+				}
 
-			document = parseXml(info);
+				if (entryName.equals(infoFileName)) {
+					document = parseXml(entry);
+					continue;
+				}
+
+				ClassName className = toClassName(entryName);
+				String fullName = className.getFullyQualifiedName();
+				ZipEntry existing = classEntries.get(fullName);
+				if (existing == null) {
+					classNames.add(className);
+				}
+				if (existing == null || depth(entryName) > depth(existing.getName())) {
+					//e.g. prefer "java/util/Map/Entry.xml" over "java/util/Map.Entry.xml"
+					classEntries.put(fullName, entry);
+				}
+			}
+			this.classNames = Collections.unmodifiableCollection(classNames);
+		} catch (IOException | RuntimeException e) {
+			zip.close();
+			throw e;
+		}
+
+		if (document == null) {
+			baseUrl = name = version = projectUrl = javadocUrlPattern = null;
+			return;
 		}
 
 		XPathWrapper xpath = new XPathWrapper();
@@ -186,60 +301,9 @@ public class JavadocZipFile {
 	/**
 	 * Gets a list of all classes that are in the library.
 	 * @return the class names (in no particular order)
-	 * @throws IOException if there's a problem reading the ZIP file
 	 */
-	public Collection<ClassName> getClassNames() throws IOException {
-		final Collection<ClassName> classNames = new ArrayList<>();
-		try (FileSystem fs = open()) {
-			Path root = fs.getPath("/");
-			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					if (isJavadocFile(file)) {
-						classNames.add(toClassName(file));
-					}
-					return FileVisitResult.CONTINUE;
-				}
-
-				private boolean isJavadocFile(Path file) {
-					String fullPath = file.toString();
-					if (!fullPath.endsWith(extension)) {
-						return false;
-					}
-
-					return !fullPath.equals('/' + infoFileName);
-				}
-
-				private ClassName toClassName(Path file) {
-					String packageName;
-					Path directory = file.getParent();
-					if (directory == null) {
-						//class is in the default package
-						packageName = null;
-					} else {
-						//e.g. "/java/util"
-						packageName = directory.toString();
-
-						//e.g. "java.util"
-						packageName = packageName.substring(1).replace('/', '.');
-					}
-
-					//e.g. "Map.Entry.xml"
-					String fileName = file.getFileName().toString();
-
-					String split[] = fileName.split("\\.");
-					List<String> outerClasses = new ArrayList<>();
-					for (int i = 0; i < split.length - 2; i++) { //ignore extension and simple name
-						outerClasses.add(split[i]);
-					}
-
-					String simpleName = split[split.length - 2];
-
-					return new ClassName(packageName, outerClasses, simpleName);
-				}
-			});
-		}
-		return Collections.unmodifiableCollection(classNames);
+	public Collection<ClassName> getClassNames() {
+		return classNames;
 	}
 
 	/**
@@ -250,46 +314,65 @@ public class JavadocZipFile {
 	 * parsing the XML
 	 */
 	public ClassInfo getClassInfo(String fullName) throws IOException {
-		Document document;
-		try (FileSystem fs = open()) {
-			Path path = findClassFile(fs, fullName);
-			if (path == null) {
-				return null;
-			}
+		//read before the closed flag, which close() sets before dropping the index
+		JavadocIndex index = this.index;
+		if (closed) {
+			throw new IllegalStateException("Javadoc ZIP file is closed.");
+		}
 
-			document = parseXml(path);
+		if (index != null) {
+			return index.getClassInfo(fullName, this);
+		}
+
+		ZipEntry entry = classEntries.get(fullName);
+		if (entry == null) {
+			return null;
 		}
 
-		return ClassInfoXmlParser.parse(document, this);
+		try (InputStream in = zip.getInputStream(entry)) {
+			return ClassInfoXmlParser.parse(in, this);
+		}
 	}
 
 	/**
-	 * Gets the path to a class's XML file.
-	 * @param fs the ZIP file
-	 * @param fullName the fully-qualified class name (e.g.
-	 * "java.util.Map.Entry")
-	 * @return the path to the class's XML file or null if not found
+	 * Determines the name of the class that a ZIP entry holds.
+	 * @param entryName the name of the ZIP entry (e.g.
+	 * "java/util/Map.Entry.xml")
+	 * @return the class name
 	 */
-	private Path findClassFile(FileSystem fs, String fullName) {
-		//e.g. "/java/util/Map/Entry.xml", followed by "/java/util/Map.Entry.xml", etc
-		String split[] = fullName.split("\\.");
-		for (int i = split.length; i > 0; i--) {
-			StringBuilder sb = new StringBuilder();
-			for (int j = 0; j < i; j++) {
-				sb.append('/').append(split[j]);
-			}
-			for (int j = i; j < split.length; j++) {
-				sb.append('.').append(split[j]);
-			}
-			sb.append(extension);
+	private static ClassName toClassName(String entryName) {
+		int lastSlash = entryName.lastIndexOf('/');
 
-			Path path = fs.getPath(sb.toString());
-			if (Files.exists(path)) {
-				return path;
-			}
+		//e.g. "java.util"
+		String packageName = (lastSlash < 0) ? null : entryName.substring(0, lastSlash).replace('/', '.');
+
+		//e.g. "Map.Entry.xml"
+		String fileName = entryName.substring(lastSlash + 1);
+
+		String split[] = fileName.split("\\.");
+		List<String> outerClasses = new ArrayList<>();
+		for (int i = 0; i < split.length - 2; i++) { //ignore extension and simple name
+			outerClasses.add(split[i]);
 		}
 
-		return null;
+		String simpleName = split[split.length - 2];
+
+		return new ClassName(packageName, outerClasses, simpleName);
+	}
+
+	/**
+	 * Counts the number of directories a ZIP entry is in.
+	 * @param entryName the name of the ZIP entry
+	 * @return the number of directories
+	 */
+	private static int depth(String entryName) {
+		int depth = 0;
+		for (int i = 0; i < entryName.length(); i++) {
+			if (entryName.charAt(i) == '/') {
+				depth++;
+			}
+		}
+		return depth;
 	}
 
 	/**
@@ -324,6 +407,14 @@ public class JavadocZipFile {
 		return projectUrl;
 	}
 
+	/**
+	 * Gets the pattern used to build the URL of a class's Javadoc page.
+	 * @return the pattern or null if none was defined
+	 */
+	String getJavadocUrlPattern() {
+		return javadocUrlPattern;
+	}
+
 	/**
 	 * Get the path to the ZIP file.
 	 * @return the path to the ZIP file
@@ -351,13 +442,35 @@ public class JavadocZipFile {
 	}
 
 	/**
-	 * Parses an XML file.
-	 * @param path the path to the file
+	 * Determines if the ZIP file has been closed.
+	 * @return true if it's closed, false if not
+	 */
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes the ZIP file. Once it is closed, {@link #getClassInfo} throws an
+	 * {@link IllegalStateException}.
+	 * @throws IOException if there's a problem closing the file
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		index = null;
+		if (zip != null) {
+			zip.close();
+		}
+	}
+
+	/**
+	 * Parses an XML file in the ZIP file.
+	 * @param entry the ZIP entry of the file
 	 * @return the DOM tree
-	 * @throws IOException if there's a problem opening or parsing the file
+	 * @throws IOException if there's a problem reading or parsing the file
 	 */
-	private static Document parseXml(Path path) throws IOException {
-		try (InputStream in = Files.newInputStream(path)) {
+	private Document parseXml(ZipEntry entry) throws IOException {
+		try (InputStream in = zip.getInputStream(entry)) {
 			return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
 		} catch (SAXException e) {
 			throw new IOException(e);
@@ -366,13 +479,4 @@ public class JavadocZipFile {
 			throw new RuntimeException(e);
 		}
 	}
-
-	/**
-	 * Opens the ZIP file.
-	 * @return the file system handle
-	 * @throws IOException if there's a problem opening the ZIP file
-	 */
-	private FileSystem open() throws IOException {
-		return FileSystems.newFileSystem(file, null);
-	}
-}
\ No newline at end of file
+}
@@ -68,6 +68,14 @@ public class MethodInfo {
 		return parameters;
 	}
 
+	/**
+	 * Gets the method's return value.
+	 * @return the return value or null if the method doesn't return anything
+	 */
+	public ClassName getReturnValue() {
+		return returnValue;
+	}
+
 	/**
 	 * Gets the value of the method's {@literal @since} tag.
 	 * @return the {@literal @since} tag or null if it doesn't have one
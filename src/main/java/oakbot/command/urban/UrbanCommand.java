@@ -3,8 +3,8 @@ package oakbot.command.urban;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -17,7 +17,11 @@ import oakbot.chat.SplitStrategy;
 import oakbot.command.Command;
 import oakbot.util.ChatBuilder;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.util.EntityUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -29,6 +33,14 @@ public class UrbanCommand implements Command {
 	private static final Logger logger = Logger.getLogger(UrbanCommand.class.getName());
 
 	private final ObjectMapper mapper = new ObjectMapper();
+	private final HttpClient client;
+
+	/**
+	 * @param client the HTTP client to send requests with
+	 */
+	public UrbanCommand(HttpClient client) {
+		this.client = client;
+	}
 
 	@Override
 	public String name() {
@@ -40,6 +52,16 @@ public class UrbanCommand implements Command {
 		return "Retrieves definitions from urbandictionary.com";
 	}
 
+	@Override
+	public long timeout() {
+		return TimeUnit.SECONDS.toMillis(15);
+	}
+
+	@Override
+	public String singleFlightKey(ChatMessage message) {
+		return message.getContent().trim().replaceAll("\\s+", " ");
+	}
+
 	@Override
 	public String helpText(String trigger) {
 		//@formatter:off
@@ -94,7 +116,9 @@ public class UrbanCommand implements Command {
 			b.addParameter("term", word);
 			String url = b.toString();
 
-			response = mapper.readValue(get(url), UrbanResponse.class);
+			try (InputStream in = get(url)) {
+				response = mapper.readValue(in, UrbanResponse.class);
+			}
 		} catch (IOException | URISyntaxException e) {
 			logger.log(Level.SEVERE, "Problem getting word from Urban Dictionary.", e);
 
@@ -189,7 +213,13 @@ public class UrbanCommand implements Command {
 	 * @throws IOException
 	 */
 	InputStream get(String url) throws IOException {
-		URL urlObj = new URL(url);
-		return urlObj.openStream();	
+		HttpResponse response = client.execute(new HttpGet(url));
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != 200) {
+			//release the connection
+			EntityUtils.consumeQuietly(response.getEntity());
+			throw new IOException("HTTP " + statusCode + " response received from " + url + ".");
+		}
+		return response.getEntity().getContent();
 	}
 }
\ No newline at end of file
@@ -10,6 +10,13 @@ import oakbot.command.javadoc.JavadocCommand;
  * @author Michael Angstadt
  */
 public class JavadocListener implements Listener {
+	//@formatter:off
+	private static final ListenerFilter filter = new ListenerFilter.Builder()
+		.numeric()
+		.ignoreOwnMessages()
+	.build();
+	//@formatter:on
+
 	private final JavadocCommand command;
 
 	public JavadocListener(JavadocCommand command) {
@@ -31,6 +38,11 @@ public class JavadocListener implements Listener {
 		return null;
 	}
 
+	@Override
+	public ListenerFilter filter() {
+		return filter;
+	}
+
 	@Override
 	public ChatResponse onMessage(ChatMessage message, boolean isAdmin) {
 		String content = message.getContent();
@@ -29,7 +29,17 @@ public interface Listener {
 	String helpText();
 
 	/**
-	 * Called whenever a new message is received.
+	 * Describes which messages this listener wants to receive. The bot will
+	 * only call {@link #onMessage} for messages that pass the filter.
+	 * @return the filter (defaults to accepting every message)
+	 */
+	default ListenerFilter filter() {
+		return ListenerFilter.ALL;
+	}
+
+	/**
+	 * Called whenever a new message is received that passes the listener's
+	 * {@link #filter}.
 	 * @param message the message
 	 * @param isAdmin true if the message sender is an admin, false if not
 	 * @return the response or null not to send a response
@@ -0,0 +1,99 @@
+package oakbot.listener;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * <p>
+ * Describes which messages a {@link Listener} is interested in. The bot uses
+ * this information to skip listeners that a message cannot possibly trigger,
+ * so that they do not have to inspect every message themselves.
+ * </p>
+ * <p>
+ * This class is immutable. Use its {@link Builder} class to create new
+ * instances.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ListenerFilter {
+	/**
+	 * A filter that accepts every message.
+	 */
+	public static final ListenerFilter ALL = new Builder().build();
+
+	private final List<String> substrings;
+	private final boolean numeric, ignoreOwnMessages;
+
+	private ListenerFilter(Builder builder) {
+		substrings = builder.substrings.build();
+		numeric = builder.numeric;
+		ignoreOwnMessages = builder.ignoreOwnMessages;
+	}
+
+	/**
+	 * Gets the substrings that a message must contain at least one of.
+	 * @return the substrings (case-insensitive) or an empty list if the
+	 * message can contain anything
+	 */
+	public List<String> getSubstrings() {
+		return substrings;
+	}
+
+	/**
+	 * Gets whether the message must consist solely of digits.
+	 * @return true if the message must be a number, false if not
+	 */
+	public boolean isNumeric() {
+		return numeric;
+	}
+
+	/**
+	 * Gets whether messages posted by the bot itself should be ignored.
+	 * @return true to ignore the bot's own messages, false not to
+	 */
+	public boolean isIgnoreOwnMessages() {
+		return ignoreOwnMessages;
+	}
+
+	/**
+	 * Builds instances of {@link ListenerFilter}.
+	 */
+	public static class Builder {
+		private ImmutableList.Builder<String> substrings = ImmutableList.builder();
+		private boolean numeric = false, ignoreOwnMessages = false;
+
+		/**
+		 * Only accept messages that contain at least one of the given
+		 * substrings.
+		 * @param substrings the substrings (case-insensitive)
+		 * @return this
+		 */
+		public Builder contains(String... substrings) {
+			this.substrings.add(substrings);
+			return this;
+		}
+
+		/**
+		 * Only accept messages that consist solely of digits.
+		 * @return this
+		 */
+		public Builder numeric() {
+			numeric = true;
+			return this;
+		}
+
+		/**
+		 * Ignore messages that the bot posted.
+		 * @return this
+		 */
+		public Builder ignoreOwnMessages() {
+			ignoreOwnMessages = true;
+			return this;
+		}
+
+		public ListenerFilter build() {
+			return new ListenerFilter(this);
+		}
+	}
+}
@@ -11,11 +11,19 @@ import oakbot.util.ChatBuilder;
 public class MentionListener implements Listener {
 	private final String mention, mentionWithoutSpaces;
 	private final String trigger;
+	private final ListenerFilter filter;
 
 	public MentionListener(String botName, String trigger) {
 		mention = "@" + botName.toLowerCase();
 		mentionWithoutSpaces = mention.replace(" ", "");
 		this.trigger = trigger;
+
+		//@formatter:off
+		filter = new ListenerFilter.Builder()
+			.contains(mention, mentionWithoutSpaces)
+			.ignoreOwnMessages()
+		.build();
+		//@formatter:on
 	}
 
 	@Override
@@ -33,6 +41,11 @@ public class MentionListener implements Listener {
 		return description();
 	}
 
+	@Override
+	public ListenerFilter filter() {
+		return filter;
+	}
+
 	@Override
 	public ChatResponse onMessage(ChatMessage message, boolean isAdmin) {
 		String contentToLower = message.getContent().toLowerCase();
@@ -0,0 +1,179 @@
+package oakbot.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Searches a string for many literal patterns at once using the <a
+ * href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-
+ * Corasick</a> algorithm. The string is scanned a single time, no matter how
+ * many patterns there are. Matching is case-insensitive.
+ * <p>
+ * This class is immutable and thread-safe. Use its {@link Builder} class to
+ * create new instances.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class AhoCorasick {
+	/**
+	 * The characters that lead out of each state (sorted).
+	 */
+	private final char[][] keys;
+
+	/**
+	 * The states that each character in {@link #keys} leads to.
+	 */
+	private final int[][] targets;
+
+	/**
+	 * The state to fall back to when a state has no transition for a
+	 * character.
+	 */
+	private final int[] fail;
+
+	/**
+	 * The IDs of the patterns that end at each state.
+	 */
+	private final int[][] outputs;
+
+	private AhoCorasick(Builder builder) {
+		List<Map<Character, Integer>> trie = builder.trie;
+		int size = trie.size();
+
+		keys = new char[size][];
+		targets = new int[size][];
+		for (int state = 0; state < size; state++) {
+			Map<Character, Integer> edges = trie.get(state);
+			keys[state] = new char[edges.size()];
+			targets[state] = new int[edges.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+				keys[state][i] = edge.getKey();
+				targets[state][i] = edge.getValue();
+				i++;
+			}
+		}
+
+		//compute the failure links breadth-first, so that each state's fail state is computed before its children's
+		fail = new int[size];
+		List<BitSet> out = new ArrayList<>(size);
+		for (BitSet bitSet : builder.outputs) {
+			out.add((BitSet) bitSet.clone());
+		}
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[0]) {
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.remove();
+			for (int i = 0; i < keys[state].length; i++) {
+				char c = keys[state][i];
+				int child = targets[state][i];
+
+				int f = fail[state];
+				int next;
+				while ((next = transition(f, c)) < 0 && f != 0) {
+					f = fail[f];
+				}
+				fail[child] = (next < 0) ? 0 : next;
+				out.get(child).or(out.get(fail[child]));
+
+				queue.add(child);
+			}
+		}
+
+		outputs = new int[size][];
+		for (int state = 0; state < size; state++) {
+			outputs[state] = out.get(state).stream().toArray();
+		}
+	}
+
+	/**
+	 * Scans a string for the patterns.
+	 * @param text the string to scan
+	 * @param matches the IDs of the patterns that were found are set in this
+	 * bit set
+	 */
+	public void scan(CharSequence text, BitSet matches) {
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+
+			int next;
+			while ((next = transition(state, c)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = (next < 0) ? 0 : next;
+
+			for (int id : outputs[state]) {
+				matches.set(id);
+			}
+		}
+	}
+
+	/**
+	 * Gets the state that a character leads to.
+	 * @param state the current state
+	 * @param c the character
+	 * @return the next state or -1 if the current state has no transition for
+	 * the character
+	 */
+	private int transition(int state, char c) {
+		int i = Arrays.binarySearch(keys[state], c);
+		return (i < 0) ? -1 : targets[state][i];
+	}
+
+	/**
+	 * Builds instances of {@link AhoCorasick}.
+	 */
+	public static class Builder {
+		private final List<Map<Character, Integer>> trie = new ArrayList<>();
+		private final List<BitSet> outputs = new ArrayList<>();
+
+		public Builder() {
+			newState();
+		}
+
+		/**
+		 * Adds a pattern.
+		 * @param pattern the pattern (case-insensitive)
+		 * @param id the value to report when the pattern is found (must be
+		 * non-negative). More than one pattern can share an ID.
+		 * @return this
+		 */
+		public Builder add(String pattern, int id) {
+			if (pattern.isEmpty()) {
+				throw new IllegalArgumentException("Pattern cannot be empty.");
+			}
+
+			int state = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = Character.toLowerCase(pattern.charAt(i));
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = newState();
+					trie.get(state).put(c, next);
+				}
+				state = next;
+			}
+			outputs.get(state).set(id);
+			return this;
+		}
+
+		private int newState() {
+			trie.add(new TreeMap<>());
+			outputs.add(new BitSet());
+			return trie.size() - 1;
+		}
+
+		public AhoCorasick build() {
+			return new AhoCorasick(this);
+		}
+	}
+}
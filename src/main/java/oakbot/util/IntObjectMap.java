@@ -0,0 +1,197 @@
+package oakbot.util;
+
+import java.util.function.Predicate;
+
+/**
+ * A hash map whose keys are primitive {@code int} values. It uses open
+ * addressing with linear probing, so it does not allocate an entry object or
+ * a boxed {@link Integer} for each mapping. Null values are not permitted.
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * @author Michael Angstadt
+ * @param <V> the value type
+ */
+public class IntObjectMap<V> {
+	private static final float loadFactor = 0.5f;
+
+	private int[] keys;
+	private Object[] values;
+	private int size, mask;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public IntObjectMap() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty map.
+	 * @param expectedSize the number of mappings the map is expected to hold
+	 */
+	public IntObjectMap(int expectedSize) {
+		allocate(tableSize(expectedSize));
+	}
+
+	/**
+	 * Gets a value.
+	 * @param key the key
+	 * @return the value or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int i = indexOf(key);
+		return (i < 0) ? null : (V) values[i];
+	}
+
+	/**
+	 * Adds or replaces a value.
+	 * @param key the key
+	 * @param value the value (cannot be null)
+	 * @return the value that was replaced or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not permitted.");
+		}
+
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if (size > keys.length * loadFactor) {
+			rehash(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a value.
+	 * @param key the key
+	 * @return the value that was removed or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+
+		V old = (V) values[i];
+		values[i] = null;
+		size--;
+
+		//shift back any entries that were displaced by the removed entry
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+
+			int home = slot(keys[j]);
+			boolean movable = (i <= j) ? (home <= i || home > j) : (home <= i && home > j);
+			if (movable) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+
+		return old;
+	}
+
+	/**
+	 * Removes all values that match a condition.
+	 * @param condition the condition
+	 * @return the number of values removed
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeIf(Predicate<? super V> condition) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		int before = size;
+
+		allocate(oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			V value = (V) oldValues[i];
+			if (value != null && !condition.test(value)) {
+				put(oldKeys[i], value);
+			}
+		}
+
+		return before - size;
+	}
+
+	/**
+	 * Gets the number of mappings in the map.
+	 * @return the number of mappings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines if the map is empty.
+	 * @return true if it's empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private int indexOf(int key) {
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash(int newLength) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		allocate(newLength);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new int[length];
+		values = new Object[length];
+		mask = length - 1;
+		size = 0;
+	}
+
+	private static int tableSize(int expectedSize) {
+		int length = 2;
+		while (length * loadFactor < expectedSize) {
+			length *= 2;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,160 @@
+package oakbot.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Creates the HTTP client that the chat connection and all of the commands
+ * share. Connections are pooled and kept alive in between requests, so the
+ * cost of opening a connection (including the TLS handshake) is only paid
+ * once per host instead of once per request. Responses are compressed with
+ * gzip when the server supports it.
+ * <p>
+ * Each response's entity must be fully consumed or closed, otherwise its
+ * connection is not returned to the pool.
+ * </p>
+ * @author Michael Angstadt
+ */
+public final class PooledHttpClient {
+	private PooledHttpClient() {
+		//hide
+	}
+
+	/**
+	 * Creates a keep-alive strategy that keeps idle connections open for the
+	 * shorter of the server's requested time and the configured time.
+	 * @param keepAlive the configured keep-alive time (in milliseconds)
+	 * @return the strategy
+	 */
+	static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAlive) {
+		return (response, context) -> {
+			long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return (serverKeepAlive < 0) ? keepAlive : Math.min(serverKeepAlive, keepAlive);
+		};
+	}
+
+	public static class Builder {
+		private int maxConnections = 20;
+		private int maxConnectionsPerRoute = 5;
+		private long connectTimeout = TimeUnit.SECONDS.toMillis(5);
+		private long readTimeout = TimeUnit.SECONDS.toMillis(10);
+		private long keepAlive = TimeUnit.SECONDS.toMillis(60);
+		private CookieStore cookieStore;
+
+		/**
+		 * Sets the max number of connections that can be open at once
+		 * (defaults to 20).
+		 * @param maxConnections the max number of connections
+		 * @return this
+		 */
+		public Builder maxConnections(int maxConnections) {
+			this.maxConnections = maxConnections;
+			return this;
+		}
+
+		/**
+		 * Sets the max number of connections that can be open to the same host
+		 * at once (defaults to 5). The chat connection may need one connection
+		 * per room to poll each room, plus connections to post messages, so
+		 * this should be larger than the number of rooms.
+		 * @param maxConnectionsPerRoute the max number of connections
+		 * @return this
+		 */
+		public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+			this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+			return this;
+		}
+
+		/**
+		 * Sets how long to wait for a connection to be established (defaults
+		 * to 5 seconds).
+		 * @param connectTimeout the timeout
+		 * @param unit the time unit
+		 * @return this
+		 */
+		public Builder connectTimeout(long connectTimeout, TimeUnit unit) {
+			this.connectTimeout = unit.toMillis(connectTimeout);
+			return this;
+		}
+
+		/**
+		 * Sets how long to wait for data once a connection is established
+		 * (defaults to 10 seconds).
+		 * @param readTimeout the timeout
+		 * @param unit the time unit
+		 * @return this
+		 */
+		public Builder readTimeout(long readTimeout, TimeUnit unit) {
+			this.readTimeout = unit.toMillis(readTimeout);
+			return this;
+		}
+
+		/**
+		 * Sets the max amount of time an idle connection is kept open
+		 * (defaults to 60 seconds). If the server asks for a shorter time, the
+		 * server's time is used.
+		 * @param keepAlive the keep-alive time
+		 * @param unit the time unit
+		 * @return this
+		 */
+		public Builder keepAlive(long keepAlive, TimeUnit unit) {
+			this.keepAlive = unit.toMillis(keepAlive);
+			return this;
+		}
+
+		/**
+		 * Sets the cookie store, so that cookies can be persisted (by default,
+		 * each client has its own in-memory store).
+		 * @param cookieStore the cookie store
+		 * @return this
+		 */
+		public Builder cookieStore(CookieStore cookieStore) {
+			this.cookieStore = cookieStore;
+			return this;
+		}
+
+		/**
+		 * Creates the HTTP client.
+		 * @return the HTTP client
+		 * @throws IllegalArgumentException if any of the settings are invalid
+		 */
+		public CloseableHttpClient build() {
+			if (maxConnections <= 0 || maxConnectionsPerRoute <= 0) {
+				throw new IllegalArgumentException("The max number of HTTP connections must be positive.");
+			}
+			if (connectTimeout < 0 || readTimeout < 0 || keepAlive < 0) {
+				throw new IllegalArgumentException("HTTP timeouts cannot be negative.");
+			}
+
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(keepAlive, TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(maxConnections);
+			connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+			//@formatter:off
+			RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout((int) connectTimeout)
+				.setConnectionRequestTimeout((int) connectTimeout)
+				.setSocketTimeout((int) readTimeout)
+				.setStaleConnectionCheckEnabled(true)
+			.build();
+			//@formatter:on
+
+			//gzip is requested and decoded by default
+			//@formatter:off
+			return HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(config)
+				.setKeepAliveStrategy(keepAliveStrategy(keepAlive))
+				.setDefaultCookieStore(cookieStore)
+			.build();
+			//@formatter:on
+		}
+	}
+}
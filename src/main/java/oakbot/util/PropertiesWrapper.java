@@ -125,6 +125,27 @@ public class PropertiesWrapper implements Iterable<Map.Entry<String, String>> {
 		String value = get(key);
 		return (value == null) ? defaultValue : Integer.valueOf(value);
 	}
+
+	/**
+	 * Gets a decimal property value.
+	 * @param key the key
+	 * @param defaultValue the value to return if the property does not exist
+	 * @return the value or null if not found
+	 * @throws NumberFormatException if it could not parse the value as a
+	 * decimal
+	 */
+	public Double getDouble(String key, Double defaultValue) {
+		String value = get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			return Double.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException("Property \"" + key + "\" must be a number: " + value);
+		}
+	}
 	
 	public List<Integer> getIntegerList(String key) {
 		return getIntegerList(key, Collections.emptyList());
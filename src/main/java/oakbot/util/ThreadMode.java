@@ -0,0 +1,71 @@
+package oakbot.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Defines what kind of threads the bot runs its blocking I/O on.
+ * @author Michael Angstadt
+ */
+public enum ThreadMode {
+	/**
+	 * Ordinary operating system threads, pooled where necessary.
+	 */
+	PLATFORM {
+		@Override
+		public ThreadFactory threadFactory(String name) {
+			//@formatter:off
+			return new ThreadFactoryBuilder()
+				.setNameFormat(name + "-%d")
+				.setDaemon(true)
+			.build();
+			//@formatter:on
+		}
+	},
+
+	/**
+	 * Virtual threads, which are cheap enough to create one for every task.
+	 */
+	VIRTUAL {
+		@Override
+		public ThreadFactory threadFactory(String name) {
+			return Thread.ofVirtual().name(name + "-", 0).factory();
+		}
+	};
+
+	/**
+	 * Creates a factory for threads of this kind. Platform threads are created
+	 * as daemon threads. Virtual threads are always daemon threads.
+	 * @param name the name prefix (a counter is appended to each thread's
+	 * name)
+	 * @return the thread factory
+	 */
+	public abstract ThreadFactory threadFactory(String name);
+
+	/**
+	 * Creates an executor that starts a new thread for each task. This only
+	 * makes sense for virtual threads.
+	 * @param name the name prefix of the threads
+	 * @return the executor
+	 */
+	public ExecutorService newThreadPerTaskExecutor(String name) {
+		return Executors.newThreadPerTaskExecutor(threadFactory(name));
+	}
+
+	/**
+	 * Parses a thread mode from a string.
+	 * @param value the string (case-insensitive)
+	 * @return the thread mode
+	 * @throws IllegalArgumentException if the value is not recognized
+	 */
+	public static ThreadMode parse(String value) {
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown thread mode \"" + value + "\". Expected \"platform\" or \"virtual\".", e);
+		}
+	}
+}
@@ -1,18 +1,27 @@
 package oakbot.bot;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.LogManager;
 
 import oakbot.chat.ChatConnection;
 import oakbot.chat.ChatMessage;
+import oakbot.chat.NewMessageHandler;
+import oakbot.chat.SplitStrategy;
+import oakbot.command.ShutdownCommand;
 
 import org.junit.BeforeClass;
 import org.junit.Ignore;
@@ -44,6 +53,114 @@ public class BotTest {
 		bot.connect(false);
 	}
 
+	@Test
+	public void rooms_polled_independently() throws Exception {
+		final AtomicInteger slowRoomPolls = new AtomicInteger();
+		final AtomicInteger fastRoomPolls = new AtomicInteger();
+		ChatConnection connection = new StubConnection() {
+			@Override
+			public List<ChatMessage> getNewMessages(int room) throws IOException {
+				if (room == 1) {
+					slowRoomPolls.incrementAndGet();
+					try {
+						Thread.sleep(2000);
+					} catch (InterruptedException e) {
+						//bot shutting down
+					}
+					return Collections.emptyList();
+				}
+
+				if (fastRoomPolls.incrementAndGet() < 5) {
+					return Collections.emptyList();
+				}
+
+				ChatMessage message = new ChatMessage();
+				message.setContent("=shutdown");
+				message.setMessageId(1);
+				message.setRoomId(room);
+				message.setUserId(1);
+				return Arrays.asList(message);
+			}
+		};
+
+		//@formatter:off
+		Bot bot = new Bot.Builder()
+			.connection(connection)
+			.rooms(1, 2)
+			.admins(1)
+			.heartbeat(10)
+			.commands(new ShutdownCommand())
+		.build();
+		//@formatter:on
+
+		long start = System.currentTimeMillis();
+		bot.connect(true);
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertTrue(elapsed < 2000);
+		assertEquals(5, fastRoomPolls.get());
+		assertEquals(1, slowRoomPolls.get());
+		assertEquals(5, bot.getPollStatistics(2).getPolls());
+	}
+
+	@Test
+	public void pushed_messages_are_polled_right_away() throws Exception {
+		final AtomicBoolean pushed = new AtomicBoolean();
+		final AtomicReference<NewMessageHandler> handler = new AtomicReference<>();
+		ChatConnection connection = new StubConnection() {
+			@Override
+			public void joinRoom(int roomId) {
+				new Thread(() -> {
+					try {
+						//wait for the bot to finish joining the room
+						Thread.sleep(500);
+					} catch (InterruptedException e) {
+						return;
+					}
+					pushed.set(true);
+					handler.get().onNewMessages(roomId);
+				}).start();
+			}
+
+			@Override
+			public List<ChatMessage> getNewMessages(int room) throws IOException {
+				if (!pushed.getAndSet(false)) {
+					return Collections.emptyList();
+				}
+
+				ChatMessage message = new ChatMessage();
+				message.setContent("=shutdown");
+				message.setMessageId(1);
+				message.setRoomId(room);
+				message.setUserId(1);
+				return Arrays.asList(message);
+			}
+
+			@Override
+			public void setNewMessageHandler(NewMessageHandler h) {
+				handler.set(h);
+			}
+		};
+
+		//@formatter:off
+		Bot bot = new Bot.Builder()
+			.connection(connection)
+			.rooms(1)
+			.admins(1)
+			.heartbeat(60000)
+			.commands(new ShutdownCommand())
+		.build();
+		//@formatter:on
+
+		long start = System.currentTimeMillis();
+		bot.connect(true);
+		long elapsed = System.currentTimeMillis() - start;
+
+		//the scheduled poll would not have run for a minute
+		assertTrue(elapsed < 5000);
+		assertEquals(0, bot.getPollStatistics(1).getPolls());
+	}
+
 	@Ignore
 	@Test
 	public void unknown_command() throws Exception {
@@ -89,4 +206,41 @@ public class BotTest {
 	public void command() {
 		//TODO
 	}
+
+	private static class StubConnection implements ChatConnection {
+		@Override
+		public void login(String email, String password) {
+			//empty
+		}
+
+		@Override
+		public void joinRoom(int roomId) {
+			//empty
+		}
+
+		@Override
+		public void sendMessage(int room, String message) {
+			//empty
+		}
+
+		@Override
+		public void sendMessage(int room, String message, SplitStrategy splitStragey) {
+			//empty
+		}
+
+		@Override
+		public List<ChatMessage> getMessages(int room, int count) throws IOException {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public List<ChatMessage> getNewMessages(int room) throws IOException {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void flush() {
+			//empty
+		}
+	}
 }
@@ -0,0 +1,121 @@
+package oakbot.bot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import oakbot.chat.ChatMessage;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class InboundQueueTest {
+	private final Predicate<ChatMessage> isCommand = m -> m.getContent().startsWith("=");
+
+	@Test
+	public void capacity() {
+		SheddingPolicy policy = new SheddingPolicy.Builder().capacity(2).build();
+		InboundQueue queue = new InboundQueue(policy, isCommand);
+
+		queue.offer(Arrays.asList(message(1, 1, "a"), message(2, 1, "b"), message(3, 1, "c")));
+		assertEquals(Arrays.asList(2L, 3L), ids(queue.drain()));
+		assertEquals(1, queue.getOverflowed());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void maxCommandAge() {
+		SheddingPolicy policy = new SheddingPolicy.Builder().maxCommandAge(30, TimeUnit.SECONDS).build();
+		InboundQueue queue = new InboundQueue(policy, isCommand);
+
+		ChatMessage oldCommand = message(1, 1, "=tag java");
+		oldCommand.setTimestamp(LocalDateTime.now().minusMinutes(5));
+		ChatMessage oldMessage = message(2, 1, "hello");
+		oldMessage.setTimestamp(LocalDateTime.now().minusMinutes(5));
+		ChatMessage newCommand = message(3, 1, "=tag java");
+
+		queue.offer(Arrays.asList(oldCommand, oldMessage, newCommand));
+		assertEquals(Arrays.asList(2L, 3L), ids(queue.drain()));
+		assertEquals(1, queue.getStale());
+	}
+
+	@Test
+	public void newestCommandPerUser() {
+		SheddingPolicy policy = new SheddingPolicy.Builder().newestCommandPerUser(true).build();
+		InboundQueue queue = new InboundQueue(policy, isCommand);
+
+		//@formatter:off
+		queue.offer(Arrays.asList(
+			message(1, 1, "=urban foo"),
+			message(2, 1, "not a command"),
+			message(3, 2, "=urban bar"),
+			message(4, 1, "=urban baz")
+		));
+		//@formatter:on
+		assertEquals(Arrays.asList(2L, 3L, 4L), ids(queue.drain()));
+		assertEquals(1, queue.getSuperseded());
+	}
+
+	@Test
+	public void coalesceDuplicates() {
+		SheddingPolicy policy = new SheddingPolicy.Builder().coalesceDuplicates(true).build();
+		InboundQueue queue = new InboundQueue(policy, isCommand);
+
+		//@formatter:off
+		queue.offer(Arrays.asList(
+			message(1, 1, "=tag java"),
+			message(2, 2, "=tag java"),
+			message(3, 1, "=tag java"),
+			message(4, 1, "lol"),
+			message(5, 1, "lol")
+		));
+		//@formatter:on
+		assertEquals(Arrays.asList(1L, 2L, 4L, 5L), ids(queue.drain()));
+		assertEquals(1, queue.getCoalesced());
+		assertEquals(1, queue.getShed());
+	}
+
+	@Test
+	public void drain_max() {
+		SheddingPolicy policy = new SheddingPolicy.Builder().newestCommandPerUser(true).build();
+		InboundQueue queue = new InboundQueue(policy, isCommand);
+
+		queue.offer(Arrays.asList(message(1, 1, "=urban foo"), message(2, 2, "=urban bar")));
+		assertEquals(Arrays.asList(1L), ids(queue.drain(1)));
+		assertEquals(1, queue.size());
+
+		//the policy sees the messages that are still waiting
+		queue.offer(Arrays.asList(message(3, 2, "=urban baz")));
+		assertEquals(Arrays.asList(3L), ids(queue.drain(1)));
+		assertEquals(1, queue.getSuperseded());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void default_policy() {
+		InboundQueue queue = new InboundQueue(SheddingPolicy.DEFAULT, isCommand);
+		queue.offer(Arrays.asList(message(1, 1, "=tag java"), message(2, 1, "=tag java")));
+		assertEquals(Arrays.asList(1L, 2L), ids(queue.drain()));
+		assertEquals(0, queue.getShed());
+	}
+
+	private static ChatMessage message(long id, int userId, String content) {
+		ChatMessage message = new ChatMessage();
+		message.setMessageId(id);
+		message.setUserId(userId);
+		message.setContent(content);
+		message.setTimestamp(LocalDateTime.now());
+		return message;
+	}
+
+	private static List<Long> ids(List<ChatMessage> messages) {
+		return messages.stream().map(ChatMessage::getMessageId).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,64 @@
+package oakbot.bot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class PollingPolicyTest {
+	@Test
+	public void fixed() {
+		PollingPolicy policy = PollingPolicy.fixed(3000);
+		assertTrue(policy.isFixed());
+		assertEquals(3000, policy.initial());
+		assertEquals(3000, policy.next(3000, false, false));
+		assertEquals(3000, policy.next(3000, true, false));
+		assertEquals(3000, policy.next(3000, true, true));
+	}
+
+	@Test
+	public void idle_backs_off() {
+		PollingPolicy policy = new PollingPolicy(1000, 10000, 2);
+		assertFalse(policy.isFixed());
+
+		long interval = policy.initial();
+		assertEquals(1000, interval);
+		interval = policy.next(interval, false, false);
+		assertEquals(2000, interval);
+		interval = policy.next(interval, false, false);
+		assertEquals(4000, interval);
+		interval = policy.next(interval, false, false);
+		assertEquals(8000, interval);
+		interval = policy.next(interval, false, false);
+		assertEquals(10000, interval);
+		interval = policy.next(interval, false, false);
+		assertEquals(10000, interval);
+	}
+
+	@Test
+	public void active_shrinks() {
+		PollingPolicy policy = new PollingPolicy(1000, 10000, 2);
+		assertEquals(4000, policy.next(8000, true, false));
+		assertEquals(1000, policy.next(1500, true, false));
+	}
+
+	@Test
+	public void command_snaps_back() {
+		PollingPolicy policy = new PollingPolicy(1000, 10000, 2);
+		assertEquals(1000, policy.next(10000, true, true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void min_greater_than_max() {
+		new PollingPolicy(2000, 1000, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decay_less_than_one() {
+		new PollingPolicy(1000, 2000, 0.5);
+	}
+}
@@ -0,0 +1,63 @@
+package oakbot.bot;
+
+import static oakbot.bot.RateLimiter.Result.ALLOWED;
+import static oakbot.bot.RateLimiter.Result.THROTTLED;
+import static oakbot.bot.RateLimiter.Result.THROTTLED_NOTIFY;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RateLimiterTest {
+	@Test
+	public void user_limit() {
+		RateLimiter limiter = new RateLimiter(2, 0, 60000);
+
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "tag", 0));
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "urban", 0));
+		assertEquals(THROTTLED_NOTIFY, limiter.tryAcquire(1, "tag", 0));
+		assertEquals(THROTTLED, limiter.tryAcquire(1, "define", 1000));
+
+		//other users are not affected
+		assertEquals(ALLOWED, limiter.tryAcquire(2, "tag", 1000));
+
+		//one token is refilled after half the window
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "tag", 30000));
+		assertEquals(THROTTLED, limiter.tryAcquire(1, "tag", 30000));
+	}
+
+	@Test
+	public void command_limit() {
+		RateLimiter limiter = new RateLimiter(0, 1, 60000);
+
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "tag", 0));
+		assertEquals(THROTTLED_NOTIFY, limiter.tryAcquire(1, "tag", 0));
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "urban", 0));
+	}
+
+	@Test
+	public void one_notice_per_window() {
+		RateLimiter limiter = new RateLimiter(1, 0, 60000);
+
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "tag", 0));
+		assertEquals(THROTTLED_NOTIFY, limiter.tryAcquire(1, "tag", 100));
+		assertEquals(THROTTLED, limiter.tryAcquire(1, "tag", 200));
+		assertEquals(THROTTLED, limiter.tryAcquire(1, "tag", 59000));
+		assertEquals(ALLOWED, limiter.tryAcquire(1, "tag", 61000));
+		assertEquals(THROTTLED_NOTIFY, limiter.tryAcquire(1, "tag", 61000));
+	}
+
+	@Test
+	public void idle_users_expire() {
+		RateLimiter limiter = new RateLimiter(5, 0, 60000);
+
+		limiter.tryAcquire(1, "tag", 0);
+		limiter.tryAcquire(2, "tag", 50000);
+		assertEquals(2, limiter.getTrackedUsers());
+
+		limiter.tryAcquire(3, "tag", 70000);
+		assertEquals(2, limiter.getTrackedUsers());
+	}
+}
@@ -0,0 +1,152 @@
+package oakbot.bot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import oakbot.bot.ReplyBatcher.PendingReply;
+import oakbot.chat.ChatConnection;
+import oakbot.chat.ChatMessage;
+import oakbot.chat.SplitStrategy;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ReplyBatcherTest {
+	@Test
+	public void merge_plain_replies() {
+		ChatMessage m1 = message(1, "John Doe");
+		ChatMessage m2 = message(2, "Jane");
+
+		//@formatter:off
+		List<ChatResponse> posts = ReplyBatcher.merge(Arrays.asList(
+			new PendingReply(m1, new ChatResponse(":1 Hello")),
+			new PendingReply(m1, new ChatResponse(":1 World")),
+			new PendingReply(m2, new ChatResponse(":2 Hi there")),
+			new PendingReply(m2, new ChatResponse("line1\nline2", SplitStrategy.NEWLINE))
+		));
+		//@formatter:on
+
+		assertEquals(1, posts.size());
+		assertEquals(":1 Hello\nWorld\n@Jane Hi there\nline1\nline2", posts.get(0).getMessage());
+	}
+
+	@Test
+	public void unknown_username_is_not_merged() {
+		ChatMessage m1 = message(1, "Jane");
+		ChatMessage m2 = message(2, null);
+
+		//@formatter:off
+		List<ChatResponse> posts = ReplyBatcher.merge(Arrays.asList(
+			new PendingReply(m1, new ChatResponse(":1 Hello")),
+			new PendingReply(m2, new ChatResponse(":2 Hi there")),
+			new PendingReply(m2, new ChatResponse(":2 Bye"))
+		));
+		//@formatter:on
+
+		assertEquals(2, posts.size());
+		assertEquals(":1 Hello", posts.get(0).getMessage());
+		assertEquals(":2 Hi there\nBye", posts.get(1).getMessage());
+	}
+
+	@Test
+	public void markdown_is_not_merged() {
+		ChatMessage m = message(1, "Jane");
+		ChatResponse bold = new ChatResponse(":1 **bold**");
+		ChatResponse fixed = new ChatResponse("    code\n    more code");
+		ChatResponse longLine = new ChatResponse(repeat('a', 600), SplitStrategy.WORD);
+
+		//@formatter:off
+		List<ChatResponse> posts = ReplyBatcher.merge(Arrays.asList(
+			new PendingReply(m, new ChatResponse(":1 one")),
+			new PendingReply(m, bold),
+			new PendingReply(m, fixed),
+			new PendingReply(m, longLine),
+			new PendingReply(m, new ChatResponse(":1 two")),
+			new PendingReply(m, new ChatResponse(":1 three"))
+		));
+		//@formatter:on
+
+		assertEquals(5, posts.size());
+		assertEquals(":1 one", posts.get(0).getMessage());
+		assertSame(bold, posts.get(1));
+		assertSame(fixed, posts.get(2));
+		assertSame(longLine, posts.get(3));
+		assertEquals(":1 two\nthree", posts.get(4).getMessage());
+	}
+
+	@Test
+	public void merged_length_is_capped() {
+		ChatMessage m = message(1, "Jane");
+		String line = repeat('a', 400);
+
+		//@formatter:off
+		List<ChatResponse> posts = ReplyBatcher.merge(Arrays.asList(
+			new PendingReply(m, new ChatResponse(line)),
+			new PendingReply(m, new ChatResponse(line)),
+			new PendingReply(m, new ChatResponse(line)),
+			new PendingReply(m, new ChatResponse(line)),
+			new PendingReply(m, new ChatResponse(line)),
+			new PendingReply(m, new ChatResponse(line))
+		));
+		//@formatter:on
+
+		assertEquals(2, posts.size());
+		assertEquals(4 * 400 + 3, posts.get(0).getMessage().length());
+		assertEquals(2 * 400 + 1, posts.get(1).getMessage().length());
+	}
+
+	@Test
+	public void first_reply_is_sent_immediately() throws Exception {
+		ChatConnection connection = mock(ChatConnection.class);
+		ReplyBatcher batcher = new ReplyBatcher(connection, 200);
+		ChatMessage m = message(1, "Jane");
+
+		batcher.add(1, m, new ChatResponse(":1 one"));
+		verify(connection).sendMessage(1, ":1 one", SplitStrategy.NONE);
+
+		batcher.add(1, m, new ChatResponse(":1 two"));
+		batcher.add(1, m, new ChatResponse(":1 three"));
+		batcher.add(2, m, new ChatResponse(":1 other room"));
+		verify(connection).sendMessage(2, ":1 other room", SplitStrategy.NONE);
+		verifyNoMoreInteractions(connection);
+
+		verify(connection, timeout(2000)).sendMessage(1, ":1 two\nthree", SplitStrategy.NONE);
+		assertEquals(1, batcher.getPostsSaved());
+		batcher.shutdown();
+	}
+
+	@Test
+	public void no_window() throws Exception {
+		ChatConnection connection = mock(ChatConnection.class);
+		ReplyBatcher batcher = new ReplyBatcher(connection, 0);
+		ChatMessage m = message(1, "Jane");
+
+		batcher.add(1, m, new ChatResponse(":1 one"));
+		batcher.add(1, m, new ChatResponse(":1 two"));
+		verify(connection).sendMessage(1, ":1 one", SplitStrategy.NONE);
+		verify(connection).sendMessage(1, ":1 two", SplitStrategy.NONE);
+		batcher.shutdown();
+	}
+
+	private static ChatMessage message(long id, String username) {
+		ChatMessage message = new ChatMessage();
+		message.setMessageId(id);
+		message.setUsername(username);
+		return message;
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,117 @@
+package oakbot.bot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import oakbot.chat.ChatMessage;
+import oakbot.command.Command;
+
+/**
+ * @author Michael Angstadt
+ */
+public class SingleFlightTest {
+	@Test
+	public void identical_invocations_are_shared() {
+		SingleFlight singleFlight = new SingleFlight();
+		Command command = command("tag");
+		AtomicInteger invocations = new AtomicInteger();
+		CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+
+		ChatMessage m1 = message(1);
+		ChatMessage m2 = message(2);
+		ChatMessage m3 = message(3);
+
+		CompletableFuture<ChatResponse> r1 = singleFlight.submit(command, "java", m1, () -> {
+			invocations.incrementAndGet();
+			return result;
+		});
+		CompletableFuture<ChatResponse> r2 = singleFlight.submit(command, "java", m2, () -> {
+			invocations.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+		CompletableFuture<ChatResponse> r3 = singleFlight.submit(command, "python", m3, () -> {
+			invocations.incrementAndGet();
+			return CompletableFuture.completedFuture(new ChatResponse(":3 python"));
+		});
+
+		assertEquals(2, invocations.get());
+		assertEquals(1, singleFlight.getInFlight());
+
+		result.complete(new ChatResponse(":1 java"));
+		assertEquals(":1 java", r1.join().getMessage());
+		assertEquals(":2 java", r2.join().getMessage());
+		assertEquals(":3 python", r3.join().getMessage());
+
+		assertEquals(2, singleFlight.getExecutions());
+		assertEquals(1, singleFlight.getShared());
+		assertEquals(0, singleFlight.getInFlight());
+
+		//the flight is over, so the next invocation runs the command again
+		singleFlight.submit(command, "java", m3, () -> {
+			invocations.incrementAndGet();
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(3, invocations.get());
+	}
+
+	@Test
+	public void commands_do_not_share() {
+		SingleFlight singleFlight = new SingleFlight();
+		AtomicInteger invocations = new AtomicInteger();
+
+		singleFlight.submit(command("define"), "foo", message(1), () -> {
+			invocations.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+		singleFlight.submit(command("urban"), "foo", message(2), () -> {
+			invocations.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+
+		assertEquals(2, invocations.get());
+	}
+
+	@Test
+	public void exceptions_are_shared() {
+		SingleFlight singleFlight = new SingleFlight();
+		Command command = command("tag");
+		CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+
+		CompletableFuture<ChatResponse> r1 = singleFlight.submit(command, "java", message(1), () -> result);
+		CompletableFuture<ChatResponse> r2 = singleFlight.submit(command, "java", message(2), () -> null);
+
+		result.completeExceptionally(new IllegalStateException());
+		assertEquals(true, r1.isCompletedExceptionally());
+		assertEquals(true, r2.isCompletedExceptionally());
+	}
+
+	@Test
+	public void readdress() {
+		ChatMessage from = message(1);
+		ChatMessage to = message(2);
+
+		assertNull(SingleFlight.readdress(null, from, to));
+		assertEquals(":2 text", SingleFlight.readdress(new ChatResponse(":1 text"), from, to).getMessage());
+		assertEquals(":10 text", SingleFlight.readdress(new ChatResponse(":10 text"), from, to).getMessage());
+		assertEquals("text", SingleFlight.readdress(new ChatResponse("text"), from, to).getMessage());
+	}
+
+	private static Command command(String name) {
+		Command command = mock(Command.class);
+		when(command.name()).thenReturn(name);
+		return command;
+	}
+
+	private static ChatMessage message(long id) {
+		ChatMessage message = new ChatMessage();
+		message.setMessageId(id);
+		return message;
+	}
+}
@@ -0,0 +1,109 @@
+package oakbot.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import oakbot.util.ThreadMode;
+
+/**
+ * Compares how long it takes the {@link WorkerPool} to get through a burst of
+ * command invocations that block on I/O (such as an HTTP request) in platform
+ * and virtual thread mode.
+ * <p>
+ * Results on JDK 21.0.1, with each invocation blocking for 50ms (average time
+ * per burst):
+ * </p>
+ * <table>
+ * <tr><th>Invocations</th><th>Platform</th><th>Virtual</th></tr>
+ * <tr><td>4</td><td>50.3ms</td><td>50.4ms</td></tr>
+ * <tr><td>32</td><td>401.8ms</td><td>50.4ms</td></tr>
+ * <tr><td>256</td><td>3214.9ms</td><td>50.7ms</td></tr>
+ * </table>
+ * <p>
+ * Platform mode is limited by the default pool of 4 worker threads, so
+ * bursts larger than that queue up. Virtual mode runs every invocation at
+ * once.
+ * </p>
+ * <p>
+ * To run: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=oakbot.bot.ThreadModeBenchmark}
+ * </p>
+ * @author Michael Angstadt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadModeBenchmark {
+	@Param({ "PLATFORM", "VIRTUAL" })
+	public ThreadMode mode;
+
+	/**
+	 * The number of invocations in the burst (for example, one command from
+	 * each of several busy rooms).
+	 */
+	@Param({ "4", "32", "256" })
+	public int invocations;
+
+	/**
+	 * How long each invocation blocks for (in milliseconds).
+	 */
+	@Param({ "50" })
+	public long latency;
+
+	private WorkerPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		//same settings as the default Bot configuration
+		pool = new WorkerPool(mode, 4, 1000);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public int burst() {
+		List<CompletableFuture<Integer>> results = new ArrayList<>(invocations);
+		for (int i = 0; i < invocations; i++) {
+			int id = i;
+			results.add(pool.submit(() -> {
+				Thread.sleep(latency);
+				return id;
+			}, 60000, () -> -1, () -> -1));
+		}
+
+		int sum = 0;
+		for (CompletableFuture<Integer> result : results) {
+			sum += result.join();
+		}
+		return sum;
+	}
+
+	public static void main(String args[]) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ThreadModeBenchmark.class.getSimpleName()).build()).run();
+	}
+}
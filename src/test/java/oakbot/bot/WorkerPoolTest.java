@@ -0,0 +1,85 @@
+package oakbot.bot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class WorkerPoolTest {
+	@Test
+	public void submit() {
+		WorkerPool pool = new WorkerPool(1, 1);
+		try {
+			assertEquals("done", pool.submit(() -> "done", 1000, () -> "timeout", () -> "rejected").join());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		WorkerPool pool = new WorkerPool(1, 1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		try {
+			String result = pool.submit(() -> {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+				return "done";
+			}, 100, () -> "timeout", () -> "rejected").join();
+
+			assertEquals("timeout", result);
+			assertEquals(true, interrupted.await(1, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void timeout_starts_when_task_runs() throws Exception {
+		WorkerPool pool = new WorkerPool(1, 1);
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			pool.submit(() -> {
+				latch.await();
+				return "";
+			}, 10000, () -> "timeout", () -> "rejected");
+			CompletableFuture<String> queued = pool.submit(() -> "done", 200, () -> "timeout", () -> "rejected");
+
+			//wait in the queue for longer than the timeout
+			Thread.sleep(500);
+			latch.countDown();
+
+			assertEquals("done", queued.join());
+		} finally {
+			latch.countDown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void rejected() throws Exception {
+		WorkerPool pool = new WorkerPool(1, 1);
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			pool.submit(() -> {
+				latch.await();
+				return "";
+			}, 10000, () -> "timeout", () -> "rejected");
+			pool.submit(() -> "queued", 10000, () -> "timeout", () -> "rejected");
+
+			assertEquals("rejected", pool.submit(() -> "done", 10000, () -> "timeout", () -> "rejected").join());
+		} finally {
+			latch.countDown();
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package oakbot.chat;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares how many requests and bytes it takes to catch up on a room's
+ * missed messages, using the old strategy of re-requesting a window that
+ * grows by 5 messages each time, and the current strategy of paging backwards
+ * with a doubling window.
+ * <p>
+ * The "requests" and "bytes" columns are averages per catch-up.
+ * </p>
+ * <p>
+ * To run: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=oakbot.chat.CatchUpBenchmark}
+ * </p>
+ * @author Michael Angstadt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CatchUpBenchmark {
+	private static final long LAST_MESSAGE_ID = 100000;
+
+	/**
+	 * The number of messages that were missed.
+	 */
+	@Param({ "3", "50", "200", "450" })
+	public int missed;
+
+	private FakeRoom room;
+	private StackoverflowChat chat;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		LogManager.getLogManager().reset();
+
+		room = new FakeRoom();
+		//a proxy instead of a mock, so the benchmark does not depend on the mocking library's overhead
+		HttpClient client = (HttpClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpClient.class }, (proxy, method, args) -> {
+			if ("execute".equals(method.getName()) && args.length == 1) {
+				return room.answer((HttpUriRequest) args[0]);
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+		chat = new StackoverflowChat(client);
+
+		//cache the fkey
+		chat.getMessages(1, 1);
+	}
+
+	/**
+	 * Counts the requests and bytes of each catch-up.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Traffic {
+		private long catchUps, requestCount, byteCount;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			catchUps = requestCount = byteCount = 0;
+		}
+
+		public double requests() {
+			return (catchUps == 0) ? 0 : (double) requestCount / catchUps;
+		}
+
+		public double bytes() {
+			return (catchUps == 0) ? 0 : (double) byteCount / catchUps;
+		}
+	}
+
+	@Benchmark
+	public int linear(Traffic traffic) throws IOException {
+		room.traffic = traffic;
+		traffic.catchUps++;
+
+		long prevMessageId = LAST_MESSAGE_ID - missed;
+		List<ChatMessage> messages;
+		for (int count = 5; true; count += 5) {
+			messages = chat.getMessages(1, count);
+			if (messages.isEmpty() || messages.get(0).getMessageId() <= prevMessageId) {
+				break;
+			}
+		}
+		return messages.size();
+	}
+
+	@Benchmark
+	public int paged(Traffic traffic) throws IOException {
+		room.traffic = traffic;
+		traffic.catchUps++;
+		return chat.getMessagesSince(1, LAST_MESSAGE_ID - missed).size();
+	}
+
+	/**
+	 * Serves a room whose most recent message is {@link #LAST_MESSAGE_ID}.
+	 */
+	private static class FakeRoom {
+		private Traffic traffic;
+
+		public HttpResponse answer(HttpUriRequest request) throws IOException {
+			String body;
+			if (request instanceof HttpPost) {
+				int msgCount = 0;
+				long before = LAST_MESSAGE_ID + 1;
+				for (NameValuePair param : URLEncodedUtils.parse(EntityUtils.toString(((HttpPost) request).getEntity()), Consts.UTF_8)) {
+					if ("msgCount".equals(param.getName())) {
+						msgCount = Integer.parseInt(param.getValue());
+					} else if ("before".equals(param.getName())) {
+						before = Long.parseLong(param.getValue());
+					}
+				}
+				body = events(before - msgCount, before);
+			} else {
+				body = "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>";
+			}
+
+			if (traffic != null) {
+				traffic.requestCount++;
+				traffic.byteCount += body.length();
+			}
+
+			HttpResponse response = new BasicHttpResponse(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, ""));
+			response.setEntity(new StringEntity(body));
+			return response;
+		}
+
+		private static String events(long from, long to) {
+			StringBuilder sb = new StringBuilder("{\"events\":[");
+			for (long id = from; id < to; id++) {
+				if (id > from) {
+					sb.append(',');
+				}
+				sb.append("{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"The quick brown fox jumps over the lazy dog.\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":").append(id).append('}');
+			}
+			return sb.append("]}").toString();
+		}
+	}
+
+	public static void main(String args[]) throws RunnerException {
+		new Runner(new OptionsBuilder().include(CatchUpBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,139 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChatSessionTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void new_file() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		ChatSession session = new ChatSession(file);
+
+		assertFalse(session.hasLogin("email@example.com"));
+		assertNull(session.getFKey(1));
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	public void save_and_load() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		ChatSession session = new ChatSession(file);
+
+		BasicClientCookie cookie = new BasicClientCookie("acct", "secret");
+		cookie.setDomain(".stackoverflow.com");
+		cookie.setPath("/");
+		cookie.setSecure(true);
+		cookie.setExpiryDate(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+		session.getCookieStore().addCookie(cookie);
+
+		BasicClientCookie expired = new BasicClientCookie("old", "value");
+		expired.setDomain(".stackoverflow.com");
+		expired.setPath("/");
+		expired.setExpiryDate(new Date(System.currentTimeMillis() + 500));
+		session.getCookieStore().addCookie(expired);
+
+		session.loggedIn("email@example.com");
+		session.setFKey(1, "0123456789abcdef0123456789abcdef");
+		Thread.sleep(600);
+
+		session = new ChatSession(file);
+		assertTrue(session.hasLogin("email@example.com"));
+		assertFalse(session.hasLogin("other@example.com"));
+		assertEquals("0123456789abcdef0123456789abcdef", session.getFKey(1));
+		assertNull(session.getFKey(2));
+
+		List<Cookie> cookies = session.getCookieStore().getCookies();
+		assertEquals(1, cookies.size());
+		Cookie loaded = cookies.get(0);
+		assertEquals("acct", loaded.getName());
+		assertEquals("secret", loaded.getValue());
+		assertEquals(".stackoverflow.com", loaded.getDomain());
+		assertEquals("/", loaded.getPath());
+		assertTrue(loaded.isSecure());
+		assertEquals(cookie.getExpiryDate(), loaded.getExpiryDate());
+	}
+
+	@Test
+	public void only_chat_cookies_are_saved() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		ChatSession session = new ChatSession(file);
+		session.getCookieStore().addCookie(cookie("acct", "secret", ".stackoverflow.com"));
+		session.getCookieStore().addCookie(cookie("chat", "secret", "chat.stackoverflow.com"));
+		session.getCookieStore().addCookie(cookie("tracking", "value", ".urbandictionary.com"));
+		session.loggedIn("email@example.com");
+
+		session = new ChatSession(file);
+		List<String> names = session.getCookieStore().getCookies().stream().map(Cookie::getName).sorted().collect(Collectors.toList());
+		assertEquals(Arrays.asList("acct", "chat"), names);
+	}
+
+	@Test
+	public void saved_when_cookie_changes() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		ChatSession session = new ChatSession(file);
+		session.getCookieStore().addCookie(cookie("acct", "secret", ".stackoverflow.com"));
+		session.loggedIn("email@example.com");
+
+		session.getCookieStore().addCookie(cookie("acct", "renewed", ".stackoverflow.com"));
+
+		session = new ChatSession(file);
+		assertEquals("renewed", session.getCookieStore().getCookies().get(0).getValue());
+	}
+
+	@Test
+	public void owner_only_permissions() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+		ChatSession session = new ChatSession(file);
+		session.loggedIn("email@example.com");
+		assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+	}
+
+	@Test
+	public void clear() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("session.properties");
+		ChatSession session = new ChatSession(file);
+		session.getCookieStore().addCookie(new BasicClientCookie("acct", "secret"));
+		session.loggedIn("email@example.com");
+		session.setFKey(1, "0123456789abcdef0123456789abcdef");
+
+		session.clear();
+
+		session = new ChatSession(file);
+		assertFalse(session.hasLogin("email@example.com"));
+		assertNull(session.getFKey(1));
+		assertTrue(session.getCookieStore().getCookies().isEmpty());
+	}
+
+	private static BasicClientCookie cookie(String name, String value, String domain) {
+		BasicClientCookie cookie = new BasicClientCookie(name, value);
+		cookie.setDomain(domain);
+		cookie.setPath("/");
+		return cookie;
+	}
+}
@@ -0,0 +1,112 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.logging.LogManager;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import oakbot.chat.CircuitBreaker.State;
+
+/**
+ * @author Michael Angstadt
+ */
+public class CircuitBreakerTest {
+	@BeforeClass
+	public static void beforeClass() {
+		//turn off logging
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void opens_after_threshold() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, 4000);
+
+		assertTrue(breaker.tryAcquire(0));
+		breaker.onFailure(0);
+		assertTrue(breaker.tryAcquire(0));
+		breaker.onFailure(0);
+		assertEquals(State.CLOSED, breaker.getState());
+
+		//a success resets the count
+		assertTrue(breaker.tryAcquire(0));
+		breaker.onSuccess();
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire(0));
+			breaker.onFailure(100);
+		}
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getTrips());
+		assertEquals(1100, breaker.getRetryAt(500));
+
+		assertFalse(breaker.tryAcquire(500));
+		assertEquals(1, breaker.getRejected());
+	}
+
+	@Test
+	public void half_open() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1000, 3000);
+		breaker.tryAcquire(0);
+		breaker.onFailure(0);
+
+		//only one request is let through
+		assertTrue(breaker.tryAcquire(1000));
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire(1000));
+
+		//the probe fails, so it opens for twice as long
+		breaker.onFailure(1000);
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(3000, breaker.getRetryAt(1000));
+
+		//capped at the max
+		assertTrue(breaker.tryAcquire(3000));
+		breaker.onFailure(3000);
+		assertEquals(6000, breaker.getRetryAt(3000));
+
+		//the probe succeeds
+		assertTrue(breaker.tryAcquire(6000));
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getFailures());
+		assertTrue(breaker.tryAcquire(6000));
+		assertTrue(breaker.tryAcquire(6000));
+
+		//open time is reset
+		breaker.onFailure(7000);
+		assertEquals(8000, breaker.getRetryAt(7000));
+	}
+
+	@Test
+	public void not_sent() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1000, 3000);
+		breaker.tryAcquire(0);
+		breaker.onFailure(0);
+
+		//the probe was never sent, so another request can probe
+		assertTrue(breaker.tryAcquire(1000));
+		breaker.onNotSent();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertEquals(1, breaker.getFailures());
+		assertTrue(breaker.tryAcquire(1000));
+		assertFalse(breaker.tryAcquire(1000));
+	}
+
+	@Test
+	public void backoff() {
+		Backoff backoff = new Backoff(100, 1000);
+		long prev = 100;
+		for (int i = 0; i < 50; i++) {
+			long wait = backoff.next();
+			assertTrue(wait >= 100);
+			assertTrue(wait <= Math.min(1000, prev * 3));
+			prev = wait;
+		}
+
+		backoff = new Backoff(0, 1000);
+		assertEquals(0, backoff.next());
+	}
+}
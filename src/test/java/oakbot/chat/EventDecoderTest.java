@@ -0,0 +1,98 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+import oakbot.chat.EventDecoder.Events;
+
+/**
+ * @author Michael Angstadt
+ */
+public class EventDecoderTest {
+	@Test
+	public void decodeRoom() throws Exception {
+		//@formatter:off
+		String json =
+		"{\"events\":[" +
+			"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 1\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157245,\"parent_id\":20157244,\"show_parent\":true}," +
+			"{\"event_type\":2,\"time_stamp\":1417041470,\"content\":\"edited\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157245,\"extra\":{\"a\":[1,2]}}," +
+			"{\"time_stamp\":1417043460,\"user_id\":51,\"user_name\":\"User2\",\"room_id\":1,\"message_id\":20157246,\"edits\":2}" +
+		"],\"time\":51234,\"sync\":1417043461}";
+		//@formatter:on
+
+		Events events = EventDecoder.decodeRoom(in(json));
+		assertEquals(Long.valueOf(51234), events.getCursor());
+
+		List<ChatMessage> messages = events.getMessages();
+		assertEquals(2, messages.size());
+
+		ChatMessage message = messages.get(0);
+		assertEquals("message 1", message.getContent());
+		assertEquals(0, message.getEdits());
+		assertEquals(20157245L, message.getMessageId());
+		assertEquals(1, message.getRoomId());
+		assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(1417041460000L), ZoneId.systemDefault()), message.getTimestamp());
+		assertEquals(50, message.getUserId());
+		assertEquals("User1", message.getUsername());
+
+		//events without a type are messages
+		message = messages.get(1);
+		assertNull(message.getContent());
+		assertEquals(2, message.getEdits());
+		assertEquals(20157246L, message.getMessageId());
+	}
+
+	@Test
+	public void decodeRoom_no_events() throws Exception {
+		Events events = EventDecoder.decodeRoom(in("{}"));
+		assertTrue(events.getMessages().isEmpty());
+		assertNull(events.getCursor());
+	}
+
+	@Test(expected = JsonParseException.class)
+	public void decodeRoom_not_json() throws Exception {
+		EventDecoder.decodeRoom(in("<html>Error</html>"));
+	}
+
+	@Test
+	public void decodeRooms() throws Exception {
+		//@formatter:off
+		String json =
+		"{" +
+			"\"r1\":{\"e\":[{\"event_type\":1,\"content\":\"one\",\"room_id\":1,\"message_id\":10}],\"t\":101,\"d\":1}," +
+			"\"r2\":{\"t\":201}," +
+			"\"other\":{\"e\":[{\"event_type\":1,\"content\":\"ignored\",\"room_id\":3,\"message_id\":30}]}," +
+			"\"r4\":[]" +
+		"}";
+		//@formatter:on
+
+		Map<Integer, Events> rooms = EventDecoder.decodeRooms(json);
+		assertEquals(2, rooms.size());
+
+		Events events = rooms.get(1);
+		assertEquals(Long.valueOf(101), events.getCursor());
+		assertEquals(1, events.getMessages().size());
+		assertEquals("one", events.getMessages().get(0).getContent());
+
+		events = rooms.get(2);
+		assertEquals(Long.valueOf(201), events.getCursor());
+		assertTrue(events.getMessages().isEmpty());
+	}
+
+	private static ByteArrayInputStream in(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
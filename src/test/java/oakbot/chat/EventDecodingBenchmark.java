@@ -0,0 +1,148 @@
+package oakbot.chat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the cost of decoding a page of chat events by building a JSON tree
+ * with a new {@link ObjectMapper} for each response (the way responses used
+ * to be decoded), and by streaming the events with {@link EventDecoder}.
+ * <p>
+ * Scores are per event. The "gc.alloc.rate.norm" column of the GC profiler
+ * shows the number of bytes allocated per event.
+ * </p>
+ * <p>
+ * To run: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=oakbot.chat.EventDecodingBenchmark}
+ * </p>
+ * @author Michael Angstadt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(EventDecodingBenchmark.EVENTS)
+public class EventDecodingBenchmark {
+	static final int EVENTS = 100;
+
+	private byte[] json;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder("{\"events\":[");
+		for (int i = 0; i < EVENTS; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+
+			//every tenth event is an edit, which the decoder skips
+			int eventType = (i % 10 == 9) ? 2 : 1;
+			sb.append("{\"event_type\":").append(eventType).append(",\"time_stamp\":").append(1417041460 + i).append(",\"content\":\"message number ").append(i).append(", which has a typical amount of text in it\",\"user_id\":").append(50 + i % 5).append(",\"user_name\":\"User").append(i % 5).append("\",\"room_id\":1,\"message_id\":").append(20157245 + i).append(",\"parent_id\":").append(20157244 + i).append(",\"show_parent\":true}");
+		}
+		sb.append("],\"time\":51234,\"sync\":1417043461}");
+		json = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public List<ChatMessage> tree() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode node = mapper.readTree(new ByteArrayInputStream(json));
+
+		List<ChatMessage> messages = new ArrayList<>();
+		Iterator<JsonNode> it = node.get("events").elements();
+		while (it.hasNext()) {
+			JsonNode element = it.next();
+			JsonNode eventType = element.get("event_type");
+			if (eventType != null && eventType.asInt() != EventDecoder.EVENT_MESSAGE_POSTED) {
+				continue;
+			}
+			messages.add(parseChatMessage(element));
+		}
+		return messages;
+	}
+
+	@Benchmark
+	public List<ChatMessage> streaming() throws IOException {
+		return EventDecoder.decodeRoom(new ByteArrayInputStream(json)).getMessages();
+	}
+
+	/**
+	 * Unmarshals a chat message from a JSON tree, the way it used to be done.
+	 * @param element the JSON element
+	 * @return the parsed chat message
+	 */
+	private static ChatMessage parseChatMessage(JsonNode element) {
+		ChatMessage chatMessage = new ChatMessage();
+
+		JsonNode value = element.get("content");
+		if (value != null) {
+			chatMessage.setContent(value.asText());
+		}
+
+		value = element.get("edits");
+		if (value != null) {
+			chatMessage.setEdits(value.asInt());
+		}
+
+		value = element.get("message_id");
+		if (value != null) {
+			chatMessage.setMessageId(value.asLong());
+		}
+
+		value = element.get("room_id");
+		if (value != null) {
+			chatMessage.setRoomId(value.asInt());
+		}
+
+		value = element.get("time_stamp");
+		if (value != null) {
+			LocalDateTime ts = LocalDateTime.ofInstant(Instant.ofEpochMilli(value.asLong() * 1000), ZoneId.systemDefault());
+			chatMessage.setTimestamp(ts);
+		}
+
+		value = element.get("user_id");
+		if (value != null) {
+			chatMessage.setUserId(value.asInt());
+		}
+
+		value = element.get("user_name");
+		if (value != null) {
+			chatMessage.setUsername(value.asText());
+		}
+
+		return chatMessage;
+	}
+
+	public static void main(String args[]) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventDecodingBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
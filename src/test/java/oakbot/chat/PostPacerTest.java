@@ -0,0 +1,85 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class PostPacerTest {
+	@Test
+	public void no_limits_until_rejected() {
+		PostPacer pacer = new PostPacer(0, 0, 60000, 10000);
+		assertTrue(pacer.readyAt(1, 0) <= 0);
+
+		pacer.onPosted(1, 0, 0);
+		assertTrue(pacer.readyAt(1, 0) <= 0);
+		assertTrue(pacer.readyAt(2, 0) <= 0);
+	}
+
+	@Test
+	public void learns_from_rejections() {
+		PostPacer pacer = new PostPacer(0, 0, 60000, 100000);
+		pacer.onRejected(1, 0, 2000);
+		assertEquals(1, pacer.getRejected());
+
+		//the penalty must be waited out
+		assertEquals(2000, pacer.readyAt(1, 0));
+		assertEquals(2000, pacer.getSpacing(1, 0));
+
+		//other rooms are limited by the global spacing, which is only tightened to half the penalty
+		assertEquals(1000, pacer.getGlobalSpacing(0));
+		assertTrue(pacer.readyAt(2, 0) <= 0);
+
+		pacer.onPosted(1, 2000, 0);
+		assertEquals(3000, pacer.readyAt(2, 2000), 20);
+		assertEquals(4000, pacer.readyAt(1, 2000), 50);
+
+		//a second rejection doubles the spacing if the penalty is smaller
+		pacer.onRejected(1, 4000, 1000);
+		assertEquals(4000, pacer.getSpacing(1, 4000), 150);
+
+		//relaxes over time
+		long spacing = pacer.getSpacing(1, 4000);
+		assertEquals(spacing / 2, pacer.getSpacing(1, 104000), 1);
+		assertEquals(0, pacer.getSpacing(1, 10000000));
+		assertEquals(0, pacer.getGlobalSpacing(10000000));
+	}
+
+	@Test
+	public void max_spacing() {
+		PostPacer pacer = new PostPacer(0, 0, 5000, 10000);
+		pacer.onRejected(1, 0, 30000);
+		assertEquals(5000, pacer.getSpacing(1, 0));
+
+		//the penalty itself is not capped
+		assertEquals(30000, pacer.readyAt(1, 0));
+	}
+
+	@Test
+	public void min_spacing() {
+		PostPacer pacer = new PostPacer(500, 100, 60000, 10000);
+		pacer.onPosted(1, 0, 0);
+		assertEquals(500, pacer.readyAt(1, 0));
+		assertEquals(100, pacer.readyAt(2, 0));
+	}
+
+	@Test
+	public void avoided() {
+		PostPacer pacer = new PostPacer(0, 0, 60000, TimeUnit.DAYS.toMillis(1));
+		pacer.onRejected(1, 0, 4000);
+		assertEquals(4000, pacer.getSpacing(1, 0));
+
+		pacer.onPosted(1, 4000, 3000);
+		pacer.onPosted(1, 8000, 0);
+		assertEquals(1, pacer.getAvoided());
+
+		//a short hold does not count
+		pacer.onPosted(1, 12000, 500);
+		assertEquals(1, pacer.getAvoided());
+	}
+}
@@ -0,0 +1,195 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+
+import oakbot.chat.ChatRecording.Batch;
+import oakbot.chat.ChatRecording.Post;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RecordingChatTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void record_and_replay() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("chat.rec");
+
+		ChatConnection connection = mock(ChatConnection.class);
+		when(connection.getNewMessages(1)).thenReturn(Arrays.asList(message(1, 10, "one"), message(1, 11, "two"))).thenReturn(Collections.emptyList());
+		when(connection.getNewMessages(2)).thenReturn(Arrays.asList(message(2, 20, "three")));
+
+		try (RecordingChat chat = new RecordingChat(connection, file)) {
+			assertEquals(2, chat.getNewMessages(1).size());
+			assertTrue(chat.getNewMessages(1).isEmpty());
+			chat.sendMessage(1, "reply");
+			assertEquals(1, chat.getNewMessages(2).size());
+			chat.sendMessage(2, "long reply", SplitStrategy.WORD);
+		}
+		verify(connection).sendMessage(1, "reply");
+		verify(connection).sendMessage(2, "long reply", SplitStrategy.WORD);
+
+		//the second session is appended
+		try (RecordingChat chat = new RecordingChat(connection, file)) {
+			chat.sendMessage(3, "OakBot Online.");
+		}
+
+		ChatRecording recording = ChatRecording.read(file);
+		List<Batch> batches = recording.getBatches();
+		assertEquals(2, batches.size());
+		assertEquals(1, batches.get(0).getRoom());
+		assertEquals(2, batches.get(1).getRoom());
+		assertTrue(batches.get(0).getOffset() <= batches.get(1).getOffset());
+
+		ChatMessage message = batches.get(0).getMessages().get(0);
+		assertEquals(10, message.getMessageId());
+		assertEquals(1, message.getRoomId());
+		assertEquals(5, message.getUserId());
+		assertEquals("Zoë", message.getUsername());
+		assertEquals("one", message.getContent());
+		assertEquals(2, message.getEdits());
+		assertEquals(LocalDateTime.of(2016, 1, 2, 3, 4, 5), message.getTimestamp());
+
+		List<Post> posts = recording.getPosts();
+		assertEquals(3, posts.size());
+		assertEquals("reply", posts.get(0).getMessage());
+		assertNull(posts.get(0).getSplitStrategy());
+		assertTrue(posts.get(0).getLatency() >= 0);
+		assertEquals(SplitStrategy.WORD, posts.get(1).getSplitStrategy());
+		assertEquals(3, posts.get(2).getRoom());
+		assertEquals(-1, posts.get(2).getLatency());
+
+		//replay it
+		ReplayChat replay = new ReplayChat(file, ReplayChat.AS_FAST_AS_POSSIBLE);
+		replay.login("email", "password");
+		assertEquals(Arrays.asList(10L, 11L), ids(replay.getNewMessages(1)));
+		assertTrue(replay.getNewMessages(1).isEmpty());
+		assertFalse(replay.isFinished());
+		assertEquals(Arrays.asList(20L), ids(replay.getNewMessages(2)));
+		assertTrue(replay.isFinished());
+		assertEquals(Arrays.asList(11L), ids(replay.getMessages(1, 1)));
+
+		replay.sendMessage(1, "reply");
+		replay.sendMessage(2, Strings.repeat("word ", 200), SplitStrategy.WORD);
+		posts = replay.getPosts();
+		assertEquals(2, posts.size());
+		assertEquals(1, posts.get(0).getRoom());
+		assertTrue(posts.get(0).getLatency() >= 0);
+		assertEquals(4, replay.getParts());
+	}
+
+	@Test
+	public void replay_speed() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("chat.rec");
+
+		ChatConnection connection = mock(ChatConnection.class);
+		when(connection.getNewMessages(1)).thenReturn(Arrays.asList(message(1, 10, "one")));
+		try (RecordingChat chat = new RecordingChat(connection, file)) {
+			chat.getNewMessages(1);
+			Thread.sleep(1000);
+			chat.getNewMessages(1);
+		}
+
+		ChatRecording recording = ChatRecording.read(file);
+		long first = recording.getBatches().get(0).getOffset();
+		long second = recording.getBatches().get(1).getOffset();
+		assertTrue(second >= 1000);
+
+		//at 10x, each batch is due after a tenth of its offset
+		FakeTicker ticker = new FakeTicker();
+		ReplayChat replay = new ReplayChat(recording, 10, ticker);
+		replay.login("email", "password");
+
+		ticker.setMillis((first + 9) / 10);
+		assertEquals(1, replay.getNewMessages(1).size());
+		ticker.setMillis(second / 10 - 1);
+		assertTrue(replay.getNewMessages(1).isEmpty());
+		ticker.setMillis((second + 9) / 10);
+		assertEquals(1, replay.getNewMessages(1).size());
+		assertTrue(replay.isFinished());
+	}
+
+	@Test
+	public void truncated() throws Exception {
+		Path file = temporaryFolder.getRoot().toPath().resolve("chat.rec");
+
+		ChatConnection connection = mock(ChatConnection.class);
+		try (RecordingChat chat = new RecordingChat(connection, file)) {
+			chat.sendMessage(1, "one");
+			chat.sendMessage(1, "two");
+		}
+
+		//simulate a crash in the middle of writing a record
+		byte[] data = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(data, data.length - 1));
+
+		List<Post> posts = ChatRecording.read(file).getPosts();
+		assertEquals(1, posts.size());
+		assertEquals("one", posts.get(0).getMessage());
+
+		//the partial record is removed before the next session is appended
+		try (RecordingChat chat = new RecordingChat(connection, file)) {
+			chat.sendMessage(1, "three", SplitStrategy.NEWLINE);
+		}
+
+		posts = ChatRecording.read(file).getPosts();
+		assertEquals(2, posts.size());
+		assertEquals("one", posts.get(0).getMessage());
+		assertEquals("three", posts.get(1).getMessage());
+		assertEquals(SplitStrategy.NEWLINE, posts.get(1).getSplitStrategy());
+	}
+
+	private static ChatMessage message(int room, long id, String content) {
+		ChatMessage message = new ChatMessage();
+		message.setRoomId(room);
+		message.setMessageId(id);
+		message.setUserId(5);
+		message.setUsername("Zoë");
+		message.setContent(content);
+		message.setEdits(2);
+		message.setTimestamp(LocalDateTime.of(2016, 1, 2, 3, 4, 5));
+		return message;
+	}
+
+	/**
+	 * A clock that only moves when it is told to.
+	 */
+	private static class FakeTicker extends Ticker {
+		private volatile long nanos;
+
+		public void setMillis(long millis) {
+			nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	private static List<Long> ids(List<ChatMessage> messages) {
+		return Arrays.asList(messages.stream().map(ChatMessage::getMessageId).toArray(Long[]::new));
+	}
+}
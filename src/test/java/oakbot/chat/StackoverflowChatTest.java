@@ -15,10 +15,16 @@ import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.LogManager;
 
 import org.apache.http.Consts;
@@ -33,19 +39,29 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.message.BasicStatusLine;
 import org.apache.http.util.EntityUtils;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.common.base.Strings;
+
+import oakbot.util.ThreadMode;
+
 /**
  * @author Michael Angstadt
  */
 public class StackoverflowChatTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@BeforeClass
 	public static void beforeClass() {
 		//turn off logging
@@ -189,86 +205,169 @@ public class StackoverflowChatTest {
 
 	@Test
 	public void sendMessage() throws Exception {
+		List<String> posted = Collections.synchronizedList(new ArrayList<>());
 		HttpClient client = mockClient(new AnswerImpl() {
-			private long prevRequestSent;
+			private long throttled;
 
 			@Override
 			public HttpResponse answer(String method, String uri, String body) throws IOException {
-				switch (count) {
-				case 1:
+				switch (uri) {
+				case "https://chat.stackoverflow.com/rooms/1":
 					assertEquals("GET", method);
-					assertEquals("https://chat.stackoverflow.com/rooms/1", uri);
 					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
-				case 2:
-					assertEquals("POST", method);
-					assertEquals("https://chat.stackoverflow.com/chats/1/messages/new", uri);
-					//@formatter:off
-					Set<NameValuePair> expected = new HashSet<>(Arrays.asList(
-						new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef"),
-						new BasicNameValuePair("text", "Test1")
-					));
-					//@formatter:on
-					Set<NameValuePair> actual = params(body);
-					assertEquals(expected, actual);
-
-					return response(200, "{}");
-				case 3:
-					assertEquals("POST", method);
-					assertEquals("https://chat.stackoverflow.com/chats/1/messages/new", uri);
-					//@formatter:off
-					expected = new HashSet<>(Arrays.asList(
-						new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef"),
-						new BasicNameValuePair("text", "Test2")
-					));
-					//@formatter:on
-					actual = params(body);
-					assertEquals(expected, actual);
-
-					return response(200, "{}");
-				case 4:
+				case "https://chat.stackoverflow.com/rooms/2":
 					assertEquals("GET", method);
-					assertEquals("https://chat.stackoverflow.com/rooms/2", uri);
 					return response(200, "value=\"abcdef0123456789abcdef0123456789\" <textarea id=\"input\"></textarea>");
-				case 5:
-					prevRequestSent = System.currentTimeMillis();
-					assertEquals("https://chat.stackoverflow.com/chats/2/messages/new", uri);
-					//@formatter:off
-					expected = new HashSet<>(Arrays.asList(
-						new BasicNameValuePair("fkey", "abcdef0123456789abcdef0123456789"),
-						new BasicNameValuePair("text", "Test3")
-					));
-					//@formatter:on
-					actual = params(body);
-					assertEquals(expected, actual);
-
-					return response(409, "You can perform this action again in 2 seconds");
-				case 6:
-					long diff = System.currentTimeMillis() - prevRequestSent;
-					assertTrue(diff >= 2000);
-
-					assertEquals("https://chat.stackoverflow.com/chats/2/messages/new", uri);
-					//@formatter:off
-					expected = new HashSet<>(Arrays.asList(
-						new BasicNameValuePair("fkey", "abcdef0123456789abcdef0123456789"),
-						new BasicNameValuePair("text", "Test3")
-					));
-					//@formatter:on
-					actual = params(body);
-					assertEquals(expected, actual);
-
-					return response(200, "{}");
+				case "https://chat.stackoverflow.com/chats/1/messages/new":
+					assertTrue(params(body).contains(new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef")));
+					break;
+				case "https://chat.stackoverflow.com/chats/2/messages/new":
+					assertTrue(params(body).contains(new BasicNameValuePair("fkey", "abcdef0123456789abcdef0123456789")));
+					if (throttled == 0) {
+						throttled = System.currentTimeMillis();
+						return response(409, "You can perform this action again in 2 seconds");
+					}
+					assertTrue(System.currentTimeMillis() - throttled >= 2000);
+					break;
+				default:
+					return super.answer(method, uri, body);
 				}
 
-				return super.answer(method, uri, body);
+				assertEquals("POST", method);
+				String text = null;
+				for (NameValuePair param : params(body)) {
+					if ("text".equals(param.getName())) {
+						text = param.getValue();
+					}
+				}
+				posted.add(text);
+				return response(200, "{}");
 			}
 		});
 
 		StackoverflowChat chat = new StackoverflowChat(client);
 		chat.sendMessage(1, "Test1");
-		chat.sendMessage(1, "Test2");
 		chat.sendMessage(2, "Test3");
+		chat.sendMessage(1, "Test2");
 		chat.flush(); //should block until the message queue is empty
+
+		//room 2 being throttled does not hold up room 1
+		assertEquals(Arrays.asList("Test1", "Test2", "Test3"), posted);
 		verify(client, times(6)).execute(any(HttpUriRequest.class));
+
+		SendStatistics stats = chat.getSendStatistics(2);
+		assertEquals(0, stats.getDepth());
+		assertEquals(1, stats.getSent());
+		assertEquals(1, stats.getThrottled());
+		assertEquals(0, chat.getSendStatistics(1).getDepth());
+		assertEquals(2, chat.getSendStatistics(1).getSent());
+	}
+
+	@Test
+	public void sendMessage_rooms_take_turns() throws Exception {
+		List<String> posted = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch firstPost = new CountDownLatch(1);
+		CountDownLatch queued = new CountDownLatch(1);
+		HttpClient client = mockClient(new AnswerImpl() {
+			@Override
+			public HttpResponse answer(String method, String uri, String body) throws IOException {
+				if ("GET".equals(method)) {
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+				}
+
+				for (NameValuePair param : params(body)) {
+					if ("text".equals(param.getName())) {
+						posted.add(uri.replaceAll("\\D", "") + ":" + param.getValue().length());
+					}
+				}
+
+				//wait for the other room's message to be queued
+				firstPost.countDown();
+				try {
+					queued.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return response(200, "{}");
+			}
+		});
+
+		StackoverflowChat chat = new StackoverflowChat(client);
+
+		//split into multiple posts
+		String longMessage = Strings.repeat("word ", 300).trim();
+		chat.sendMessage(1, longMessage, SplitStrategy.WORD);
+		firstPost.await();
+		chat.sendMessage(2, "Test");
+		queued.countDown();
+		chat.flush();
+
+		//room 2's message is posted after the first part of room 1's message
+		assertTrue(posted.size() > 3);
+		assertEquals("2:4", posted.remove(1));
+		for (String post : posted) {
+			assertTrue(post.startsWith("1:"));
+		}
+	}
+
+	@Test
+	public void sendMessage_room_page_failure_does_not_hold_up_other_rooms() throws Exception {
+		List<String> requests = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch posted = new CountDownLatch(1);
+		HttpClient client = mockClient(new AnswerImpl() {
+			@Override
+			public HttpResponse answer(String method, String uri, String body) throws IOException {
+				requests.add(method + " " + uri);
+				switch (uri) {
+				case "https://chat.stackoverflow.com/rooms/1":
+					return response(503, "<html>down for maintenance</html>");
+				case "https://chat.stackoverflow.com/rooms/2":
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+				case "https://chat.stackoverflow.com/chats/2/messages/new":
+					posted.countDown();
+					return response(200, "{}");
+				default:
+					return super.answer(method, uri, body);
+				}
+			}
+		});
+
+		StackoverflowChat chat = new StackoverflowChat(client, 1000);
+		chat.sendMessage(1, "Test1");
+		chat.sendMessage(2, "Test2");
+		assertTrue(posted.await(5, TimeUnit.SECONDS));
+
+		//room 1's page is only requested once before room 2's message is posted
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			"GET https://chat.stackoverflow.com/rooms/1",
+			"GET https://chat.stackoverflow.com/rooms/2",
+			"POST https://chat.stackoverflow.com/chats/2/messages/new"
+		), requests.subList(0, 3));
+		//@formatter:on
+	}
+
+	@Test
+	public void flush_gives_up_on_rest_of_message() throws Exception {
+		HttpClient client = mockClient(new AnswerImpl() {
+			@Override
+			public HttpResponse answer(String method, String uri, String body) throws IOException {
+				if ("GET".equals(method)) {
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+				}
+
+				//the first part is posted, then the chat system goes down
+				return (count == 2) ? response(200, "{}") : response(503, "<html>down for maintenance</html>");
+			}
+		});
+
+		StackoverflowChat chat = new StackoverflowChat(client, 10);
+		chat.setFlushTimeout(500);
+		chat.sendMessage(1, Strings.repeat("word ", 300).trim(), SplitStrategy.WORD);
+
+		long start = System.currentTimeMillis();
+		chat.flush();
+		assertTrue(System.currentTimeMillis() - start < 5000);
 	}
 
 	@Test
@@ -471,13 +570,15 @@ public class StackoverflowChatTest {
 					"]}");
 					//@formatter:on
 				case 6:
+					//only the messages older than the ones already retrieved are requested
 					assertEquals("POST", method);
 					assertEquals("https://chat.stackoverflow.com/chats/1/events", uri);
 					//@formatter:off
 					expected = new HashSet<>(Arrays.asList(
 						new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef"),
 						new BasicNameValuePair("mode", "messages"),
-						new BasicNameValuePair("msgCount", "10")
+						new BasicNameValuePair("msgCount", "10"),
+						new BasicNameValuePair("before", "20157250")
 					));
 					//@formatter:on
 					actual = params(body);
@@ -486,16 +587,11 @@ public class StackoverflowChatTest {
 					//@formatter:off
 					return response(200,
 					"{\"events\":[" +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 3\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157247}," +
-						"{\"event_type\":1,\"time_stamp\":1417043460,\"content\":\"message 4\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157248}," +
-						"{\"event_type\":1,\"time_stamp\":1417045460,\"content\":\"message 5\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157249}," +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 6\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157250}," +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 7\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157251}," +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 8\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157252}," +
-						"{\"event_type\":1,\"time_stamp\":1417043460,\"content\":\"message 9\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157253}," +
-						"{\"event_type\":1,\"time_stamp\":1417045460,\"content\":\"message 10\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157254}," +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 11\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157255}," +
-						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 12\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157256}" +
+						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 1\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157245}," +
+						"{\"event_type\":1,\"time_stamp\":1417043460,\"content\":\"message 2\",\"user_id\":51,\"user_name\":\"User2\",\"room_id\":1,\"message_id\":20157246,\"edits\":2}," +
+						"{\"event_type\":1,\"time_stamp\":1417045460,\"content\":\"message 3\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157247}," +
+						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 4\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157248}," +
+						"{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message 5\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":1,\"message_id\":20157249}" +
 					"]}");
 					//@formatter:on
 				}
@@ -530,12 +626,6 @@ public class StackoverflowChatTest {
 		messages = chat.getNewMessages(1).iterator();
 		{
 			ChatMessage message = messages.next();
-			assertEquals("message 6", message.getContent());
-
-			message = messages.next();
-			assertEquals("message 7", message.getContent());
-
-			message = messages.next();
 			assertEquals("message 8", message.getContent());
 
 			message = messages.next();
@@ -556,6 +646,250 @@ public class StackoverflowChatTest {
 		verify(client, times(6)).execute(any(HttpUriRequest.class));
 	}
 
+	@Test
+	public void getNewMessages_gap() throws Exception {
+		Room room = new Room(1, 2000);
+		HttpClient client = mockClient(room);
+		StackoverflowChat chat = new StackoverflowChat(client);
+
+		List<long[]> gaps = new ArrayList<>();
+		chat.setGapHandler((roomId, lastMessageId, firstMessageId) -> gaps.add(new long[] { roomId, lastMessageId, firstMessageId }));
+
+		//small catch-up: the window doubles and only older messages are requested
+		List<ChatMessage> messages = chat.getMessagesSince(1, 1970);
+		assertEquals(30, messages.size());
+		assertEquals(1971, messages.get(0).getMessageId());
+		assertEquals(2000, messages.get(29).getMessageId());
+		assertEquals(Arrays.asList(5, 10, 20), room.msgCounts);
+		assertTrue(gaps.isEmpty());
+
+		//too many messages to catch up on
+		room.msgCounts.clear();
+		messages = chat.getMessagesSince(1, 100);
+		assertTrue(messages.size() >= StackoverflowChat.MAX_CATCH_UP);
+		assertEquals(2000, messages.get(messages.size() - 1).getMessageId());
+		assertEquals(1, gaps.size());
+		assertEquals(1, gaps.get(0)[0]);
+		assertEquals(100, gaps.get(0)[1]);
+		assertEquals(messages.get(0).getMessageId(), gaps.get(0)[2]);
+		for (int count : room.msgCounts) {
+			assertTrue(count <= StackoverflowChat.MAX_FETCH_SIZE);
+		}
+
+		//reaches the beginning of the room
+		gaps.clear();
+		Room small = new Room(1, 12);
+		chat = new StackoverflowChat(mockClient(small));
+		chat.setGapHandler((roomId, lastMessageId, firstMessageId) -> gaps.add(new long[] { roomId, lastMessageId, firstMessageId }));
+		messages = chat.getMessagesSince(1, 0);
+		assertEquals(12, messages.size());
+		assertEquals(Arrays.asList(5, 10), small.msgCounts);
+		assertTrue(gaps.isEmpty());
+	}
+
+	@Test
+	public void getNewMessages_multiple_rooms() throws Exception {
+		AnswerImpl answer = new AnswerImpl() {
+			@Override
+			protected HttpResponse answer(String method, String uri, String body) throws IOException {
+				if ("GET".equals(method)) {
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+				}
+
+				Set<NameValuePair> params = params(body);
+				switch (uri) {
+				case "https://chat.stackoverflow.com/chats/1/events":
+					return response(200, "{\"events\":[" + event(1, 10, "one") + "],\"time\":100}");
+				case "https://chat.stackoverflow.com/chats/2/events":
+					return response(200, "{\"events\":[" + event(2, 20, "two") + "],\"time\":200}");
+				case "https://chat.stackoverflow.com/events":
+					assertTrue(params.contains(new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef")));
+					if (count == 5) {
+						assertTrue(params.contains(new BasicNameValuePair("r1", "100")));
+						assertTrue(params.contains(new BasicNameValuePair("r2", "200")));
+						//@formatter:off
+						return response(200,
+							"{" +
+								"\"r1\":{\"e\":[" + event(1, 10, "one") + "," + event(1, 11, "three") + "," + event(2, 21, "wrong room") + "],\"t\":101}," +
+								"\"r2\":{\"t\":201}," +
+								"\"r3\":{\"e\":[" + event(3, 30, "not joined") + "],\"t\":301}" +
+							"}"
+						);
+						//@formatter:on
+					}
+					if (count == 6) {
+						assertTrue(params.contains(new BasicNameValuePair("r1", "101")));
+						assertTrue(params.contains(new BasicNameValuePair("r2", "201")));
+						return response(200, "{\"r2\":{\"e\":[" + event(2, 22, "four") + "],\"t\":202}}");
+					}
+				}
+
+				return super.answer(method, uri, body);
+			}
+
+			private String event(int room, long id, String content) {
+				return "{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"" + content + "\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":" + room + ",\"message_id\":" + id + "}";
+			}
+		};
+		HttpClient client = mockClient(answer);
+		StackoverflowChat chat = new StackoverflowChat(client);
+		assertTrue(chat.supportsBulkPolling());
+
+		//first call primes each room individually
+		Map<Integer, List<ChatMessage>> messages = chat.getNewMessages(Arrays.asList(1, 2));
+		assertTrue(messages.get(1).isEmpty());
+		assertTrue(messages.get(2).isEmpty());
+
+		//then all rooms are polled with a single request
+		messages = chat.getNewMessages(Arrays.asList(1, 2));
+		assertEquals(1, messages.get(1).size());
+		assertEquals("three", messages.get(1).get(0).getContent());
+		assertTrue(messages.get(2).isEmpty());
+		assertFalse(messages.containsKey(3));
+
+		messages = chat.getNewMessages(Arrays.asList(1, 2));
+		assertTrue(messages.get(1).isEmpty());
+		assertEquals(1, messages.get(2).size());
+		assertEquals("four", messages.get(2).get(0).getContent());
+
+		verify(client, times(6)).execute(any(HttpUriRequest.class));
+	}
+
+	@Test
+	public void getMessages_circuit_breaker() throws Exception {
+		HttpClient client = mockClient(new AnswerImpl() {
+			@Override
+			public HttpResponse answer(String method, String uri, String body) throws IOException {
+				if (count == 1) {
+					assertEquals("https://chat.stackoverflow.com/rooms/1", uri);
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+				}
+
+				assertEquals("https://chat.stackoverflow.com/chats/1/events", uri);
+				return response(503, "<html>down for maintenance</html>");
+			}
+		});
+
+		StackoverflowChat chat = new StackoverflowChat(client, 0);
+		try {
+			chat.getMessages(1, 1);
+			fail();
+		} catch (CircuitOpenException e) {
+			//expected
+		}
+
+		//fails without sending a request
+		try {
+			chat.getMessages(1, 1);
+			fail();
+		} catch (CircuitOpenException e) {
+			//expected
+		}
+
+		CircuitBreaker breaker = chat.getCircuitBreaker(StackoverflowChat.Endpoint.EVENTS);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getTrips());
+		assertEquals(CircuitBreaker.State.CLOSED, chat.getCircuitBreaker(StackoverflowChat.Endpoint.ROOM_PAGE).getState());
+		verify(client, times(6)).execute(any(HttpUriRequest.class));
+	}
+
+	@Test
+	public void restored_session() throws Exception {
+		ChatSession session = new ChatSession(temporaryFolder.getRoot().toPath().resolve("session.properties"));
+		session.getCookieStore().addCookie(new BasicClientCookie("acct", "secret"));
+		session.loggedIn("email@example.com");
+		session.setFKey(1, "0123456789abcdef0123456789abcdef");
+
+		HttpClient client = mockClient(new AnswerImpl() {
+			@Override
+			public HttpResponse answer(String method, String uri, String body) throws IOException {
+				switch (count) {
+				case 1:
+					//saved session is used without logging in or scraping the room
+					assertEquals("POST", method);
+					assertEquals("https://chat.stackoverflow.com/chats/1/events", uri);
+					assertTrue(params(body).contains(new BasicNameValuePair("fkey", "0123456789abcdef0123456789abcdef")));
+					return response(200, "{\"events\":[],\"time\":1}");
+				case 2:
+					//saved session has expired
+					assertEquals("POST", method);
+					assertEquals("https://chat.stackoverflow.com/chats/1/events", uri);
+					return response(403, "");
+				case 3:
+					assertEquals("GET", method);
+					assertEquals("https://stackoverflow.com/users/login", uri);
+					return response(200, "value=\"0123456789abcdef0123456789abcdef\"");
+				case 4:
+					assertEquals("POST", method);
+					assertEquals("https://stackoverflow.com/users/login", uri);
+					return response(302, "");
+				case 5:
+					assertEquals("GET", method);
+					assertEquals("https://chat.stackoverflow.com/rooms/1", uri);
+					return response(200, "value=\"fedcba9876543210fedcba9876543210\" <textarea id=\"input\"></textarea>");
+				case 6:
+					assertEquals("POST", method);
+					assertEquals("https://chat.stackoverflow.com/chats/1/events", uri);
+					assertTrue(params(body).contains(new BasicNameValuePair("fkey", "fedcba9876543210fedcba9876543210")));
+					return response(200, "{\"events\":[],\"time\":2}");
+				}
+
+				return super.answer(method, uri, body);
+			}
+		});
+
+		StackoverflowChat chat = new StackoverflowChat(client, 0, ThreadMode.PLATFORM, session);
+		chat.login("email@example.com", "password");
+		chat.getMessages(1, 1);
+		chat.getMessages(1, 1);
+
+		verify(client, times(6)).execute(any(HttpUriRequest.class));
+		assertEquals("fedcba9876543210fedcba9876543210", session.getFKey(1));
+	}
+
+	/**
+	 * Simulates a room whose message IDs go from 1 to a given number.
+	 */
+	private static class Room extends AnswerImpl {
+		private final int roomId;
+		private final long lastMessageId;
+		private final List<Integer> msgCounts = new ArrayList<>();
+
+		public Room(int roomId, long lastMessageId) {
+			this.roomId = roomId;
+			this.lastMessageId = lastMessageId;
+		}
+
+		@Override
+		protected HttpResponse answer(String method, String uri, String body) throws IOException {
+			if ("GET".equals(method)) {
+				return response(200, "value=\"0123456789abcdef0123456789abcdef\" <textarea id=\"input\"></textarea>");
+			}
+
+			int msgCount = 0;
+			long before = lastMessageId + 1;
+			for (NameValuePair param : params(body)) {
+				if ("msgCount".equals(param.getName())) {
+					msgCount = Integer.parseInt(param.getValue());
+				} else if ("before".equals(param.getName())) {
+					before = Long.parseLong(param.getValue());
+				}
+			}
+			msgCounts.add(msgCount);
+
+			StringBuilder sb = new StringBuilder("{\"events\":[");
+			long first = Math.max(1, before - msgCount);
+			for (long id = first; id < before; id++) {
+				if (id > first) {
+					sb.append(',');
+				}
+				sb.append("{\"event_type\":1,\"time_stamp\":1417041460,\"content\":\"message ").append(id).append("\",\"user_id\":50,\"user_name\":\"User1\",\"room_id\":").append(roomId).append(",\"message_id\":").append(id).append('}');
+			}
+			sb.append("]}");
+			return response(200, sb.toString());
+		}
+	}
+
 	private static HttpClient mockClient(AnswerImpl answer) throws IOException {
 		HttpClient client = mock(HttpClient.class);
 		doAnswer(answer).when(client).execute(any(HttpUriRequest.class));
@@ -0,0 +1,241 @@
+package oakbot.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.stream.Collectors;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class WebSocketChatTest {
+	private StandIn server;
+	private StackoverflowChat http;
+
+	@BeforeClass
+	public static void beforeClass() {
+		//turn off logging
+		LogManager.getLogManager().reset();
+	}
+
+	@Before
+	public void before() throws Exception {
+		server = new StandIn();
+		server.start();
+		server.started.await(5, TimeUnit.SECONDS);
+
+		http = mock(StackoverflowChat.class);
+		when(http.getMessages(1, 1)).thenReturn(Arrays.asList(message(1, 10)));
+		when(http.getMessages(2, 1)).thenReturn(Collections.emptyList());
+		when(http.getMessagesSince(eq(1), anyLong())).thenReturn(Collections.emptyList());
+		when(http.getMessagesSince(eq(2), anyLong())).thenReturn(Collections.emptyList());
+	}
+
+	@After
+	public void after() throws Exception {
+		server.stop(1000);
+	}
+
+	@Test
+	public void messages_are_pushed() throws Exception {
+		WebSocketChat chat = new WebSocketChat(http, room -> server.uri(), 60000);
+		chat.joinRoom(1);
+		chat.joinRoom(2);
+		assertTrue(chat.isConnected());
+
+		//missed messages are retrieved once after the socket opens
+		assertEquals(Collections.emptyList(), chat.getNewMessages(1));
+		verify(http).getMessagesSince(1, 10);
+
+		server.push("{\"r1\":{\"e\":[" + event(1, 11, 1, "one") + "," + event(2, 5, 1, "other room") + "," + event(1, 11, 2, "edited") + "]},\"r3\":{\"e\":[" + event(3, 7, 1, "not joined") + "]}}");
+		server.push("{\"r1\":{\"e\":[" + event(1, 12, 1, "two") + "],\"t\":1,\"d\":1}}");
+		waitFor(() -> chat.getNewMessages(1), 2);
+
+		//already returned
+		assertEquals(Collections.emptyList(), chat.getNewMessages(1));
+		assertEquals(Arrays.asList("other room"), contents(chat.getNewMessages(2)));
+
+		//nothing is polled over HTTP while the socket is open
+		verify(http, times(1)).getMessagesSince(eq(1), anyLong());
+		verify(http, times(1)).getMessagesSince(eq(2), anyLong());
+	}
+
+	@Test
+	public void new_message_handler() throws Exception {
+		WebSocketChat chat = new WebSocketChat(http, room -> server.uri(), 60000);
+		BlockingQueue<Integer> notified = new LinkedBlockingQueue<>();
+		chat.setNewMessageHandler(notified::add);
+		chat.joinRoom(1);
+		chat.joinRoom(2);
+
+		server.push("{\"r1\":{\"e\":[" + event(1, 11, 1, "one") + "," + event(1, 12, 1, "two") + "," + event(3, 7, 1, "not joined") + "]}}");
+		assertEquals(Integer.valueOf(1), notified.poll(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("one", "two"), contents(chat.getNewMessages(1)));
+
+		//one notification per room, and none for rooms that were not joined
+		server.push("{\"r1\":{\"e\":[" + event(2, 5, 1, "other room") + "]}}");
+		assertEquals(Integer.valueOf(2), notified.poll(5, TimeUnit.SECONDS));
+		assertTrue(notified.isEmpty());
+	}
+
+	@Test
+	public void falls_back_to_polling_and_resumes() throws Exception {
+		WebSocketChat chat = new WebSocketChat(http, room -> server.uri(), 0);
+		chat.joinRoom(1);
+		chat.getNewMessages(1);
+
+		server.push("{\"r1\":{\"e\":[" + event(1, 11, 1, "one") + "]}}");
+		waitFor(() -> chat.getNewMessages(1), 1);
+
+		//the socket is lost
+		server.refuse = true;
+		chat.disconnect();
+		waitUntil(() -> !chat.isConnected());
+
+		when(http.getMessagesSince(1, 11)).thenReturn(Arrays.asList(message(1, 12), message(1, 13)));
+		assertEquals(Arrays.asList("12", "13"), contents(chat.getNewMessages(1)));
+		assertFalse(chat.isConnected());
+
+		//the socket is reopened, and the messages posted since the last poll are retrieved
+		server.refuse = false;
+		when(http.getMessagesSince(1, 13)).thenReturn(Arrays.asList(message(1, 14)));
+		List<ChatMessage> messages = chat.getNewMessages(1);
+		waitUntil(chat::isConnected);
+
+		messages.addAll(chat.getNewMessages(1));
+		server.push("{\"r1\":{\"e\":[" + event(1, 14, 1, "14") + "," + event(1, 15, 1, "15") + "]}}");
+		messages.addAll(waitFor(() -> chat.getNewMessages(1), 1));
+		assertEquals(Arrays.asList("14", "15"), contents(messages));
+	}
+
+	@Test
+	public void socket_unavailable() throws Exception {
+		WebSocketChat chat = new WebSocketChat(http, room -> URI.create("ws://localhost:1"), 60000);
+		chat.joinRoom(1);
+		assertFalse(chat.isConnected());
+
+		when(http.getMessagesSince(1, 10)).thenReturn(Arrays.asList(message(1, 11)));
+		assertEquals(Arrays.asList("11"), contents(chat.getNewMessages(1)));
+		verify(http, never()).getMessagesSince(2, 0);
+	}
+
+	private interface Poll {
+		List<ChatMessage> get() throws Exception;
+	}
+
+	private interface Condition {
+		boolean test() throws Exception;
+	}
+
+	private static List<ChatMessage> waitFor(Poll poll, int count) throws Exception {
+		List<ChatMessage> messages = new ArrayList<>();
+		long end = System.currentTimeMillis() + 5000;
+		while (messages.size() < count && System.currentTimeMillis() < end) {
+			messages.addAll(poll.get());
+			Thread.sleep(10);
+		}
+		assertEquals(count, messages.size());
+		return messages;
+	}
+
+	private static void waitUntil(Condition condition) throws Exception {
+		long end = System.currentTimeMillis() + 5000;
+		while (!condition.test()) {
+			assertTrue(System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	private static List<String> contents(List<ChatMessage> messages) {
+		return messages.stream().map(ChatMessage::getContent).collect(Collectors.toList());
+	}
+
+	private static ChatMessage message(int room, long id) {
+		ChatMessage message = new ChatMessage();
+		message.setRoomId(room);
+		message.setMessageId(id);
+		message.setContent(id + "");
+		return message;
+	}
+
+	private static String event(int room, long id, int eventType, String content) {
+		return "{\"event_type\":" + eventType + ",\"room_id\":" + room + ",\"message_id\":" + id + ",\"user_id\":50,\"user_name\":\"User\",\"time_stamp\":1417041460,\"content\":\"" + content + "\"}";
+	}
+
+	/**
+	 * Stands in for the chat's WebSocket server.
+	 */
+	private static class StandIn extends WebSocketServer {
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile boolean refuse;
+
+		public StandIn() {
+			super(new InetSocketAddress("localhost", 0));
+			setReuseAddr(true);
+		}
+
+		public URI uri() {
+			return URI.create("ws://localhost:" + getPort() + "/events?l=0");
+		}
+
+		public void push(String json) throws Exception {
+			//the client can see the socket as open before the server registers it
+			waitUntil(() -> getConnections().stream().anyMatch(WebSocket::isOpen));
+			broadcast(json);
+		}
+
+		@Override
+		public void onOpen(WebSocket conn, ClientHandshake handshake) {
+			if (refuse) {
+				conn.close();
+			}
+		}
+
+		@Override
+		public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+			//empty
+		}
+
+		@Override
+		public void onMessage(WebSocket conn, String message) {
+			//empty
+		}
+
+		@Override
+		public void onError(WebSocket conn, Exception ex) {
+			//empty
+		}
+
+		@Override
+		public void onStart() {
+			started.countDown();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package oakbot.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import oakbot.bot.Bot;
+import oakbot.bot.ChatResponse;
+import oakbot.chat.ChatMessage;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class CommandRegistryTest {
+	@Test
+	public void get() {
+		Command foo = new CommandImpl("foo", "f", "FOO2");
+		Command bar = new CommandImpl("bar");
+		CommandRegistry registry = new CommandRegistry(Arrays.asList(foo, bar));
+
+		assertSame(foo, registry.get("foo"));
+		assertSame(foo, registry.get("FOO"));
+		assertSame(foo, registry.get("f"));
+		assertSame(foo, registry.get("foo2"));
+		assertSame(bar, registry.get("Bar"));
+		assertNull(registry.get("baz"));
+		assertEquals(Arrays.asList(foo, bar), registry.getCommands());
+	}
+
+	@Test
+	public void conflicting_alias() {
+		Command foo = new CommandImpl("foo", "f");
+		Command bar = new CommandImpl("bar", "F");
+		try {
+			new CommandRegistry(Arrays.asList(foo, bar));
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void conflict_does_not_partially_register() {
+		CommandRegistry registry = new CommandRegistry();
+		registry.register(new CommandImpl("foo"));
+		try {
+			registry.register(new CommandImpl("bar", "foo"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		assertNull(registry.get("bar"));
+	}
+
+	@Test
+	public void unregister() {
+		Command foo = new CommandImpl("foo", "f");
+		CommandRegistry registry = new CommandRegistry(Arrays.asList(foo));
+
+		assertTrue(registry.unregister(foo));
+		assertFalse(registry.unregister(foo));
+		assertNull(registry.get("foo"));
+		assertNull(registry.get("f"));
+
+		//the name can be reused
+		Command foo2 = new CommandImpl("foo");
+		registry.register(foo2);
+		assertSame(foo2, registry.get("foo"));
+	}
+
+	private static class CommandImpl implements Command {
+		private final String name;
+		private final Collection<String> aliases;
+
+		public CommandImpl(String name, String... aliases) {
+			this.name = name;
+			this.aliases = Arrays.asList(aliases);
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public Collection<String> aliases() {
+			return aliases;
+		}
+
+		@Override
+		public String description() {
+			return null;
+		}
+
+		@Override
+		public String helpText(String trigger) {
+			return null;
+		}
+
+		@Override
+		public ChatResponse onMessage(ChatMessage message, boolean isAdmin, Bot bot) {
+			return null;
+		}
+	}
+}
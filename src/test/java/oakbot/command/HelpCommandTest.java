@@ -0,0 +1,43 @@
+package oakbot.command;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import oakbot.chat.ChatMessage;
+
+/**
+ * @author Michael Angstadt
+ */
+public class HelpCommandTest {
+	@Test
+	public void commands_registered_at_runtime() {
+		CommandRegistry registry = new CommandRegistry();
+		HelpCommand help = new HelpCommand(registry, Collections.emptyList(), "=");
+		registry.register(help);
+
+		Command foo = mock(Command.class);
+		when(foo.name()).thenReturn("foo");
+		when(foo.aliases()).thenReturn(Arrays.asList("f"));
+		when(foo.description()).thenReturn("Does foo things.");
+		when(foo.helpText("=")).thenReturn("Foo help text.");
+		registry.register(foo);
+
+		assertTrue(help.onMessage(message(""), false, null).getMessage().contains("Does foo things."));
+		assertTrue(help.onMessage(message("F"), false, null).getMessage().contains("Foo help text."));
+
+		registry.unregister(foo);
+		assertTrue(help.onMessage(message("foo"), false, null).getMessage().contains("No command or listener exists"));
+	}
+
+	private static ChatMessage message(String content) {
+		ChatMessage message = new ChatMessage();
+		message.setContent(content);
+		return message;
+	}
+}
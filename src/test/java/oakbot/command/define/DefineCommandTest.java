@@ -27,7 +27,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("");
 
-		DefineCommand urban = new DefineCommand("theKey");
+		DefineCommand urban = new DefineCommand("theKey", null);
 		ChatResponse response = urban.onMessage(message, false, null);
 		assertEquals(":1 You have to type a word to see its definition... -_-", response.getMessage());
 	}
@@ -38,7 +38,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		DefineCommand urban = new DefineCommand("theKey") {
+		DefineCommand urban = new DefineCommand("theKey", null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				throw new IOException();
@@ -55,7 +55,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		DefineCommand urban = new DefineCommand("theKey") {
+		DefineCommand urban = new DefineCommand("theKey", null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://www.dictionaryapi.com/api/v1/references/collegiate/xml/cool?key=theKey", url);
@@ -72,7 +72,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		DefineCommand urban = new DefineCommand("theKey") {
+		DefineCommand urban = new DefineCommand("theKey", null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://www.dictionaryapi.com/api/v1/references/collegiate/xml/cool?key=theKey", url);
@@ -89,7 +89,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		DefineCommand urban = new DefineCommand("theKey") {
+		DefineCommand urban = new DefineCommand("theKey", null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://www.dictionaryapi.com/api/v1/references/collegiate/xml/cool?key=theKey", url);
@@ -166,7 +166,7 @@ public class DefineCommandTest {
 		message.setMessageId(1);
 		message.setContent("grand piano");
 
-		DefineCommand urban = new DefineCommand("theKey") {
+		DefineCommand urban = new DefineCommand("theKey", null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://www.dictionaryapi.com/api/v1/references/collegiate/xml/grand%20piano?key=theKey", url);
@@ -0,0 +1,128 @@
+package oakbot.command.javadoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ClassInfoCacheTest {
+	@Test
+	public void get() {
+		ClassInfoCache cache = new ClassInfoCache(1024 * 1024);
+		ClassInfo info = info("Foo", 100);
+
+		assertNull(cache.get("Foo"));
+		cache.put("Foo", info);
+		assertSame(info, cache.get("Foo"));
+		assertSame(info, cache.get("Foo"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(2 / 3.0, cache.getHitRate(), 0.001);
+		assertEquals(1, cache.size());
+		assertEquals(ClassInfoCache.weigh(info), cache.getWeight());
+
+		cache.invalidateAll(Arrays.asList("Foo"));
+		assertNull(cache.get("Foo"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void weight_is_bounded() {
+		ClassInfoCache cache = new ClassInfoCache(100 * 1024);
+		for (int i = 0; i < 200; i++) {
+			String name = "Class" + i;
+			cache.get(name);
+			cache.put(name, info(name, 2000));
+			assertTrue(cache.getWeight() <= cache.getMaxWeight());
+		}
+
+		assertTrue(cache.getEvictions() > 0);
+		assertEquals(200 - cache.size(), cache.getEvictions());
+	}
+
+	@Test
+	public void too_large() {
+		ClassInfoCache cache = new ClassInfoCache(1024);
+		cache.put("Foo", info("Foo", 1000));
+		assertNull(cache.get("Foo"));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void frequently_used_classes_are_kept() {
+		ClassInfoCache cache = new ClassInfoCache(100 * 1024);
+		for (int i = 0; i < 5; i++) {
+			String name = "Hot" + i;
+			cache.get(name);
+			cache.put(name, info(name, 2000));
+		}
+		for (int j = 0; j < 10; j++) {
+			for (int i = 0; i < 5; i++) {
+				assertNotNull(cache.get("Hot" + i));
+			}
+		}
+
+		//a scan of classes that are only looked up once
+		for (int i = 0; i < 500; i++) {
+			String name = "Cold" + i;
+			if (cache.get(name) == null) {
+				cache.put(name, info(name, 2000));
+			}
+		}
+
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("Hot" + i));
+		}
+	}
+
+	@Test
+	public void victims_are_not_evicted_if_candidate_is_rejected() {
+		ClassInfoCache cache = new ClassInfoCache(100 * 1024);
+
+		//used once, so it's in the probation segment
+		cache.get("Cold");
+		cache.put("Cold", info("Cold", 20000));
+
+		//used often, so it's in the protected segment
+		cache.get("Hot");
+		cache.put("Hot", info("Hot", 20000));
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("Hot"));
+		}
+
+		/*
+		 * Used more than "Cold", but less than "Hot". Both would have to be
+		 * evicted to make room for it.
+		 */
+		for (int i = 0; i < 3; i++) {
+			cache.get("Big");
+		}
+		cache.put("Big", info("Big", 35000));
+
+		assertEquals(1, cache.getEvictions());
+		assertNotNull(cache.get("Cold"));
+		assertNotNull(cache.get("Hot"));
+		assertNull(cache.get("Big"));
+	}
+
+	private static ClassInfo info(String name, int descriptionLength) {
+		//@formatter:off
+		return new ClassInfo.Builder()
+			.name(new ClassName("com.example", name))
+			.description(Strings.repeat("a", descriptionLength))
+		.build();
+		//@formatter:on
+	}
+}
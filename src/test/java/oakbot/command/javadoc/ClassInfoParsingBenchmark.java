@@ -0,0 +1,225 @@
+package oakbot.command.javadoc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.google.common.base.Strings;
+
+import oakbot.util.XPathWrapper;
+
+/**
+ * Compares the cost of parsing a large class's XML file by building a DOM
+ * tree and querying it with XPath (the way classes used to be parsed), and by
+ * streaming it with {@link ClassInfoXmlParser}. The streaming parser is also
+ * measured when it only parses the class header, and when it only parses the
+ * overloads of a single method.
+ * <p>
+ * The class has as many methods as {@code java.awt.Component} (about 250),
+ * each with a paragraph-sized description.
+ * </p>
+ * <p>
+ * To run: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=oakbot.command.javadoc.ClassInfoParsingBenchmark}
+ * </p>
+ * @author Michael Angstadt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassInfoParsingBenchmark {
+	private static final int METHODS = 250;
+
+	private byte[] xml;
+	private final ClassInfoXmlParser streaming = new ClassInfoXmlParser();
+	private final ClassInfoXmlParser header = ClassInfoXmlParser.headerOnly();
+	private final ClassInfoXmlParser method = new ClassInfoXmlParser("getName"::equals, Integer.MAX_VALUE);
+
+	@Setup
+	public void setup() {
+		String description = Strings.repeat("Some text describing what the method does, with `code` in it. ", 8);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+		sb.append("<class modifiers=\"public abstract class\" name=\"java.awt|Component\" extends=\"java.lang|Object\" implements=\"java.awt.image|ImageObserver java.awt|MenuContainer java.io|Serializable\">");
+		sb.append("<description>").append(description).append("</description>");
+		sb.append("<constructor modifiers=\"protected\"><description>").append(description).append("</description></constructor>");
+		for (int i = 0; i < METHODS; i++) {
+			String name = (i == METHODS / 2) ? "getName" : "method" + i;
+			sb.append("<method modifiers=\"public\" name=\"").append(name).append("\" returns=\"java.lang|String\">");
+			sb.append("<description>").append(description).append("</description>");
+			for (int j = 0; j < i % 3; j++) {
+				sb.append("<parameter name=\"param").append(j).append("\" type=\"java.util|List&lt;java.lang.String&gt;\"/>");
+			}
+			sb.append("</method>");
+		}
+		sb.append("</class>");
+		xml = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public ClassInfo.Builder dom() throws Exception {
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		return DomParser.parse(document);
+	}
+
+	@Benchmark
+	public ClassInfo.Builder streaming() throws IOException {
+		return streaming.parse(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public ClassInfo.Builder streamingHeaderOnly() throws IOException {
+		return header.parse(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public ClassInfo.Builder streamingOneMethod() throws IOException {
+		return method.parse(new ByteArrayInputStream(xml));
+	}
+
+	/**
+	 * Parses a class from a DOM tree using XPath, the way it used to be done.
+	 */
+	private static class DomParser {
+		private static final XPathWrapper xpath = new XPathWrapper();
+
+		public static ClassInfo.Builder parse(Document document) {
+			ClassInfo.Builder builder = new ClassInfo.Builder();
+
+			Element classElement = xpath.element("/class", document);
+			ClassName className = parseClassName(classElement.getAttribute("name"));
+			builder.name(className);
+
+			String value = classElement.getAttribute("modifiers");
+			if (!value.isEmpty()) {
+				builder.modifiers(Arrays.asList(value.split("\\s+")));
+			}
+
+			value = classElement.getAttribute("extends");
+			if (!value.isEmpty()) {
+				builder.superClass(parseClassName(value));
+			}
+
+			value = classElement.getAttribute("implements");
+			if (!value.isEmpty()) {
+				for (String name : value.trim().split("\\s+")) {
+					builder.interface_(parseClassName(name));
+				}
+			}
+
+			value = classElement.getAttribute("deprecated");
+			builder.deprecated(value.isEmpty() ? false : Boolean.parseBoolean(value));
+
+			value = classElement.getAttribute("since");
+			if (!value.isEmpty()) {
+				builder.since(value);
+			}
+
+			Element element = xpath.element("/class/description", document);
+			if (element != null) {
+				builder.description(element.getTextContent());
+			}
+
+			for (Element constructorElement : xpath.elements("/class/constructor", document)) {
+				builder.method(parseMethod(constructorElement, className.getSimpleName()));
+			}
+
+			for (Element methodElement : xpath.elements("/class/method", document)) {
+				String name = methodElement.getAttribute("name");
+				if (!name.isEmpty()) {
+					builder.method(parseMethod(methodElement, name));
+				}
+			}
+
+			return builder;
+		}
+
+		private static MethodInfo parseMethod(Element element, String name) {
+			MethodInfo.Builder builder = new MethodInfo.Builder();
+			builder.name(name);
+
+			String value = element.getAttribute("modifiers");
+			if (!value.isEmpty()) {
+				builder.modifiers(Arrays.asList(value.split("\\s+")));
+			}
+
+			value = element.getAttribute("since");
+			if (!value.isEmpty()) {
+				builder.since(value);
+			}
+
+			Element descriptionElement = xpath.element("description", element);
+			if (descriptionElement != null) {
+				builder.description(descriptionElement.getTextContent());
+			}
+
+			value = element.getAttribute("returns");
+			if (!value.isEmpty()) {
+				builder.returnValue(parseClassName(value));
+			}
+
+			value = element.getAttribute("deprecated");
+			builder.deprecated(value.isEmpty() ? false : Boolean.parseBoolean(value));
+
+			for (Element parameterElement : xpath.elements("parameter", element)) {
+				String type = parameterElement.getAttribute("type");
+				boolean array = type.endsWith("[]");
+				if (array) {
+					type = type.substring(0, type.length() - 2);
+				}
+				boolean varargs = type.endsWith("...");
+				if (varargs) {
+					type = type.substring(0, type.length() - 3);
+				}
+				int pos = type.indexOf('<');
+				String generic = (pos < 0) ? null : type.substring(pos);
+				if (generic != null) {
+					type = type.substring(0, pos);
+				}
+				builder.parameter(new ParameterInfo(parseClassName(type), parameterElement.getAttribute("name"), array, varargs, generic));
+			}
+
+			return builder.build();
+		}
+
+		private static ClassName parseClassName(String value) {
+			int pipe = value.indexOf('|');
+			String packageName = (pipe < 0) ? null : value.substring(0, pipe);
+
+			String split[] = ((pipe < 0) ? value : value.substring(pipe + 1)).split("\\.");
+			List<String> outerClassNames = new ArrayList<>(Arrays.asList(split).subList(0, split.length - 1));
+			return new ClassName(packageName, outerClassNames, split[split.length - 1]);
+		}
+	}
+
+	public static void main(String args[]) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ClassInfoParsingBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
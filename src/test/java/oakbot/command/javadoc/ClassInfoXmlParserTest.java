@@ -0,0 +1,113 @@
+package oakbot.command.javadoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ClassInfoXmlParserTest {
+	//@formatter:off
+	private static final String xml =
+	"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>" +
+	"<class name=\"java.util|Map.Entry\" modifiers=\"public abstract\" extends=\"java.lang|Object\" implements=\"java.lang|Comparable java.io|Serializable\" deprecated=\"true\" since=\"1.2\">" +
+		"<description>The &lt;b&gt;description&lt;/b&gt;.</description>" +
+		"<method name=\"put\" modifiers=\"public\" returns=\"java.lang|Object\" since=\"1.5\">" +
+			"<description>Puts <![CDATA[it]]>.</description>" +
+			"<parameter type=\"java.util|List&lt;String&gt;\" name=\"list\" />" +
+			"<parameter type=\"java.lang|String[]\" name=\"array\" />" +
+			"<parameter type=\"java.lang|Object...\" name=\"varargs\" />" +
+		"</method>" +
+		"<constructor modifiers=\"public\">" +
+			"<description/>" +
+			"<parameter type=\"int\" name=\"size\" />" +
+		"</constructor>" +
+		"<method name=\"get\" deprecated=\"true\" />" +
+		"<method name=\"put\" />" +
+	"</class>";
+	//@formatter:on
+
+	@Test
+	public void parse() throws Exception {
+		ClassInfo info = parse(new ClassInfoXmlParser());
+
+		assertEquals("java.util.Map.Entry", info.getName().getFullyQualifiedName());
+		assertEquals(Arrays.asList("Map"), info.getName().getOuterClassNames());
+		assertEquals("java.lang.Object", info.getSuperClass().getFullyQualifiedName());
+		assertEquals(new HashSet<>(Arrays.asList("public", "abstract")), info.getModifiers());
+		assertEquals(2, info.getInterfaces().size());
+		assertTrue(info.isDeprecated());
+		assertEquals("1.2", info.getSince());
+		assertEquals("The <b>description</b>.", info.getDescription());
+
+		//constructors come first
+		List<MethodInfo> methods = new ArrayList<>(info.getMethods());
+		assertEquals(4, methods.size());
+
+		MethodInfo method = methods.get(0);
+		assertEquals("Entry", method.getName());
+		assertEquals("", method.getDescription());
+		assertNull(method.getReturnValue());
+		assertEquals("void Entry(int size)", method.getSignatureString());
+
+		method = methods.get(1);
+		assertEquals("put", method.getName());
+		assertEquals("Puts it.", method.getDescription());
+		assertEquals("1.5", method.getSince());
+		assertFalse(method.isDeprecated());
+		assertEquals("Object put(List<String> list, String[] array, Object... varargs)", method.getSignatureString());
+
+		method = methods.get(2);
+		assertEquals("put", method.getName());
+		assertNull(method.getDescription());
+
+		method = methods.get(3);
+		assertEquals("get", method.getName());
+		assertTrue(method.isDeprecated());
+	}
+
+	@Test
+	public void headerOnly() throws Exception {
+		ClassInfo info = parse(ClassInfoXmlParser.headerOnly());
+		assertEquals("java.util.Map.Entry", info.getName().getFullyQualifiedName());
+		assertEquals("The <b>description</b>.", info.getDescription());
+		assertTrue(info.getMethods().isEmpty());
+	}
+
+	@Test
+	public void method_filter() throws Exception {
+		ClassInfo info = parse(new ClassInfoXmlParser("put"::equals, Integer.MAX_VALUE));
+		assertEquals(2, info.getMethods().size());
+		assertEquals(2, info.getMethod("put").size());
+
+		info = parse(new ClassInfoXmlParser("put"::equals, 1));
+		assertEquals(1, info.getMethods().size());
+		assertEquals("Puts it.", info.getMethod("put").iterator().next().getDescription());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void no_class_element() throws Exception {
+		new ClassInfoXmlParser().parse(new ByteArrayInputStream("<foo/>".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expected = IOException.class)
+	public void malformed() throws Exception {
+		new ClassInfoXmlParser().parse(new ByteArrayInputStream("<class name=\"Foo\"><method>".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static ClassInfo parse(ClassInfoXmlParser parser) throws IOException {
+		return parser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).build();
+	}
+}
@@ -1,6 +1,7 @@
 package oakbot.command.javadoc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -62,6 +63,13 @@ public class JavadocDaoTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void search_results_are_a_copy() {
+		Collection<String> names = dao.search("list");
+		names.clear();
+		assertFalse(dao.search("list").isEmpty());
+	}
+
 	@Test
 	public void search_no_results() {
 		Collection<String> names = dao.search("lsit");
@@ -80,6 +88,18 @@ public class JavadocDaoTest {
 		assertNull(info);
 	}
 
+	@Test
+	public void unreadable_zip_file_is_skipped() throws Exception {
+		Path dir = temporaryFolder.getRoot().toPath();
+		Files.copy(root.resolve("JavadocZipFileTest.zip"), dir.resolve("JavadocZipFileTest.zip"));
+		Files.copy(root.resolve("JavadocZipFileTest-javadocUrlPattern.zip"), dir.resolve("JavadocZipFileTest-javadocUrlPattern.zip"));
+		Files.write(dir.resolve("corrupt.zip"), new byte[] { 1, 2, 3 });
+
+		JavadocDao dao = new JavadocDao(dir);
+		assertNotNull(dao.getClassInfo("java.util.List"));
+		assertEquals(new HashSet<>(Arrays.asList("java.awt.List", "java.util.List")), new HashSet<>(dao.search("list")));
+	}
+
 	@Test
 	public void directory_watcher_ignore_non_zip_files() throws Exception {
 		Path dir = temporaryFolder.getRoot().toPath();
@@ -155,7 +175,7 @@ public class JavadocDaoTest {
 		ClassInfo info = dao.getClassInfo("java.util.List");
 		assertNotNull(info);
 
-		try (FileSystem fs = FileSystems.newFileSystem(dest, null)) {
+		try (FileSystem fs = FileSystems.newFileSystem(dest, (ClassLoader) null)) {
 			Path path = fs.getPath("java/util/List.xml");
 			Files.delete(path);
 		}
@@ -0,0 +1,124 @@
+package oakbot.command.javadoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class JavadocIndexTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void same_as_zip() throws Exception {
+		for (String suffix : new String[] { "", "-javadocUrlPattern", "-no-info" }) {
+			Path file = copy(suffix);
+			Path indexFile = file.resolveSibling("index.idx");
+
+			try (JavadocZipFile zip = new JavadocZipFile(file); JavadocZipFile indexed = new JavadocZipFile(file, indexFile)) {
+				assertEquals(zip.getName(), indexed.getName());
+				assertEquals(zip.getVersion(), indexed.getVersion());
+				assertEquals(zip.getBaseUrl(), indexed.getBaseUrl());
+				assertEquals(zip.getProjectUrl(), indexed.getProjectUrl());
+				assertEquals(names(zip.getClassNames()), names(indexed.getClassNames()));
+
+				for (ClassName className : zip.getClassNames()) {
+					String fullName = className.getFullyQualifiedName();
+					ClassInfo expected = zip.getClassInfo(fullName);
+					ClassInfo actual = indexed.getClassInfo(fullName);
+					assertClass(expected, actual);
+					assertEquals(zip.getUrl(expected, true), indexed.getUrl(actual, true));
+				}
+
+				assertNull(indexed.getClassInfo("java.lang.Foo"));
+			}
+		}
+	}
+
+	@Test
+	public void rebuilt_when_zip_changes() throws Exception {
+		Path file = copy("");
+		Path indexFile = file.resolveSibling("index.idx");
+
+		new JavadocZipFile(file, indexFile).close();
+		FileTime built = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(indexFile, built);
+
+		//up to date
+		new JavadocZipFile(file, indexFile).close();
+		assertEquals(built, Files.getLastModifiedTime(indexFile));
+
+		//ZIP file changed
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60000));
+		new JavadocZipFile(file, indexFile).close();
+		assertNotEquals(built, Files.getLastModifiedTime(indexFile));
+	}
+
+	@Test
+	public void rebuilt_when_corrupt() throws Exception {
+		Path file = copy("");
+		Path indexFile = file.resolveSibling("index.idx");
+		Files.write(indexFile, new byte[] { 'O', 'A', 'K', 'J', 'D', 'X', 0 });
+
+		try (JavadocZipFile zip = new JavadocZipFile(file, indexFile)) {
+			assertEquals("Object", zip.getClassInfo("java.lang.Object").getName().getSimpleName());
+		}
+	}
+
+	private Path copy(String suffix) throws Exception {
+		Path source = Paths.get(JavadocZipFileTest.class.getResource(JavadocZipFileTest.class.getSimpleName() + suffix + ".zip").toURI());
+		Path target = temporaryFolder.newFolder().toPath().resolve(source.getFileName());
+		Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+		return target;
+	}
+
+	private static void assertClass(ClassInfo expected, ClassInfo actual) {
+		assertEquals(name(expected.getName()), name(actual.getName()));
+		assertEquals(name(expected.getSuperClass()), name(actual.getSuperClass()));
+		assertEquals(names(expected.getInterfaces()), names(actual.getInterfaces()));
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getSince(), actual.getSince());
+		assertEquals(expected.getModifiers(), actual.getModifiers());
+		assertEquals(expected.isDeprecated(), actual.isDeprecated());
+
+		assertEquals(expected.getMethods().size(), actual.getMethods().size());
+		Iterator<MethodInfo> it = actual.getMethods().iterator();
+		for (MethodInfo expectedMethod : expected.getMethods()) {
+			MethodInfo actualMethod = it.next();
+			assertEquals(expectedMethod.getSignatureString(), actualMethod.getSignatureString());
+			assertEquals(expectedMethod.getUrlAnchor(), actualMethod.getUrlAnchor());
+			assertEquals(expectedMethod.getDescription(), actualMethod.getDescription());
+			assertEquals(expectedMethod.getSince(), actualMethod.getSince());
+			assertEquals(expectedMethod.getModifiers(), actualMethod.getModifiers());
+			assertEquals(name(expectedMethod.getReturnValue()), name(actualMethod.getReturnValue()));
+			assertEquals(expectedMethod.isDeprecated(), actualMethod.isDeprecated());
+		}
+	}
+
+	private static String name(ClassName className) {
+		return (className == null) ? null : className.getFullyQualifiedName();
+	}
+
+	private static List<String> names(Iterable<ClassName> classNames) {
+		List<String> names = new ArrayList<>();
+		for (ClassName className : classNames) {
+			names.add(name(className));
+		}
+		return names;
+	}
+}
@@ -8,9 +8,14 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -97,6 +102,31 @@ public class JavadocZipFileTest {
 		assertEquals("Object", info.getName().getSimpleName());
 	}
 
+	@Test
+	public void getClassInfo_concurrent() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ClassInfo>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				String name = (i % 2 == 0) ? "java.lang.Object" : "java.util.List";
+				futures.add(executor.submit(() -> zip.getClassInfo(name)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				String name = (i % 2 == 0) ? "java.lang.Object" : "java.util.List";
+				assertEquals(name, futures.get(i).get().getName().getFullyQualifiedName());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void close() throws Exception {
+		JavadocZipFile zip = load("");
+		zip.close();
+		zip.getClassInfo("java.lang.Object");
+	}
+
 	private static JavadocZipFile load(String suffix) throws IOException, URISyntaxException {
 		URI uri = JavadocZipFileTest.class.getResource(JavadocZipFileTest.class.getSimpleName() + suffix + ".zip").toURI();
 		Path file = Paths.get(uri);
@@ -30,7 +30,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("");
 
-		UrbanCommand urban = new UrbanCommand();
+		UrbanCommand urban = new UrbanCommand(null);
 		ChatResponse response = urban.onMessage(message, false, null);
 		assertEquals(":1 You have to type a word to see its definition... -_-", response.getMessage());
 	}
@@ -41,7 +41,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				throw new IOException();
@@ -58,7 +58,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -75,7 +75,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -92,7 +92,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -109,7 +109,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("snafu");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=snafu", url);
@@ -135,7 +135,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("fucked up");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=fucked+up", url);
@@ -151,7 +151,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool 2");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -168,7 +168,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool -1");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -185,7 +185,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("cool 9000");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=cool", url);
@@ -202,7 +202,7 @@ public class UrbanCommandTest {
 		message.setMessageId(1);
 		message.setContent("fucked up");
 
-		UrbanCommand urban = new UrbanCommand() {
+		UrbanCommand urban = new UrbanCommand(null) {
 			@Override
 			InputStream get(String url) throws IOException {
 				assertEquals("http://api.urbandictionary.com/v0/define?term=fucked+up", url);
@@ -0,0 +1,82 @@
+package oakbot.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class AhoCorasickTest {
+	@Test
+	public void scan() {
+		//@formatter:off
+		AhoCorasick ac = new AhoCorasick.Builder()
+			.add("he", 0)
+			.add("she", 1)
+			.add("his", 2)
+			.add("hers", 3)
+		.build();
+		//@formatter:on
+
+		assertEquals(bits(0, 1, 3), scan(ac, "ushers"));
+		assertEquals(bits(2), scan(ac, "this"));
+		assertEquals(bits(), scan(ac, "nothing"));
+		assertEquals(bits(), scan(ac, ""));
+	}
+
+	@Test
+	public void case_insensitive() {
+		AhoCorasick ac = new AhoCorasick.Builder().add("@OakBot", 0).build();
+		assertEquals(bits(0), scan(ac, "hey @oakbot!"));
+		assertEquals(bits(0), scan(ac, "HEY @OAKBOT!"));
+	}
+
+	@Test
+	public void shared_id() {
+		//@formatter:off
+		AhoCorasick ac = new AhoCorasick.Builder()
+			.add("@oak bot", 5)
+			.add("@oakbot", 5)
+		.build();
+		//@formatter:on
+
+		assertEquals(bits(5), scan(ac, "@oakbot"));
+		assertEquals(bits(5), scan(ac, "@oak bot"));
+		assertEquals(bits(), scan(ac, "@oak"));
+	}
+
+	@Test
+	public void overlapping() {
+		//@formatter:off
+		AhoCorasick ac = new AhoCorasick.Builder()
+			.add("aab", 0)
+			.add("ab", 1)
+			.add("b", 2)
+		.build();
+		//@formatter:on
+
+		assertEquals(bits(0, 1, 2), scan(ac, "aaab"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void empty_pattern() {
+		new AhoCorasick.Builder().add("", 0);
+	}
+
+	private static BitSet scan(AhoCorasick ac, String text) {
+		BitSet bits = new BitSet();
+		ac.scan(text, bits);
+		return bits;
+	}
+
+	private static BitSet bits(int... ids) {
+		BitSet bits = new BitSet();
+		for (int id : ids) {
+			bits.set(id);
+		}
+		return bits;
+	}
+}
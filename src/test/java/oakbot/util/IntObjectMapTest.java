@@ -0,0 +1,76 @@
+package oakbot.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class IntObjectMapTest {
+	@Test
+	public void put_get_remove() {
+		IntObjectMap<String> map = new IntObjectMap<>();
+		assertTrue(map.isEmpty());
+
+		assertNull(map.put(1, "one"));
+		assertNull(map.put(-5, "minus five"));
+		assertEquals("one", map.put(1, "uno"));
+		assertEquals(2, map.size());
+
+		assertEquals("uno", map.get(1));
+		assertEquals("minus five", map.get(-5));
+		assertNull(map.get(2));
+
+		assertEquals("uno", map.remove(1));
+		assertNull(map.remove(1));
+		assertNull(map.get(1));
+		assertEquals(1, map.size());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void null_value() {
+		new IntObjectMap<String>().put(1, null);
+	}
+
+	@Test
+	public void removeIf() {
+		IntObjectMap<Integer> map = new IntObjectMap<>();
+		for (int i = 0; i < 100; i++) {
+			map.put(i, i);
+		}
+
+		assertEquals(50, map.removeIf(v -> v % 2 == 0));
+		assertEquals(50, map.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), map.get(i));
+		}
+	}
+
+	@Test
+	public void matches_HashMap() {
+		Random random = new Random(42);
+		IntObjectMap<Integer> map = new IntObjectMap<>(4);
+		Map<Integer, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(500);
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (int key = 0; key < 500; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
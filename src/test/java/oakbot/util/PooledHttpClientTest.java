@@ -0,0 +1,61 @@
+package oakbot.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class PooledHttpClientTest {
+	@Test
+	public void build() throws Exception {
+		//@formatter:off
+		CloseableHttpClient client = new PooledHttpClient.Builder()
+			.maxConnections(10)
+			.maxConnectionsPerRoute(2)
+			.connectTimeout(1, TimeUnit.SECONDS)
+			.readTimeout(1, TimeUnit.SECONDS)
+			.keepAlive(0, TimeUnit.SECONDS)
+		.build();
+		//@formatter:on
+		client.close();
+	}
+
+	@Test
+	public void keepAliveStrategy() {
+		ConnectionKeepAliveStrategy strategy = PooledHttpClient.keepAliveStrategy(10000);
+		HttpContext context = new BasicHttpContext();
+
+		//no server value
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		assertEquals(10000, strategy.getKeepAliveDuration(response, context));
+
+		//server asks for less
+		response.setHeader("Keep-Alive", "timeout=5");
+		assertEquals(5000, strategy.getKeepAliveDuration(response, context));
+
+		//server asks for more
+		response.setHeader("Keep-Alive", "timeout=30");
+		assertEquals(10000, strategy.getKeepAliveDuration(response, context));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void build_invalid_connections() {
+		new PooledHttpClient.Builder().maxConnectionsPerRoute(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void build_invalid_timeout() {
+		new PooledHttpClient.Builder().readTimeout(-1, TimeUnit.SECONDS).build();
+	}
+}
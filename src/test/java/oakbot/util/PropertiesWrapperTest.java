@@ -59,6 +59,24 @@ public class PropertiesWrapperTest {
 		wrapper.getInteger("key");
 	}
 
+	@Test
+	public void getDouble() {
+		Properties props = new Properties();
+		props.setProperty("key", "1.5");
+		props.setProperty("invalid", "value");
+
+		PropertiesWrapper wrapper = new PropertiesWrapper(props);
+		assertEquals(1.5, wrapper.getDouble("key", null), 0);
+		assertEquals(2.0, wrapper.getDouble("foo", 2.0), 0);
+
+		try {
+			wrapper.getDouble("invalid", 2.0);
+			fail();
+		} catch (NumberFormatException e) {
+			assertTrue(e.getMessage().contains("invalid"));
+		}
+	}
+
 	@Test
 	public void getDate() throws Exception {
 		Properties props = new Properties();
@@ -0,0 +1,38 @@
+package oakbot.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ThreadModeTest {
+	@Test
+	public void parse() {
+		assertEquals(ThreadMode.PLATFORM, ThreadMode.parse("platform"));
+		assertEquals(ThreadMode.VIRTUAL, ThreadMode.parse(" Virtual "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parse_unknown() {
+		ThreadMode.parse("green");
+	}
+
+	@Test
+	public void threadFactory() throws Exception {
+		for (ThreadMode mode : ThreadMode.values()) {
+			CountDownLatch ran = new CountDownLatch(1);
+			Thread thread = mode.threadFactory("Test").newThread(ran::countDown);
+			assertTrue(thread.getName().startsWith("Test-"));
+			assertTrue(thread.isDaemon());
+
+			thread.start();
+			assertTrue(ran.await(1, TimeUnit.SECONDS));
+		}
+	}
+}